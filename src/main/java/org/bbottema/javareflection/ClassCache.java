@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.util.cache.CachePolicy;
+import org.bbottema.javareflection.util.cache.LookupCache;
+import org.bbottema.javareflection.util.cache.StatsCounter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.bbottema.javareflection.LookupCaches.CLASS_NOT_FOUND;
+
+/**
+ * The {@link Class} cache used by {@link ClassUtils#locateClass(String, boolean, ClassLoader)} and
+ * {@link ClassUtils#locateClass(String, String, ClassLoader)}.
+ * <p>
+ * Classes are cached per class loader, since different class loaders can resolve the same name to different classes, and per kind of lookup
+ * (full scan, common packages only, or a specific package). Lookups don't allocate: the class loader is found by identity among the known
+ * class loaders and each kind of lookup has its own cache keyed on the plain class name.
+ * <p>
+ * Class loaders and located classes are only referenced weakly, so caching classes of a class loader doesn't keep that class loader alive.
+ * Caches of class loaders that were garbage collected are dropped the next time a class loader is added. The {@link CachePolicy} applies to
+ * each class loader and kind of lookup separately.
+ */
+final class ClassCache {
+
+	/**
+	 * Stored for class names that could not be located. Never cleared, since {@link LookupCaches#CLASS_NOT_FOUND} is a class of this library.
+	 */
+	private static final Reference<Class<?>> NOT_FOUND = new WeakReference<Class<?>>(CLASS_NOT_FOUND);
+
+	@NotNull
+	private final CachePolicy policy;
+	@NotNull
+	private final StatsCounter stats;
+
+	/**
+	 * Caches for lookups without class loader, in which case classes are resolved with the class loader of this library.
+	 */
+	private final LoaderCaches defaultLoaderCaches;
+	private volatile LoaderCaches[] loaderCaches = new LoaderCaches[0];
+
+	ClassCache(@NotNull CachePolicy policy, @NotNull StatsCounter stats) {
+		this.policy = policy;
+		this.stats = stats;
+		this.defaultLoaderCaches = new LoaderCaches(null);
+	}
+
+	/**
+	 * @return The cached class, {@link LookupCaches#CLASS_NOT_FOUND} if the class is known not to exist, or <code>null</code> if not cached.
+	 * @see ClassUtils#locateClass(String, boolean, ClassLoader)
+	 */
+	@Nullable
+	Class<?> get(final String className, final boolean fullscan, @Nullable final ClassLoader classLoader) {
+		final LoaderCaches caches = findLoaderCaches(classLoader);
+		if (caches == null) {
+			stats.recordMiss();
+			return null;
+		}
+		return dereference((fullscan ? caches.fullscanCache : caches.commonPackagesCache).getUnrecorded(className));
+	}
+
+	void put(final String className, final boolean fullscan, @Nullable final ClassLoader classLoader, @Nullable final Class<?> _class) {
+		final LoaderCaches caches = obtainLoaderCaches(classLoader);
+		(fullscan ? caches.fullscanCache : caches.commonPackagesCache).put(className, reference(_class));
+	}
+
+	/**
+	 * @return The cached class, {@link LookupCaches#CLASS_NOT_FOUND} if the class is known not to exist, or <code>null</code> if not cached.
+	 * @see ClassUtils#locateClass(String, String, ClassLoader)
+	 */
+	@Nullable
+	Class<?> get(final String className, @Nullable final String inPackage, @Nullable final ClassLoader classLoader) {
+		final LoaderCaches caches = findLoaderCaches(classLoader);
+		final LookupCache<String, Reference<Class<?>>> packageCache = caches != null ? caches.getPackageCache(inPackage) : null;
+		if (packageCache == null) {
+			stats.recordMiss();
+			return null;
+		}
+		return dereference(packageCache.getUnrecorded(className));
+	}
+
+	void put(final String className, @Nullable final String inPackage, @Nullable final ClassLoader classLoader, @Nullable final Class<?> _class) {
+		obtainLoaderCaches(classLoader).obtainPackageCache(inPackage).put(className, reference(_class));
+	}
+
+	synchronized void clear() {
+		defaultLoaderCaches.clear();
+		for (LoaderCaches caches : loaderCaches) {
+			caches.clear();
+		}
+		loaderCaches = new LoaderCaches[0];
+	}
+
+	@Nullable
+	private LoaderCaches findLoaderCaches(@Nullable final ClassLoader classLoader) {
+		if (classLoader == null) {
+			return defaultLoaderCaches;
+		}
+		for (LoaderCaches caches : loaderCaches) {
+			if (caches.classLoader.get() == classLoader) {
+				return caches;
+			}
+		}
+		return null;
+	}
+
+	@NotNull
+	private LoaderCaches obtainLoaderCaches(@Nullable final ClassLoader classLoader) {
+		final LoaderCaches caches = findLoaderCaches(classLoader);
+		return caches != null ? caches : addLoaderCaches(classLoader);
+	}
+
+	/**
+	 * Copy-on-write, so lookups can scan the class loaders without locking. Also drops the caches of class loaders that were garbage collected.
+	 */
+	@NotNull
+	private synchronized LoaderCaches addLoaderCaches(@NotNull final ClassLoader classLoader) {
+		final List<LoaderCaches> updatedLoaderCaches = new ArrayList<>();
+		for (LoaderCaches caches : loaderCaches) {
+			final ClassLoader knownClassLoader = caches.classLoader.get();
+			if (knownClassLoader == classLoader) {
+				return caches;
+			} else if (knownClassLoader != null) {
+				updatedLoaderCaches.add(caches);
+			} else {
+				caches.clear();
+			}
+		}
+		final LoaderCaches caches = new LoaderCaches(classLoader);
+		updatedLoaderCaches.add(caches);
+		loaderCaches = updatedLoaderCaches.toArray(new LoaderCaches[0]);
+		return caches;
+	}
+
+	@Nullable
+	private Class<?> dereference(@Nullable final Reference<Class<?>> cachedClass) {
+		// a cleared reference means the class was unloaded, which is the same as not being cached
+		final Class<?> _class = cachedClass != null ? cachedClass.get() : null;
+		if (_class == null) {
+			stats.recordMiss();
+		} else {
+			stats.recordHit();
+		}
+		return _class;
+	}
+
+	@NotNull
+	private static Reference<Class<?>> reference(@Nullable final Class<?> _class) {
+		return _class != null ? new WeakReference<Class<?>>(_class) : NOT_FOUND;
+	}
+
+	/**
+	 * The caches for one class loader, one for each kind of lookup.
+	 */
+	private final class LoaderCaches {
+		private final Reference<ClassLoader> classLoader;
+		private final LookupCache<String, Reference<Class<?>>> fullscanCache = newCache();
+		private final LookupCache<String, Reference<Class<?>>> commonPackagesCache = newCache();
+		private final LookupCache<String, Reference<Class<?>>> anyPackageCache = newCache();
+		private final ConcurrentMap<String, LookupCache<String, Reference<Class<?>>>> packageCaches = new ConcurrentHashMap<>();
+
+		private LoaderCaches(@Nullable final ClassLoader classLoader) {
+			this.classLoader = new WeakReference<>(classLoader);
+		}
+
+		@Nullable
+		private LookupCache<String, Reference<Class<?>>> getPackageCache(@Nullable final String inPackage) {
+			return inPackage != null ? packageCaches.get(inPackage) : anyPackageCache;
+		}
+
+		@NotNull
+		private LookupCache<String, Reference<Class<?>>> obtainPackageCache(@Nullable final String inPackage) {
+			final LookupCache<String, Reference<Class<?>>> packageCache = getPackageCache(inPackage);
+			//noinspection ConstantConditions
+			return packageCache != null ? packageCache : LookupCaches.putIfAbsent(packageCaches, inPackage, newCache());
+		}
+
+		@NotNull
+		private LookupCache<String, Reference<Class<?>>> newCache() {
+			return new LookupCache<>(policy, stats);
+		}
+
+		private void clear() {
+			fullscanCache.clear();
+			commonPackagesCache.clear();
+			anyPackageCache.clear();
+			for (LookupCache<String, Reference<Class<?>>> packageCache : packageCaches.values()) {
+				packageCache.clear();
+			}
+		}
+	}
+}
@@ -1,8 +1,24 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package org.bbottema.javareflection;
 
 import lombok.experimental.UtilityClass;
 import org.bbottema.javareflection.model.MethodModifier;
 import org.bbottema.javareflection.util.ExternalClassLoader;
+import org.bbottema.javareflection.util.cache.LookupRecorder;
 import org.bbottema.javareflection.valueconverter.IncompatibleTypeException;
 import org.bbottema.javareflection.valueconverter.ValueConversionHelper;
 import org.jetbrains.annotations.NotNull;
@@ -21,7 +37,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
-import static org.bbottema.javareflection.LookupCaches.CLASS_CACHE;
+import static org.bbottema.javareflection.LookupCaches.CLASS_CACHE_STATS;
+import static org.bbottema.javareflection.LookupCaches.CLASS_NOT_FOUND;
 import static org.bbottema.javareflection.util.MiscUtil.trustedNullableCast;
 
 /**
@@ -51,10 +68,12 @@ public final class ClassUtils {
 	@Nullable
 	@SuppressWarnings({"WeakerAccess", "unchecked"})
 	public static <T> Class<T> locateClass(final String className, final boolean fullscan, @Nullable final ClassLoader classLoader) {
-		final String cacheKey = className + fullscan;
-		if (CLASS_CACHE.containsKey(cacheKey)) {
-			return (Class<T>) CLASS_CACHE.get(cacheKey);
+		final Class<?> cachedClass = LookupCaches.classCache.get(className, fullscan, classLoader);
+		if (cachedClass != null) {
+			return cachedClass != CLASS_NOT_FOUND ? (Class<T>) cachedClass : null;
 		}
+		LookupRecorder.recordClassLookup(className, fullscan);
+		final long loadStart = CLASS_CACHE_STATS.startLoad();
 		Class<?> _class;
 		if (fullscan) {
 			_class = locateClass(className, null, classLoader);
@@ -68,17 +87,20 @@ public final class ClassUtils {
 				_class = locateClass(className, "java.math", classLoader);
 			}
 		}
-		CLASS_CACHE.put(cacheKey, _class);
+		CLASS_CACHE_STATS.recordLoad(loadStart);
+		LookupCaches.classCache.put(className, fullscan, classLoader, _class);
 		return (Class<T>) _class;
 	}
 	
 	@Nullable
 	@SuppressWarnings({"WeakerAccess", "unchecked"})
 	public static <T> Class<T> locateClass(final String className, @Nullable final String inPackage, @Nullable final ClassLoader classLoader) {
-		final String cacheKey = className + inPackage;
-		if (CLASS_CACHE.containsKey(cacheKey)) {
-			return (Class<T>) CLASS_CACHE.get(cacheKey);
+		final Class<?> cachedClass = LookupCaches.classCache.get(className, inPackage, classLoader);
+		if (cachedClass != null) {
+			return cachedClass != CLASS_NOT_FOUND ? (Class<T>) cachedClass : null;
 		}
+		LookupRecorder.recordClassLookup(className, inPackage);
+		final long loadStart = CLASS_CACHE_STATS.startLoad();
 		
 		Class<?> _class = locateClass(className, classLoader);
 		
@@ -86,7 +108,8 @@ public final class ClassUtils {
 			_class = PackageUtils.scanPackagesForClass(className, inPackage, classLoader);
 		}
 		
-		CLASS_CACHE.put(cacheKey, _class);
+		CLASS_CACHE_STATS.recordLoad(loadStart);
+		LookupCaches.classCache.put(className, inPackage, classLoader, _class);
 		return (Class<T>) _class;
 	}
 	
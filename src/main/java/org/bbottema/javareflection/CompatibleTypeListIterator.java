@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.model.LookupMode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Generates the compatible type lists of {@link TypeUtils#generateCompatibleTypeLists(Set, Class[])} one at a time, so callers looking for the
+ * first type list that matches don't pay for all the others.
+ * <p>
+ * For each position, the types to try are determined once, in the following order:
+ * <ol>
+ * <li>no conversion; highest priority as it comes closest to user's requirement/specification</li>
+ * <li>autoboxing; the autoboxed counterversion comes closest to the original datatype</li>
+ * <li>interface; where methods can't be found using original type, interface placeholders are attempted</li>
+ * <li>supertype; where methods can't be found using implemented interfaces, supertype placeholders are attempted</li>
+ * <li>conversions; if all else fails, try to convert the datatype for common types (ie. int to String)</li>
+ * </ol>
+ * Type lists are then generated like an odometer, the last position changing fastest, which is the order in which the lists used to be generated
+ * recursively.
+ * <p>
+ * The generated type lists are remembered and only added to the compatible type lists cache of the context once the last one has been generated,
+ * so an abandoned iteration never caches a partial result.
+ */
+final class CompatibleTypeListIterator implements Iterator<Class<?>[]> {
+
+	private final ContextCaches caches;
+	private final Set<LookupMode> lookupMode;
+	private final Class<?>[] inputTypelist;
+	private final long loadStart;
+	/**
+	 * The types to try per position, see {@link #collectCompatibleTypes(ContextCaches, Set, Class)}.
+	 */
+	private final Class<?>[][] compatibleTypes;
+	/**
+	 * The index of the type to try next, per position.
+	 */
+	private final int[] positions;
+	private final List<Class<?>[]> generatedTypeLists = new ArrayList<>();
+	private boolean exhausted;
+
+	CompatibleTypeListIterator(final ContextCaches caches, final Set<LookupMode> lookupMode, final Class<?>[] inputTypelist) {
+		this.caches = caches;
+		this.lookupMode = lookupMode;
+		this.inputTypelist = inputTypelist.clone();
+		this.loadStart = caches.compatibleTypeListsCacheStats.startLoad();
+		this.compatibleTypes = new Class<?>[inputTypelist.length][];
+		for (int i = 0; i < inputTypelist.length; i++) {
+			compatibleTypes[i] = collectCompatibleTypes(caches, lookupMode, inputTypelist[i]);
+		}
+		this.positions = new int[inputTypelist.length];
+	}
+
+	@NotNull
+	private static Class<?>[] collectCompatibleTypes(final ContextCaches caches, final Set<LookupMode> lookupMode, @Nullable final Class<?> original) {
+		final List<Class<?>> types = new ArrayList<>();
+		// 1. don't generate compatible types; just try the normal type first
+		types.add(original);
+		if (original != null) {
+			// 2. the type in which the original can be (un)wrapped
+			if (lookupMode.contains(LookupMode.AUTOBOX) && !lookupMode.contains(LookupMode.SMART_CONVERT)) {
+				final Class<?> autoboxed = TypeUtils.autobox(original);
+				if (autoboxed != null) {
+					types.add(autoboxed);
+				}
+			}
+			// 3. implemented interfaces the original value could be converted (cast) into
+			if (lookupMode.contains(LookupMode.CAST_TO_INTERFACE)) {
+				for (final Class<?> iface : original.getInterfaces()) {
+					types.add(iface);
+				}
+			}
+			// 4. supertypes the original value could be converted (cast) into
+			if (lookupMode.contains(LookupMode.CAST_TO_SUPER)) {
+				Class<?> supertype = original;
+				while ((supertype = supertype.getSuperclass()) != null) {
+					types.add(supertype);
+				}
+			}
+			// 5. types the original value could be converted into
+			if (lookupMode.contains(LookupMode.COMMON_CONVERT) && !lookupMode.contains(LookupMode.SMART_CONVERT)) {
+				types.addAll(caches.getRegisteredCompatibleTargetTypes(original));
+			}
+			// 6. types the original value could be converted into with intermediary conversions
+			if (lookupMode.contains(LookupMode.SMART_CONVERT)) {
+				types.addAll(caches.getCompatibleTargetTypes(original));
+			}
+		}
+		return types.toArray(new Class<?>[0]);
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !exhausted;
+	}
+
+	@Override
+	@NotNull
+	public Class<?>[] next() {
+		if (exhausted) {
+			throw new NoSuchElementException();
+		}
+		final Class<?>[] typeList = new Class<?>[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			typeList[i] = compatibleTypes[i][positions[i]];
+		}
+		generatedTypeLists.add(typeList);
+		advance();
+		return typeList;
+	}
+
+	private void advance() {
+		for (int i = positions.length - 1; i >= 0; i--) {
+			if (++positions[i] < compatibleTypes[i].length) {
+				return;
+			}
+			positions[i] = 0;
+		}
+		exhausted = true;
+		// all type lists have been generated, so they can be cached
+		caches.compatibleTypeListsCacheStats.recordLoad(loadStart);
+		caches.addCompatiblesignaturesToCache(lookupMode, inputTypelist, generatedTypeLists);
+	}
+}
@@ -0,0 +1,526 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.LookupCaches.MethodKey;
+import org.bbottema.javareflection.model.InvokableObject;
+import org.bbottema.javareflection.model.LookupMode;
+import org.bbottema.javareflection.util.ArrayKey;
+import org.bbottema.javareflection.util.cache.CacheAnchors;
+import org.bbottema.javareflection.util.cache.CacheBudget;
+import org.bbottema.javareflection.util.cache.CachePolicy;
+import org.bbottema.javareflection.util.cache.LookupCache;
+import org.bbottema.javareflection.util.cache.StatsCounter;
+import org.bbottema.javareflection.valueconverter.ConverterRegistry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.bbottema.javareflection.util.MiscUtil.trustedCast;
+
+/**
+ * The method and type list caches of a single {@link ReflectionContext}. See {@link LookupCaches} for how entries are stored.
+ * <p>
+ * Compatible target types, and methods and type lists looked up with {@link LookupMode#COMMON_CONVERT} or {@link LookupMode#SMART_CONVERT}, depend
+ * on the converters of the context. Every such entry remembers the {@link Epoch} of the converters it was computed (or last validated) in. When
+ * converters are registered, an entry is only recomputed if one of its types can be converted to a type that got a new converter; other entries
+ * are carried over to the current epoch. Entries that don't depend on converters survive registrations. Only a
+ * {@link ConverterRegistry#reset() reset} of the converters, or registrations that are too far apart to tell what changed, replace all caches.
+ * <p>
+ * This only affects the context that (or whose parent) got new converters; other contexts keep their caches.
+ */
+final class ContextCaches {
+
+	/**
+	 * The number of epochs an entry can fall behind and still be validated; older entries are recomputed. Keeps the history of epochs bounded.
+	 */
+	private static final int MAX_EPOCH_HISTORY = 32;
+	/**
+	 * The number of argument type combinations remembered per method for {@link #getWarmCall(Class, String, Object[])}. Other combinations are
+	 * still served by the method cache.
+	 */
+	private static final int MAX_WARM_CALLS_PER_METHOD = 8;
+	/**
+	 * Resolved tiers are keyed by call shape only, not by the lookup mode that found them.
+	 */
+	private static final Set<LookupMode> NO_LOOKUP_MODE = Collections.unmodifiableSet(EnumSet.noneOf(LookupMode.class));
+
+	private final ConverterRegistry converters;
+
+	final StatsCounter methodCacheStats = new StatsCounter();
+	final StatsCounter compatibleTypeListsCacheStats = new StatsCounter();
+	/**
+	 * Counted regardless of whether statistics are enabled, since running out of budget should be rare and is worth knowing about.
+	 */
+	final LongAdder resolutionBudgetExceededCount = new LongAdder();
+
+	private volatile CachePolicy methodCachePolicy = CachePolicy.UNBOUNDED;
+	private volatile ResolutionBudget resolutionBudget = ResolutionBudget.UNLIMITED;
+
+	private volatile Generation generation;
+	private volatile Epoch epoch;
+
+	ContextCaches(ConverterRegistry converters) {
+		this.converters = converters;
+		this.generation = new Generation();
+		this.epoch = new Epoch(converters.getLayerVersions(), null, null);
+	}
+
+	/**
+	 * @return The epoch of the current converters. Moving to a new epoch determines which types got new converters since the previous epoch, or
+	 * replaces all caches if that can't be determined.
+	 */
+	@NotNull
+	private Epoch currentEpoch() {
+		final Epoch epoch = this.epoch;
+		return epoch.version == converters.getVersion() ? epoch : advanceEpoch();
+	}
+
+	@NotNull
+	private synchronized Epoch advanceEpoch() {
+		final long[] layerVersions = converters.getLayerVersions();
+		if (epoch.version != Epoch.sum(layerVersions)) {
+			final Set<Class<?>> changedTypes = converters.collectChangedTypes(epoch.layerVersions, layerVersions);
+			if (changedTypes == null) {
+				generation = new Generation();
+				methodCacheStats.resetSize();
+				compatibleTypeListsCacheStats.resetSize();
+				epoch = new Epoch(layerVersions, null, null);
+			} else {
+				epoch = new Epoch(layerVersions, changedTypes, epoch.depth < MAX_EPOCH_HISTORY ? epoch : null);
+			}
+		}
+		return epoch;
+	}
+
+	/**
+	 * @return Whether the cached value still applies to the given epoch, which is the case if none of the given types can be converted to a type
+	 * that got new converters since the value was cached. A value that still applies is moved to the given epoch.
+	 */
+	private boolean isValid(final CachedValue<?> cachedValue, final Epoch currentEpoch, final Class<?>... types) {
+		if (cachedValue.epoch == currentEpoch) {
+			return true;
+		}
+		final Set<Class<?>> changedTypes = currentEpoch.collectChangedTypesSince(cachedValue.epoch);
+		if (changedTypes == null) {
+			return false;
+		}
+		for (Class<?> type : types) {
+			if (type != null && converters.canReachAny(type, changedTypes)) {
+				return false;
+			}
+		}
+		cachedValue.epoch = currentEpoch;
+		return true;
+	}
+
+	/**
+	 * Clears all caches. Since cached entries live with the types they were cached for, this replaces the caches rather than visiting each type.
+	 */
+	synchronized void resetCache() {
+		generation = new Generation();
+		methodCacheStats.resetSize();
+		compatibleTypeListsCacheStats.resetSize();
+	}
+
+	/**
+	 * @see LookupCaches#setMethodCachePolicy(CachePolicy)
+	 */
+	synchronized void setMethodCachePolicy(@NotNull CachePolicy policy) {
+		methodCachePolicy = policy;
+		resetCache();
+	}
+
+	@NotNull
+	ResolutionBudget getResolutionBudget() {
+		return resolutionBudget;
+	}
+
+	/**
+	 * Clears all caches as well, since methods found earlier with a larger conversion depth would no longer be found.
+	 *
+	 * @see ReflectionContext#setResolutionBudget(ResolutionBudget)
+	 */
+	synchronized void setResolutionBudget(@NotNull ResolutionBudget budget) {
+		resolutionBudget = budget;
+		resetCache();
+	}
+
+	@Nullable
+	Set<InvokableObject> getCachedInvokableObjects(MethodKey methodKey) {
+		final Class<?> anchor = CacheAnchors.determineAnchor(methodKey.owner, methodKey.signature);
+		if (anchor == null) {
+			methodCacheStats.recordMiss();
+			return null;
+		}
+		final Epoch currentEpoch = currentEpoch();
+		final CachedValue<Set<InvokableObject>> cachedValue = generation.methodCache.get(anchor).getUnrecorded(methodKey);
+		if (cachedValue == null || (methodKey.dependsOnConverters() && !isValid(cachedValue, currentEpoch, methodKey.signature))) {
+			methodCacheStats.recordMiss();
+			return null;
+		}
+		methodCacheStats.recordHit();
+		return cachedValue.value;
+	}
+
+	void addInvokableObjectsToCache(MethodKey methodKey, Set<InvokableObject> invokableObjects) {
+		final Class<?> anchor = CacheAnchors.determineAnchor(methodKey.owner, methodKey.signature);
+		if (anchor != null) {
+			final Epoch currentEpoch = currentEpoch();
+			generation.methodCache.get(anchor).put(methodKey, new CachedValue<>(invokableObjects, currentEpoch));
+		}
+	}
+
+	/**
+	 * Finds the method call resolved earlier for arguments of exactly the classes of the given arguments, without allocating anything, so that
+	 * repeated calls of {@link MethodUtils#invokeCompatibleMethod(Object, Class, String, Object...)} skip collecting the argument types and probing
+	 * the method cache. Calls resolved with other converters than the current ones are ignored. Counts as a method cache hit.
+	 *
+	 * @return The prepared call, or <code>null</code> if there is none for these arguments.
+	 */
+	@Nullable
+	PreparedCall<Method> getWarmCall(Class<?> datatype, String methodName, Object[] args) {
+		final WarmCalls warmCalls = generation.warmCallCache.get(datatype).get(methodName);
+		if (warmCalls != null && warmCalls.version == converters.getVersion()) {
+			for (int i = 0; i < warmCalls.calls.length; i++) {
+				if (warmCalls.calls[i].isPreparedFor(args)) {
+					methodCacheStats.recordHit();
+					return warmCalls.calls[i];
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Remembers a call resolved with the converters of the given version, unless the converters changed since or its argument types aren't all
+	 * visible from the type the method was looked up on (in which case keeping it with that type could keep their class loaders alive).
+	 */
+	void addWarmCall(Class<?> datatype, String methodName, PreparedCall<Method> call, long version) {
+		if (version != converters.getVersion() || CacheAnchors.determineAnchor(datatype, call.getArgumentTypes()) != datatype) {
+			return;
+		}
+		final ConcurrentMap<String, WarmCalls> warmCallsByName = generation.warmCallCache.get(datatype);
+		final WarmCalls warmCalls = warmCallsByName.get(methodName);
+		if (warmCalls == null || warmCalls.version != version) {
+			warmCallsByName.put(methodName, new WarmCalls(version, new PreparedCall<?>[]{ call }));
+		} else if (warmCalls.calls.length < MAX_WARM_CALLS_PER_METHOD) {
+			// copy on write; a call added concurrently may get lost, it is simply added again on its next miss
+			final PreparedCall<?>[] calls = Arrays.copyOf(warmCalls.calls, warmCalls.calls.length + 1);
+			calls[warmCalls.calls.length] = call;
+			warmCallsByName.put(methodName, new WarmCalls(version, calls));
+		}
+	}
+
+	/**
+	 * Finds the lookup mode tier that resolved the given call shape earlier, so that {@link MethodUtils} can skip probing the method cache with
+	 * the stricter tiers that found nothing. Tiers resolved with other converters than the current ones are ignored.
+	 *
+	 * @param name The method name, or {@link MethodKey#CONSTRUCTOR_NAME} for constructors.
+	 * @return The index of the tier that found candidates, the number of tiers if none did, or <code>null</code> if the call shape wasn't resolved
+	 * with the current converters.
+	 */
+	@Nullable
+	Integer getResolvedTier(Class<?> owner, String name, Class<?>[] signature) {
+		final Class<?> anchor = CacheAnchors.determineAnchor(owner, signature);
+		if (anchor != null) {
+			final ResolvedTier resolvedTier = generation.resolvedTierCache.get(anchor).get(new MethodKey(owner, name, NO_LOOKUP_MODE, signature));
+			if (resolvedTier != null && resolvedTier.version == converters.getVersion()) {
+				return resolvedTier.tier;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Remembers the lookup mode tier that resolved a call shape with the converters of the given version, unless the converters changed since.
+	 *
+	 * @see #getResolvedTier(Class, String, Class[])
+	 */
+	void addResolvedTier(Class<?> owner, String name, Class<?>[] signature, int tier, long version) {
+		final Class<?> anchor = CacheAnchors.determineAnchor(owner, signature);
+		if (anchor != null && version == converters.getVersion()) {
+			generation.resolvedTierCache.get(anchor).put(new MethodKey(owner, name, NO_LOOKUP_MODE, signature.clone()), new ResolvedTier(tier, version));
+		}
+	}
+
+	@NotNull
+	Set<Class<?>> getRegisteredCompatibleTargetTypes(Class<?> fromType) {
+		final Epoch currentEpoch = currentEpoch();
+		final AtomicReference<CachedValue<Set<Class<?>>>> cachedTargetTypes = generation.registeredCompatibleTargetTypesCache.get(fromType);
+		final CachedValue<Set<Class<?>>> cachedValue = cachedTargetTypes.get();
+		if (cachedValue != null && isValid(cachedValue, currentEpoch, fromType)) {
+			return cachedValue.value;
+		}
+		final Set<Class<?>> targetTypes = converters.collectRegisteredCompatibleTargetTypes(fromType);
+		cachedTargetTypes.set(new CachedValue<>(targetTypes, currentEpoch));
+		return targetTypes;
+	}
+
+	/**
+	 * @return All types values of the given type can be converted to, regardless of the {@link ResolutionBudget}.
+	 */
+	@NotNull
+	Set<Class<?>> getCompatibleTargetTypes(Class<?> fromType) {
+		return getCompatibleTargetTypes(generation.compatibleTargetTypesCache, fromType, ResolutionBudget.MAX_CONVERSION_DEPTH);
+	}
+
+	/**
+	 * @return The types values of the given type can be converted to within the maximum conversion depth of the {@link ResolutionBudget}, for
+	 * lookups that are limited by the budget.
+	 */
+	@NotNull
+	Set<Class<?>> getBudgetedCompatibleTargetTypes(Class<?> fromType) {
+		final Generation generation = this.generation;
+		return generation.maxConversionDepth < ResolutionBudget.MAX_CONVERSION_DEPTH
+				? getCompatibleTargetTypes(generation.budgetedCompatibleTargetTypesCache, fromType, generation.maxConversionDepth)
+				: getCompatibleTargetTypes(generation.compatibleTargetTypesCache, fromType, ResolutionBudget.MAX_CONVERSION_DEPTH);
+	}
+
+	@NotNull
+	private Set<Class<?>> getCompatibleTargetTypes(final ClassValue<AtomicReference<CachedValue<Set<Class<?>>>>> targetTypesCache,
+			final Class<?> fromType, final int maxConversionDepth) {
+		final Epoch currentEpoch = currentEpoch();
+		final AtomicReference<CachedValue<Set<Class<?>>>> cachedTargetTypes = targetTypesCache.get(fromType);
+		final CachedValue<Set<Class<?>>> cachedValue = cachedTargetTypes.get();
+		if (cachedValue != null && isValid(cachedValue, currentEpoch, fromType)) {
+			return cachedValue.value;
+		}
+		final Set<Class<?>> targetTypes = converters.collectCompatibleTargetTypes(fromType, maxConversionDepth);
+		cachedTargetTypes.set(new CachedValue<>(targetTypes, currentEpoch));
+		return targetTypes;
+	}
+
+	@Nullable
+	List<Class<?>[]> getCachedCompatibleSignatures(Set<LookupMode> lookupMode, Class<?>[] signature) {
+		final Class<?> anchor = CacheAnchors.determineAnchor(Object.class, signature);
+		if (anchor != null) {
+			final Epoch currentEpoch = currentEpoch();
+			final Map<ArrayKey, CachedValue<List<Class<?>[]>>> cachedCompatibleSignatures = generation.compatibleTypeListsCache.get(anchor).get(lookupMode);
+			if (cachedCompatibleSignatures != null) {
+				final CachedValue<List<Class<?>[]>> cachedValue = cachedCompatibleSignatures.get(ArrayKey.forLookup(signature));
+				if (cachedValue != null && (!dependsOnConverters(lookupMode) || isValid(cachedValue, currentEpoch, signature))) {
+					compatibleTypeListsCacheStats.recordHit();
+					return cachedValue.value;
+				}
+			}
+		}
+		compatibleTypeListsCacheStats.recordMiss();
+		return null;
+	}
+
+	@NotNull
+	List<Class<?>[]> addCompatiblesignaturesToCache(Set<LookupMode> lookupMode, Class<?>[] signature, List<Class<?>[]> compatibleTypeLists) {
+		final Class<?> anchor = CacheAnchors.determineAnchor(Object.class, signature);
+		if (anchor == null) {
+			return compatibleTypeLists;
+		}
+		final Epoch currentEpoch = currentEpoch();
+		final ConcurrentMap<Set<LookupMode>, ConcurrentMap<ArrayKey, CachedValue<List<Class<?>[]>>>> cachedCompatibleTypeLists =
+				generation.compatibleTypeListsCache.get(anchor);
+		ConcurrentMap<ArrayKey, CachedValue<List<Class<?>[]>>> cachedCompatibleSignatures = cachedCompatibleTypeLists.get(lookupMode);
+		if (cachedCompatibleSignatures == null) {
+			// lookup mode sets are mutated by callers while escalating, so never use them directly as key
+			cachedCompatibleSignatures = LookupCaches.putIfAbsent(cachedCompatibleTypeLists, copyOf(lookupMode),
+					new ConcurrentHashMap<ArrayKey, CachedValue<List<Class<?>[]>>>());
+		}
+		// replaces outdated entries as well, so not a putIfAbsent
+		final CachedValue<List<Class<?>[]>> replacedValue = cachedCompatibleSignatures.put(new ArrayKey(signature),
+				new CachedValue<>(compatibleTypeLists, currentEpoch));
+		if (replacedValue == null) {
+			compatibleTypeListsCacheStats.recordInsert();
+		}
+		return compatibleTypeLists;
+	}
+
+	private static boolean dependsOnConverters(Set<LookupMode> lookupMode) {
+		return lookupMode.contains(LookupMode.COMMON_CONVERT) || lookupMode.contains(LookupMode.SMART_CONVERT);
+	}
+
+	@NotNull
+	private static Set<LookupMode> copyOf(Set<LookupMode> lookupMode) {
+		final Set<LookupMode> copy = EnumSet.noneOf(LookupMode.class);
+		copy.addAll(lookupMode);
+		return copy;
+	}
+
+	/**
+	 * A version of the converters, linked to the previous version together with the types that got new converters since.
+	 */
+	private static final class Epoch {
+		private final long version;
+		private final long[] layerVersions;
+		@Nullable
+		private final Set<Class<?>> changedTypes;
+		@Nullable
+		private final Epoch previous;
+		private final int depth;
+
+		private Epoch(long[] layerVersions, @Nullable Set<Class<?>> changedTypes, @Nullable Epoch previous) {
+			this.version = sum(layerVersions);
+			this.layerVersions = layerVersions;
+			this.changedTypes = changedTypes;
+			this.previous = previous;
+			this.depth = previous != null ? previous.depth + 1 : 0;
+		}
+
+		/**
+		 * @return All types that got new converters since the given older epoch, or <code>null</code> if that epoch is no longer known.
+		 */
+		@Nullable
+		private Set<Class<?>> collectChangedTypesSince(Epoch olderEpoch) {
+			final Set<Class<?>> changedTypes = new HashSet<>();
+			for (Epoch epoch = this; epoch != olderEpoch; epoch = epoch.previous) {
+				if (epoch == null || epoch.changedTypes == null) {
+					return null;
+				}
+				changedTypes.addAll(epoch.changedTypes);
+			}
+			return changedTypes;
+		}
+
+		private static long sum(long[] layerVersions) {
+			long sum = 0;
+			for (long layerVersion : layerVersions) {
+				sum += layerVersion;
+			}
+			return sum;
+		}
+	}
+
+	/**
+	 * A cached value together with the epoch it was computed or last validated in.
+	 */
+	private static final class CachedValue<V> {
+		private final V value;
+		private volatile Epoch epoch;
+
+		private CachedValue(V value, Epoch epoch) {
+			this.value = value;
+			this.epoch = epoch;
+		}
+	}
+
+	/**
+	 * The prepared calls of a method for the argument types it was invoked with, see {@link #getWarmCall(Class, String, Object[])}.
+	 */
+	private static final class WarmCalls {
+		private final long version;
+		private final PreparedCall<Method>[] calls;
+
+		private WarmCalls(long version, PreparedCall<?>[] calls) {
+			this.version = version;
+			this.calls = trustedCast(calls);
+		}
+	}
+
+	/**
+	 * The lookup mode tier that resolved a call shape, together with the version of the converters it was resolved with.
+	 */
+	private static final class ResolvedTier {
+		private final int tier;
+		private final long version;
+
+		private ResolvedTier(int tier, long version) {
+			this.tier = tier;
+			this.version = version;
+		}
+	}
+
+	/**
+	 * The caches until the next reset. Never modified once replaced, so lookups that are still running against an outdated generation cannot
+	 * pollute the current one.
+	 */
+	private final class Generation {
+		/**
+		 * {@link java.lang.reflect.Method} cache keyed by owning <code>Class</code> (since several owners can have a method with the same name and
+		 * signature), method name, lookup mode and the signature that was looked up, so multiple methods on one owner with the same name can coexist.
+		 *
+		 * @see ContextCaches#getCachedInvokableObjects(MethodKey)
+		 */
+		private final ClassValue<LookupCache<MethodKey, CachedValue<Set<InvokableObject>>>> methodCache;
+		/**
+		 * @see ContextCaches#getWarmCall(Class, String, Object[])
+		 */
+		private final ClassValue<ConcurrentMap<String, WarmCalls>> warmCallCache = new ClassValue<ConcurrentMap<String, WarmCalls>>() {
+			@Override
+			protected ConcurrentMap<String, WarmCalls> computeValue(Class<?> type) {
+				return new ConcurrentHashMap<>();
+			}
+		};
+		/**
+		 * @see ContextCaches#getResolvedTier(Class, String, Class[])
+		 */
+		private final ClassValue<LookupCache<MethodKey, ResolvedTier>> resolvedTierCache;
+		private final ClassValue<AtomicReference<CachedValue<Set<Class<?>>>>> registeredCompatibleTargetTypesCache = newTargetTypesCache();
+		private final ClassValue<AtomicReference<CachedValue<Set<Class<?>>>>> compatibleTargetTypesCache = newTargetTypesCache();
+		/**
+		 * The maximum conversion depth of the resolution budget when this generation was created, which is replaced when the budget changes.
+		 *
+		 * @see ContextCaches#getBudgetedCompatibleTargetTypes(Class)
+		 */
+		private final int maxConversionDepth = resolutionBudget.getMaxConversionDepth();
+		private final ClassValue<AtomicReference<CachedValue<Set<Class<?>>>>> budgetedCompatibleTargetTypesCache = newTargetTypesCache();
+		private final ClassValue<ConcurrentMap<Set<LookupMode>, ConcurrentMap<ArrayKey, CachedValue<List<Class<?>[]>>>>> compatibleTypeListsCache =
+				new ClassValue<ConcurrentMap<Set<LookupMode>, ConcurrentMap<ArrayKey, CachedValue<List<Class<?>[]>>>>>() {
+					@Override
+					protected ConcurrentMap<Set<LookupMode>, ConcurrentMap<ArrayKey, CachedValue<List<Class<?>[]>>>> computeValue(Class<?> type) {
+						return new ConcurrentHashMap<>();
+					}
+				};
+
+		private Generation() {
+			final CachePolicy policy = methodCachePolicy;
+			// the caches of all types share one budget, so the policy bounds them together no matter how many types are looked up
+			final CacheBudget<MethodKey, CachedValue<Set<InvokableObject>>> methodCacheBudget = new CacheBudget<>(policy);
+			final CacheBudget<MethodKey, ResolvedTier> resolvedTierCacheBudget = new CacheBudget<>(policy);
+			this.methodCache = new ClassValue<LookupCache<MethodKey, CachedValue<Set<InvokableObject>>>>() {
+				@Override
+				protected LookupCache<MethodKey, CachedValue<Set<InvokableObject>>> computeValue(Class<?> type) {
+					return new LookupCache<>(methodCacheBudget, methodCacheStats);
+				}
+			};
+			this.resolvedTierCache = new ClassValue<LookupCache<MethodKey, ResolvedTier>>() {
+				@Override
+				protected LookupCache<MethodKey, ResolvedTier> computeValue(Class<?> type) {
+					return new LookupCache<>(resolvedTierCacheBudget, new StatsCounter());
+				}
+			};
+		}
+	}
+
+	@NotNull
+	private static ClassValue<AtomicReference<CachedValue<Set<Class<?>>>>> newTargetTypesCache() {
+		return new ClassValue<AtomicReference<CachedValue<Set<Class<?>>>>>() {
+			@Override
+			protected AtomicReference<CachedValue<Set<Class<?>>>> computeValue(Class<?> type) {
+				return new AtomicReference<>();
+			}
+		};
+	}
+}
@@ -1,71 +1,285 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package org.bbottema.javareflection;
 
-import org.bbottema.javareflection.model.InvokableObject;
 import org.bbottema.javareflection.model.LookupMode;
-import org.bbottema.javareflection.util.ArrayKey;
+import org.bbottema.javareflection.util.cache.CachePolicy;
+import org.bbottema.javareflection.util.cache.CacheStats;
+import org.bbottema.javareflection.util.cache.StatsCounter;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * For internal use for improving repeated lookup performances.
+ * <p>
+ * All caches can be read and populated from any number of threads: reads never block and cache values are never mutated after they have been
+ * published.
+ * <p>
+ * Metadata about types is stored with the types themselves using {@link ClassValue}s, rather than in maps keyed on {@link Class}. That way the
+ * caches never keep a class (and with it its class loader) alive: once a class loader is discarded, for example when redeploying a webapp or
+ * plugin, its classes and everything cached for them can be garbage collected. Entries that involve several types are stored with the type
+ * whose class loader sees all the other types; entries combining types from unrelated class loaders are simply not cached.
+ * <p>
+ * Apart from the {@link Class} cache, the caches are owned by a {@link ReflectionContext}, since they depend on the converters of that context.
+ * The methods of this class apply to the {@link ReflectionContext#getDefault() default context}.
+ * <p>
+ * The class and method caches are unbounded by default. Use {@link #setClassCachePolicy(CachePolicy)} and {@link #setMethodCachePolicy(CachePolicy)}
+ * to cap them when lookups are done for an open-ended set of types, names or signatures.
  */
 public class LookupCaches {
 	
 	/**
-	 * {@link Class} cache optionally used when looking up classes with {@link ClassUtils#locateClass(String, boolean, ClassLoader)}.
+	 * Marker returned by the {@link #classCache} for class names that could not be located, since concurrent maps don't allow <code>null</code> values.
 	 */
-	final static Map<String, Class<?>> CLASS_CACHE = new HashMap<>();
+	static final Class<?> CLASS_NOT_FOUND = ClassNotFound.class;
 	
 	/**
-	 * {@link Method} cache categorized by owning <code>Classes</code> (since several owners can have a method with the same name and signature).
-	 * Methods are stored based on <code>Method</code> reference along with their unique signature (per owner), so multiple methods on one owner with
-	 * the same name can coexist.<br>
-	 * <br>
-	 * This cache is being maintained to reduce lookup times when trying to find signature compatible Java methods. The possible signature
-	 * combinations using autoboxing and/or automatic common conversions can become very large (7000+ with only three parameters) and can become a
-	 * real problem. The more frequently a method is being called the larger the performance gain, especially for methods with long parameter lists
-	 *
-	 * @see "MethodUtils.addMethodToCache(Class, String, Set, Class[])"
-	 * @see "MethodUtils#getMethodFromCache(Class, String, Class[])"
+	 * Names of the caches in {@link #getStats()}.
 	 */
-	final static Map<Class<?>, Map<String, Map<Class<?>[], Set<InvokableObject>>>> METHOD_CACHE = new LinkedHashMap<>();
+	public static final String CLASS_CACHE = "class";
+	public static final String METHOD_CACHE = "method";
+	public static final String COMPATIBLE_TYPE_LISTS_CACHE = "compatibleTypeLists";
+	public static final String CONVERSION_PATHS_CACHE = "conversionPaths";
+	
+	static final StatsCounter CLASS_CACHE_STATS = new StatsCounter();
 	
-	static final Map<Class<?>, Set<Class<?>>> CACHED_REGISTERED_COMPATIBLE_TARGET_TYPES = new HashMap<>();
-	static final Map<Class<?>, Set<Class<?>>> CACHED_COMPATIBLE_TARGET_TYPES = new HashMap<>();
-	private static final Map<Set<LookupMode>, Map<ArrayKey, List<Class<?>[]>>> CACHED_COMPATIBLE_TYPE_LISTS = new HashMap<>();
+	private static final String MBEAN_NAME = "org.bbottema.javareflection:type=LookupCaches";
+	
+	/**
+	 * {@link Class} cache optionally used when looking up classes with {@link ClassUtils#locateClass(String, boolean, ClassLoader)}. Class lookups
+	 * don't depend on converters, so this cache is shared by all {@link ReflectionContext}s.
+	 */
+	static volatile ClassCache classCache = new ClassCache(CachePolicy.UNBOUNDED, CLASS_CACHE_STATS);
 	
+	/**
+	 * Clears the {@link Class} cache and all caches of the {@link ReflectionContext#getDefault() default context}.
+	 */
 	@SuppressWarnings({"unused"})
 	public static void resetCache() {
-		CLASS_CACHE.clear();
-		METHOD_CACHE.clear();
-		CACHED_REGISTERED_COMPATIBLE_TARGET_TYPES.clear();
-		CACHED_COMPATIBLE_TARGET_TYPES.clear();
-		CACHED_COMPATIBLE_TYPE_LISTS.clear();
+		classCache.clear();
+		defaultCaches().resetCache();
 	}
 	
-	@Nullable
-	static List<Class<?>[]> getCachedCompatibleSignatures(Set<LookupMode> lookupMode, ArrayKey arrayKey) {
-		final Map<ArrayKey, List<Class<?>[]>> cachedCompatibleSignatures = CACHED_COMPATIBLE_TYPE_LISTS.get(lookupMode);
-		if (cachedCompatibleSignatures != null) {
-			return cachedCompatibleSignatures.get(arrayKey);
+	/**
+	 * Enables or disables recording hits, misses, loads, load times and evictions for all lookup caches. Disabled by default.
+	 *
+	 * @see #getStats()
+	 */
+	@SuppressWarnings({"unused"})
+	public static void setStatsEnabled(boolean statsEnabled) {
+		StatsCounter.setEnabled(statsEnabled);
+	}
+	
+	@SuppressWarnings({"unused"})
+	public static boolean isStatsEnabled() {
+		return StatsCounter.isEnabled();
+	}
+	
+	/**
+	 * @return A snapshot of the statistics of the {@link Class} cache and the lookup caches of the {@link ReflectionContext#getDefault() default
+	 * context}, by cache name ({@link #CLASS_CACHE}, {@link #METHOD_CACHE}, {@link #COMPATIBLE_TYPE_LISTS_CACHE} and {@link #CONVERSION_PATHS_CACHE}).
+	 * @see #setStatsEnabled(boolean)
+	 */
+	@SuppressWarnings({"unused"})
+	@NotNull
+	public static Map<String, CacheStats> getStats() {
+		final Map<String, CacheStats> stats = new LinkedHashMap<>();
+		stats.put(CLASS_CACHE, CLASS_CACHE_STATS.snapshot());
+		stats.putAll(ReflectionContext.getDefault().getStats());
+		return Collections.unmodifiableMap(stats);
+	}
+	
+	/**
+	 * @see ReflectionContext#getResolutionBudgetExceededCount()
+	 */
+	@SuppressWarnings({"unused"})
+	public static long getResolutionBudgetExceededCount() {
+		return ReflectionContext.getDefault().getResolutionBudgetExceededCount();
+	}
+	
+	/**
+	 * Sets the statistics of all lookup caches back to zero. Cache sizes are not affected.
+	 */
+	@SuppressWarnings({"unused"})
+	public static void resetStats() {
+		CLASS_CACHE_STATS.reset();
+		ReflectionContext.getDefault().resetStats();
+	}
+	
+	/**
+	 * Registers a {@link LookupCachesMXBean} with the platform MBean server under <code>org.bbottema.javareflection:type=LookupCaches</code>, so
+	 * the cache statistics can be monitored with tools like JConsole. Does nothing if it was registered already.
+	 */
+	@SuppressWarnings({"unused"})
+	public static void registerMBean() {
+		try {
+			final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName objectName = new ObjectName(MBEAN_NAME);
+			if (!mBeanServer.isRegistered(objectName)) {
+				mBeanServer.registerMBean(new LookupCachesMXBeanImpl(), objectName);
+			}
+		} catch (InstanceAlreadyExistsException e) {
+			// registered concurrently
+		} catch (JMException e) {
+			throw new IllegalStateException("unable to register LookupCaches MBean", e);
 		}
-		return null;
+	}
+	
+	@SuppressWarnings({"unused"})
+	public static void unregisterMBean() {
+		try {
+			final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName objectName = new ObjectName(MBEAN_NAME);
+			if (mBeanServer.isRegistered(objectName)) {
+				mBeanServer.unregisterMBean(objectName);
+			}
+		} catch (InstanceNotFoundException e) {
+			// unregistered concurrently
+		} catch (JMException e) {
+			throw new IllegalStateException("unable to unregister LookupCaches MBean", e);
+		}
+	}
+	
+	/**
+	 * Replaces the {@link Class} cache with an empty cache that is bounded according to the given policy.
+	 * <p>
+	 * Classes are cached per class loader and kind of lookup, so the bound applies to each of those separately.
+	 */
+	@SuppressWarnings({"unused"})
+	public static void setClassCachePolicy(@NotNull CachePolicy policy) {
+		classCache = new ClassCache(policy, CLASS_CACHE_STATS);
+		CLASS_CACHE_STATS.resetSize();
+	}
+	
+	/**
+	 * Replaces the {@link Method} / {@link java.lang.reflect.Constructor} cache of the {@link ReflectionContext#getDefault() default context} with an
+	 * empty cache that is bounded according to the given policy.
+	 * <p>
+	 * Methods are cached with the types they were looked up for, but the bound applies to the methods cached for all types together. With a bounded
+	 * policy, methods cached for types that were unloaded stay reachable until they are evicted.
+	 */
+	@SuppressWarnings({"unused"})
+	public static void setMethodCachePolicy(@NotNull CachePolicy policy) {
+		defaultCaches().setMethodCachePolicy(policy);
+	}
+	
+	/**
+	 * Limits the work of {@link LookupMode#SMART_CONVERT} lookups in the {@link ReflectionContext#getDefault() default context}.
+	 *
+	 * @see ReflectionContext#setResolutionBudget(ResolutionBudget)
+	 */
+	@SuppressWarnings({"unused"})
+	public static void setResolutionBudget(@NotNull ResolutionBudget budget) {
+		ReflectionContext.getDefault().setResolutionBudget(budget);
 	}
 	
 	@NotNull
-	static List<Class<?>[]> addCompatiblesignaturesToCache(Set<LookupMode> lookupMode, ArrayKey arrayKey, List<Class<?>[]> compatibleTypeLists) {
-		Map<ArrayKey, List<Class<?>[]>> cachedCompatibleSignatures = CACHED_COMPATIBLE_TYPE_LISTS.get(lookupMode);
-		if (cachedCompatibleSignatures == null) {
-			CACHED_COMPATIBLE_TYPE_LISTS.put(lookupMode, cachedCompatibleSignatures = new HashMap<>());
+	private static ContextCaches defaultCaches() {
+		return ReflectionContext.getDefault().getCaches();
+	}
+	
+	/**
+	 * Stores the value unless another thread beat us to it, in which case the value of that thread is returned instead.
+	 *
+	 * @return The value that ended up in the map for the given key.
+	 */
+	@NotNull
+	static <K, V> V putIfAbsent(ConcurrentMap<K, V> map, K key, V value) {
+		final V existingValue = map.putIfAbsent(key, value);
+		return existingValue != null ? existingValue : value;
+	}
+	
+	private static final class ClassNotFound {
+	}
+	
+	/**
+	 * Key for the method cache of a {@link ReflectionContext}: the owning type, the method name (or {@link #CONSTRUCTOR_NAME}) and the lookup mode
+	 * and signature that were used to find the method.
+	 * <p>
+	 * Keys compare signatures by value, so lookups with a freshly collected signature array find earlier entries. The hash code is computed once,
+	 * since every key is hashed at least once and compared against colliding keys. The signature array is not copied: probing with the caller's
+	 * array is free, keys that are stored must be given a copy.
+	 */
+	static final class MethodKey {
+		static final String CONSTRUCTOR_NAME = "<init>";
+		private static final int CONVERTING_LOOKUP_MODES = toBitMask(EnumSet.of(LookupMode.COMMON_CONVERT, LookupMode.SMART_CONVERT));
+		
+		final Class<?> owner;
+		private final String name;
+		private final int lookupMode;
+		final Class<?>[] signature;
+		private final int hashCode;
+		
+		MethodKey(Class<?> owner, String name, Set<LookupMode> lookupMode, Class<?>[] signature) {
+			this.owner = owner;
+			this.name = name;
+			this.lookupMode = toBitMask(lookupMode);
+			this.signature = signature;
+			this.hashCode = 31 * (31 * (31 * owner.hashCode() + name.hashCode()) + this.lookupMode) + Arrays.hashCode(signature);
+		}
+		
+		private static int toBitMask(Set<LookupMode> lookupMode) {
+			int bitMask = 0;
+			for (LookupMode mode : lookupMode) {
+				bitMask |= 1 << mode.ordinal();
+			}
+			return bitMask;
+		}
+		
+		/**
+		 * @return Whether the lookup converts arguments, in which case its result depends on the available converters.
+		 */
+		boolean dependsOnConverters() {
+			return (lookupMode & CONVERTING_LOOKUP_MODES) != 0;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			} else if (!(o instanceof MethodKey)) {
+				return false;
+			}
+			final MethodKey other = (MethodKey) o;
+			return hashCode == other.hashCode && owner == other.owner && lookupMode == other.lookupMode && name.equals(other.name)
+					&& Arrays.equals(signature, other.signature);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+		
+		@Override
+		public String toString() {
+			return owner.getName() + "." + name + Arrays.toString(signature);
 		}
-		cachedCompatibleSignatures.put(arrayKey, compatibleTypeLists);
-		return compatibleTypeLists;
 	}
-}
\ No newline at end of file
+}
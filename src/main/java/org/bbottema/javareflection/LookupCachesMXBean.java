@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.util.cache.CacheStats;
+
+import java.util.Map;
+
+/**
+ * Management interface for monitoring the lookup caches over JMX.
+ *
+ * @see LookupCaches#registerMBean()
+ */
+@SuppressWarnings("unused")
+public interface LookupCachesMXBean {
+	
+	/**
+	 * @see LookupCaches#getStats()
+	 */
+	Map<String, CacheStats> getStats();
+	
+	/**
+	 * @see LookupCaches#getResolutionBudgetExceededCount()
+	 */
+	long getResolutionBudgetExceededCount();
+	
+	boolean isStatsEnabled();
+	
+	/**
+	 * @see LookupCaches#setStatsEnabled(boolean)
+	 */
+	void setStatsEnabled(boolean statsEnabled);
+	
+	/**
+	 * @see LookupCaches#resetStats()
+	 */
+	void resetStats();
+	
+	/**
+	 * @see LookupCaches#resetCache()
+	 */
+	void resetCache();
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.util.cache.CacheStats;
+
+import java.util.Map;
+
+/**
+ * Delegates everything to {@link LookupCaches}.
+ */
+class LookupCachesMXBeanImpl implements LookupCachesMXBean {
+	
+	@Override
+	public Map<String, CacheStats> getStats() {
+		return LookupCaches.getStats();
+	}
+	
+	@Override
+	public long getResolutionBudgetExceededCount() {
+		return LookupCaches.getResolutionBudgetExceededCount();
+	}
+	
+	@Override
+	public boolean isStatsEnabled() {
+		return LookupCaches.isStatsEnabled();
+	}
+	
+	@Override
+	public void setStatsEnabled(boolean statsEnabled) {
+		LookupCaches.setStatsEnabled(statsEnabled);
+	}
+	
+	@Override
+	public void resetStats() {
+		LookupCaches.resetStats();
+	}
+	
+	@Override
+	public void resetCache() {
+		LookupCaches.resetCache();
+	}
+}
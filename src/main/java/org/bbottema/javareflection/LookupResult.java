@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.model.InvokableObject;
+import org.bbottema.javareflection.model.LookupMode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.AccessibleObject;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.bbottema.javareflection.util.MiscUtil.trustedCast;
+
+/**
+ * The outcome of resolving a method or constructor: the compatible candidates and the lookup modes that found them. A miss is a result as well,
+ * so resolution never throws internally; {@link MethodUtils} only turns misses into a {@link NoSuchMethodException} at its public API.
+ */
+final class LookupResult<T extends AccessibleObject> {
+
+	private static final LookupResult<?> NOT_FOUND = new LookupResult<>(null, Collections.<InvokableObject<AccessibleObject>>emptySet());
+	private static final LookupResult<?> BUDGET_EXCEEDED = new LookupResult<>(null, Collections.<InvokableObject<AccessibleObject>>emptySet());
+
+	@Nullable
+	private final Set<LookupMode> lookupMode;
+	@NotNull
+	private final Set<InvokableObject<T>> candidates;
+
+	LookupResult(@Nullable final Set<LookupMode> lookupMode, @NotNull final Set<InvokableObject<T>> candidates) {
+		this.lookupMode = lookupMode;
+		this.candidates = candidates;
+	}
+
+	@NotNull
+	static <T extends AccessibleObject> LookupResult<T> notFound() {
+		return trustedCast(NOT_FOUND);
+	}
+
+	/**
+	 * @return A result that is not found because the lookup ran out of its {@link ResolutionBudget}, so it can't tell whether anything exists.
+	 */
+	@NotNull
+	static <T extends AccessibleObject> LookupResult<T> budgetExceeded() {
+		return trustedCast(BUDGET_EXCEEDED);
+	}
+
+	boolean isBudgetExceeded() {
+		return this == BUDGET_EXCEEDED;
+	}
+
+	boolean isFound() {
+		return !candidates.isEmpty();
+	}
+
+	/**
+	 * @return The lookup modes that found the candidates, or <code>null</code> if nothing was found.
+	 */
+	@Nullable
+	Set<LookupMode> getLookupMode() {
+		return lookupMode;
+	}
+
+	@NotNull
+	Set<InvokableObject<T>> getCandidates() {
+		return candidates;
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The methods and constructors of a class by name and number of parameters, so that {@link MethodUtils} can match signatures against the few
+ * overloads that could apply, in memory, instead of asking the class for every signature it tries.
+ * <p>
+ * Methods are indexed in the order {@link MethodUtils#getMethod(Class, String, Class[])} searches them: the public methods of each directly
+ * implemented interface, then the public methods of the class (inherited ones included) and finally the methods declared by the class itself.
+ * Constructors are the public constructors of the class.
+ * <p>
+ * Indexes are built once per class and kept with the class itself. The indexed {@link Method} and {@link Constructor} instances are shared by all
+ * lookups, just like those in the method cache of a {@link ReflectionContext}, and are only ever handed out as copies (see
+ * {@link org.bbottema.javareflection.util.MiscUtil#copyOf(java.lang.reflect.AccessibleObject)}). They are therefore never modified: members that need
+ * {@link java.lang.reflect.AccessibleObject#setAccessible(boolean)} are invoked through an accessible copy, see
+ * {@link org.bbottema.javareflection.util.InvocationStrategies#createAccessibleInvoker(Method)}.
+ */
+final class MemberIndex {
+
+	private static final ClassValue<MemberIndex> INDEXES = new ClassValue<MemberIndex>() {
+		@Override
+		protected MemberIndex computeValue(Class<?> type) {
+			return new MemberIndex(type);
+		}
+	};
+
+	private static final Overloads NONE = new Overloads(new IndexedMember[0]);
+
+	/**
+	 * Methods by name, then by number of parameters.
+	 */
+	private final Map<String, Overloads[]> methods;
+	/**
+	 * Constructors by number of parameters.
+	 */
+	private final Overloads[] constructors;
+
+	private MemberIndex(final Class<?> type) {
+		final Map<String, List<IndexedMember>> methodsByName = new HashMap<>();
+		int group = 0;
+		for (final Class<?> iface : type.getInterfaces()) {
+			addMethods(methodsByName, iface.getMethods(), group++);
+		}
+		addMethods(methodsByName, type.getMethods(), group++);
+		addMethods(methodsByName, type.getDeclaredMethods(), group);
+
+		this.methods = new HashMap<>();
+		for (final Map.Entry<String, List<IndexedMember>> namedMethods : methodsByName.entrySet()) {
+			this.methods.put(namedMethods.getKey(), indexByArity(namedMethods.getValue()));
+		}
+		final List<IndexedMember> constructors = new ArrayList<>();
+		for (final Constructor<?> constructor : type.getConstructors()) {
+			constructors.add(new IndexedMember(constructor, void.class, 0));
+		}
+		this.constructors = indexByArity(constructors);
+	}
+
+	private static void addMethods(final Map<String, List<IndexedMember>> methodsByName, final Method[] methods, final int group) {
+		for (final Method method : methods) {
+			List<IndexedMember> namedMethods = methodsByName.get(method.getName());
+			if (namedMethods == null) {
+				namedMethods = new ArrayList<>();
+				methodsByName.put(method.getName(), namedMethods);
+			}
+			namedMethods.add(new IndexedMember(method, method.getReturnType(), group));
+		}
+	}
+
+	@NotNull
+	private static Overloads[] indexByArity(final List<IndexedMember> members) {
+		int maxArity = -1;
+		for (final IndexedMember member : members) {
+			maxArity = Math.max(maxArity, member.parameterTypes.length);
+		}
+		final Overloads[] overloadsByArity = new Overloads[maxArity + 1];
+		for (int arity = 0; arity <= maxArity; arity++) {
+			final List<IndexedMember> membersWithArity = new ArrayList<>();
+			for (final IndexedMember member : members) {
+				if (member.parameterTypes.length == arity) {
+					membersWithArity.add(member);
+				}
+			}
+			overloadsByArity[arity] = !membersWithArity.isEmpty() ? new Overloads(membersWithArity.toArray(NONE.members)) : NONE;
+		}
+		return overloadsByArity;
+	}
+
+	@NotNull
+	static MemberIndex of(final Class<?> type) {
+		return INDEXES.get(type);
+	}
+
+	/**
+	 * @return The distinct parameter types of the methods with the given name and number of parameters, to match argument types against.
+	 * @see #findMethod(String, Class[])
+	 */
+	@NotNull
+	List<Class<?>[]> getMethodSignatures(final String name, final int arity) {
+		return withArity(methods.get(name), arity).signatures;
+	}
+
+	/**
+	 * @return The largest number of parameters of the methods with the given name, or <code>-1</code> if there are no such methods.
+	 */
+	int getMaxMethodArity(final String name) {
+		final Overloads[] overloadsByArity = methods.get(name);
+		return overloadsByArity != null ? overloadsByArity.length - 1 : -1;
+	}
+
+	/**
+	 * @return The distinct parameter types of the public constructors with the given number of parameters.
+	 */
+	@NotNull
+	List<Class<?>[]> getConstructorSignatures(final int arity) {
+		return withArity(constructors, arity).signatures;
+	}
+
+	/**
+	 * @return The method with exactly the given parameter types, or <code>null</code> if there is none. Like {@link Class#getMethod(String, Class[])},
+	 * picks the method with the most specific return type when there are several (as with covariant return types).
+	 * @see MethodUtils#getMethod(Class, String, Class[])
+	 */
+	@Nullable
+	Method findMethod(final String name, final Class<?>[] signature) {
+		IndexedMember selectedMethod = null;
+		for (final IndexedMember method : withArity(methods.get(name), signature.length).members) {
+			if (selectedMethod != null && method.group != selectedMethod.group) {
+				// methods found earlier in the search order take precedence
+				break;
+			}
+			if (Arrays.equals(method.parameterTypes, signature)
+					&& (selectedMethod == null || selectedMethod.returnType.isAssignableFrom(method.returnType))) {
+				selectedMethod = method;
+			}
+		}
+		return selectedMethod != null ? (Method) selectedMethod.member : null;
+	}
+
+	/**
+	 * @return The public constructor with exactly the given parameter types, or <code>null</code> if there is none.
+	 */
+	@Nullable
+	Constructor<?> findConstructor(final Class<?>[] signature) {
+		for (final IndexedMember constructor : withArity(constructors, signature.length).members) {
+			if (Arrays.equals(constructor.parameterTypes, signature)) {
+				return (Constructor<?>) constructor.member;
+			}
+		}
+		return null;
+	}
+
+	@NotNull
+	private static Overloads withArity(@Nullable final Overloads[] overloadsByArity, final int arity) {
+		return overloadsByArity != null && arity < overloadsByArity.length ? overloadsByArity[arity] : NONE;
+	}
+
+	/**
+	 * The members with the same name and number of parameters, in search order, and their distinct parameter types.
+	 */
+	private static final class Overloads {
+		private final IndexedMember[] members;
+		private final List<Class<?>[]> signatures;
+
+		private Overloads(final IndexedMember[] members) {
+			this.members = members;
+			final List<Class<?>[]> signatures = new ArrayList<>();
+			for (final IndexedMember member : members) {
+				if (!containsSignature(signatures, member.parameterTypes)) {
+					signatures.add(member.parameterTypes);
+				}
+			}
+			this.signatures = Collections.unmodifiableList(signatures);
+		}
+
+		private static boolean containsSignature(final List<Class<?>[]> signatures, final Class<?>[] signature) {
+			for (final Class<?>[] existingSignature : signatures) {
+				if (Arrays.equals(existingSignature, signature)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private static final class IndexedMember {
+		private final Executable member;
+		private final Class<?>[] parameterTypes;
+		private final Class<?> returnType;
+		/**
+		 * The position in the search order of the class the member was found on.
+		 */
+		private final int group;
+
+		private IndexedMember(final Executable member, final Class<?> returnType, final int group) {
+			this.member = member;
+			this.parameterTypes = member.getParameterTypes();
+			this.returnType = returnType;
+			this.group = group;
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import static java.lang.String.format;
+
+/**
+ * A single place in the code that invokes methods with a given name over and over again, like an event dispatcher calling <code>on(event)</code>
+ * on handlers of different types, see {@link MethodUtils#createCallSite(String)}.
+ * <p>
+ * Invoking through a call site works like {@link MethodUtils#invokeCompatibleMethod(Object, Class, String, Object...)}, but the call site keeps
+ * the calls it resolved for the few combinations of type and argument classes it sees, like the inline caches of a JVM. Calls with a combination
+ * it has seen before are invoked straight away, without any lookups in the caches of the {@link ReflectionContext}. Once it has seen more than
+ * {@link #MAX_POLYMORPHIC_CALLS} combinations, the call site is <em>megamorphic</em>: it keeps the calls it has and leaves other combinations to
+ * the caches of the context, rather than growing without bounds.
+ * <p>
+ * Calls are remembered together with the version of the converters they were resolved with, and resolved again when converters are registered.
+ * Calls resolved with older converters are dropped as soon as a call is resolved again, so a megamorphic call site starts remembering calls again.
+ * A call site keeps the types it has seen reachable, so it should not outlive their class loaders. Call sites can be used from any number of
+ * threads.
+ */
+public final class MethodCallSite {
+
+	/**
+	 * The number of combinations of type and argument classes a call site remembers calls for.
+	 */
+	public static final int MAX_POLYMORPHIC_CALLS = 8;
+
+	private static final CachedCall[] NO_CALLS = new CachedCall[0];
+
+	private final ReflectionContext reflectionContext;
+	private final String methodName;
+	/**
+	 * Replaced rather than modified, so it can be read without locking.
+	 */
+	private volatile CachedCall[] cachedCalls = NO_CALLS;
+	private volatile boolean megamorphic;
+
+	MethodCallSite(final ReflectionContext reflectionContext, final String methodName) {
+		this.reflectionContext = reflectionContext;
+		this.methodName = methodName;
+	}
+
+	@NotNull
+	public String getMethodName() {
+		return methodName;
+	}
+
+	/**
+	 * @return Whether the call site has seen more combinations of type and argument classes than it remembers calls for.
+	 */
+	public boolean isMegamorphic() {
+		return megamorphic;
+	}
+
+	/**
+	 * Invokes the method with the name of this call site on the given type, with the given arguments.
+	 *
+	 * @param subject The object to call the method on, or <code>null</code> for static methods.
+	 * @param datatype The class to find the method on.
+	 * @param args A list of [non-formal] arguments.
+	 * @return The return value of the method.
+	 * @throws NoSuchMethodException Thrown when no compatible method exists, even after performing conversions.
+	 * @throws IllegalAccessException Thrown by {@link Method#invoke(Object, Object...)}.
+	 * @throws InvocationTargetException Thrown by {@link Method#invoke(Object, Object...)}.
+	 * @see MethodUtils#invokeCompatibleMethod(Object, Class, String, Object...)
+	 */
+	@Nullable
+	public <T> T invoke(@Nullable final Object subject, final Class<?> datatype, final Object... args)
+			throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+		final long version = reflectionContext.getConverters().getVersion();
+		final CachedCall[] cachedCalls = this.cachedCalls;
+		boolean stale = false;
+		for (int i = 0; i < cachedCalls.length; i++) {
+			final CachedCall cachedCall = cachedCalls[i];
+			if (cachedCall.version != version) {
+				stale = true;
+			} else if (cachedCall.datatype == datatype && cachedCall.call.isPreparedFor(args)) {
+				return MethodUtils.invokeCall(cachedCall.call, subject, datatype, methodName, args);
+			}
+		}
+		final PreparedCall<Method> call = MethodUtils.resolveCall(reflectionContext, datatype, methodName, args);
+		// calls resolved with older converters make room again
+		if (!megamorphic || stale) {
+			remember(new CachedCall(datatype, call, version));
+		}
+		return MethodUtils.invokeCall(call, subject, datatype, methodName, args);
+	}
+
+	private synchronized void remember(final CachedCall newCall) {
+		final CachedCall[] cachedCalls = this.cachedCalls;
+		final CachedCall[] newCalls = new CachedCall[Math.min(cachedCalls.length + 1, MAX_POLYMORPHIC_CALLS)];
+		int count = 0;
+		for (final CachedCall cachedCall : cachedCalls) {
+			final boolean resolvedWithOlderConverters = cachedCall.version < newCall.version;
+			// resolved concurrently, or resolved with other converters
+			final boolean sameShape = cachedCall.datatype == newCall.datatype
+					&& Arrays.equals(cachedCall.call.getArgumentTypes(), newCall.call.getArgumentTypes());
+			if (!resolvedWithOlderConverters && !sameShape) {
+				newCalls[count++] = cachedCall;
+			}
+		}
+		if (count < MAX_POLYMORPHIC_CALLS) {
+			newCalls[count++] = newCall;
+			this.cachedCalls = count == newCalls.length ? newCalls : Arrays.copyOf(newCalls, count);
+			megamorphic = false;
+		} else {
+			megamorphic = true;
+		}
+	}
+
+	/**
+	 * @return The number of combinations of type and argument classes the call site remembers calls for.
+	 */
+	int getCachedCallCount() {
+		return cachedCalls.length;
+	}
+
+	@Override
+	public String toString() {
+		return format("MethodCallSite(%s, %d calls%s)", methodName, cachedCalls.length, megamorphic ? ", megamorphic" : "");
+	}
+
+	private static final class CachedCall {
+		private final Class<?> datatype;
+		private final PreparedCall<Method> call;
+		private final long version;
+
+		private CachedCall(final Class<?> datatype, final PreparedCall<Method> call, final long version) {
+			this.datatype = datatype;
+			this.call = call;
+			this.version = version;
+		}
+	}
+}
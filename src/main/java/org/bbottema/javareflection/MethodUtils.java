@@ -1,11 +1,31 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package org.bbottema.javareflection;
 
 import lombok.experimental.UtilityClass;
+import org.bbottema.javareflection.LookupCaches.MethodKey;
 import org.bbottema.javareflection.model.InvokableObject;
 import org.bbottema.javareflection.model.LookupMode;
 import org.bbottema.javareflection.model.MethodModifier;
 import org.bbottema.javareflection.model.MethodParameter;
+import org.bbottema.javareflection.util.InvocationStrategies;
+import org.bbottema.javareflection.util.Invoker;
+import org.bbottema.javareflection.util.LambdaAdapters;
 import org.bbottema.javareflection.util.MiscUtil;
+import org.bbottema.javareflection.util.cache.LookupRecorder;
 import org.bbottema.javareflection.valueconverter.IncompatibleTypeException;
 import org.bbottema.javareflection.valueconverter.ValueConversionHelper;
 import org.jetbrains.annotations.NotNull;
@@ -20,9 +40,10 @@ import java.lang.reflect.Method;
 import java.util.*;
 
 import static java.lang.String.format;
-import static org.bbottema.javareflection.LookupCaches.METHOD_CACHE;
+import static java.util.Objects.requireNonNull;
 import static org.bbottema.javareflection.TypeUtils.containsAnnotation;
 import static org.bbottema.javareflection.util.MiscUtil.trustedCast;
+import static org.bbottema.javareflection.util.MiscUtil.copyOf;
 import static org.bbottema.javareflection.util.MiscUtil.trustedNullableCast;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -67,15 +88,26 @@ public final class MethodUtils {
 	
 	private static final Logger LOGGER = getLogger(MethodUtils.class);
 	
+	/**
+	 * The lookup modes tried in turn by {@link #invokeCompatibleMethod(Object, Class, String, Object...)} and
+	 * {@link #invokeConstructor(Class, Class[], Object[])}, from strict to lenient.
+	 */
+	private static final List<Set<LookupMode>> LOOKUP_MODE_TIERS = Collections.unmodifiableList(Arrays.asList(
+			Collections.unmodifiableSet(EnumSet.of(LookupMode.AUTOBOX, LookupMode.CAST_TO_SUPER)),
+			Collections.unmodifiableSet(EnumSet.of(LookupMode.AUTOBOX, LookupMode.CAST_TO_SUPER, LookupMode.CAST_TO_INTERFACE)),
+			Collections.unmodifiableSet(EnumSet.of(LookupMode.AUTOBOX, LookupMode.CAST_TO_SUPER, LookupMode.CAST_TO_INTERFACE, LookupMode.COMMON_CONVERT)),
+			Collections.unmodifiableSet(EnumSet.allOf(LookupMode.class))));
+	
 	/**
 	 * Delegates to {@link Method#invoke(Object, Object...)} while converting checked exceptions into runtime
-	 * exceptions.
+	 * exceptions. Public methods are invoked through a cached {@link Invoker} of the {@link InvocationStrategies chosen strategy} instead.
 	 */
     @Nullable
     @SuppressWarnings({"unchecked"})
     public static <T> T invokeMethodSimple(final Method method, @Nullable final Object subject, final Object... args) {
         try {
-            return (T) method.invoke(subject, args);
+            final Invoker invoker = InvocationStrategies.forPublicMethod(method);
+            return (T) (invoker != null ? invoker.invoke(subject, args) : method.invoke(subject, args));
         } catch (SecurityException e) {
             throw new RuntimeException("unable to invoke method; security problem", e);
         } catch (IllegalAccessException e) {
@@ -89,7 +121,7 @@ public final class MethodUtils {
      * Locates a method on an Object using serveral searchmodes for optimization. First of all a {@link Method} cache is being maintained to quickly
      * fetch heavily used methods. If not cached before and if a simple search (autoboxing and supertype casts) fails a more complex search is done
      * where all interfaces are searched for the method as well. If this fails as well, this method will try to autoconvert the types of the arguments
-     * and find a matching signature that way.
+     * and find a matching signature that way. Compatible methods are tried cheapest first, see {@link #findCompatibleMethod(Class, String, Set, Class[])}.
      * 
      * @param context The object to call the method from (can be null).
      * @param datatype The class to find the method on.
@@ -105,48 +137,141 @@ public final class MethodUtils {
 	@Nullable
     public static <T> T invokeCompatibleMethod(@Nullable final Object context, final Class<?> datatype, final String identifier, final Object... args)
             throws NoSuchMethodException, IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-        // determine the signature we want to find a compatible java method for
-        final Class<?>[] parameterSignature = TypeUtils.collectTypes(args);
-
-        // setup lookup procedure starting with simple search mode
-        Set<LookupMode> lookupMode = EnumSet.of(LookupMode.AUTOBOX, LookupMode.CAST_TO_SUPER);
-		Set<InvokableObject<Method>> iMethods;
+        return invokeCompatibleMethod(ReflectionContext.getDefault(), context, datatype, identifier, args);
+    }
+	
+	@Nullable
+	static <T> T invokeCompatibleMethod(final ReflectionContext reflectionContext, @Nullable final Object context, final Class<?> datatype,
+			final String identifier, final Object... args)
+			throws NoSuchMethodException, IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		final PreparedCall<Method> call = resolveCall(reflectionContext, datatype, identifier, args);
+		return invokeCall(call, context, datatype, identifier, args);
+    }
 
-        // try to find a compatible Java method using various lookup modes
-        try {
-            iMethods = findCompatibleMethod(datatype, identifier, lookupMode, parameterSignature);
-        } catch (final NoSuchMethodException e1) {
-            try {
-                // moderate search mode
-                lookupMode.add(LookupMode.CAST_TO_INTERFACE);
-                iMethods = findCompatibleMethod(datatype, identifier, lookupMode, parameterSignature);
-            } catch (final NoSuchMethodException e2) {
-				try {
-					// limited conversions searchmode
-					lookupMode.add(LookupMode.COMMON_CONVERT);
-					iMethods = findCompatibleMethod(datatype, identifier, lookupMode, parameterSignature);
-				} catch (NoSuchMethodException e3) {
-					// full searchmode
-					lookupMode.add(LookupMode.SMART_CONVERT);
-					iMethods = findCompatibleMethod(datatype, identifier, lookupMode, parameterSignature);
-				}
+	/**
+	 * @return The call resolved earlier for arguments of the same classes, or else the call resolved now with increasingly lenient lookup modes
+	 * and remembered for next time.
+	 * @throws NoSuchMethodException Thrown when no compatible method exists, even after performing conversions.
+	 */
+	@NotNull
+	static PreparedCall<Method> resolveCall(final ReflectionContext reflectionContext, final Class<?> datatype, final String identifier,
+			final Object[] args) throws NoSuchMethodException {
+		// warm path: a call resolved before for arguments of the same classes, invoked without allocating anything unless arguments need converting
+		PreparedCall<Method> call = reflectionContext.getCaches().getWarmCall(datatype, identifier, args);
+		if (call == null) {
+			final long version = reflectionContext.getConverters().getVersion();
+			// determine the signature we want to find a compatible java method for
+			final Class<?>[] parameterSignature = TypeUtils.collectTypes(args);
+
+			// try to find a compatible Java method using increasingly lenient lookup modes
+			final LookupResult<Method> lookupResult = resolveCompatibleMethod(reflectionContext, datatype, identifier, parameterSignature);
+			if (!lookupResult.isFound()) {
+				throw noSuchMethod(lookupResult, datatype, identifier, parameterSignature);
 			}
-        }
-
-		for (InvokableObject<Method> iMethod : iMethods) {
-			iMethod.getMethod().setAccessible(true);
+			call = new PreparedCall<>(reflectionContext.getConverters(), datatype, parameterSignature, requireNonNull(lookupResult.getLookupMode()),
+					lookupResult.getCandidates());
+			reflectionContext.getCaches().addWarmCall(datatype, identifier, call, version);
+		}
+		return call;
+	}
 
-			try {
-				Object[] convertedArgs = ValueConversionHelper.convert(args, iMethod.getCompatibleSignature(), false);
-				return trustedNullableCast(iMethod.getMethod().invoke(context, convertedArgs));
-			} catch (IncompatibleTypeException e) {
-				// keep trying conversion candidates...
-			}
+	@Nullable
+	static <T> T invokeCall(final PreparedCall<Method> call, @Nullable final Object context, final Class<?> datatype, final String identifier,
+			final Object[] args) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+		final Object result = call.invokeCandidates(context, args);
+		if (result == PreparedCall.NOT_INVOKED) {
+			final Class<?>[] parameterSignature = TypeUtils.collectTypes(args);
+			LOGGER.error(format("Was unable to find a suitable method on %s for the parameter signature %s", datatype,
+					Arrays.toString(parameterSignature)));
+			throw new NoSuchMethodException(describeMethod(datatype, identifier, parameterSignature));
 		}
+		return trustedNullableCast(result);
+	}
 
-		LOGGER.error(format("Was unable to find a suitable method on %s for the parameter signature %s", datatype, Arrays.toString(parameterSignature)));
-		throw new NoSuchMethodException();
-    }
+	/**
+	 * Creates a call site for invoking methods with the given name the way {@link #invokeCompatibleMethod(Object, Class, String, Object...)}
+	 * does, for use at a single place in the code that calls such methods over and over again, like an event dispatcher.
+	 *
+	 * @see MethodCallSite
+	 */
+	@SuppressWarnings({"WeakerAccess", "unused"})
+	@NotNull
+	public static MethodCallSite createCallSite(final String methodName) {
+		return createCallSite(ReflectionContext.getDefault(), methodName);
+	}
+
+	@NotNull
+	static MethodCallSite createCallSite(final ReflectionContext reflectionContext, final String methodName) {
+		return new MethodCallSite(reflectionContext, methodName);
+	}
+
+	/**
+	 * Creates a multimethod for the overloads of the given method, which dispatches calls to the most specific overload for the runtime classes
+	 * of all arguments, without converting them.
+	 *
+	 * @param datatype The class to find the overloads on.
+	 * @param methodName The name of the overloaded method.
+	 * @return The multimethod, see {@link Multimethod#invoke(Object, Object...)}.
+	 * @throws IllegalArgumentException Thrown when the class has no methods with the given name, or when some of the overloads are ambiguous.
+	 * @see Multimethod
+	 */
+	@SuppressWarnings({"WeakerAccess", "unused"})
+	@NotNull
+	public static Multimethod createMultimethod(final Class<?> datatype, final String methodName) {
+		return new Multimethod(datatype, methodName);
+	}
+
+	/**
+	 * Creates a method for invoking the overloads of the given method with <code>String</code> arguments only, the way
+	 * {@link #invokeCompatibleMethod(Object, Class, String, Object...)} does, but with the overloads and the parsers for their parameter types
+	 * looked up once in advance.
+	 *
+	 * @param datatype The class to find the overloads on.
+	 * @param methodName The name of the method.
+	 * @return The method, see {@link StringArgumentMethod#invoke(Object, String...)}.
+	 * @throws NoSuchMethodException Thrown when none of the methods with the given name can be invoked with <code>String</code> arguments.
+	 * @see StringArgumentMethod
+	 */
+	@SuppressWarnings({"WeakerAccess", "unused"})
+	@NotNull
+	public static StringArgumentMethod createStringArgumentMethod(final Class<?> datatype, final String methodName) throws NoSuchMethodException {
+		return createStringArgumentMethod(ReflectionContext.getDefault(), datatype, methodName);
+	}
+
+	@NotNull
+	static StringArgumentMethod createStringArgumentMethod(final ReflectionContext reflectionContext, final Class<?> datatype,
+			final String methodName) throws NoSuchMethodException {
+		return new StringArgumentMethod(reflectionContext, datatype, methodName);
+	}
+
+	/**
+	 * Looks up a method the way {@link #invokeCompatibleMethod(Object, Class, String, Object...)} does, but once for arguments of the given types,
+	 * so that repeated invocations with such arguments only convert the arguments and call the method.
+	 *
+	 * @param datatype The class to find the method on.
+	 * @param identifier The name of the method to locate.
+	 * @param argumentTypes The types of the arguments the method will be invoked with, <code>null</code> for arguments that are always
+	 *                      <code>null</code>.
+	 * @return The prepared call, see {@link PreparedCall#invoke(Object, Object...)}.
+	 * @throws NoSuchMethodException Thrown when no compatible method exists, even after performing conversions.
+	 */
+	@SuppressWarnings({"WeakerAccess", "unused"})
+	@NotNull
+	public static PreparedCall<Method> prepare(final Class<?> datatype, final String identifier, final Class<?>... argumentTypes)
+			throws NoSuchMethodException {
+		return prepare(ReflectionContext.getDefault(), datatype, identifier, argumentTypes);
+	}
+	
+	@NotNull
+	static PreparedCall<Method> prepare(final ReflectionContext reflectionContext, final Class<?> datatype, final String identifier,
+			final Class<?>... argumentTypes) throws NoSuchMethodException {
+		final LookupResult<Method> lookupResult = resolveCompatibleMethod(reflectionContext, datatype, identifier, argumentTypes);
+		if (!lookupResult.isFound()) {
+			throw noSuchMethod(lookupResult, datatype, identifier, argumentTypes);
+		}
+		return new PreparedCall<>(reflectionContext.getConverters(), datatype, argumentTypes, requireNonNull(lookupResult.getLookupMode()),
+				lookupResult.getCandidates());
+	}
 
     /**
      * Locates and invokes a {@link Constructor}using {@link #invokeConstructor(Class, Class[], Object[])}
@@ -188,41 +313,116 @@ public final class MethodUtils {
 	@NotNull
     public static <T> T invokeConstructor(final Class<T> datatype, final Class<?>[] parameterSignature, final Object[] args) throws NoSuchMethodException,
             IllegalAccessException, InvocationTargetException, InstantiationException {
-        // setup lookup procedure
-        Set<LookupMode> lookupMode = EnumSet.of(LookupMode.AUTOBOX, LookupMode.CAST_TO_SUPER);
-        Set<InvokableObject<Constructor>> iConstructors;
-
-        // try to find a compatible Java constructor
-        try {
-            iConstructors = findCompatibleConstructor(datatype, lookupMode, parameterSignature);
-        } catch (final NoSuchMethodException e1) {
-            try {
-                lookupMode.add(LookupMode.CAST_TO_INTERFACE);
-                iConstructors = findCompatibleConstructor(datatype, lookupMode, parameterSignature);
-            } catch (final NoSuchMethodException e2) {
-				try {
-					lookupMode.add(LookupMode.COMMON_CONVERT);
-					iConstructors = findCompatibleConstructor(datatype, lookupMode, parameterSignature);
-	            } catch (final NoSuchMethodException e3) {
-					lookupMode.add(LookupMode.SMART_CONVERT);
-					iConstructors = findCompatibleConstructor(datatype, lookupMode, parameterSignature);
-				}
-            }
-        }
+        return invokeConstructor(ReflectionContext.getDefault(), datatype, parameterSignature, args);
+    }
+	
+	@NotNull
+	static <T> T invokeConstructor(final ReflectionContext reflectionContext, final Class<T> datatype, final Class<?>[] parameterSignature,
+			final Object[] args) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+        // try to find a compatible Java constructor using increasingly lenient lookup modes
+		final LookupResult<Constructor> lookupResult = resolveCompatibleConstructor(reflectionContext, datatype, parameterSignature);
+		if (!lookupResult.isFound()) {
+			throw noSuchMethod(lookupResult, datatype, MethodKey.CONSTRUCTOR_NAME, parameterSignature);
+		}
 
-		for (InvokableObject<Constructor> iConstructor : iConstructors) {
+		for (InvokableObject<Constructor> iConstructor : lookupResult.getCandidates()) {
 			try {
-				Object[] convertedArgs = ValueConversionHelper.convert(args, iConstructor.getCompatibleSignature(), false);
-				return trustedCast(iConstructor.getMethod().newInstance(convertedArgs));
+				Object[] convertedArgs = reflectionContext.getConverters().convert(args, iConstructor.getCompatibleSignature(), false);
+				return trustedCast(iConstructor.newInstance(convertedArgs));
 			} catch (IncompatibleTypeException e) {
 				// keep trying conversion candidates...
 			}
 		}
 
 		LOGGER.error(format("Was unable to find a suitable constructor on %s for the parameter signature %s", datatype, Arrays.toString(parameterSignature)));
-		throw new NoSuchMethodException();
+		throw new NoSuchMethodException(describeMethod(datatype, MethodKey.CONSTRUCTOR_NAME, parameterSignature));
     }
 
+	/**
+	 * Looks up a constructor the way {@link #invokeConstructor(Class, Class[], Object[])} does, so that repeated invocations with arguments of
+	 * the given types only convert the arguments and call the constructor.
+	 *
+	 * @param datatype The class to find the constructor for.
+	 * @param argumentTypes The types of the arguments the constructor will be invoked with, <code>null</code> for arguments that are always
+	 *                      <code>null</code>.
+	 * @return The prepared call, see {@link PreparedCall#newInstance(Object...)}.
+	 * @throws NoSuchMethodException Thrown when no compatible constructor exists, even after performing conversions.
+	 */
+	@SuppressWarnings({"WeakerAccess", "unused"})
+	@NotNull
+	public static PreparedCall<Constructor> prepareConstructor(final Class<?> datatype, final Class<?>... argumentTypes) throws NoSuchMethodException {
+		return prepareConstructor(ReflectionContext.getDefault(), datatype, argumentTypes);
+	}
+	
+	@NotNull
+	static PreparedCall<Constructor> prepareConstructor(final ReflectionContext reflectionContext, final Class<?> datatype,
+			final Class<?>... argumentTypes) throws NoSuchMethodException {
+		final LookupResult<Constructor> lookupResult = resolveCompatibleConstructor(reflectionContext, datatype, argumentTypes);
+		if (!lookupResult.isFound()) {
+			throw noSuchMethod(lookupResult, datatype, MethodKey.CONSTRUCTOR_NAME, argumentTypes);
+		}
+		return new PreparedCall<>(reflectionContext.getConverters(), datatype, argumentTypes, requireNonNull(lookupResult.getLookupMode()),
+				lookupResult.getCandidates());
+	}
+	
+	/**
+	 * @return The compatible methods found with the first of the {@link #LOOKUP_MODE_TIERS} that finds any, or a result that is not found. Starts
+	 * at the tier that resolved the same call shape before, see {@link ContextCaches#getResolvedTier(Class, String, Class[])}. A tier that runs
+	 * out of budget ends the resolution without being remembered.
+	 */
+	@NotNull
+	private static LookupResult<Method> resolveCompatibleMethod(final ReflectionContext reflectionContext, final Class<?> datatype,
+			final String methodName, final Class<?>[] signature) {
+		final long version = reflectionContext.getConverters().getVersion();
+		final Integer resolvedTier = reflectionContext.getCaches().getResolvedTier(datatype, methodName, signature);
+		for (int tier = resolvedTier != null ? resolvedTier : 0; tier < LOOKUP_MODE_TIERS.size(); tier++) {
+			final Set<LookupMode> lookupMode = LOOKUP_MODE_TIERS.get(tier);
+			final Set<InvokableObject<Method>> iMethods = lookupCompatibleMethod(reflectionContext, datatype, methodName, lookupMode, signature);
+			if (iMethods == null) {
+				return LookupResult.budgetExceeded();
+			} else if (!iMethods.isEmpty()) {
+				rememberResolvedTier(reflectionContext, datatype, methodName, signature, resolvedTier, tier, version);
+				return new LookupResult<>(lookupMode, iMethods);
+			}
+		}
+		rememberResolvedTier(reflectionContext, datatype, methodName, signature, resolvedTier, LOOKUP_MODE_TIERS.size(), version);
+		return LookupResult.notFound();
+	}
+	
+	/**
+	 * @return The compatible constructors found with the first of the {@link #LOOKUP_MODE_TIERS} that finds any, or a result that is not found.
+	 * @see #resolveCompatibleMethod(ReflectionContext, Class, String, Class[])
+	 */
+	@NotNull
+	private static LookupResult<Constructor> resolveCompatibleConstructor(final ReflectionContext reflectionContext, final Class<?> datatype,
+			final Class<?>[] signature) {
+		final long version = reflectionContext.getConverters().getVersion();
+		final Integer resolvedTier = reflectionContext.getCaches().getResolvedTier(datatype, MethodKey.CONSTRUCTOR_NAME, signature);
+		for (int tier = resolvedTier != null ? resolvedTier : 0; tier < LOOKUP_MODE_TIERS.size(); tier++) {
+			final Set<LookupMode> lookupMode = LOOKUP_MODE_TIERS.get(tier);
+			final Set<InvokableObject<Constructor>> iConstructors = lookupCompatibleConstructor(reflectionContext, datatype, lookupMode, signature);
+			if (iConstructors == null) {
+				return LookupResult.budgetExceeded();
+			} else if (!iConstructors.isEmpty()) {
+				rememberResolvedTier(reflectionContext, datatype, MethodKey.CONSTRUCTOR_NAME, signature, resolvedTier, tier, version);
+				return new LookupResult<>(lookupMode, iConstructors);
+			}
+		}
+		rememberResolvedTier(reflectionContext, datatype, MethodKey.CONSTRUCTOR_NAME, signature, resolvedTier, LOOKUP_MODE_TIERS.size(), version);
+		return LookupResult.notFound();
+	}
+	
+	/**
+	 * Remembers which tier resolved a call shape, or that none did (the number of tiers), unless it was already known. Tiers are remembered
+	 * with the version of the converters that was current before resolving, so a tier resolved while converters were registered is dropped.
+	 */
+	private static void rememberResolvedTier(final ReflectionContext reflectionContext, final Class<?> datatype, final String name,
+			final Class<?>[] signature, @Nullable final Integer resolvedTier, final int tier, final long version) {
+		if (resolvedTier == null || resolvedTier != tier) {
+			reflectionContext.getCaches().addResolvedTier(datatype, name, signature, tier, version);
+		}
+	}
+
     /**
      * Tries to find a {@link Constructor} of a given type, with a given typelist, where types do not match due to formal types.
      * This expanded version tries a simple call first and when it fails, it generates a list of type arrays with all possible (un)wraps of any type
@@ -232,39 +432,63 @@ public final class MethodUtils {
      * @param datatype The class to get the constructor from.
      * @param lookupMode Flag indicating the search steps that need to be done.
      * @param signature The list of types as specified by the user.
-     * @return The constructor if found, otherwise exception is thrown.
+     * @return The compatible constructors if found, otherwise exception is thrown. Ordered like
+     * {@link #findCompatibleMethod(Class, String, Set, Class[])}, cheapest first.
      * @exception NoSuchMethodException Thrown when the {@link Constructor} could not be found on the data type, even after performing optional
      *                conversions.
      */
     @SuppressWarnings({"WeakerAccess"})
 	public static <T> Set<InvokableObject<Constructor>> findCompatibleConstructor(final Class<T> datatype, final Set<LookupMode> lookupMode, final Class<?>... signature)
             throws NoSuchMethodException {
+        return findCompatibleConstructor(ReflectionContext.getDefault(), datatype, lookupMode, signature);
+    }
+	
+	static <T> Set<InvokableObject<Constructor>> findCompatibleConstructor(final ReflectionContext reflectionContext, final Class<T> datatype,
+			final Set<LookupMode> lookupMode, final Class<?>... signature) throws NoSuchMethodException {
+		final Set<InvokableObject<Constructor>> iConstructors = lookupCompatibleConstructor(reflectionContext, datatype, lookupMode, signature);
+		if (iConstructors == null) {
+			throw new ResolutionBudgetExceededException(describeMethod(datatype, MethodKey.CONSTRUCTOR_NAME, signature));
+		} else if (iConstructors.isEmpty()) {
+			throw new NoSuchMethodException(describeMethod(datatype, MethodKey.CONSTRUCTOR_NAME, signature));
+		}
+		return iConstructors;
+	}
+	
+	/**
+	 * @return The compatible constructors, an empty set if there are none or <code>null</code> if the lookup ran out of budget. Only the first
+	 * two outcomes are cached.
+	 * @see #lookupCompatibleMethod(ReflectionContext, Class, String, Set, Class[])
+	 */
+	@Nullable
+	private static Set<InvokableObject<Constructor>> lookupCompatibleConstructor(final ReflectionContext reflectionContext, final Class<?> datatype,
+			final Set<LookupMode> lookupMode, final Class<?>... signature) {
         // first try to find the constructor in the method cache
-        Set<InvokableObject<Constructor>> iConstructors = getConstructorFromCache(datatype, datatype.getName(), signature);
+        Set<InvokableObject<Constructor>> iConstructors = getConstructorFromCache(reflectionContext, datatype, MethodKey.CONSTRUCTOR_NAME, lookupMode, signature);
+        final long loadStart = reflectionContext.getCaches().methodCacheStats.startLoad();
         if (iConstructors != null) {
             return iConstructors;
         } else {
-			iConstructors = new HashSet<>();
-
-            try {
-                // try standard call
-                iConstructors.add(new InvokableObject<Constructor>(datatype.getConstructor(signature), signature, signature));
-            } catch (final NoSuchMethodException e) {
-				for (final Class<?>[] compatibleSignature : TypeUtils.generateCompatibleTypeLists(lookupMode, signature)) {
-                    try {
-						iConstructors.add(new InvokableObject<Constructor>(datatype.getConstructor(compatibleSignature), signature, compatibleSignature));
-                    } catch (final NoSuchMethodException x) {
-                        // do nothing
-                    }
+            LookupRecorder.recordMethodLookup(datatype, MethodKey.CONSTRUCTOR_NAME, lookupMode, signature);
+			iConstructors = new LinkedHashSet<>();
+
+            final MemberIndex memberIndex = MemberIndex.of(datatype);
+            // try standard call
+            final Constructor<?> constructor = memberIndex.findConstructor(signature);
+            if (constructor != null) {
+                iConstructors.add(new InvokableObject<Constructor>(constructor, signature, signature));
+            } else {
+				final List<Class<?>[]> compatibleSignatures = TypeUtils.selectCompatibleSignatures(reflectionContext, lookupMode, signature,
+						memberIndex.getConstructorSignatures(signature.length));
+				if (compatibleSignatures == null) {
+					return recordResolutionBudgetExceeded(reflectionContext, datatype, MethodKey.CONSTRUCTOR_NAME, signature);
+				}
+				for (final Class<?>[] compatibleSignature : compatibleSignatures) {
+					iConstructors.add(new InvokableObject<Constructor>(requireNonNull(memberIndex.findConstructor(compatibleSignature)), signature, compatibleSignature));
                 }
             }
         }
 
-        if (!iConstructors.isEmpty()) {
-            return addMethodToCache(datatype, datatype.getName(), iConstructors, signature);
-        } else {
-            throw new NoSuchMethodException();
-        }
+        return addMethodToCache(reflectionContext, datatype, MethodKey.CONSTRUCTOR_NAME, lookupMode, iConstructors, loadStart, signature);
     }
 
     /**
@@ -274,17 +498,16 @@ public final class MethodUtils {
      * @param datatype The class to get the constructor from.
      * @param methodName The name of the method to retrieve from the class.
      * @param signature The list of types as specified by the user.
-     * @return <code>null</code> in case of a <code>NoSuchMethodException</code> exception.
+     * @return An empty set if no such method exists.
      * @see #findCompatibleMethod(Class, String, Set, Class...)
      */
     @NotNull
     @SuppressWarnings("WeakerAccess")
     public static Set<InvokableObject<Method>> findSimpleCompatibleMethod(final Class<?> datatype, final String methodName, final Class<?>... signature) {
-        try {
-            return findCompatibleMethod(datatype, methodName, EnumSet.noneOf(LookupMode.class), signature);
-        } catch (final NoSuchMethodException e) {
-            return new HashSet<>();
-        }
+        final Set<InvokableObject<Method>> iMethods = lookupCompatibleMethod(ReflectionContext.getDefault(), datatype, methodName,
+                EnumSet.noneOf(LookupMode.class), signature);
+        // don't hand out the shared marker for absent methods (lookups without conversions never run out of budget)
+        return iMethods != null && !iMethods.isEmpty() ? iMethods : new HashSet<InvokableObject<Method>>();
     }
 
     /**
@@ -303,7 +526,9 @@ public final class MethodUtils {
      * @param methodName The name of the method to retrieve from the class.
      * @param lookupMode Flag indicating the search steps that need to be done.
      * @param signature The list of types as specified by the user.
-     * @return The method if found, otherwise exception is thrown.
+     * @return The compatible methods if found, otherwise exception is thrown. The set iterates the methods in the order they should be tried: an
+     * exact match, else ranked by the cost of passing the arguments (autoboxing, then casting, then widening, then other conversions), more
+     * specific methods first when equally expensive. The order is the same between runs.
      * @exception NoSuchMethodException Thrown when the {@link Method} could not be found on the data type, even after performing optional
      *                conversions.
      */
@@ -311,31 +536,87 @@ public final class MethodUtils {
     @SuppressWarnings("WeakerAccess")
     public static Set<InvokableObject<Method>> findCompatibleMethod(final Class<?> datatype, final String methodName, final Set<LookupMode> lookupMode,
 															   final Class<?>... signature) throws NoSuchMethodException {
+        return findCompatibleMethod(ReflectionContext.getDefault(), datatype, methodName, lookupMode, signature);
+    }
+	
+	@NotNull
+	static Set<InvokableObject<Method>> findCompatibleMethod(final ReflectionContext reflectionContext, final Class<?> datatype, final String methodName,
+			final Set<LookupMode> lookupMode, final Class<?>... signature) throws NoSuchMethodException {
+        final Set<InvokableObject<Method>> iMethods = lookupCompatibleMethod(reflectionContext, datatype, methodName, lookupMode, signature);
+        if (iMethods == null) {
+            throw new ResolutionBudgetExceededException(describeMethod(datatype, methodName, signature));
+        } else if (iMethods.isEmpty()) {
+            throw new NoSuchMethodException(describeMethod(datatype, methodName, signature));
+        }
+        return iMethods;
+    }
+
+	/**
+	 * Turns a method, for example one found with {@link #findCompatibleMethod(Class, String, Set, Class...)}, into an instance of the given functional
+	 * interface, so that repeated calls don't go through reflection. Instance methods take the object to call the method on as first argument.
+	 * <p>
+	 * Adapters are cached per method and functional interface. Arguments are not converted, so the method should be compatible with the exact
+	 * argument types the functional interface is called with.
+	 *
+	 * @param method The method to call.
+	 * @param functionalInterface An interface with a single abstract method, such as {@link java.util.function.Function}.
+	 * @return An instance of the functional interface that calls the method.
+	 * @throws IllegalArgumentException Thrown when the method doesn't fit the functional interface or isn't accessible.
+	 * @see LambdaAdapters#adapt(Method, Class)
+	 */
+	@NotNull
+	@SuppressWarnings({"unused", "WeakerAccess"})
+	public static <F> F asFunctionalInterface(final Method method, final Class<F> functionalInterface) {
+		return LambdaAdapters.adapt(method, functionalInterface);
+	}
+
+	/**
+	 * Like {@link #asFunctionalInterface(Method, Class)}, but for a constructor, for example one found with
+	 * {@link #findCompatibleConstructor(Class, Set, Class...)}.
+	 *
+	 * @see LambdaAdapters#adapt(Constructor, Class)
+	 */
+	@NotNull
+	@SuppressWarnings({"unused", "WeakerAccess"})
+	public static <F> F asFunctionalInterface(final Constructor<?> constructor, final Class<F> functionalInterface) {
+		return LambdaAdapters.adapt(constructor, functionalInterface);
+	}
+
+	/**
+	 * @return The compatible methods, or an empty set if there are none. Both outcomes are cached, so repeatedly probing for methods that don't
+	 * exist (such as optional bean setters) doesn't redo the search or throw exceptions. Returns <code>null</code> if the lookup ran out of its
+	 * {@link ResolutionBudget}, which is not cached.
+	 */
+	@Nullable
+	private static Set<InvokableObject<Method>> lookupCompatibleMethod(final ReflectionContext reflectionContext, final Class<?> datatype,
+			final String methodName, final Set<LookupMode> lookupMode, final Class<?>... signature) {
         // first try to find the method in the method cache
-        Set<InvokableObject<Method>> iMethods = getMethodFromCache(datatype, methodName, signature);
+        Set<InvokableObject<Method>> iMethods = getMethodFromCache(reflectionContext, datatype, methodName, lookupMode, signature);
+        final long loadStart = reflectionContext.getCaches().methodCacheStats.startLoad();
         if (iMethods != null) {
             return iMethods;
         } else {
-        	iMethods = new HashSet<>();
-            try {
-                // try standard call
-                iMethods.add(new InvokableObject<>(getMethod(datatype, methodName, signature), signature, signature));
-            } catch (final NoSuchMethodException e) {
-				for (final Class<?>[] compatibleSignature : TypeUtils.generateCompatibleTypeLists(lookupMode, signature)) {
-                    try {
-						iMethods.add(new InvokableObject<>(getMethod(datatype, methodName, compatibleSignature), signature, compatibleSignature));
-                    } catch (final NoSuchMethodException x) {
-                        // do nothing
-                    }
+            LookupRecorder.recordMethodLookup(datatype, methodName, lookupMode, signature);
+        	iMethods = new LinkedHashSet<>();
+            final MemberIndex memberIndex = MemberIndex.of(datatype);
+            // try standard call
+            final Method method = memberIndex.findMethod(methodName, signature);
+            if (method != null) {
+                iMethods.add(new InvokableObject<>(method, signature, signature));
+            } else {
+				// score each overload's parameter types against the argument types, rather than trying every compatible signature
+				final List<Class<?>[]> compatibleSignatures = TypeUtils.selectCompatibleSignatures(reflectionContext, lookupMode, signature,
+						memberIndex.getMethodSignatures(methodName, signature.length));
+				if (compatibleSignatures == null) {
+					return recordResolutionBudgetExceeded(reflectionContext, datatype, methodName, signature);
+				}
+				for (final Class<?>[] compatibleSignature : compatibleSignatures) {
+					iMethods.add(new InvokableObject<>(requireNonNull(memberIndex.findMethod(methodName, compatibleSignature)), signature, compatibleSignature));
                 }
             }
         }
 
-        if (!iMethods.isEmpty()) {
-            return addMethodToCache(datatype, methodName, iMethods, signature);
-        } else {
-            throw new NoSuchMethodException();
-        }
+        return addMethodToCache(reflectionContext, datatype, methodName, lookupMode, iMethods, loadStart, signature);
     }
 
     /**
@@ -345,6 +626,9 @@ public final class MethodUtils {
      * An example of such a problem is the <code>Iterator</code> as implemented by the <code>ArrayList</code>. The Iterator is implemented as a
      * private innerclass and as such not accessible by java reflect (even though the implemented methods are declared <i>public</i>), unlike the
      * interface's definition.
+     * <p>
+     * Like {@link Class#getMethod(String, Class[])}, this returns a new copy for every call, so changing it (for example with
+     * {@link Method#setAccessible(boolean)}) doesn't affect other callers.
      * 
      * @param datatype The class reference to locate the method on.
      * @param name The name of the method to find.
@@ -356,19 +640,51 @@ public final class MethodUtils {
     @SuppressWarnings("WeakerAccess")
 	@NotNull
 	public static Method getMethod(final Class<?> datatype, final String name, final Class<?>... signature) throws NoSuchMethodException {
-        for (final Class<?> iface : datatype.getInterfaces()) {
-            try {
-                return iface.getMethod(name, signature);
-            } catch (final NoSuchMethodException e) {
-                // do nothing
-            }
-        }
-        try {
-            return datatype.getMethod(name, signature);
-        } catch (final NoSuchMethodException e) {
-            return datatype.getDeclaredMethod(name, signature);
-        }
+		final Method method = MemberIndex.of(datatype).findMethod(name, signature);
+		if (method == null) {
+			throw new NoSuchMethodException(describeMethod(datatype, name, signature));
+		}
+		// the indexed instance is shared with all lookups
+		return copyOf(method);
     }
+	
+	/**
+	 * Counts a lookup that ran out of budget and logs it, since the lookup is not cached and will run out of budget again next time.
+	 *
+	 * @return <code>null</code>, for lookups to return.
+	 */
+	@Nullable
+	static <T> T recordResolutionBudgetExceeded(final ReflectionContext reflectionContext, final Class<?> datatype, final String name,
+			final Class<?>[] signature) {
+		reflectionContext.getCaches().resolutionBudgetExceededCount.increment();
+		LOGGER.warn(format("Resolution budget %s exceeded while looking up %s", reflectionContext.getCaches().getResolutionBudget(),
+				describeMethod(datatype, name, signature)));
+		return null;
+	}
+	
+	/**
+	 * @return The exception to throw for a lookup that found nothing, which is a {@link ResolutionBudgetExceededException} if it ran out of
+	 * budget.
+	 */
+	@NotNull
+	private static NoSuchMethodException noSuchMethod(final LookupResult<?> lookupResult, final Class<?> datatype, final String name,
+			final Class<?>[] signature) {
+		return lookupResult.isBudgetExceeded()
+				? new ResolutionBudgetExceededException(describeMethod(datatype, name, signature))
+				: new NoSuchMethodException(describeMethod(datatype, name, signature));
+	}
+	
+	/**
+	 * @return A description of the method for {@link NoSuchMethodException}s, formatted like those thrown by {@link Class#getMethod(String, Class[])}.
+	 */
+	@NotNull
+	static String describeMethod(final Class<?> datatype, final String name, final Class<?>[] signature) {
+		final StringBuilder description = new StringBuilder(datatype.getName()).append('.').append(name).append('(');
+		for (int i = 0; i < signature.length; i++) {
+			description.append(i > 0 ? ", " : "").append(signature[i] != null ? signature[i].getName() : "null");
+		}
+		return description.append(')').toString();
+	}
     
     /**
      * Tests if a list of classes is compatible with the signature of the given method, allowing for {@link LookupMode#SIMPLE} lookup mode.
@@ -439,66 +755,59 @@ public final class MethodUtils {
 	}
 
     /**
-     * Retrieves a {@link Method} from a cache.
+     * Retrieves a {@link Method} from the cache of the given context.
      * 
+     * @param reflectionContext The context whose method cache to use.
      * @param datatype The owning {@link Class} of the <code>Method</code> being searched for.
      * @param method The name of the method that is being searched for.
+     * @param lookupMode The lookup mode that was used to find the method.
      * @param signature The parameter list of the method we need to match if a method was found by name.
-     * @return The <code>Method</code> found on the specified owner with matching name and signature.
-     * @see LookupCaches#METHOD_CACHE
-     * @see MethodUtils#addMethodToCache(Class, String, Set, Class[])
+     * @return The <code>Method</code> found on the specified owner with matching name and signature, an empty set if the method is known to be
+     * absent or <code>null</code> if it was not looked up before.
+     * @see ContextCaches#getCachedInvokableObjects(MethodKey)
+     * @see MethodUtils#addMethodToCache(ReflectionContext, Class, String, Set, Set, long, Class[])
      */
     @Nullable
-    private static <T> Set<InvokableObject> getInvokableObjectFromCache(final Class<T> datatype, final String method, final Class<?>... signature) {
-        final Map<String, Map<Class<?>[], Set<InvokableObject>>> owner = METHOD_CACHE.get(datatype);
-        // we know only methods with parameter list are stored in the cache
-        if (signature.length > 0) {
-            // get owner, its methods matching specified name and match their signatures
-            if (owner != null && owner.containsKey(method)) {
-            	return owner.get(method).get(signature);
-            }
-        }
-        // method not found or known not to be stored due to absent parameter list
-        return null;
+    private static <T> Set<InvokableObject> getInvokableObjectFromCache(final ReflectionContext reflectionContext, final Class<T> datatype,
+                                                                        final String method, final Set<LookupMode> lookupMode, final Class<?>... signature) {
+        return reflectionContext.getCaches().getCachedInvokableObjects(new MethodKey(datatype, method, lookupMode, signature));
     }
 	
 	@Nullable
-	private static <T> Set<InvokableObject<Method>> getMethodFromCache(final Class<T> datatype, final String method, final Class<?>... signature) {
-		return trustedNullableCast(getInvokableObjectFromCache(datatype, method, signature));
+	private static <T> Set<InvokableObject<Method>> getMethodFromCache(final ReflectionContext reflectionContext, final Class<T> datatype,
+																	   final String method, final Set<LookupMode> lookupMode, final Class<?>... signature) {
+		return trustedNullableCast(getInvokableObjectFromCache(reflectionContext, datatype, method, lookupMode, signature));
 	}
 
 	@Nullable
-	private static <T> Set<InvokableObject<Constructor>> getConstructorFromCache(final Class<T> datatype, final String method, final Class<?>... signature) {
-		return trustedNullableCast(getInvokableObjectFromCache(datatype, method, signature));
+	private static <T> Set<InvokableObject<Constructor>> getConstructorFromCache(final ReflectionContext reflectionContext, final Class<T> datatype,
+																				 final String method, final Set<LookupMode> lookupMode, final Class<?>... signature) {
+		return trustedNullableCast(getInvokableObjectFromCache(reflectionContext, datatype, method, lookupMode, signature));
 	}
 
     /**
-     * Adds a specific <code>Method</code> to the cache.
+     * Adds a specific <code>Method</code> to the cache of the given context. An empty set of candidates is stored as well, to remember the method
+     * is absent.
      * 
+     * @param reflectionContext The context whose method cache to use.
      * @param datatype The <code>Class</code> that owns the <code>Method</code>.
      * @param method The <code>Method</code>'s name by which methods can be found on the specified owner.
+     * @param lookupMode The lookup mode that was used to find the method.
      * @param methodInvocationCandidates The <code>Method</code> reference that's actually being stored in the cache.
+     * @param loadStart When the lookup started, as returned by {@link org.bbottema.javareflection.util.cache.StatsCounter#startLoad()}.
      * @param signature The parameter list of the <code>Method</code> being stored.
-     * @see LookupCaches#METHOD_CACHE
-     * @see MethodUtils#getMethodFromCache(Class, String, Class...)
+     * @see ContextCaches#addInvokableObjectsToCache(MethodKey, Set)
+     * @see MethodUtils#getMethodFromCache(ReflectionContext, Class, String, Set, Class...)
      */
-	private static <T extends InvokableObject<T2>, T2 extends AccessibleObject> Set<T> addMethodToCache(final Class<?> datatype, final String method,
-			final Set<T> methodInvocationCandidates, final Class<?>... signature) {
-        // only store methods with a parameter list
-        if (signature.length > 0) {
-            // get or create owner entry
-            Map<String, Map<Class<?>[], Set<InvokableObject>>> owner = METHOD_CACHE.get(datatype);
-            owner = owner != null ? owner : new LinkedHashMap<String, Map<Class<?>[], Set<InvokableObject>>>();
-            // get or create list of methods with specified method name
-            Map<Class<?>[], Set<InvokableObject>> methods = owner.get(method);
-            methods = methods != null ? methods : new LinkedHashMap<Class<?>[], Set<InvokableObject>>();
-            // add or overwrite method entry
-            methods.put(signature, MiscUtil.<Set<InvokableObject>>trustedCast(methodInvocationCandidates));
-            // finally shelve all the stuff back
-            methods.put(signature, MiscUtil.<Set<InvokableObject>>trustedCast(methodInvocationCandidates));
-            owner.put(method, methods);
-            METHOD_CACHE.put(datatype, owner);
-        }
+	private static <T extends InvokableObject<T2>, T2 extends AccessibleObject> Set<T> addMethodToCache(final ReflectionContext reflectionContext,
+			final Class<?> datatype, final String method, final Set<LookupMode> lookupMode, final Set<T> methodInvocationCandidates, final long loadStart,
+			final Class<?>... signature) {
+        reflectionContext.getCaches().methodCacheStats.recordLoad(loadStart);
+        // add or overwrite method entry, copying the signature since callers are free to reuse their array
+        reflectionContext.getCaches().addInvokableObjectsToCache(new MethodKey(datatype, method, lookupMode, signature.clone()),
+                methodInvocationCandidates.isEmpty()
+                        ? Collections.<InvokableObject>emptySet()
+                        : MiscUtil.<Set<InvokableObject>>trustedCast(methodInvocationCandidates));
         return methodInvocationCandidates;
     }
 	
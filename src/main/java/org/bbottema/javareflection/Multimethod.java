@@ -0,0 +1,401 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.util.InvocationStrategies;
+import org.bbottema.javareflection.util.Invoker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static org.bbottema.javareflection.util.MiscUtil.copyOf;
+import static org.bbottema.javareflection.util.MiscUtil.trustedNullableCast;
+
+/**
+ * The overloads of a method dispatched on the runtime classes of <em>all</em> arguments, rather than on their static types like Java does, see
+ * {@link MethodUtils#createMultimethod(Class, String)}. Useful for double dispatch without visitor boilerplate, such as
+ * <code>collide(Asteroid, Ship)</code> next to <code>collide(Ship, Ship)</code>.
+ * <p>
+ * The most specific overload wins, like Java picks overloads at compile time: an overload whose parameter types are all assignable to those of
+ * another overload is more specific. Overloads that apply without unboxing are preferred over overloads with primitive parameters. A
+ * <code>null</code> argument applies to any parameter that isn't primitive. Arguments are never converted; use
+ * {@link MethodUtils#invokeCompatibleMethod(Object, Class, String, Object...)} for that.
+ * <p>
+ * Ambiguous overloads are reported when the multimethod is created: if some combination of argument types applies to two overloads without a
+ * third one being more specific than both, creating it fails. Ambiguities that only arise for <code>null</code> arguments, or for classes that
+ * implement several unrelated interfaces used as parameter types, cannot be told in advance; calls with such arguments fail instead.
+ * <p>
+ * The overload for each combination of argument classes is resolved once and kept in a dispatch table, which is filled in advance for the
+ * parameter types of the overloads themselves. Dispatching a call then takes a probe of that table and a direct invocation of the overload,
+ * without allocating anything. The table keeps the classes it has seen reachable, so a multimethod should not outlive their class loaders.
+ * Multimethods can be used from any number of threads.
+ */
+public final class Multimethod {
+
+	private static final int INITIAL_TABLE_SIZE = 16;
+	private static final Overload[] NO_OVERLOADS = new Overload[0];
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	private final Class<?> datatype;
+	private final String methodName;
+	/**
+	 * The overloads by number of parameters.
+	 */
+	private final Overload[][] overloadsByArity;
+	/**
+	 * Open addressing hash table with linear probing, at most half full. Replaced rather than modified, so it can be read without locking.
+	 */
+	private volatile Dispatch[] dispatchTable = new Dispatch[INITIAL_TABLE_SIZE];
+	private int dispatchCount;
+
+	/**
+	 * @throws IllegalArgumentException Thrown when the type has no methods with the given name, or when some of them are ambiguous.
+	 */
+	Multimethod(final Class<?> datatype, final String methodName) {
+		this.datatype = datatype;
+		this.methodName = methodName;
+		final MemberIndex memberIndex = MemberIndex.of(datatype);
+		final int maxArity = memberIndex.getMaxMethodArity(methodName);
+		if (maxArity < 0) {
+			throw new IllegalArgumentException(format("%s has no methods named %s", datatype.getName(), methodName));
+		}
+		this.overloadsByArity = new Overload[maxArity + 1][];
+		for (int arity = 0; arity <= maxArity; arity++) {
+			final List<Class<?>[]> signatures = memberIndex.getMethodSignatures(methodName, arity);
+			overloadsByArity[arity] = new Overload[signatures.size()];
+			for (int i = 0; i < signatures.size(); i++) {
+				overloadsByArity[arity][i] = new Overload(requireNonNull(memberIndex.findMethod(methodName, signatures.get(i))));
+			}
+			checkAmbiguities(overloadsByArity[arity]);
+			for (final Overload overload : overloadsByArity[arity]) {
+				precomputeDispatch(overload);
+			}
+		}
+	}
+
+	/**
+	 * Resolves the argument types for which two overloads both apply while neither is more specific: for each parameter, the type that is
+	 * assignable to the type of the other overload. The overloads are ambiguous unless a third overload is more specific for those types.
+	 */
+	private void checkAmbiguities(final Overload[] overloads) {
+		for (int i = 0; i < overloads.length; i++) {
+			for (int j = i + 1; j < overloads.length; j++) {
+				final Class<?>[] commonTypes = determineCommonTypes(overloads[i], overloads[j]);
+				if (commonTypes != null) {
+					final Dispatch dispatch = resolve(commonTypes);
+					if (dispatch.ambiguity != null) {
+						throw new IllegalArgumentException(dispatch.ambiguity);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The most general argument types both overloads apply to, or <code>null</code> if there are none, or if they are only shared by
+	 * classes implementing unrelated interfaces.
+	 */
+	@Nullable
+	private static Class<?>[] determineCommonTypes(final Overload overload, final Overload other) {
+		final Class<?>[] commonTypes = new Class<?>[overload.parameterTypes.length];
+		for (int i = 0; i < commonTypes.length; i++) {
+			final Class<?> type = overload.boxedParameterTypes[i];
+			final Class<?> otherType = other.boxedParameterTypes[i];
+			if (otherType.isAssignableFrom(type)) {
+				commonTypes[i] = type;
+			} else if (type.isAssignableFrom(otherType)) {
+				commonTypes[i] = otherType;
+			} else {
+				return null;
+			}
+		}
+		return commonTypes;
+	}
+
+	/**
+	 * Adds the dispatch for arguments of exactly the parameter types of the overload, if such arguments can exist.
+	 */
+	private void precomputeDispatch(final Overload overload) {
+		for (final Class<?> type : overload.boxedParameterTypes) {
+			if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+				return;
+			}
+		}
+		addDispatch(resolve(overload.boxedParameterTypes));
+	}
+
+	@NotNull
+	public Class<?> getDatatype() {
+		return datatype;
+	}
+
+	@NotNull
+	public String getMethodName() {
+		return methodName;
+	}
+
+	/**
+	 * Invokes the most specific overload for the runtime classes of the given arguments.
+	 *
+	 * @param subject The object to call the method on, or <code>null</code> for static methods.
+	 * @param args A list of [non-formal] arguments, passed as they are. A <code>null</code> array counts as no arguments, as it does for
+	 *             {@link Method#invoke(Object, Object...)}.
+	 * @return The return value of the overload.
+	 * @throws NoSuchMethodException Thrown when no overload applies to the arguments.
+	 * @throws IllegalArgumentException Thrown when several overloads apply to the arguments and none of them is the most specific.
+	 * @throws IllegalAccessException Thrown by {@link Method#invoke(Object, Object...)}.
+	 * @throws InvocationTargetException Thrown by {@link Method#invoke(Object, Object...)}.
+	 */
+	@Nullable
+	public <T> T invoke(@Nullable final Object subject, @Nullable final Object... args)
+			throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+		final Object[] arguments = args != null ? args : NO_ARGUMENTS;
+		Dispatch dispatch = findDispatch(arguments);
+		if (dispatch == null) {
+			dispatch = addDispatch(resolve(TypeUtils.collectTypes(arguments)));
+		}
+		if (dispatch.overload == null) {
+			if (dispatch.ambiguity != null) {
+				throw new IllegalArgumentException(dispatch.ambiguity);
+			}
+			throw new NoSuchMethodException(format("no overload of %s.%s applies to %s", datatype.getName(), methodName,
+					Arrays.toString(dispatch.argumentClasses)));
+		}
+		return trustedNullableCast(dispatch.overload.invoker.invoke(subject, arguments));
+	}
+
+	/**
+	 * @param argumentClasses The classes of the arguments, with <code>null</code> for arguments that are always <code>null</code>.
+	 * @return The overload that calls with arguments of the given classes dispatch to.
+	 * @throws NoSuchMethodException Thrown when no overload applies to such arguments.
+	 * @throws IllegalArgumentException Thrown when several overloads apply to such arguments and none of them is the most specific.
+	 */
+	@NotNull
+	public Method resolveMethod(final Class<?>... argumentClasses) throws NoSuchMethodException {
+		final Dispatch dispatch = resolve(argumentClasses);
+		if (dispatch.ambiguity != null) {
+			throw new IllegalArgumentException(dispatch.ambiguity);
+		} else if (dispatch.overload == null) {
+			throw new NoSuchMethodException(format("no overload of %s.%s applies to %s", datatype.getName(), methodName,
+					Arrays.toString(argumentClasses)));
+		}
+		return copyOf(dispatch.overload.method);
+	}
+
+	/**
+	 * @return The dispatch for arguments of exactly the classes of the given arguments, found without allocating anything.
+	 */
+	@Nullable
+	private Dispatch findDispatch(final Object[] args) {
+		final int hash = hashArguments(args);
+		final Dispatch[] dispatchTable = this.dispatchTable;
+		final int mask = dispatchTable.length - 1;
+		for (int i = hash & mask; ; i = (i + 1) & mask) {
+			final Dispatch dispatch = dispatchTable[i];
+			if (dispatch == null || (dispatch.hash == hash && dispatch.appliesTo(args))) {
+				return dispatch;
+			}
+		}
+	}
+
+	@NotNull
+	private synchronized Dispatch addDispatch(final Dispatch dispatch) {
+		final Dispatch[] dispatchTable = this.dispatchTable;
+		final int mask = dispatchTable.length - 1;
+		for (int i = dispatch.hash & mask; dispatchTable[i] != null; i = (i + 1) & mask) {
+			if (dispatchTable[i].hash == dispatch.hash && Arrays.equals(dispatchTable[i].argumentClasses, dispatch.argumentClasses)) {
+				// resolved concurrently
+				return dispatchTable[i];
+			}
+		}
+		final Dispatch[] newDispatchTable = ++dispatchCount * 2 > dispatchTable.length
+				? new Dispatch[dispatchTable.length * 2]
+				: dispatchTable.clone();
+		if (newDispatchTable.length > dispatchTable.length) {
+			for (final Dispatch existing : dispatchTable) {
+				if (existing != null) {
+					insert(newDispatchTable, existing);
+				}
+			}
+		}
+		insert(newDispatchTable, dispatch);
+		this.dispatchTable = newDispatchTable;
+		return dispatch;
+	}
+
+	private static void insert(final Dispatch[] dispatchTable, final Dispatch dispatch) {
+		final int mask = dispatchTable.length - 1;
+		int i = dispatch.hash & mask;
+		while (dispatchTable[i] != null) {
+			i = (i + 1) & mask;
+		}
+		dispatchTable[i] = dispatch;
+	}
+
+	/**
+	 * @return The most specific overload for arguments of the given classes, preferring overloads that apply without unboxing.
+	 */
+	@NotNull
+	private Dispatch resolve(final Class<?>[] argumentClasses) {
+		final Overload[] overloads = argumentClasses.length < overloadsByArity.length ? overloadsByArity[argumentClasses.length] : NO_OVERLOADS;
+		List<Overload> applicableOverloads = collectApplicableOverloads(overloads, argumentClasses, false);
+		if (applicableOverloads.isEmpty()) {
+			applicableOverloads = collectApplicableOverloads(overloads, argumentClasses, true);
+		}
+		final List<Overload> mostSpecificOverloads = new ArrayList<>();
+		for (final Overload overload : applicableOverloads) {
+			boolean mostSpecific = true;
+			for (int i = 0; i < applicableOverloads.size() && mostSpecific; i++) {
+				mostSpecific = applicableOverloads.get(i) == overload || !applicableOverloads.get(i).isMoreSpecificThan(overload);
+			}
+			if (mostSpecific) {
+				mostSpecificOverloads.add(overload);
+			}
+		}
+		if (mostSpecificOverloads.size() > 1) {
+			final List<Method> ambiguousMethods = new ArrayList<>();
+			for (final Overload overload : mostSpecificOverloads) {
+				ambiguousMethods.add(overload.method);
+			}
+			return new Dispatch(argumentClasses, null, format("overloads of %s.%s are ambiguous for %s: %s", datatype.getName(), methodName,
+					Arrays.toString(argumentClasses), ambiguousMethods));
+		}
+		return new Dispatch(argumentClasses, !mostSpecificOverloads.isEmpty() ? mostSpecificOverloads.get(0) : null, null);
+	}
+
+	@NotNull
+	private static List<Overload> collectApplicableOverloads(final Overload[] overloads, final Class<?>[] argumentClasses, final boolean unboxing) {
+		final List<Overload> applicableOverloads = new ArrayList<>();
+		for (final Overload overload : overloads) {
+			if (overload.isApplicable(argumentClasses, unboxing)) {
+				applicableOverloads.add(overload);
+			}
+		}
+		return applicableOverloads;
+	}
+
+	private static int hashArguments(final Object[] args) {
+		int hash = args.length;
+		for (final Object arg : args) {
+			hash = 31 * hash + (arg != null ? arg.getClass().hashCode() : 0);
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int hashClasses(final Class<?>[] argumentClasses) {
+		int hash = argumentClasses.length;
+		for (final Class<?> argumentClass : argumentClasses) {
+			hash = 31 * hash + (argumentClass != null ? argumentClass.hashCode() : 0);
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * @return The number of combinations of argument classes the dispatch table holds.
+	 */
+	synchronized int getDispatchCount() {
+		return dispatchCount;
+	}
+
+	@Override
+	public String toString() {
+		return format("Multimethod(%s.%s, %d dispatches)", datatype.getName(), methodName, getDispatchCount());
+	}
+
+	private static final class Overload {
+		private final Method method;
+		private final Class<?>[] parameterTypes;
+		private final Class<?>[] boxedParameterTypes;
+		private final Invoker invoker;
+
+		private Overload(final Method method) {
+			this.method = method;
+			this.parameterTypes = method.getParameterTypes();
+			this.boxedParameterTypes = new Class<?>[parameterTypes.length];
+			for (int i = 0; i < parameterTypes.length; i++) {
+				final Class<?> boxed = parameterTypes[i].isPrimitive() ? TypeUtils.autobox(parameterTypes[i]) : null;
+				boxedParameterTypes[i] = boxed != null ? boxed : parameterTypes[i];
+			}
+			this.invoker = InvocationStrategies.createAccessibleInvoker(method);
+		}
+
+		private boolean isApplicable(final Class<?>[] argumentClasses, final boolean unboxing) {
+			for (int i = 0; i < parameterTypes.length; i++) {
+				final Class<?> argumentClass = argumentClasses[i];
+				if (argumentClass == null
+						? parameterTypes[i].isPrimitive()
+						: !(unboxing ? boxedParameterTypes[i] : parameterTypes[i]).isAssignableFrom(argumentClass)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * @return Whether all parameter types of this overload can be assigned to those of the other overload, while the overloads differ.
+		 */
+		private boolean isMoreSpecificThan(final Overload other) {
+			for (int i = 0; i < parameterTypes.length; i++) {
+				if (!other.boxedParameterTypes[i].isAssignableFrom(boxedParameterTypes[i])) {
+					return false;
+				}
+			}
+			return !Arrays.equals(parameterTypes, other.parameterTypes);
+		}
+	}
+
+	/**
+	 * The outcome of dispatching arguments of specific classes: the overload to invoke, or why there is none.
+	 */
+	private static final class Dispatch {
+		private final Class<?>[] argumentClasses;
+		private final int hash;
+		@Nullable
+		private final Overload overload;
+		@Nullable
+		private final String ambiguity;
+
+		private Dispatch(final Class<?>[] argumentClasses, @Nullable final Overload overload, @Nullable final String ambiguity) {
+			this.argumentClasses = argumentClasses.clone();
+			this.hash = hashClasses(argumentClasses);
+			this.overload = overload;
+			this.ambiguity = ambiguity;
+		}
+
+		/**
+		 * @return Whether the arguments have exactly the classes this dispatch was resolved for.
+		 */
+		private boolean appliesTo(final Object[] args) {
+			if (args.length != argumentClasses.length) {
+				return false;
+			}
+			for (int i = 0; i < args.length; i++) {
+				if ((args[i] != null ? args[i].getClass() : null) != argumentClasses[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
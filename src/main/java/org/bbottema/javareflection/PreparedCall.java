@@ -0,0 +1,248 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.model.InvokableObject;
+import org.bbottema.javareflection.model.LookupMode;
+import org.bbottema.javareflection.valueconverter.ConverterRegistry;
+import org.bbottema.javareflection.valueconverter.IncompatibleTypeException;
+import org.bbottema.javareflection.valueconverter.PreparedConverter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static java.lang.String.format;
+import static org.bbottema.javareflection.util.MiscUtil.trustedCast;
+import static org.bbottema.javareflection.util.MiscUtil.trustedNullableCast;
+
+/**
+ * A method or constructor call that has been looked up in advance for a specific argument signature, see
+ * {@link MethodUtils#prepare(Class, String, Class[])} and {@link MethodUtils#prepareConstructor(Class, Class[])}.
+ * <p>
+ * Holds the compatible methods (or constructors) found with the first {@link LookupMode} tier that found any, just like
+ * {@link MethodUtils#invokeCompatibleMethod(Object, Class, String, Object...)} would, with a {@link PreparedConverter} for each argument.
+ * Invoking a prepared call only converts the arguments and calls the target, trying the next candidate when the arguments can't be converted for
+ * the current one.
+ * <p>
+ * Prepared calls are immutable and can be used from any number of threads.
+ */
+public final class PreparedCall<T extends AccessibleObject> {
+
+	/**
+	 * Returned by {@link #invokeCandidates(Object, Object[])} when none of the candidates accepts the arguments.
+	 */
+	static final Object NOT_INVOKED = new Object();
+
+	private final Class<?> datatype;
+	private final Class<?>[] argumentTypes;
+	private final Set<LookupMode> lookupMode;
+	private final List<Candidate<T>> candidates;
+
+	PreparedCall(final ConverterRegistry converters, final Class<?> datatype, final Class<?>[] argumentTypes, final Set<LookupMode> lookupMode,
+			final Collection<InvokableObject<T>> invokables) {
+		this.datatype = datatype;
+		this.argumentTypes = argumentTypes.clone();
+		this.lookupMode = lookupMode;
+		final List<Candidate<T>> candidates = new ArrayList<>();
+		final List<Candidate<T>> inconvertibleCandidates = new ArrayList<>();
+		for (InvokableObject<T> invokable : invokables) {
+			final Class<?>[] compatibleSignature = invokable.getCompatibleSignature();
+			final PreparedConverter[] argumentConverters = new PreparedConverter[compatibleSignature.length];
+			boolean convertible = true;
+			for (int i = 0; i < compatibleSignature.length; i++) {
+				argumentConverters[i] = converters.prepareConverter(argumentTypes[i], compatibleSignature[i]);
+				convertible &= argumentConverters[i].isConvertible();
+			}
+			(convertible ? candidates : inconvertibleCandidates).add(new Candidate<>(invokable, argumentConverters));
+		}
+		// candidates that can't take the prepared argument types go last, they may still take arguments of other (sub)types
+		candidates.addAll(inconvertibleCandidates);
+		this.candidates = Collections.unmodifiableList(candidates);
+	}
+
+	/**
+	 * @return The type the method or constructor was looked up on.
+	 */
+	@NotNull
+	public Class<?> getDatatype() {
+		return datatype;
+	}
+
+	/**
+	 * @return The argument types the call was prepared for.
+	 */
+	@NotNull
+	public Class<?>[] getArgumentTypes() {
+		return argumentTypes.clone();
+	}
+
+	/**
+	 * @return The lookup modes that found the candidates.
+	 */
+	@NotNull
+	public Set<LookupMode> getLookupMode() {
+		return lookupMode;
+	}
+
+	/**
+	 * @return The compatible methods or constructors, in the order they are tried.
+	 */
+	@NotNull
+	public List<InvokableObject<T>> getCandidates() {
+		final List<InvokableObject<T>> invokables = new ArrayList<>();
+		for (Candidate<T> candidate : candidates) {
+			invokables.add(candidate.invokable);
+		}
+		return invokables;
+	}
+
+	/**
+	 * Invokes the prepared method with the given arguments, converted to the parameter types of the first candidate that accepts them.
+	 *
+	 * @param subject The object to call the method on, or <code>null</code> for static methods.
+	 * @return The return value of the method.
+	 * @throws NoSuchMethodException Thrown when none of the candidates accepts the arguments.
+	 * @throws IllegalArgumentException Thrown when the number of arguments doesn't match the prepared argument types.
+	 * @throws IllegalAccessException Thrown by {@link Method#invoke(Object, Object...)}.
+	 * @throws InvocationTargetException Thrown by {@link Method#invoke(Object, Object...)}.
+	 */
+	@Nullable
+	public <R> R invoke(@Nullable final Object subject, final Object... args)
+			throws NoSuchMethodException, IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		checkArgumentCount(args);
+		final Object result = invokeCandidates(subject, args);
+		if (result == NOT_INVOKED) {
+			throw noSuitableCandidate(args);
+		}
+		return trustedNullableCast(result);
+	}
+
+	/**
+	 * Invokes the first candidate method that accepts the arguments, without allocating anything unless arguments need to be converted.
+	 *
+	 * @return The return value of the method, or {@link #NOT_INVOKED} if none of the candidates accepts the arguments.
+	 */
+	@Nullable
+	Object invokeCandidates(@Nullable final Object subject, final Object[] args) throws IllegalAccessException, InvocationTargetException {
+		for (int i = 0; i < candidates.size(); i++) {
+			final Candidate<T> candidate = candidates.get(i);
+			final Object[] convertedArgs = candidate.convert(args);
+			if (convertedArgs != null) {
+				return candidate.invokable.invoke(subject, convertedArgs);
+			}
+		}
+		return NOT_INVOKED;
+	}
+
+	/**
+	 * @return Whether the arguments are of exactly the types the call was prepared for (<code>null</code> where the prepared type is
+	 * <code>null</code>).
+	 */
+	boolean isPreparedFor(final Object[] args) {
+		if (args.length != argumentTypes.length) {
+			return false;
+		}
+		for (int i = 0; i < args.length; i++) {
+			if ((args[i] != null ? args[i].getClass() : null) != argumentTypes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Invokes the prepared constructor with the given arguments, converted to the parameter types of the first candidate that accepts them.
+	 *
+	 * @return The instantiated object.
+	 * @throws NoSuchMethodException Thrown when none of the candidates accepts the arguments.
+	 * @throws IllegalArgumentException Thrown when the number of arguments doesn't match the prepared argument types.
+	 * @throws IllegalAccessException Thrown by {@link Constructor#newInstance(Object...)}.
+	 * @throws InvocationTargetException Thrown by {@link Constructor#newInstance(Object...)}.
+	 * @throws InstantiationException Thrown by {@link Constructor#newInstance(Object...)}.
+	 */
+	@NotNull
+	public <R> R newInstance(final Object... args)
+			throws NoSuchMethodException, IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
+		checkArgumentCount(args);
+		for (int i = 0; i < candidates.size(); i++) {
+			final Candidate<T> candidate = candidates.get(i);
+			final Object[] convertedArgs = candidate.convert(args);
+			if (convertedArgs != null) {
+				return trustedCast(candidate.invokable.newInstance(convertedArgs));
+			}
+		}
+		throw noSuitableCandidate(args);
+	}
+
+	private void checkArgumentCount(final Object[] args) {
+		if (args.length != argumentTypes.length) {
+			throw new IllegalArgumentException(format("expected %d arguments, got %d", argumentTypes.length, args.length));
+		}
+	}
+
+	@NotNull
+	private NoSuchMethodException noSuitableCandidate(final Object[] args) {
+		return new NoSuchMethodException(format("none of the prepared candidates on %s accepts the arguments %s", datatype, Arrays.toString(args)));
+	}
+
+	@Override
+	public String toString() {
+		return format("PreparedCall(%s, %s, %s, %s)", datatype.getName(), Arrays.toString(argumentTypes), lookupMode, getCandidates());
+	}
+
+	private static final class Candidate<T extends AccessibleObject> {
+		private final InvokableObject<T> invokable;
+		private final PreparedConverter[] argumentConverters;
+
+		private Candidate(final InvokableObject<T> invokable, final PreparedConverter[] argumentConverters) {
+			this.invokable = invokable;
+			this.argumentConverters = argumentConverters;
+		}
+
+		/**
+		 * @return The converted arguments, or <code>null</code> if they can't be converted for this candidate. The given arguments themselves if
+		 * none of them changed.
+		 */
+		@Nullable
+		private Object[] convert(final Object[] args) {
+			Object[] convertedArgs = null;
+			try {
+				for (int i = 0; i < args.length; i++) {
+					final Object convertedArg = argumentConverters[i].convert(args[i]);
+					if (convertedArgs == null && convertedArg != args[i]) {
+						convertedArgs = Arrays.copyOf(args, args.length, Object[].class);
+					}
+					if (convertedArgs != null) {
+						convertedArgs[i] = convertedArg;
+					}
+				}
+			} catch (IncompatibleTypeException e) {
+				return null;
+			}
+			return convertedArgs != null ? convertedArgs : args;
+		}
+	}
+}
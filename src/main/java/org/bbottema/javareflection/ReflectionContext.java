@@ -0,0 +1,286 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.model.InvokableObject;
+import org.bbottema.javareflection.model.LookupMode;
+import org.bbottema.javareflection.util.cache.CachePolicy;
+import org.bbottema.javareflection.util.cache.CacheStats;
+import org.bbottema.javareflection.valueconverter.ConverterRegistry;
+import org.bbottema.javareflection.valueconverter.IncompatibleTypeException;
+import org.bbottema.javareflection.valueconverter.ValueFunction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.bbottema.javareflection.LookupCaches.COMPATIBLE_TYPE_LISTS_CACHE;
+import static org.bbottema.javareflection.LookupCaches.CONVERSION_PATHS_CACHE;
+import static org.bbottema.javareflection.LookupCaches.METHOD_CACHE;
+
+/**
+ * A set of value converters together with the lookup caches that depend on them. The static API of {@link MethodUtils}, {@link TypeUtils},
+ * {@link org.bbottema.javareflection.valueconverter.ValueConversionHelper} and {@link LookupCaches} works with the {@link #getDefault() default
+ * context}; create a context of your own to register converters without affecting the rest of the application (or other applications sharing
+ * this library).
+ * <p>
+ * Contexts can be layered: a {@link #createChild() child context} sees all converters of its parent, overlays its own converters on top of them
+ * without copying the parent and has its own caches. Registering a converter with a context only invalidates the caches of that context and its
+ * children, so a parent shared by many children keeps its caches warm.
+ * <p>
+ * Contexts can be used from any number of threads.
+ */
+public final class ReflectionContext {
+
+	private static final ReflectionContext DEFAULT = new ReflectionContext(ConverterRegistry.withDefaultConverters());
+
+	private final ConverterRegistry converters;
+	private final ContextCaches caches;
+
+	private ReflectionContext(ConverterRegistry converters) {
+		this.converters = converters;
+		this.caches = new ContextCaches(converters);
+	}
+
+	/**
+	 * @return The context used by the static API of this library.
+	 */
+	@NotNull
+	public static ReflectionContext getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @return A new context with the default converters and empty caches, independent of any other context.
+	 */
+	@SuppressWarnings("unused")
+	@NotNull
+	public static ReflectionContext create() {
+		return new ReflectionContext(ConverterRegistry.withDefaultConverters());
+	}
+
+	/**
+	 * @return A new context with empty caches that uses the converters of this context, plus any converters registered with the child itself.
+	 */
+	@NotNull
+	public ReflectionContext createChild() {
+		return new ReflectionContext(converters.createChild());
+	}
+
+	/**
+	 * @see ConverterRegistry#registerValueConverter(ValueFunction)
+	 */
+	@SuppressWarnings("unused")
+	public void registerValueConverter(final ValueFunction<?, ?> userConverter) {
+		converters.registerValueConverter(userConverter);
+	}
+
+	@NotNull
+	public ConverterRegistry getConverters() {
+		return converters;
+	}
+
+	@NotNull
+	ContextCaches getCaches() {
+		return caches;
+	}
+
+	/**
+	 * Clears the method and type list caches of this context.
+	 */
+	@SuppressWarnings("unused")
+	public void resetCache() {
+		caches.resetCache();
+	}
+
+	/**
+	 * @see LookupCaches#setMethodCachePolicy(CachePolicy)
+	 */
+	@SuppressWarnings("unused")
+	public void setMethodCachePolicy(@NotNull CachePolicy policy) {
+		caches.setMethodCachePolicy(policy);
+	}
+
+	/**
+	 * Limits the work of {@link LookupMode#SMART_CONVERT} method and constructor lookups in this context, such as the last resort of
+	 * {@link #invokeCompatibleMethod(Object, Class, String, Object...)}. Clears the caches of this context.
+	 *
+	 * @see ResolutionBudget
+	 */
+	@SuppressWarnings("unused")
+	public void setResolutionBudget(@NotNull ResolutionBudget budget) {
+		caches.setResolutionBudget(budget);
+	}
+
+	@NotNull
+	public ResolutionBudget getResolutionBudget() {
+		return caches.getResolutionBudget();
+	}
+
+	/**
+	 * @return The number of lookups in this context that ran out of their {@link ResolutionBudget} since the last {@link #resetStats()}. Counted
+	 * whether or not statistics are enabled.
+	 */
+	public long getResolutionBudgetExceededCount() {
+		return caches.resolutionBudgetExceededCount.sum();
+	}
+
+	/**
+	 * @return A snapshot of the statistics of the caches of this context, by cache name ({@link LookupCaches#METHOD_CACHE},
+	 * {@link LookupCaches#COMPATIBLE_TYPE_LISTS_CACHE} and {@link LookupCaches#CONVERSION_PATHS_CACHE}).
+	 * @see LookupCaches#setStatsEnabled(boolean)
+	 */
+	@NotNull
+	public Map<String, CacheStats> getStats() {
+		final Map<String, CacheStats> stats = new LinkedHashMap<>();
+		stats.put(METHOD_CACHE, caches.methodCacheStats.snapshot());
+		stats.put(COMPATIBLE_TYPE_LISTS_CACHE, caches.compatibleTypeListsCacheStats.snapshot());
+		stats.put(CONVERSION_PATHS_CACHE, converters.getConversionPathStats().snapshot());
+		return Collections.unmodifiableMap(stats);
+	}
+
+	/**
+	 * Sets the statistics of the caches of this context, and the {@link #getResolutionBudgetExceededCount() number of lookups that ran out of
+	 * budget}, back to zero. Cache sizes are not affected.
+	 */
+	public void resetStats() {
+		caches.methodCacheStats.reset();
+		caches.compatibleTypeListsCacheStats.reset();
+		converters.getConversionPathStats().reset();
+		caches.resolutionBudgetExceededCount.reset();
+	}
+
+	/**
+	 * @see MethodUtils#invokeCompatibleMethod(Object, Class, String, Object...)
+	 */
+	@SuppressWarnings("unused")
+	@Nullable
+	public <T> T invokeCompatibleMethod(@Nullable final Object context, final Class<?> datatype, final String identifier, final Object... args)
+			throws NoSuchMethodException, IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		return MethodUtils.invokeCompatibleMethod(this, context, datatype, identifier, args);
+	}
+
+	/**
+	 * @see MethodUtils#prepare(Class, String, Class[])
+	 */
+	@SuppressWarnings("unused")
+	@NotNull
+	public PreparedCall<Method> prepare(final Class<?> datatype, final String identifier, final Class<?>... argumentTypes) throws NoSuchMethodException {
+		return MethodUtils.prepare(this, datatype, identifier, argumentTypes);
+	}
+
+	/**
+	 * @see MethodUtils#createCallSite(String)
+	 */
+	@SuppressWarnings("unused")
+	@NotNull
+	public MethodCallSite createCallSite(final String methodName) {
+		return MethodUtils.createCallSite(this, methodName);
+	}
+
+	/**
+	 * @see MethodUtils#createStringArgumentMethod(Class, String)
+	 */
+	@SuppressWarnings("unused")
+	@NotNull
+	public StringArgumentMethod createStringArgumentMethod(final Class<?> datatype, final String methodName) throws NoSuchMethodException {
+		return MethodUtils.createStringArgumentMethod(this, datatype, methodName);
+	}
+
+	/**
+	 * @see MethodUtils#invokeCompatibleConstructor(Class, Object...)
+	 */
+	@SuppressWarnings("unused")
+	@NotNull
+	public <T> T invokeCompatibleConstructor(final Class<T> datatype, final Object... args)
+			throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+		return MethodUtils.invokeConstructor(this, datatype, TypeUtils.collectTypes(args), args);
+	}
+
+	/**
+	 * @see MethodUtils#invokeConstructor(Class, Class[], Object[])
+	 */
+	@SuppressWarnings("unused")
+	@NotNull
+	public <T> T invokeConstructor(final Class<T> datatype, final Class<?>[] parameterSignature, final Object[] args)
+			throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+		return MethodUtils.invokeConstructor(this, datatype, parameterSignature, args);
+	}
+
+	/**
+	 * @see MethodUtils#prepareConstructor(Class, Class[])
+	 */
+	@SuppressWarnings("unused")
+	@NotNull
+	public PreparedCall<Constructor> prepareConstructor(final Class<?> datatype, final Class<?>... argumentTypes) throws NoSuchMethodException {
+		return MethodUtils.prepareConstructor(this, datatype, argumentTypes);
+	}
+
+	/**
+	 * @see MethodUtils#findCompatibleConstructor(Class, Set, Class[])
+	 */
+	@SuppressWarnings("unused")
+	@NotNull
+	public <T> Set<InvokableObject<Constructor>> findCompatibleConstructor(final Class<T> datatype, final Set<LookupMode> lookupMode,
+			final Class<?>... signature) throws NoSuchMethodException {
+		return MethodUtils.findCompatibleConstructor(this, datatype, lookupMode, signature);
+	}
+
+	/**
+	 * @see MethodUtils#findCompatibleMethod(Class, String, Set, Class[])
+	 */
+	@SuppressWarnings("unused")
+	@NotNull
+	public Set<InvokableObject<Method>> findCompatibleMethod(final Class<?> datatype, final String methodName, final Set<LookupMode> lookupMode,
+			final Class<?>... signature) throws NoSuchMethodException {
+		return MethodUtils.findCompatibleMethod(this, datatype, methodName, lookupMode, signature);
+	}
+
+	/**
+	 * @see TypeUtils#generateCompatibleTypeLists(Set, Class[])
+	 */
+	@SuppressWarnings("unused")
+	@NotNull
+	public List<Class<?>[]> generateCompatibleTypeLists(final Set<LookupMode> lookupMode, final Class<?>... inputTypelist) {
+		return TypeUtils.generateCompatibleTypeLists(this, lookupMode, inputTypelist);
+	}
+
+	/**
+	 * @see TypeUtils#iterateCompatibleTypeLists(Set, Class[])
+	 */
+	@SuppressWarnings("unused")
+	@NotNull
+	public Iterator<Class<?>[]> iterateCompatibleTypeLists(final Set<LookupMode> lookupMode, final Class<?>... inputTypelist) {
+		return TypeUtils.iterateCompatibleTypeLists(this, lookupMode, inputTypelist);
+	}
+
+	/**
+	 * @see ConverterRegistry#convert(Object, Class)
+	 */
+	@SuppressWarnings("unused")
+	@Nullable
+	public <T> T convert(@Nullable final Object fromValue, final Class<T> targetType) throws IncompatibleTypeException {
+		return converters.convert(fromValue, targetType);
+	}
+}
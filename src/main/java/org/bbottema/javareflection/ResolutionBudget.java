@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import org.bbottema.javareflection.model.LookupMode;
+import org.bbottema.javareflection.util.graph.GraphHelper;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the work a single {@link LookupMode#SMART_CONVERT} lookup of a method or constructor may do, see
+ * {@link ReflectionContext#setResolutionBudget(ResolutionBudget)}. A lookup that runs out of budget fails with a
+ * {@link ResolutionBudgetExceededException} rather than searching on, and its outcome is not cached, so a later lookup with a larger budget
+ * can still find the method.
+ * <p>
+ * The budget covers:
+ * <ul>
+ * <li>the number of candidate signatures (overloads with as many parameters as there are arguments) the lookup scores;</li>
+ * <li>the number of conversions chained to reach a parameter type, which limits the search of the conversion graph rather than failing
+ * the lookup;</li>
+ * <li>the wall time spent determining the types each argument converts to and scoring candidates.</li>
+ * </ul>
+ * Lookups with lenient modes other than {@link LookupMode#SMART_CONVERT} only consider direct conversions and are not limited. Neither are
+ * {@link TypeUtils#generateCompatibleTypeLists(Set, Class[])} and the other methods that list or test compatible types.
+ */
+@Value
+@SuppressFBWarnings(justification = "Generated code")
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ResolutionBudget {
+
+	/**
+	 * The longest chain of conversions the conversion graph is searched for.
+	 */
+	public static final int MAX_CONVERSION_DEPTH = GraphHelper.MAX_PATH_LENGTH;
+
+	/**
+	 * Doesn't limit lookups beyond the {@link #MAX_CONVERSION_DEPTH}. The default for every context.
+	 */
+	public static final ResolutionBudget UNLIMITED = new ResolutionBudget(Long.MAX_VALUE, MAX_CONVERSION_DEPTH, Long.MAX_VALUE);
+
+	long maxCandidateSignatures;
+	int maxConversionDepth;
+	/**
+	 * The maximum wall time in nanoseconds, or {@link Long#MAX_VALUE} if lookups are not timed.
+	 */
+	long maxWallTime;
+
+	/**
+	 * @return A copy of this budget that fails lookups with more than the given number of candidate signatures.
+	 */
+	@NotNull
+	public ResolutionBudget withMaxCandidateSignatures(long maxCandidateSignatures) {
+		if (maxCandidateSignatures < 0) {
+			throw new IllegalArgumentException("maximum number of candidate signatures cannot be negative");
+		}
+		return new ResolutionBudget(maxCandidateSignatures, maxConversionDepth, maxWallTime);
+	}
+
+	/**
+	 * @return A copy of this budget that only finds types that can be converted to with at most the given number of chained conversions.
+	 */
+	@NotNull
+	public ResolutionBudget withMaxConversionDepth(int maxConversionDepth) {
+		if (maxConversionDepth < 1 || maxConversionDepth > MAX_CONVERSION_DEPTH) {
+			throw new IllegalArgumentException("maximum conversion depth should be between 1 and " + MAX_CONVERSION_DEPTH);
+		}
+		return new ResolutionBudget(maxCandidateSignatures, maxConversionDepth, maxWallTime);
+	}
+
+	/**
+	 * @return A copy of this budget that fails lookups that take longer than the given time.
+	 */
+	@NotNull
+	public ResolutionBudget withMaxWallTime(long maxWallTime, @NotNull TimeUnit unit) {
+		if (maxWallTime < 0) {
+			throw new IllegalArgumentException("maximum wall time cannot be negative");
+		}
+		return new ResolutionBudget(maxCandidateSignatures, maxConversionDepth, unit.toNanos(maxWallTime));
+	}
+
+	boolean isTimed() {
+		return maxWallTime != Long.MAX_VALUE;
+	}
+
+	/**
+	 * @param start The start of the lookup, as returned by {@link System#nanoTime()}.
+	 */
+	boolean isWallTimeExceeded(long start) {
+		return isTimed() && System.nanoTime() - start > maxWallTime;
+	}
+}
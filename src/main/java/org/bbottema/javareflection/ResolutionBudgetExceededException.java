@@ -0,0 +1,28 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection;
+
+/**
+ * Thrown when a method or constructor lookup ran out of its {@link ResolutionBudget} before it could tell whether a compatible method exists.
+ * Extends {@link NoSuchMethodException}, so callers that only care whether a method could be found don't need to handle it separately.
+ */
+@SuppressWarnings("serial")
+public final class ResolutionBudgetExceededException extends NoSuchMethodException {
+
+	ResolutionBudgetExceededException(String method) {
+		super("resolution budget exceeded while looking up " + method);
+	}
+}
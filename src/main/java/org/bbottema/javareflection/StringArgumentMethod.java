@@ -0,0 +1,234 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.model.LookupMode;
+import org.bbottema.javareflection.util.InvocationStrategies;
+import org.bbottema.javareflection.util.Invoker;
+import org.bbottema.javareflection.valueconverter.ConverterRegistry;
+import org.bbottema.javareflection.valueconverter.IncompatibleTypeException;
+import org.bbottema.javareflection.valueconverter.PreparedConverter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static org.bbottema.javareflection.util.MiscUtil.copyOf;
+import static org.bbottema.javareflection.util.MiscUtil.trustedNullableCast;
+
+/**
+ * The overloads of a method invoked with <code>String</code> arguments only, such as values from a command line, HTTP query parameters or a
+ * configuration file, see {@link MethodUtils#createStringArgumentMethod(Class, String)}.
+ * <p>
+ * Invoking works like {@link MethodUtils#invokeCompatibleMethod(Object, Class, String, Object...)} with <code>String</code> arguments, but the
+ * lookups are all done in advance: for each number of parameters, the overloads that <code>String</code>s can be converted for are ranked by
+ * conversion cost the way {@link LookupMode#SMART_CONVERT} lookups rank them, each with a {@link PreparedConverter} per parameter that parses
+ * <code>String</code>s into the parameter type. Invoking then only tries the overloads in that order and invokes the first one that all
+ * arguments parse for, without generating compatible type lists or searching the conversion graph. A <code>null</code> argument doesn't parse
+ * for primitive parameters and is passed as is otherwise.
+ * <p>
+ * The overloads are ranked again once converters are registered with the {@link ReflectionContext}. Can be used from any number of threads.
+ */
+public final class StringArgumentMethod {
+
+	private static final Set<LookupMode> STRING_LOOKUP_MODE = Collections.unmodifiableSet(EnumSet.allOf(LookupMode.class));
+	private static final Overload[] NO_OVERLOADS = new Overload[0];
+
+	private final ReflectionContext reflectionContext;
+	private final Class<?> datatype;
+	private final String methodName;
+	/**
+	 * Replaced rather than modified, so it can be read without locking.
+	 */
+	private volatile RankedOverloads rankedOverloads;
+
+	/**
+	 * @throws NoSuchMethodException Thrown when none of the methods with the given name can be invoked with <code>String</code> arguments.
+	 */
+	StringArgumentMethod(final ReflectionContext reflectionContext, final Class<?> datatype, final String methodName) throws NoSuchMethodException {
+		this.reflectionContext = reflectionContext;
+		this.datatype = datatype;
+		this.methodName = methodName;
+		this.rankedOverloads = rankOverloads();
+	}
+
+	@NotNull
+	public Class<?> getDatatype() {
+		return datatype;
+	}
+
+	@NotNull
+	public String getMethodName() {
+		return methodName;
+	}
+
+	/**
+	 * Invokes the cheapest overload that all arguments can be parsed for.
+	 *
+	 * @param subject The object to call the method on, or <code>null</code> for static methods.
+	 * @param args The arguments, parsed into the parameter types of the overload.
+	 * @return The return value of the overload.
+	 * @throws NoSuchMethodException Thrown when the arguments don't parse for any of the overloads.
+	 * @throws IllegalAccessException Thrown by {@link Method#invoke(Object, Object...)}.
+	 * @throws InvocationTargetException Thrown by {@link Method#invoke(Object, Object...)}.
+	 */
+	@Nullable
+	public <T> T invoke(@Nullable final Object subject, final String... args)
+			throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+		final Overload[] overloads = currentOverloads().withArity(args.length);
+		for (int i = 0; i < overloads.length; i++) {
+			final Object[] parsedArgs = overloads[i].parse(args);
+			if (parsedArgs != null) {
+				return trustedNullableCast(overloads[i].invoker.invoke(subject, parsedArgs));
+			}
+		}
+		throw new NoSuchMethodException(format("none of the overloads of %s.%s accepts the arguments %s", datatype.getName(), methodName,
+				Arrays.toString(args)));
+	}
+
+	/**
+	 * @return The overloads with the given number of parameters, in the order they are tried.
+	 */
+	@NotNull
+	public List<Method> getOverloads(final int arity) throws NoSuchMethodException {
+		final List<Method> methods = new ArrayList<>();
+		for (final Overload overload : currentOverloads().withArity(arity)) {
+			methods.add(copyOf(overload.method));
+		}
+		return methods;
+	}
+
+	/**
+	 * @return The overloads ranked for the current converters, ranked again if converters were registered since.
+	 */
+	@NotNull
+	private RankedOverloads currentOverloads() throws NoSuchMethodException {
+		final RankedOverloads rankedOverloads = this.rankedOverloads;
+		return rankedOverloads.version == reflectionContext.getConverters().getVersion() ? rankedOverloads : rerankOverloads();
+	}
+
+	@NotNull
+	private synchronized RankedOverloads rerankOverloads() throws NoSuchMethodException {
+		if (rankedOverloads.version != reflectionContext.getConverters().getVersion()) {
+			rankedOverloads = rankOverloads();
+		}
+		return rankedOverloads;
+	}
+
+	/**
+	 * Selects and ranks the overloads of each number of parameters for <code>String</code> arguments, once for all invocations.
+	 */
+	@NotNull
+	private RankedOverloads rankOverloads() throws NoSuchMethodException {
+		final ConverterRegistry converters = reflectionContext.getConverters();
+		final long version = converters.getVersion();
+		final MemberIndex memberIndex = MemberIndex.of(datatype);
+		final Overload[][] overloadsByArity = new Overload[memberIndex.getMaxMethodArity(methodName) + 1][];
+		int overloadCount = 0;
+		for (int arity = 0; arity < overloadsByArity.length; arity++) {
+			final Class<?>[] stringSignature = new Class<?>[arity];
+			Arrays.fill(stringSignature, String.class);
+			final List<Class<?>[]> compatibleSignatures = TypeUtils.selectCompatibleSignatures(reflectionContext, STRING_LOOKUP_MODE, stringSignature,
+					memberIndex.getMethodSignatures(methodName, arity));
+			if (compatibleSignatures == null) {
+				MethodUtils.recordResolutionBudgetExceeded(reflectionContext, datatype, methodName, stringSignature);
+				throw new ResolutionBudgetExceededException(MethodUtils.describeMethod(datatype, methodName, stringSignature));
+			}
+			overloadsByArity[arity] = new Overload[compatibleSignatures.size()];
+			for (int i = 0; i < compatibleSignatures.size(); i++) {
+				overloadsByArity[arity][i] = new Overload(converters, requireNonNull(memberIndex.findMethod(methodName, compatibleSignatures.get(i))));
+			}
+			overloadCount += compatibleSignatures.size();
+		}
+		if (overloadCount == 0) {
+			throw new NoSuchMethodException(format("none of the methods named %s on %s takes String arguments", methodName, datatype.getName()));
+		}
+		return new RankedOverloads(version, overloadsByArity);
+	}
+
+	@Override
+	public String toString() {
+		return format("StringArgumentMethod(%s.%s)", datatype.getName(), methodName);
+	}
+
+	private static final class RankedOverloads {
+		private final long version;
+		private final Overload[][] overloadsByArity;
+
+		private RankedOverloads(final long version, final Overload[][] overloadsByArity) {
+			this.version = version;
+			this.overloadsByArity = overloadsByArity;
+		}
+
+		@NotNull
+		private Overload[] withArity(final int arity) {
+			return arity < overloadsByArity.length ? overloadsByArity[arity] : NO_OVERLOADS;
+		}
+	}
+
+	private static final class Overload {
+		private final Method method;
+		private final Class<?>[] parameterTypes;
+		private final PreparedConverter[] parsers;
+		private final Invoker invoker;
+
+		private Overload(final ConverterRegistry converters, final Method method) {
+			this.method = method;
+			this.parameterTypes = method.getParameterTypes();
+			this.parsers = new PreparedConverter[parameterTypes.length];
+			for (int i = 0; i < parameterTypes.length; i++) {
+				parsers[i] = converters.prepareConverter(String.class, parameterTypes[i]);
+			}
+			this.invoker = InvocationStrategies.createAccessibleInvoker(method);
+		}
+
+		/**
+		 * @return The arguments parsed into the parameter types, or <code>null</code> if some argument doesn't parse. The given arguments
+		 * themselves if none of them changed, such as for overloads with only <code>String</code> parameters.
+		 */
+		@Nullable
+		private Object[] parse(final String[] args) {
+			Object[] parsedArgs = null;
+			try {
+				for (int i = 0; i < args.length; i++) {
+					if (args[i] == null && parameterTypes[i].isPrimitive()) {
+						return null;
+					}
+					final Object parsedArg = parsers[i].convert(args[i]);
+					if (parsedArgs == null && parsedArg != args[i]) {
+						// a new array rather than a clone, which would only hold Strings
+						parsedArgs = Arrays.copyOf(args, args.length, Object[].class);
+					}
+					if (parsedArgs != null) {
+						parsedArgs[i] = parsedArg;
+					}
+				}
+			} catch (IncompatibleTypeException e) {
+				return null;
+			}
+			return parsedArgs != null ? parsedArgs : args;
+		}
+	}
+}
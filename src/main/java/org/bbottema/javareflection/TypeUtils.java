@@ -1,8 +1,22 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package org.bbottema.javareflection;
 
 import lombok.experimental.UtilityClass;
 import org.bbottema.javareflection.model.LookupMode;
-import org.bbottema.javareflection.util.ArrayKey;
 import org.bbottema.javareflection.valueconverter.ValueConversionHelper;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -10,8 +24,6 @@ import org.jetbrains.annotations.Nullable;
 import java.lang.annotation.Annotation;
 import java.util.*;
 
-import static org.bbottema.javareflection.LookupCaches.*;
-
 /**
  * Utility functions that deal with type information, conversions and autoboxing.
  * <p>
@@ -53,6 +65,18 @@ public final class TypeUtils {
 		numSizes.put(Double.class, ++size);
 	}
 	
+	/**
+	 * Conversion costs used by {@link #collectCompatibleTypeCosts(ContextCaches, Set, Class)}, in the order in which
+	 * {@link #generateCompatibleTypeLists(Set, Class[])} tries the alternatives.
+	 */
+	private static final int EXACT_COST = 0;
+	private static final int AUTOBOX_COST = 1;
+	private static final int CAST_TO_INTERFACE_COST = 2;
+	private static final int CAST_TO_SUPER_COST = 2; // plus the distance to the supertype
+	private static final int WIDENING_COST = 50; // plus the difference in wideness, for conversions to wider number types
+	private static final int COMMON_CONVERT_COST = 100;
+	private static final int SMART_CONVERT_COST = 200;
+	
 	/**
 	 * Creates a new array of class objects harvested from an array of objects.
 	 * <p>
@@ -76,9 +100,14 @@ public final class TypeUtils {
 	
 	@SuppressWarnings({"unused", "WeakerAccess"})
 	public static boolean isTypeListCompatible(Class<?>[] inputTypeList, Class<?>[] targetTypeList, Set<LookupMode> lookupMode) {
-		List<Class<?>[]> derivableTypeLists = generateCompatibleTypeLists(lookupMode, inputTypeList);
+		return isTypeListCompatible(ReflectionContext.getDefault(), inputTypeList, targetTypeList, lookupMode);
+	}
+	
+	static boolean isTypeListCompatible(ReflectionContext reflectionContext, Class<?>[] inputTypeList, Class<?>[] targetTypeList, Set<LookupMode> lookupMode) {
+		final Iterator<Class<?>[]> derivableTypeLists = iterateCompatibleTypeLists(reflectionContext, lookupMode, inputTypeList);
 		
-		for (Class<?>[] derivableTypeList : derivableTypeLists) {
+		while (derivableTypeLists.hasNext()) {
+			final Class<?>[] derivableTypeList = derivableTypeLists.next();
 			boolean currentTypeListCompatible = true;
 			for (int i = 0; i < derivableTypeList.length && currentTypeListCompatible; i++) {
 				if (derivableTypeList[i] != null && !derivableTypeList[i].equals(targetTypeList[i])) {
@@ -92,6 +121,185 @@ public final class TypeUtils {
 		return false;
 	}
 	
+	/**
+	 * Selects the candidate signatures (such as the parameter types of the overloads of a method) that arguments of the given types can be passed
+	 * to, one parameter at a time instead of generating all compatible type lists: a candidate applies when each of its parameter types is one
+	 * of the types {@link #generateCompatibleTypeLists(Set, Class[])} would try for the corresponding argument type. Work is linear in the number
+	 * of parameters and candidates.
+	 * <p>
+	 * Applicable candidates are ordered by conversion cost, the sum of the costs of their parameters (see
+	 * {@link #collectCompatibleTypeCosts(ContextCaches, Set, Class)}). Equally expensive candidates are ordered like the JLS orders overloads:
+	 * a candidate whose parameter types can all be assigned to those of another candidate is more specific and comes first.
+	 *
+	 * <p>
+	 * Selections with {@link LookupMode#SMART_CONVERT} are limited by the {@link ResolutionBudget} of the context.
+	 *
+	 * @param lookupMode Flag indicating the search steps that need to be done.
+	 * @param inputTypelist The types of the arguments.
+	 * @param candidateSignatures The signatures to select from, all of the same length as the input type list.
+	 * @return The applicable candidate signatures, cheapest first, or <code>null</code> if the selection ran out of budget.
+	 */
+	@Nullable
+	static List<Class<?>[]> selectCompatibleSignatures(final ReflectionContext reflectionContext, final Set<LookupMode> lookupMode,
+			final Class<?>[] inputTypelist, final List<Class<?>[]> candidateSignatures) {
+		final ResolutionBudget budget = lookupMode.contains(LookupMode.SMART_CONVERT)
+				? reflectionContext.getCaches().getResolutionBudget()
+				: ResolutionBudget.UNLIMITED;
+		final long start = budget.isTimed() ? System.nanoTime() : 0;
+		if (candidateSignatures.size() > budget.getMaxCandidateSignatures()) {
+			return null;
+		}
+		final List<Map<Class<?>, Integer>> compatibleTypeCosts = new ArrayList<>(inputTypelist.length);
+		for (final Class<?> inputType : inputTypelist) {
+			compatibleTypeCosts.add(collectCompatibleTypeCosts(reflectionContext.getCaches(), lookupMode, inputType));
+			if (budget.isWallTimeExceeded(start)) {
+				return null;
+			}
+		}
+		
+		final List<RankedSignature> applicableSignatures = new ArrayList<>();
+		for (final Class<?>[] candidateSignature : candidateSignatures) {
+			if (budget.isWallTimeExceeded(start)) {
+				return null;
+			}
+			int cost = 0;
+			for (int i = 0; i < candidateSignature.length && cost >= 0; i++) {
+				final Integer parameterCost = compatibleTypeCosts.get(i).get(candidateSignature[i]);
+				cost = parameterCost != null ? cost + parameterCost : -1;
+			}
+			if (cost >= 0) {
+				applicableSignatures.add(new RankedSignature(candidateSignature, cost));
+			}
+		}
+		return rankSignatures(applicableSignatures);
+	}
+	
+	/**
+	 * @return The types that {@link #generateCompatibleTypeLists(Set, Class[])} would try in place of the given type, each with the cost of
+	 * passing a value of the given type as that type: exact match first, then autoboxing, implemented interfaces, supertypes (closer supertypes
+	 * being cheaper), conversions to wider number types (closer ones being cheaper) and finally other conversions. Types reachable in more than
+	 * one way get the lowest cost. Empty for <code>null</code> types, which don't match any parameter type.
+	 * <p>
+	 * Unlike {@link #generateCompatibleTypeLists(Set, Class[])}, only considers conversions within the maximum conversion depth of the
+	 * {@link ResolutionBudget} of the context.
+	 */
+	@NotNull
+	static Map<Class<?>, Integer> collectCompatibleTypeCosts(final ContextCaches caches, final Set<LookupMode> lookupMode, @Nullable final Class<?> type) {
+		final Map<Class<?>, Integer> costs = new HashMap<>();
+		if (type == null) {
+			return costs;
+		}
+		addCost(costs, type, EXACT_COST);
+		if (lookupMode.contains(LookupMode.AUTOBOX) && !lookupMode.contains(LookupMode.SMART_CONVERT)) {
+			final Class<?> autoboxed = autobox(type);
+			if (autoboxed != null) {
+				addCost(costs, autoboxed, AUTOBOX_COST);
+			}
+		}
+		if (lookupMode.contains(LookupMode.CAST_TO_INTERFACE)) {
+			for (final Class<?> iface : type.getInterfaces()) {
+				addCost(costs, iface, CAST_TO_INTERFACE_COST);
+			}
+		}
+		if (lookupMode.contains(LookupMode.CAST_TO_SUPER)) {
+			int distance = 0;
+			Class<?> supertype = type;
+			while ((supertype = supertype.getSuperclass()) != null) {
+				addCost(costs, supertype, CAST_TO_SUPER_COST + ++distance);
+			}
+		}
+		if (lookupMode.contains(LookupMode.COMMON_CONVERT) && !lookupMode.contains(LookupMode.SMART_CONVERT)) {
+			for (final Class<?> convert : caches.getRegisteredCompatibleTargetTypes(type)) {
+				addCost(costs, convert, determineConversionCost(type, convert, COMMON_CONVERT_COST));
+			}
+		}
+		if (lookupMode.contains(LookupMode.SMART_CONVERT)) {
+			// smart conversion includes autoboxing, which still costs no more than autoboxing
+			final Class<?> autoboxed = lookupMode.contains(LookupMode.AUTOBOX) ? autobox(type) : null;
+			for (final Class<?> convert : caches.getBudgetedCompatibleTargetTypes(type)) {
+				addCost(costs, convert, convert == autoboxed ? AUTOBOX_COST : determineConversionCost(type, convert, SMART_CONVERT_COST));
+			}
+		}
+		return costs;
+	}
+	
+	/**
+	 * @return The cost of widening when converting between number types (boxed or not) to a wider type, otherwise the given conversion cost.
+	 */
+	private static int determineConversionCost(final Class<?> type, final Class<?> convert, final int conversionCost) {
+		final Integer size = numSizes.get(type.isPrimitive() ? autobox(type) : type);
+		final Integer convertSize = numSizes.get(convert.isPrimitive() ? autobox(convert) : convert);
+		return size != null && convertSize != null && convertSize > size ? WIDENING_COST + convertSize - size : conversionCost;
+	}
+	
+	private static void addCost(final Map<Class<?>, Integer> costs, final Class<?> type, final int cost) {
+		final Integer existingCost = costs.get(type);
+		if (existingCost == null || cost < existingCost) {
+			costs.put(type, cost);
+		}
+	}
+	
+	@NotNull
+	private static List<Class<?>[]> rankSignatures(final List<RankedSignature> signatures) {
+		// stable sort, so incomparable signatures of equal cost keep their order
+		Collections.sort(signatures, new Comparator<RankedSignature>() {
+			@Override
+			public int compare(RankedSignature o1, RankedSignature o2) {
+				return Integer.compare(o1.cost, o2.cost);
+			}
+		});
+		final List<Class<?>[]> rankedSignatures = new ArrayList<>(signatures.size());
+		for (int start = 0; start < signatures.size(); ) {
+			int end = start;
+			while (end < signatures.size() && signatures.get(end).cost == signatures.get(start).cost) {
+				end++;
+			}
+			// within signatures of equal cost, repeatedly take the first one no other remaining signature is more specific than
+			final List<RankedSignature> equallyExpensive = new ArrayList<>(signatures.subList(start, end));
+			while (!equallyExpensive.isEmpty()) {
+				rankedSignatures.add(equallyExpensive.remove(indexOfMostSpecific(equallyExpensive)).signature);
+			}
+			start = end;
+		}
+		return rankedSignatures;
+	}
+	
+	private static int indexOfMostSpecific(final List<RankedSignature> signatures) {
+		for (int i = 0; i < signatures.size(); i++) {
+			boolean mostSpecific = true;
+			for (int j = 0; j < signatures.size() && mostSpecific; j++) {
+				mostSpecific = i == j || !isMoreSpecific(signatures.get(j).signature, signatures.get(i).signature);
+			}
+			if (mostSpecific) {
+				return i;
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * @return Whether all types of <code>signature</code> can be assigned to the corresponding types of <code>other</code>, while the signatures
+	 * differ.
+	 */
+	private static boolean isMoreSpecific(final Class<?>[] signature, final Class<?>[] other) {
+		for (int i = 0; i < signature.length; i++) {
+			if (!other[i].isAssignableFrom(signature[i])) {
+				return false;
+			}
+		}
+		return !Arrays.equals(signature, other);
+	}
+	
+	private static final class RankedSignature {
+		private final Class<?>[] signature;
+		private final int cost;
+		
+		private RankedSignature(final Class<?>[] signature, final int cost) {
+			this.signature = signature;
+			this.cost = cost;
+		}
+	}
+	
 	/**
 	 * Initializes the list with type-arrays and starts generating beginning from index 0. This method is used for (un)wrapping.
 	 *
@@ -102,105 +310,44 @@ public final class TypeUtils {
 	@NotNull
 	@SuppressWarnings({"unused", "WeakerAccess"})
 	public static List<Class<?>[]> generateCompatibleTypeLists(final Set<LookupMode> lookupMode, final Class<?>... inputTypelist) {
-		final ArrayKey arrayKey = new ArrayKey(inputTypelist);
-		final List<Class<?>[]> cachedResult = getCachedCompatibleSignatures(lookupMode, arrayKey);
-		return cachedResult != null
-				? cachedResult
-				: addCompatiblesignaturesToCache(lookupMode, arrayKey,
-						generateCompatibleTypeLists(0, lookupMode, new ArrayList<Class<?>[]>(), inputTypelist));
+		return generateCompatibleTypeLists(ReflectionContext.getDefault(), lookupMode, inputTypelist);
 	}
 	
-	/**
-	 * Recursively generates a complete list of all possible (un)wraps (autoboxing), supertypes, implemented interfaces, type conversions and any
-	 * combination thereof with the specified typeLists's elements (the individual parameter types).<br>
-	 * <br>
-	 * The combination typeLists are generated in the following order:
-	 * <ol>
-	 * <li>no conversion; highest priority as it comes closest to user's requirement/specification</li>
-	 * <li>autoboxing; the autoboxed counterversion comes closest to the original datatype</li>
-	 * <li>interface; where methods can't be found using original type, interface placeholders are attempted</li>
-	 * <li>supertype; where methods can't be found using implemented interfaces, supertype placeholders are attempted</li>
-	 * <li>conversions; if all else fails, try to convert the datatype for common types (ie. int to String)</li>
-	 * </ol>
-	 *  @param index The current index to start mutating from.
-	 * @param lookupMode Flag indicating the search steps that need to be done.
-	 * @param inputTypelist The list with current types, to mutate further upon.
-	 */
-	private static List<Class<?>[]> generateCompatibleTypeLists(final int index, final Set<LookupMode> lookupMode, final List<Class<?>[]> compatibleTypeLists, final Class<?>... inputTypelist) {
-		// if new type array is completed
-		if (index == inputTypelist.length) {
-			compatibleTypeLists.add(inputTypelist);
-		} else {
-			// generate new array of types
-			final Class<?> original = inputTypelist[index];
-			
-			// 1. don't generate compatible list; just try the normal type first
-			// remember, in combinations types should be allowed to be converted)
-			generateCompatibleTypeLists(index + 1, lookupMode, compatibleTypeLists, inputTypelist.clone());
-
-			if (original != null) {
-				// 2. generate type in which the original can be (un)wrapped
-				if (lookupMode.contains(LookupMode.AUTOBOX) && !lookupMode.contains(LookupMode.SMART_CONVERT)) {
-					final Class<?> autoboxed = autobox(original);
-					if (autoboxed != null) {
-						final Class<?>[] newTypeList = replaceInArray(inputTypelist.clone(), index, autoboxed);
-						generateCompatibleTypeLists(index + 1, lookupMode, compatibleTypeLists, newTypeList);
-					}
-				}
-
-				// autocast to supertype or interface?
-				if (lookupMode.contains(LookupMode.CAST_TO_INTERFACE)) {
-					// 3. generate implemented interfaces the original value could be converted (cast) into
-					for (final Class<?> iface : original.getInterfaces()) {
-						final Class<?>[] newTypeList = replaceInArray(inputTypelist.clone(), index, iface);
-						generateCompatibleTypeLists(index + 1, lookupMode, compatibleTypeLists, newTypeList);
-					}
-				}
-
-				if (lookupMode.contains(LookupMode.CAST_TO_SUPER)) {
-					// 4. generate supertypes the original value could be converted (cast) into
-					Class<?> supertype = original;
-					while ((supertype = supertype.getSuperclass()) != null) {
-						final Class<?>[] newTypeList = replaceInArray(inputTypelist.clone(), index, supertype);
-						generateCompatibleTypeLists(index + 1, lookupMode, compatibleTypeLists, newTypeList);
-					}
-				}
-
-				// 5. generate types the original value could be converted into
-				if (lookupMode.contains(LookupMode.COMMON_CONVERT) && !lookupMode.contains(LookupMode.SMART_CONVERT)) {
-					for (final Class<?> convert : collectRegisteredCompatibleTargetTypes(original)) {
-						final Class<?>[] newTypeList = replaceInArray(inputTypelist.clone(), index, convert);
-						generateCompatibleTypeLists(index + 1, lookupMode, compatibleTypeLists, newTypeList);
-					}
-				}
-
-				// 6. generate types the original value could be converted into with intermediary conversions
-				if (lookupMode.contains(LookupMode.SMART_CONVERT)) {
-					for (final Class<?> convert : collectCompatibleTargetTypes(original)) {
-						final Class<?>[] newTypeList = replaceInArray(inputTypelist.clone(), index, convert);
-						generateCompatibleTypeLists(index + 1, lookupMode, compatibleTypeLists, newTypeList);
-					}
-				}
-			}
+	@NotNull
+	static List<Class<?>[]> generateCompatibleTypeLists(final ReflectionContext reflectionContext, final Set<LookupMode> lookupMode, final Class<?>... inputTypelist) {
+		final List<Class<?>[]> cachedResult = reflectionContext.getCaches().getCachedCompatibleSignatures(lookupMode, inputTypelist);
+		if (cachedResult != null) {
+			return cachedResult;
+		}
+		final List<Class<?>[]> compatibleTypeLists = new ArrayList<>();
+		// exhausting the iterator caches the type lists
+		final Iterator<Class<?>[]> compatibleTypeListIterator = new CompatibleTypeListIterator(reflectionContext.getCaches(), lookupMode, inputTypelist);
+		while (compatibleTypeListIterator.hasNext()) {
+			compatibleTypeLists.add(compatibleTypeListIterator.next());
 		}
-		
 		return compatibleTypeLists;
 	}
 	
+	/**
+	 * Like {@link #generateCompatibleTypeLists(Set, Class[])}, but generates the type lists one at a time, in the same order, so callers can stop at
+	 * the first type list that suits them without generating the others. Only a fully consumed iteration is cached.
+	 *
+	 * @param lookupMode Flag indicating the search steps that need to be done.
+	 * @param inputTypelist The list with original user specified types.
+	 * @return An iterator over the compatible type lists, starting with the input type list itself.
+	 */
 	@NotNull
-	private static Set<Class<?>> collectRegisteredCompatibleTargetTypes(Class<?> fromType) {
-		if (!CACHED_REGISTERED_COMPATIBLE_TARGET_TYPES.containsKey(fromType)) {
-			CACHED_REGISTERED_COMPATIBLE_TARGET_TYPES.put(fromType, ValueConversionHelper.collectRegisteredCompatibleTargetTypes(fromType));
-		}
-		return CACHED_REGISTERED_COMPATIBLE_TARGET_TYPES.get(fromType);
+	@SuppressWarnings({"unused", "WeakerAccess"})
+	public static Iterator<Class<?>[]> iterateCompatibleTypeLists(final Set<LookupMode> lookupMode, final Class<?>... inputTypelist) {
+		return iterateCompatibleTypeLists(ReflectionContext.getDefault(), lookupMode, inputTypelist);
 	}
 	
 	@NotNull
-	private static Set<Class<?>> collectCompatibleTargetTypes(Class<?> fromType) {
-		if (!CACHED_COMPATIBLE_TARGET_TYPES.containsKey(fromType)) {
-			CACHED_COMPATIBLE_TARGET_TYPES.put(fromType, ValueConversionHelper.collectCompatibleTargetTypes(fromType));
-		}
-		return CACHED_COMPATIBLE_TARGET_TYPES.get(fromType);
+	static Iterator<Class<?>[]> iterateCompatibleTypeLists(final ReflectionContext reflectionContext, final Set<LookupMode> lookupMode, final Class<?>... inputTypelist) {
+		final List<Class<?>[]> cachedResult = reflectionContext.getCaches().getCachedCompatibleSignatures(lookupMode, inputTypelist);
+		return cachedResult != null
+				? Collections.unmodifiableList(cachedResult).iterator()
+				: new CompatibleTypeListIterator(reflectionContext.getCaches(), lookupMode, inputTypelist);
 	}
 	
 	/**
@@ -1,16 +1,111 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package org.bbottema.javareflection.model;
 
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
+import lombok.ToString;
+import org.bbottema.javareflection.util.InvocationStrategies;
+import org.bbottema.javareflection.util.InvocationStrategy;
+import org.bbottema.javareflection.util.Invoker;
+import org.bbottema.javareflection.util.MiscUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 
 @Data
+@EqualsAndHashCode(doNotUseGetters = true)
+@ToString(doNotUseGetters = true)
 @SuppressFBWarnings(justification = "Generated code")
 public class InvokableObject<T extends AccessibleObject> {
 	@NonNull T method;
 	@NonNull Class<?>[] inputSignature;
 	@NonNull Class<?>[] compatibleSignature;
-}
\ No newline at end of file
+	
+	/**
+	 * Created on first invocation by the {@link InvocationStrategy} for the declaring class. Methods are made accessible for the invoker only,
+	 * see {@link InvocationStrategies#createAccessibleInvoker(Method)}.
+	 */
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	@Nullable
+	private transient volatile Invoker invoker;
+	
+	/**
+	 * Invokes the {@link Method} through an {@link Invoker} that is created on first use.
+	 *
+	 * @see Invoker#invoke(Object, Object[])
+	 * @see InvocationStrategies
+	 */
+	@Nullable
+	public Object invoke(@Nullable Object subject, Object... args) throws IllegalAccessException, InvocationTargetException {
+		return obtainInvoker().invoke(subject, args);
+	}
+	
+	/**
+	 * Invokes the {@link Constructor} through an {@link Invoker} that is created on first use.
+	 *
+	 * @see Invoker#newInstance(Object[])
+	 * @see InvocationStrategies
+	 */
+	@NotNull
+	public Object newInstance(Object... args) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+		return obtainInvoker().newInstance(args);
+	}
+	
+	/**
+	 * Invokable objects are cached and shared by all lookups, so this returns a copy that can be changed (for example with
+	 * {@link AccessibleObject#setAccessible(boolean)}) without affecting anyone else. Use {@link #invoke(Object, Object...)} and
+	 * {@link #newInstance(Object...)} to invoke the method or constructor without copying it.
+	 *
+	 * @return A new copy of the method or constructor.
+	 */
+	@NotNull
+	public T getMethod() {
+		return MiscUtil.copyOf(method);
+	}
+	
+	/**
+	 * Also drops the invoker created for the previous method or constructor.
+	 */
+	public void setMethod(@NonNull T method) {
+		this.method = method;
+		this.invoker = null;
+	}
+	
+	@NotNull
+	private Invoker obtainInvoker() {
+		Invoker invoker = this.invoker;
+		if (invoker == null) {
+			this.invoker = invoker = method instanceof Method
+					? InvocationStrategies.createAccessibleInvoker((Method) method)
+					: InvocationStrategies.createInvoker((Constructor<?>) method);
+		}
+		return invoker;
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Checks up front whether a call can be made without any conversions, so that invokers which cast and unbox arguments directly only have to deal
+ * with exceptions thrown by the target itself. Calls that don't pass are handed to reflection, which widens primitives or reports the mismatch the
+ * usual way.
+ */
+final class ArgumentGuard {
+
+	/**
+	 * The receiver type for instance methods, <code>null</code> otherwise.
+	 */
+	@Nullable
+	private final Class<?> receiverType;
+	/**
+	 * The parameter types, with primitive types replaced by their wrapper types.
+	 */
+	@NotNull
+	private final Class<?>[] parameterTypes;
+	private final boolean[] primitiveParameters;
+
+	ArgumentGuard(@NotNull final Method method) {
+		this(!Modifier.isStatic(method.getModifiers()) ? method.getDeclaringClass() : null, method.getParameterTypes());
+	}
+
+	ArgumentGuard(@NotNull final Constructor<?> constructor) {
+		this(null, constructor.getParameterTypes());
+	}
+
+	ArgumentGuard(@Nullable final Class<?> receiverType, @NotNull final Class<?>[] parameterTypes) {
+		this.receiverType = receiverType;
+		this.parameterTypes = new Class<?>[parameterTypes.length];
+		this.primitiveParameters = new boolean[parameterTypes.length];
+		for (int i = 0; i < parameterTypes.length; i++) {
+			this.parameterTypes[i] = MethodType.methodType(parameterTypes[i]).wrap().returnType();
+			this.primitiveParameters[i] = parameterTypes[i].isPrimitive();
+		}
+	}
+
+	/**
+	 * @return Whether the subject (ignored for static methods and constructors) and arguments are of the exact types the target expects, or their
+	 * wrapper types.
+	 */
+	boolean accepts(@Nullable final Object subject, @Nullable final Object[] args) {
+		if (receiverType != null && !receiverType.isInstance(subject)) {
+			return false;
+		}
+		final int argCount = args != null ? args.length : 0;
+		if (argCount != parameterTypes.length) {
+			return false;
+		}
+		for (int i = 0; i < argCount; i++) {
+			//noinspection ConstantConditions
+			final Object arg = args[i];
+			if (arg == null ? primitiveParameters[i] : !parameterTypes[i].isInstance(arg)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -1,3 +1,18 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package org.bbottema.javareflection.util;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -8,6 +23,9 @@ import static org.bbottema.javareflection.util.MiscUtil.requireNonNullOfType;
 
 /**
  * Needed to make sure hashcode and equals are implemented properly for arrays as key in a map.
+ * <p>
+ * Keys created with the constructor keep a copy of the array, so they can safely be stored. Use {@link #forLookup(Class[])} for keys that are only
+ * used to look up entries, to avoid copying the array on every lookup.
  */
 public class ArrayKey {
 	
@@ -15,15 +33,30 @@ public class ArrayKey {
 	private final Class<?>[] array;
 	
 	public ArrayKey(Class<?>[] array) {
-		this.array = array.clone();
-		this.hashCode = Arrays.hashCode(this.array);
+		this(array.clone(), null);
+	}
+	
+	private ArrayKey(Class<?>[] array, @SuppressWarnings("unused") Void noCopy) {
+		this.array = array;
+		this.hashCode = Arrays.hashCode(array);
+	}
+	
+	/**
+	 * @return A key that uses the given array as is. Must not be stored, since the caller is free to change the array afterwards.
+	 */
+	public static ArrayKey forLookup(Class<?>[] array) {
+		return new ArrayKey(array, null);
 	}
 	
 	@SuppressFBWarnings(value = "EQ_UNUSUAL", justification = "Equals is specifically implemented for performance reasons")
 	@SuppressWarnings("EqualsWhichDoesntCheckParameterClass")
 	@Override
 	public boolean equals(Object o) {
-		return o != null && Arrays.equals(array, requireNonNullOfType(o, ArrayKey.class).array);
+		if (o == null) {
+			return false;
+		}
+		final ArrayKey other = requireNonNullOfType(o, ArrayKey.class);
+		return hashCode == other.hashCode && Arrays.equals(array, other.array);
 	}
 	
 	@Override
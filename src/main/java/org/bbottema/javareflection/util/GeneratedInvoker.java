@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Guards an invoker generated by {@link HiddenClassInvocationStrategy}, which casts and unboxes its arguments without checking them. Calls with
+ * arguments that need conversion or don't fit are handed to reflection.
+ */
+final class GeneratedInvoker implements Invoker {
+
+	@NotNull
+	private final Invoker generatedInvoker;
+	@Nullable
+	private final Method method;
+	@Nullable
+	private final Constructor<?> constructor;
+	@NotNull
+	private final ArgumentGuard argumentGuard;
+
+	GeneratedInvoker(@NotNull final Invoker generatedInvoker, @NotNull final Method method) {
+		this.generatedInvoker = generatedInvoker;
+		this.method = method;
+		this.constructor = null;
+		this.argumentGuard = new ArgumentGuard(method);
+	}
+
+	GeneratedInvoker(@NotNull final Invoker generatedInvoker, @NotNull final Constructor<?> constructor) {
+		this.generatedInvoker = generatedInvoker;
+		this.method = null;
+		this.constructor = constructor;
+		this.argumentGuard = new ArgumentGuard(constructor);
+	}
+
+	@Override
+	@Nullable
+	public Object invoke(@Nullable final Object subject, @Nullable final Object[] args) throws IllegalAccessException, InvocationTargetException {
+		if (method == null) {
+			throw new IllegalStateException("not a method invoker");
+		}
+		return argumentGuard.accepts(subject, args) ? generatedInvoker.invoke(subject, args) : method.invoke(subject, args);
+	}
+
+	@Override
+	@NotNull
+	public Object newInstance(@Nullable final Object[] args) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+		if (constructor == null) {
+			throw new IllegalStateException("not a constructor invoker");
+		}
+		return argumentGuard.accepts(null, args) ? generatedInvoker.newInstance(args) : constructor.newInstance(args);
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Generates a small class per target that calls the method or constructor directly (see {@link InvokerClassWriter}), and defines it as a hidden
+ * class with <code>MethodHandles.Lookup.defineHiddenClass</code>. Hidden classes are not registered with a class loader, so they can be unloaded as
+ * soon as their invoker is no longer used.
+ * <p>
+ * Needs Java 15 or later; on older runtimes this strategy doesn't create any invokers. The generated class lives in this library's package and
+ * class loader, so only public members of public types that are visible from this library are supported. Other targets are left to the next
+ * strategy.
+ */
+final class HiddenClassInvocationStrategy implements InvocationStrategy {
+
+	/**
+	 * <code>Lookup.defineHiddenClass(byte[], boolean, ClassOption...)</code> bound to a lookup on this class, or <code>null</code> when the runtime
+	 * doesn't support hidden classes.
+	 */
+	@Nullable
+	private static final MethodHandle DEFINE_HIDDEN_CLASS = findDefineHiddenClass();
+
+	@Nullable
+	private static MethodHandle findDefineHiddenClass() {
+		try {
+			final Class<?> classOptionType = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+			final Method defineHiddenClass = Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class, Array.newInstance(classOptionType, 0).getClass());
+			return MethodHandles.insertArguments(MethodHandles.publicLookup().unreflect(defineHiddenClass), 3, Array.newInstance(classOptionType, 0))
+					.bindTo(MethodHandles.lookup());
+		} catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return Whether the runtime supports hidden classes.
+	 */
+	boolean isAvailable() {
+		return DEFINE_HIDDEN_CLASS != null;
+	}
+
+	@Nullable
+	@Override
+	public Invoker createInvoker(@NotNull final Method method) {
+		if (!canLink(method, method.getParameterTypes()) || !isLinkable(method.getReturnType())) {
+			return null;
+		}
+		final Invoker hiddenInvoker = defineInvoker(InvokerClassWriter.writeInvokerClass(method));
+		return hiddenInvoker != null ? new GeneratedInvoker(hiddenInvoker, method) : null;
+	}
+
+	@Nullable
+	@Override
+	public Invoker createInvoker(@NotNull final Constructor<?> constructor) {
+		if (Modifier.isAbstract(constructor.getDeclaringClass().getModifiers()) || !canLink(constructor, constructor.getParameterTypes())) {
+			return null;
+		}
+		final Invoker hiddenInvoker = defineInvoker(InvokerClassWriter.writeInvokerClass(constructor));
+		return hiddenInvoker != null ? new GeneratedInvoker(hiddenInvoker, constructor) : null;
+	}
+
+	private boolean canLink(@NotNull final Member member, @NotNull final Class<?>[] parameterTypes) {
+		if (DEFINE_HIDDEN_CLASS == null || !MiscUtil.isPubliclyAccessible(member) || !isLinkable(member.getDeclaringClass())) {
+			return false;
+		}
+		for (Class<?> parameterType : parameterTypes) {
+			if (!isLinkable(parameterType)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isLinkable(@NotNull final Class<?> type) {
+		return MiscUtil.isLinkableFrom(type, HiddenClassInvocationStrategy.class);
+	}
+
+	@Nullable
+	private static Invoker defineInvoker(@NotNull final byte[] classFile) {
+		try {
+			//noinspection ConstantConditions
+			final Lookup hiddenClassLookup = (Lookup) DEFINE_HIDDEN_CLASS.invoke(classFile, true);
+			return (Invoker) hiddenClassLookup.lookupClass().getConstructor().newInstance();
+		} catch (LinkageError | ReflectiveOperationException e) {
+			// for example a type in a module that isn't exported to this library
+			return null;
+		} catch (Throwable e) {
+			throw new IllegalStateException("unable to define invoker class", e);
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util;
+
+import lombok.experimental.UtilityClass;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The available {@link InvocationStrategy}s and which one to use for which target class.
+ * <p>
+ * {@link #METHOD_HANDLES} is used by default. A different strategy can be chosen for all targets with {@link #setDefaultStrategy(InvocationStrategy)},
+ * or for the methods and constructors declared by a specific class with {@link #setStrategy(Class, InvocationStrategy)}, for example
+ * {@link #HIDDEN_CLASSES} for the few classes on the hottest paths. When the chosen strategy can't invoke a target, {@link #METHOD_HANDLES} is tried
+ * and then {@link #REFLECTION}, which can invoke anything.
+ * <p>
+ * Strategies are applied when an invoker is created. Invokers are kept with the methods and constructors that
+ * {@link org.bbottema.javareflection.MethodUtils} caches, so choose strategies at startup, before the targets are first invoked.
+ */
+@UtilityClass
+public final class InvocationStrategies {
+
+	/**
+	 * Invokes targets with {@link Method#invoke(Object, Object...)} and {@link Constructor#newInstance(Object...)}.
+	 */
+	public static final InvocationStrategy REFLECTION = new InvocationStrategy() {
+		@NotNull
+		@Override
+		public Invoker createInvoker(@NotNull Method method) {
+			return new ReflectionInvoker(method, null);
+		}
+
+		@NotNull
+		@Override
+		public Invoker createInvoker(@NotNull Constructor<?> constructor) {
+			return new ReflectionInvoker(null, constructor);
+		}
+	};
+
+	/**
+	 * Invokes targets through a {@link java.lang.invoke.MethodHandle}, see {@link MethodHandleInvoker}.
+	 */
+	public static final InvocationStrategy METHOD_HANDLES = new InvocationStrategy() {
+		@Nullable
+		@Override
+		public Invoker createInvoker(@NotNull Method method) {
+			return MethodHandleInvoker.forMethod(method);
+		}
+
+		@Nullable
+		@Override
+		public Invoker createInvoker(@NotNull Constructor<?> constructor) {
+			return MethodHandleInvoker.forConstructor(constructor);
+		}
+	};
+
+	/**
+	 * Invokes targets through a class generated for each target, defined as a hidden class. Fastest once the JIT has inlined it, but generating
+	 * the classes takes time and memory. Requires Java 15 or later, see {@link #isHiddenClassesSupported()}.
+	 *
+	 * @see HiddenClassInvocationStrategy
+	 */
+	public static final InvocationStrategy HIDDEN_CLASSES = new HiddenClassInvocationStrategy();
+
+	private static volatile InvocationStrategy defaultStrategy = METHOD_HANDLES;
+
+	/**
+	 * Strategies chosen for specific classes; holds <code>null</code> for classes that use the default strategy.
+	 */
+	private static final ClassValue<AtomicReference<InvocationStrategy>> STRATEGIES = new ClassValue<AtomicReference<InvocationStrategy>>() {
+		@Override
+		protected AtomicReference<InvocationStrategy> computeValue(Class<?> type) {
+			return new AtomicReference<>();
+		}
+	};
+
+	/**
+	 * Invokers for public methods by declaring class, used when only a {@link Method} is available to cache them with. Limited to methods that
+	 * are accessible without {@link java.lang.reflect.AccessibleObject#setAccessible(boolean)}, since equal <code>Method</code> instances can differ
+	 * in whether they are accessible. Replaced when the default strategy changes.
+	 */
+	private static volatile ClassValue<ConcurrentMap<Method, Invoker>> publicMethodInvokers = createPublicMethodInvokers();
+
+	/**
+	 * @return Whether the runtime supports {@link #HIDDEN_CLASSES}. If not, that strategy leaves all targets to the next strategy.
+	 */
+	public static boolean isHiddenClassesSupported() {
+		return ((HiddenClassInvocationStrategy) HIDDEN_CLASSES).isAvailable();
+	}
+
+	@NotNull
+	public static InvocationStrategy getDefaultStrategy() {
+		return defaultStrategy;
+	}
+
+	/**
+	 * Sets the strategy for all classes that don't have a strategy of their own.
+	 */
+	public static void setDefaultStrategy(@NotNull final InvocationStrategy strategy) {
+		defaultStrategy = strategy;
+		publicMethodInvokers = createPublicMethodInvokers();
+	}
+
+	/**
+	 * @return The strategy used for the methods and constructors declared by the given class.
+	 */
+	@NotNull
+	public static InvocationStrategy getStrategy(@NotNull final Class<?> targetClass) {
+		final InvocationStrategy strategy = STRATEGIES.get(targetClass).get();
+		return strategy != null ? strategy : defaultStrategy;
+	}
+
+	/**
+	 * Sets the strategy for the methods and constructors declared by the given class. Methods that the class inherits use the strategy of the
+	 * class that declares them.
+	 *
+	 * @param strategy The strategy to use, or <code>null</code> to use the default strategy again.
+	 */
+	public static void setStrategy(@NotNull final Class<?> targetClass, @Nullable final InvocationStrategy strategy) {
+		STRATEGIES.get(targetClass).set(strategy);
+		publicMethodInvokers.get(targetClass).clear();
+	}
+
+	/**
+	 * @return An invoker for the method, created by the strategy for its declaring class or, if that strategy can't invoke it, by the next strategy.
+	 */
+	@NotNull
+	public static Invoker createInvoker(@NotNull final Method method) {
+		final InvocationStrategy strategy = getStrategy(method.getDeclaringClass());
+		Invoker invoker = strategy.createInvoker(method);
+		if (invoker == null && strategy != METHOD_HANDLES) {
+			invoker = METHOD_HANDLES.createInvoker(method);
+		}
+		return invoker != null ? invoker : REFLECTION.createInvoker(method);
+	}
+
+	/**
+	 * Like {@link #createInvoker(Method)}, but also for methods that can't be accessed from this library as they are, such as private methods or
+	 * public methods of a private class. For those, the invoker is created for a copy of the method that is made accessible with
+	 * {@link AccessibleObject#setAccessible(boolean)}, so the given method, which may be shared with other callers, stays as it is. When the
+	 * copy can't be made accessible, for example because its module doesn't open the package, the invoker is created for the method itself and
+	 * reports the access problem once invoked.
+	 */
+	@NotNull
+	public static Invoker createAccessibleInvoker(@NotNull final Method method) {
+		if (Modifier.isPublic(method.getModifiers()) && Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+			return createInvoker(method);
+		}
+		try {
+			for (final Method declaredMethod : method.getDeclaringClass().getDeclaredMethods()) {
+				if (declaredMethod.equals(method)) {
+					declaredMethod.setAccessible(true);
+					return createInvoker(declaredMethod);
+				}
+			}
+		} catch (RuntimeException e) {
+			// SecurityException, or InaccessibleObjectException on Java 9 and later
+		}
+		return createInvoker(method);
+	}
+
+	/**
+	 * @return An invoker for the constructor, created by the strategy for its class or, if that strategy can't invoke it, by the next strategy.
+	 */
+	@NotNull
+	public static Invoker createInvoker(@NotNull final Constructor<?> constructor) {
+		final InvocationStrategy strategy = getStrategy(constructor.getDeclaringClass());
+		Invoker invoker = strategy.createInvoker(constructor);
+		if (invoker == null && strategy != METHOD_HANDLES) {
+			invoker = METHOD_HANDLES.createInvoker(constructor);
+		}
+		return invoker != null ? invoker : REFLECTION.createInvoker(constructor);
+	}
+
+	/**
+	 * Like {@link #createInvoker(Method)}, but caches the invoker with the declaring class of the method. Only applies to public methods of public
+	 * classes that have not been made accessible explicitly; returns <code>null</code> for other methods.
+	 */
+	@Nullable
+	@SuppressWarnings("deprecation")
+	public static Invoker forPublicMethod(@NotNull final Method method) {
+		if (method.isAccessible() || !Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+			return null;
+		}
+		final ConcurrentMap<Method, Invoker> invokers = publicMethodInvokers.get(method.getDeclaringClass());
+		final Invoker invoker = invokers.get(method);
+		if (invoker != null) {
+			return invoker;
+		}
+		final Invoker createdInvoker = createInvoker(method);
+		final Invoker existingInvoker = invokers.putIfAbsent(method, createdInvoker);
+		return existingInvoker != null ? existingInvoker : createdInvoker;
+	}
+
+	@NotNull
+	private static ClassValue<ConcurrentMap<Method, Invoker>> createPublicMethodInvokers() {
+		return new ClassValue<ConcurrentMap<Method, Invoker>>() {
+			@Override
+			protected ConcurrentMap<Method, Invoker> computeValue(Class<?> type) {
+				return new ConcurrentHashMap<>();
+			}
+		};
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Creates the {@link Invoker}s that {@link org.bbottema.javareflection.MethodUtils} and {@link org.bbottema.javareflection.BeanUtils} call methods
+ * and constructors with. See {@link InvocationStrategies} for the available strategies and how to choose one per target class.
+ */
+public interface InvocationStrategy {
+
+	/**
+	 * @return An invoker for the method, or <code>null</code> if this strategy can't invoke it, in which case the next strategy is tried.
+	 */
+	@Nullable
+	Invoker createInvoker(@NotNull Method method);
+
+	/**
+	 * @return An invoker for the constructor, or <code>null</code> if this strategy can't invoke it, in which case the next strategy is tried.
+	 */
+	@Nullable
+	Invoker createInvoker(@NotNull Constructor<?> constructor);
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Calls a single {@link Method} or {@link Constructor}, as created by an {@link InvocationStrategy}. Invokers behave like reflection: exceptions
+ * thrown by the target are wrapped in an {@link InvocationTargetException} and arguments of the wrong type result in an
+ * {@link IllegalArgumentException}.
+ */
+public interface Invoker {
+
+	/**
+	 * Invokes the method, similar to {@link Method#invoke(Object, Object...)}.
+	 *
+	 * @param subject The object to invoke the method on, ignored for static methods.
+	 * @param args The arguments, which can be <code>null</code> for methods without parameters.
+	 * @return The value returned by the method, or <code>null</code> for void methods.
+	 * @throws IllegalStateException When this invoker calls a constructor.
+	 */
+	@Nullable
+	Object invoke(@Nullable Object subject, @Nullable Object[] args) throws IllegalAccessException, InvocationTargetException;
+
+	/**
+	 * Invokes the constructor, similar to {@link Constructor#newInstance(Object...)}.
+	 *
+	 * @param args The arguments, which can be <code>null</code> for constructors without parameters.
+	 * @return The constructed object.
+	 * @throws IllegalStateException When this invoker calls a method.
+	 */
+	@NotNull
+	Object newInstance(@Nullable Object[] args) throws IllegalAccessException, InvocationTargetException, InstantiationException;
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the class file of an {@link Invoker} that calls a single method or constructor directly, for {@link HiddenClassInvocationStrategy}. For
+ * a method <code>String Foo.bar(int)</code>, the generated class is equivalent to:
+ * <pre>
+ * public final class HiddenInvoker implements Invoker {
+ * 	public Object invoke(Object subject, Object[] args) throws InvocationTargetException {
+ * 		Foo receiver = (Foo) subject;
+ * 		int arg0 = ((Integer) args[0]).intValue();
+ * 		try {
+ * 			return receiver.bar(arg0);
+ * 		} catch (Throwable e) {
+ * 			throw new InvocationTargetException(e);
+ * 		}
+ * 	}
+ * }
+ * </pre>
+ * Only the target call is covered by the exception handler, so casting problems are not mistaken for exceptions thrown by the target. Arguments
+ * are expected to be checked beforehand (see {@link GeneratedInvoker}). The method of {@link Invoker} that doesn't apply to the target is left
+ * unimplemented.
+ * <p>
+ * The class refers to the target and its parameter types by name, so they must be accessible from the package of this class.
+ */
+final class InvokerClassWriter {
+
+	private static final String CLASS_NAME = InvokerClassWriter.class.getPackage().getName().replace('.', '/') + "/HiddenInvoker";
+	private static final int CLASS_FILE_VERSION = 52; // Java 8
+
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+
+	private static final int ACONST_NULL = 0x01;
+	private static final int BIPUSH = 0x10;
+	private static final int SIPUSH = 0x11;
+	private static final int ALOAD_0 = 0x2A;
+	private static final int ALOAD_1 = 0x2B;
+	private static final int ALOAD_2 = 0x2C;
+	private static final int AALOAD = 0x32;
+	private static final int DUP = 0x59;
+	private static final int DUP_X1 = 0x5A;
+	private static final int SWAP = 0x5F;
+	private static final int ARETURN = 0xB0;
+	private static final int RETURN = 0xB1;
+	private static final int INVOKEVIRTUAL = 0xB6;
+	private static final int INVOKESPECIAL = 0xB7;
+	private static final int INVOKESTATIC = 0xB8;
+	private static final int INVOKEINTERFACE = 0xB9;
+	private static final int NEW = 0xBB;
+	private static final int ATHROW = 0xBF;
+	private static final int CHECKCAST = 0xC0;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	private static final int SAME_LOCALS_1_STACK_ITEM_FRAME = 64;
+	private static final int SAME_LOCALS_1_STACK_ITEM_FRAME_EXTENDED = 247;
+	private static final int ITEM_OBJECT = 7;
+
+	private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream constantPool = new DataOutputStream(constantPoolBytes);
+	private final Map<String, Integer> constantIndexes = new HashMap<>();
+	private int constantCount = 1;
+
+	private InvokerClassWriter() {
+	}
+
+	@NotNull
+	static byte[] writeInvokerClass(@NotNull final Method method) {
+		return new InvokerClassWriter().writeClass(method, null);
+	}
+
+	@NotNull
+	static byte[] writeInvokerClass(@NotNull final Constructor<?> constructor) {
+		return new InvokerClassWriter().writeClass(null, constructor);
+	}
+
+	@NotNull
+	private byte[] writeClass(final Method method, final Constructor<?> constructor) {
+		try {
+			final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+			final DataOutputStream methods = new DataOutputStream(methodBytes);
+			writeDefaultConstructor(methods);
+			if (method != null) {
+				writeInvokeMethod(methods, method);
+			} else {
+				writeNewInstanceMethod(methods, constructor);
+			}
+			final int thisClass = classConstant(CLASS_NAME);
+			final int superClass = classConstant("java/lang/Object");
+			final int invokerInterface = classConstant(internalName(Invoker.class));
+
+			final ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+			final DataOutputStream out = new DataOutputStream(classBytes);
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(CLASS_FILE_VERSION);
+			out.writeShort(constantCount);
+			constantPool.flush();
+			constantPoolBytes.writeTo(out);
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(1);
+			out.writeShort(invokerInterface);
+			out.writeShort(0); // fields
+			out.writeShort(2); // methods
+			methods.flush();
+			methodBytes.writeTo(out);
+			out.writeShort(0); // attributes
+			out.flush();
+			return classBytes.toByteArray();
+		} catch (IOException e) {
+			throw new AssertionError("writing to memory failed", e);
+		}
+	}
+
+	private void writeDefaultConstructor(final DataOutputStream methods) throws IOException {
+		final ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+		final DataOutputStream code = new DataOutputStream(codeBytes);
+		code.writeByte(ALOAD_0);
+		code.writeByte(INVOKESPECIAL);
+		code.writeShort(methodConstant(CONSTANT_METHODREF, "java/lang/Object", "<init>", "()V"));
+		code.writeByte(RETURN);
+		writeMethod(methods, "<init>", "()V", 1, 1, codeBytes.toByteArray());
+	}
+
+	/**
+	 * <code>Object invoke(Object subject, Object[] args)</code>: the subject is local 1, the arguments local 2.
+	 */
+	private void writeInvokeMethod(final DataOutputStream methods, final Method method) throws IOException {
+		final ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+		final DataOutputStream code = new DataOutputStream(codeBytes);
+		final Class<?> owner = method.getDeclaringClass();
+		final boolean isStatic = Modifier.isStatic(method.getModifiers());
+		if (!isStatic) {
+			code.writeByte(ALOAD_1);
+			code.writeByte(CHECKCAST);
+			code.writeShort(classConstant(internalName(owner)));
+		}
+		final int argumentSlots = writeArguments(code, ALOAD_2, method.getParameterTypes());
+		final String descriptor = MethodType.methodType(method.getReturnType(), method.getParameterTypes()).toMethodDescriptorString();
+
+		final int tryStart = code.size();
+		if (isStatic) {
+			code.writeByte(INVOKESTATIC);
+			code.writeShort(methodConstant(owner.isInterface() ? CONSTANT_INTERFACE_METHODREF : CONSTANT_METHODREF, internalName(owner), method.getName(), descriptor));
+		} else if (owner.isInterface()) {
+			code.writeByte(INVOKEINTERFACE);
+			code.writeShort(methodConstant(CONSTANT_INTERFACE_METHODREF, internalName(owner), method.getName(), descriptor));
+			code.writeByte(1 + argumentSlots);
+			code.writeByte(0);
+		} else {
+			code.writeByte(INVOKEVIRTUAL);
+			code.writeShort(methodConstant(CONSTANT_METHODREF, internalName(owner), method.getName(), descriptor));
+		}
+		final int tryEnd = code.size();
+
+		writeBoxedReturn(code, method.getReturnType());
+		final int handler = writeExceptionHandler(code);
+		writeMethod(methods, "invoke", "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;", 4 + argumentSlots, 3, codeBytes.toByteArray(),
+				tryStart, tryEnd, handler);
+	}
+
+	/**
+	 * <code>Object newInstance(Object[] args)</code>: the arguments are local 1.
+	 */
+	private void writeNewInstanceMethod(final DataOutputStream methods, final Constructor<?> constructor) throws IOException {
+		final ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+		final DataOutputStream code = new DataOutputStream(codeBytes);
+		final String owner = internalName(constructor.getDeclaringClass());
+		code.writeByte(NEW);
+		code.writeShort(classConstant(owner));
+		code.writeByte(DUP);
+		final int argumentSlots = writeArguments(code, ALOAD_1, constructor.getParameterTypes());
+		final String descriptor = MethodType.methodType(void.class, constructor.getParameterTypes()).toMethodDescriptorString();
+
+		final int tryStart = code.size();
+		code.writeByte(INVOKESPECIAL);
+		code.writeShort(methodConstant(CONSTANT_METHODREF, owner, "<init>", descriptor));
+		final int tryEnd = code.size();
+
+		code.writeByte(ARETURN);
+		final int handler = writeExceptionHandler(code);
+		writeMethod(methods, "newInstance", "([Ljava/lang/Object;)Ljava/lang/Object;", 4 + argumentSlots, 2, codeBytes.toByteArray(),
+				tryStart, tryEnd, handler);
+	}
+
+	/**
+	 * Pushes the arguments from the array, cast or unboxed to the parameter types.
+	 *
+	 * @return The number of stack slots the arguments take.
+	 */
+	private int writeArguments(final DataOutputStream code, final int loadArgumentArray, final Class<?>[] parameterTypes) throws IOException {
+		int slots = 0;
+		for (int i = 0; i < parameterTypes.length; i++) {
+			final Class<?> parameterType = parameterTypes[i];
+			code.writeByte(loadArgumentArray);
+			if (i <= Byte.MAX_VALUE) {
+				code.writeByte(BIPUSH);
+				code.writeByte(i);
+			} else {
+				code.writeByte(SIPUSH);
+				code.writeShort(i);
+			}
+			code.writeByte(AALOAD);
+			if (parameterType.isPrimitive()) {
+				final Class<?> wrapperType = MethodType.methodType(parameterType).wrap().returnType();
+				code.writeByte(CHECKCAST);
+				code.writeShort(classConstant(internalName(wrapperType)));
+				code.writeByte(INVOKEVIRTUAL);
+				code.writeShort(methodConstant(CONSTANT_METHODREF, internalName(wrapperType), parameterType.getName() + "Value",
+						MethodType.methodType(parameterType).toMethodDescriptorString()));
+			} else if (parameterType != Object.class) {
+				code.writeByte(CHECKCAST);
+				code.writeShort(classConstant(internalName(parameterType)));
+			}
+			slots += parameterType == long.class || parameterType == double.class ? 2 : 1;
+		}
+		return slots;
+	}
+
+	private void writeBoxedReturn(final DataOutputStream code, final Class<?> returnType) throws IOException {
+		if (returnType == void.class) {
+			code.writeByte(ACONST_NULL);
+		} else if (returnType.isPrimitive()) {
+			final Class<?> wrapperType = MethodType.methodType(returnType).wrap().returnType();
+			code.writeByte(INVOKESTATIC);
+			code.writeShort(methodConstant(CONSTANT_METHODREF, internalName(wrapperType), "valueOf",
+					MethodType.methodType(wrapperType, returnType).toMethodDescriptorString()));
+		}
+		code.writeByte(ARETURN);
+	}
+
+	/**
+	 * Wraps the {@link Throwable} on the stack in an {@link InvocationTargetException} and throws that.
+	 *
+	 * @return The offset of the handler.
+	 */
+	private int writeExceptionHandler(final DataOutputStream code) throws IOException {
+		final int handler = code.size();
+		final String exceptionType = internalName(InvocationTargetException.class);
+		code.writeByte(NEW);
+		code.writeShort(classConstant(exceptionType));
+		code.writeByte(DUP_X1);
+		code.writeByte(SWAP);
+		code.writeByte(INVOKESPECIAL);
+		code.writeShort(methodConstant(CONSTANT_METHODREF, exceptionType, "<init>", "(Ljava/lang/Throwable;)V"));
+		code.writeByte(ATHROW);
+		return handler;
+	}
+
+	private void writeMethod(final DataOutputStream methods, final String name, final String descriptor, final int maxStack, final int maxLocals,
+			final byte[] code, final int... exceptionRange) throws IOException {
+		final boolean catchesExceptions = exceptionRange.length == 3;
+		methods.writeShort(ACC_PUBLIC);
+		methods.writeShort(utf8Constant(name));
+		methods.writeShort(utf8Constant(descriptor));
+		methods.writeShort(1);
+
+		final ByteArrayOutputStream attributeBytes = new ByteArrayOutputStream();
+		final DataOutputStream attribute = new DataOutputStream(attributeBytes);
+		attribute.writeShort(maxStack);
+		attribute.writeShort(maxLocals);
+		attribute.writeInt(code.length);
+		attribute.write(code);
+		if (catchesExceptions) {
+			final int throwableClass = classConstant("java/lang/Throwable");
+			attribute.writeShort(1);
+			attribute.writeShort(exceptionRange[0]);
+			attribute.writeShort(exceptionRange[1]);
+			attribute.writeShort(exceptionRange[2]);
+			attribute.writeShort(throwableClass);
+			// the handler is the only branch target, with the method's initial locals and the exception on the stack
+			attribute.writeShort(1);
+			attribute.writeShort(utf8Constant("StackMapTable"));
+			final int handler = exceptionRange[2];
+			attribute.writeInt(handler <= 63 ? 6 : 8);
+			attribute.writeShort(1);
+			if (handler <= 63) {
+				attribute.writeByte(SAME_LOCALS_1_STACK_ITEM_FRAME + handler);
+			} else {
+				attribute.writeByte(SAME_LOCALS_1_STACK_ITEM_FRAME_EXTENDED);
+				attribute.writeShort(handler);
+			}
+			attribute.writeByte(ITEM_OBJECT);
+			attribute.writeShort(throwableClass);
+		} else {
+			attribute.writeShort(0);
+			attribute.writeShort(0);
+		}
+		attribute.flush();
+
+		methods.writeShort(utf8Constant("Code"));
+		methods.writeInt(attributeBytes.size());
+		attributeBytes.writeTo(methods);
+	}
+
+	private int utf8Constant(final String value) throws IOException {
+		final String key = "U" + value;
+		Integer index = constantIndexes.get(key);
+		if (index == null) {
+			constantPool.writeByte(CONSTANT_UTF8);
+			constantPool.writeUTF(value);
+			index = addConstant(key);
+		}
+		return index;
+	}
+
+	private int classConstant(final String internalName) throws IOException {
+		final String key = "C" + internalName;
+		Integer index = constantIndexes.get(key);
+		if (index == null) {
+			final int name = utf8Constant(internalName);
+			constantPool.writeByte(CONSTANT_CLASS);
+			constantPool.writeShort(name);
+			index = addConstant(key);
+		}
+		return index;
+	}
+
+	private int methodConstant(final int tag, final String owner, final String name, final String descriptor) throws IOException {
+		final String key = "M" + tag + owner + "." + name + descriptor;
+		Integer index = constantIndexes.get(key);
+		if (index == null) {
+			final int ownerClass = classConstant(owner);
+			final int nameAndType = nameAndTypeConstant(name, descriptor);
+			constantPool.writeByte(tag);
+			constantPool.writeShort(ownerClass);
+			constantPool.writeShort(nameAndType);
+			index = addConstant(key);
+		}
+		return index;
+	}
+
+	private int nameAndTypeConstant(final String name, final String descriptor) throws IOException {
+		final String key = "N" + name + descriptor;
+		Integer index = constantIndexes.get(key);
+		if (index == null) {
+			final int nameIndex = utf8Constant(name);
+			final int descriptorIndex = utf8Constant(descriptor);
+			constantPool.writeByte(CONSTANT_NAME_AND_TYPE);
+			constantPool.writeShort(nameIndex);
+			constantPool.writeShort(descriptorIndex);
+			index = addConstant(key);
+		}
+		return index;
+	}
+
+	private int addConstant(final String key) {
+		final int index = constantCount++;
+		constantIndexes.put(key, index);
+		return index;
+	}
+
+	/**
+	 * @return The name of the type as used in class files, which for arrays is their descriptor.
+	 */
+	@NotNull
+	private static String internalName(@NotNull final Class<?> type) {
+		return type.getName().replace('.', '/');
+	}
+}
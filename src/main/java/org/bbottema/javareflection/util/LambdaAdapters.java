@@ -0,0 +1,261 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util;
+
+import lombok.experimental.UtilityClass;
+import org.bbottema.javareflection.util.cache.CacheAnchors;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.lang.String.format;
+
+/**
+ * Turns a {@link Method} or {@link Constructor} into an instance of a functional interface, so it can be called like a lambda rather than through
+ * reflection.
+ * <p>
+ * Public members of public types that are visible from this library are adapted with {@link LambdaMetafactory}, which generates the same kind of
+ * class the compiler does for a method reference. Once the JIT has inlined it, a call through such an adapter costs the same as a direct call.
+ * Other members (for example methods made accessible with {@link AccessibleObject#setAccessible(boolean)}, or types from a child class loader) are
+ * adapted with {@link MethodHandleProxies#asInterfaceInstance(Class, MethodHandle)}, which works for any accessible member but is considerably slower.
+ * <p>
+ * Instance methods take their receiver as the first parameter of the functional interface, like the method reference <code>String::length</code>
+ * does for a <code>Function&lt;String, Integer&gt;</code>. Arguments are cast, boxed and unboxed as needed, but not converted.
+ * <p>
+ * Adapters are cached per member and functional interface, with the type whose class loader sees both (see {@link CacheAnchors}).
+ */
+@UtilityClass
+public final class LambdaAdapters {
+
+	private static final ClassValue<ConcurrentMap<AdapterKey, Object>> ADAPTERS = new ClassValue<ConcurrentMap<AdapterKey, Object>>() {
+		@Override
+		protected ConcurrentMap<AdapterKey, Object> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	/**
+	 * @param method The method to call. Instance methods take the object to call the method on as first argument.
+	 * @param functionalInterface An interface with a single abstract method, whose parameters match those of the method.
+	 * @return An instance of the functional interface that calls the method.
+	 * @throws IllegalArgumentException When the type is not a functional interface, its signature doesn't fit the method, or the method isn't
+	 * accessible from this library.
+	 */
+	@NotNull
+	public static <F> F adapt(@NotNull final Method method, @NotNull final Class<F> functionalInterface) {
+		return functionalInterface.cast(obtainAdapter(method, functionalInterface));
+	}
+
+	/**
+	 * @param constructor The constructor to call. The abstract method of the functional interface should return the constructed type or one of its
+	 * super types.
+	 * @param functionalInterface An interface with a single abstract method, whose parameters match those of the constructor.
+	 * @return An instance of the functional interface that calls the constructor.
+	 * @throws IllegalArgumentException See {@link #adapt(Method, Class)}, or when the constructor belongs to an abstract class.
+	 */
+	@NotNull
+	public static <F> F adapt(@NotNull final Constructor<?> constructor, @NotNull final Class<F> functionalInterface) {
+		if (Modifier.isAbstract(constructor.getDeclaringClass().getModifiers())) {
+			throw new IllegalArgumentException("cannot instantiate abstract " + constructor.getDeclaringClass());
+		}
+		return functionalInterface.cast(obtainAdapter(constructor, functionalInterface));
+	}
+
+	@NotNull
+	@SuppressWarnings("deprecation")
+	private static Object obtainAdapter(@NotNull final AccessibleObject member, @NotNull final Class<?> functionalInterface) {
+		final Class<?> anchor = CacheAnchors.determineAnchor(((Member) member).getDeclaringClass(), functionalInterface);
+		if (anchor == null) {
+			return createAdapter(member, functionalInterface);
+		}
+		// equal members can differ in whether they are accessible, which determines whether they can be adapted
+		final AdapterKey key = new AdapterKey(member, functionalInterface, member.isAccessible());
+		final ConcurrentMap<AdapterKey, Object> adapters = ADAPTERS.get(anchor);
+		final Object adapter = adapters.get(key);
+		if (adapter != null) {
+			return adapter;
+		}
+		final Object createdAdapter = createAdapter(member, functionalInterface);
+		final Object existingAdapter = adapters.putIfAbsent(key, createdAdapter);
+		return existingAdapter != null ? existingAdapter : createdAdapter;
+	}
+
+	@NotNull
+	private static Object createAdapter(@NotNull final AccessibleObject member, @NotNull final Class<?> functionalInterface) {
+		final Method abstractMethod = findAbstractMethod(functionalInterface);
+		final MethodHandle implementation = unreflect(member);
+		final MethodType instantiatedType = determineInstantiatedType(member, implementation.type(), abstractMethod);
+		if (canGenerateLambda(member, functionalInterface, instantiatedType)) {
+			try {
+				final MethodType abstractType = MethodType.methodType(abstractMethod.getReturnType(), abstractMethod.getParameterTypes());
+				return LambdaMetafactory.metafactory(MethodHandles.lookup(), abstractMethod.getName(), MethodType.methodType(functionalInterface),
+						abstractType, implementation, instantiatedType).getTarget().invoke();
+			} catch (LambdaConversionException e) {
+				throw new IllegalArgumentException(format("%s does not fit %s", member, abstractMethod), e);
+			} catch (Throwable e) {
+				throw new IllegalStateException(format("unable to adapt %s to %s", member, functionalInterface), e);
+			}
+		}
+		try {
+			return MethodHandleProxies.asInterfaceInstance(functionalInterface, implementation.asFixedArity());
+		} catch (WrongMethodTypeException e) {
+			throw new IllegalArgumentException(format("%s does not fit %s", member, abstractMethod), e);
+		}
+	}
+
+	/**
+	 * @return The single abstract method of the functional interface, ignoring abstract redeclarations of public {@link Object} methods.
+	 */
+	@NotNull
+	private static Method findAbstractMethod(@NotNull final Class<?> functionalInterface) {
+		if (!functionalInterface.isInterface()) {
+			throw new IllegalArgumentException(format("%s is not an interface", functionalInterface));
+		}
+		Method abstractMethod = null;
+		for (Method method : functionalInterface.getMethods()) {
+			if (Modifier.isAbstract(method.getModifiers()) && !isObjectMethod(method)) {
+				if (abstractMethod != null && !isSameSignature(abstractMethod, method)) {
+					throw new IllegalArgumentException(format("%s is not a functional interface, it has several abstract methods", functionalInterface));
+				}
+				abstractMethod = method;
+			}
+		}
+		if (abstractMethod == null) {
+			throw new IllegalArgumentException(format("%s is not a functional interface, it has no abstract methods", functionalInterface));
+		}
+		return abstractMethod;
+	}
+
+	private static boolean isObjectMethod(@NotNull final Method method) {
+		try {
+			return Modifier.isPublic(Object.class.getMethod(method.getName(), method.getParameterTypes()).getModifiers());
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	private static boolean isSameSignature(@NotNull final Method method, @NotNull final Method otherMethod) {
+		return method.getName().equals(otherMethod.getName()) && Arrays.equals(method.getParameterTypes(), otherMethod.getParameterTypes());
+	}
+
+	@NotNull
+	private static MethodHandle unreflect(@NotNull final AccessibleObject member) {
+		try {
+			return member instanceof Method
+					? MethodHandles.lookup().unreflect((Method) member)
+					: MethodHandles.lookup().unreflectConstructor((Constructor<?>) member);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException(format("%s is not accessible, make it accessible first", member), e);
+		}
+	}
+
+	/**
+	 * Determines the type the abstract method is specialized to for the member, as the compiler does for generic functional interfaces: parameters
+	 * and return type of the abstract method are narrowed to the (boxed) types of the member where these are more specific.
+	 */
+	@NotNull
+	private static MethodType determineInstantiatedType(@NotNull final AccessibleObject member, @NotNull final MethodType implementationType,
+			@NotNull final Method abstractMethod) {
+		final Class<?>[] abstractParameterTypes = abstractMethod.getParameterTypes();
+		if (abstractParameterTypes.length != implementationType.parameterCount()) {
+			throw new IllegalArgumentException(format("%s does not fit %s, expected %d parameters", member, abstractMethod,
+					implementationType.parameterCount()));
+		}
+		final Class<?>[] parameterTypes = new Class<?>[abstractParameterTypes.length];
+		for (int i = 0; i < abstractParameterTypes.length; i++) {
+			parameterTypes[i] = narrow(abstractParameterTypes[i], implementationType.parameterType(i));
+		}
+		final Class<?> abstractReturnType = abstractMethod.getReturnType();
+		if (abstractReturnType != void.class && implementationType.returnType() == void.class) {
+			throw new IllegalArgumentException(format("%s does not fit %s, it returns nothing", member, abstractMethod));
+		}
+		final Class<?> returnType = abstractReturnType == void.class ? void.class : narrow(abstractReturnType, implementationType.returnType());
+		return MethodType.methodType(returnType, parameterTypes);
+	}
+
+	@NotNull
+	private static Class<?> narrow(@NotNull final Class<?> abstractType, @NotNull final Class<?> implementationType) {
+		if (abstractType.isPrimitive()) {
+			return abstractType;
+		}
+		final Class<?> boxedType = MethodType.methodType(implementationType).wrap().returnType();
+		return abstractType.isAssignableFrom(boxedType) ? boxedType : abstractType;
+	}
+
+	/**
+	 * The generated class is defined with the class loader of this library and refers to the member and types by name, so all of them must be
+	 * public and visible from here.
+	 */
+	private static boolean canGenerateLambda(@NotNull final AccessibleObject member, @NotNull final Class<?> functionalInterface,
+			@NotNull final MethodType instantiatedType) {
+		if (!MiscUtil.isPubliclyAccessible((Member) member) || !isLinkable(((Member) member).getDeclaringClass()) || !isLinkable(functionalInterface)
+				|| !isLinkable(instantiatedType.returnType())) {
+			return false;
+		}
+		for (Class<?> parameterType : instantiatedType.parameterArray()) {
+			if (!isLinkable(parameterType)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isLinkable(@NotNull final Class<?> type) {
+		return MiscUtil.isLinkableFrom(type, LambdaAdapters.class);
+	}
+
+	private static final class AdapterKey {
+		private final AccessibleObject member;
+		private final Class<?> functionalInterface;
+		private final boolean accessible;
+
+		AdapterKey(AccessibleObject member, Class<?> functionalInterface, boolean accessible) {
+			this.member = member;
+			this.functionalInterface = functionalInterface;
+			this.accessible = accessible;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			} else if (!(o instanceof AdapterKey)) {
+				return false;
+			}
+			final AdapterKey other = (AdapterKey) o;
+			return functionalInterface == other.functionalInterface && accessible == other.accessible && member.equals(other.member);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * member.hashCode() + functionalInterface.hashCode()) + (accessible ? 1 : 0);
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Invokes a {@link Method} or {@link Constructor} through a {@link MethodHandle} that is adapted once to take its arguments as an
+ * <code>Object[]</code>, which saves most of the work {@link Method#invoke(Object, Object...)} does on every call.
+ * <p>
+ * Behaves like reflection: exceptions thrown by the method are wrapped in an {@link InvocationTargetException}. Calls with arguments that are
+ * not of the exact parameter type (or its wrapper type) are handed to reflection, which widens primitives or reports the mismatch the usual way.
+ * <p>
+ * Method handles are only created for methods that are accessible from this library (public methods, or methods made accessible with
+ * {@link java.lang.reflect.AccessibleObject#setAccessible(boolean)}). For other methods the factory methods return <code>null</code>, so callers
+ * can fall back to reflection, which reports the access problem.
+ */
+public final class MethodHandleInvoker implements Invoker {
+
+	/**
+	 * Takes the receiver (ignored for static methods and constructors) and an <code>Object[]</code> of arguments and returns an <code>Object</code>.
+	 */
+	@NotNull
+	private final MethodHandle handle;
+	@Nullable
+	private final Method method;
+	@Nullable
+	private final Constructor<?> constructor;
+	@NotNull
+	private final ArgumentGuard argumentGuard;
+
+	private MethodHandleInvoker(@NotNull MethodHandle handle, @Nullable Method method, @Nullable Constructor<?> constructor) {
+		this.handle = handle;
+		this.method = method;
+		this.constructor = constructor;
+		this.argumentGuard = method != null ? new ArgumentGuard(method) : new ArgumentGuard(requireNonNull(constructor));
+	}
+
+	/**
+	 * @return An invoker for the method, or <code>null</code> if the method isn't accessible from this library.
+	 */
+	@Nullable
+	public static MethodHandleInvoker forMethod(@NotNull final Method method) {
+		try {
+			final MethodHandle target = MethodHandles.lookup().unreflect(method).asFixedArity();
+			final MethodHandle uniformTarget = Modifier.isStatic(method.getModifiers()) ? MethodHandles.dropArguments(target, 0, Object.class) : target;
+			return new MethodHandleInvoker(spread(uniformTarget, method.getParameterTypes().length), method, null);
+		} catch (IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return An invoker for the constructor, or <code>null</code> if the constructor isn't accessible from this library or belongs to an abstract
+	 * class.
+	 */
+	@Nullable
+	public static MethodHandleInvoker forConstructor(@NotNull final Constructor<?> constructor) {
+		if (Modifier.isAbstract(constructor.getDeclaringClass().getModifiers())) {
+			return null;
+		}
+		try {
+			final MethodHandle target = MethodHandles.lookup().unreflectConstructor(constructor).asFixedArity();
+			final MethodHandle uniformTarget = MethodHandles.dropArguments(target, 0, Object.class);
+			return new MethodHandleInvoker(spread(uniformTarget, constructor.getParameterTypes().length), null, constructor);
+		} catch (IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Invokes the method, similar to {@link Method#invoke(Object, Object...)}.
+	 *
+	 * @param subject The object to invoke the method on, ignored for static methods.
+	 * @param args The arguments, which can be <code>null</code> for methods without parameters.
+	 * @return The value returned by the method, or <code>null</code> for void methods.
+	 * @throws InvocationTargetException Wraps the exception thrown by the method.
+	 * @throws IllegalAccessException See {@link Method#invoke(Object, Object...)}.
+	 * @throws IllegalArgumentException See {@link Method#invoke(Object, Object...)}.
+	 * @throws NullPointerException When the method is an instance method and the subject is <code>null</code>.
+	 */
+	@Override
+	@Nullable
+	public Object invoke(@Nullable final Object subject, @Nullable final Object[] args) throws IllegalAccessException, InvocationTargetException {
+		if (method == null) {
+			throw new IllegalStateException("not a method invoker");
+		}
+		return argumentGuard.accepts(subject, args) ? invokeHandle(subject, args) : method.invoke(subject, args);
+	}
+
+	/**
+	 * Invokes the constructor, similar to {@link Constructor#newInstance(Object...)}.
+	 *
+	 * @see #invoke(Object, Object[])
+	 */
+	@Override
+	@NotNull
+	public Object newInstance(@Nullable final Object[] args) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+		if (constructor == null) {
+			throw new IllegalStateException("not a constructor invoker");
+		}
+		//noinspection ConstantConditions
+		return argumentGuard.accepts(null, args) ? invokeHandle(null, args) : constructor.newInstance(args);
+	}
+
+	@Nullable
+	private Object invokeHandle(@Nullable final Object subject, @Nullable final Object[] args) throws InvocationTargetException {
+		try {
+			return (Object) handle.invokeExact(subject, args);
+		} catch (Throwable e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	/**
+	 * @return A handle of type <code>(Object, Object[])Object</code> for a handle taking a receiver and the given number of parameters.
+	 */
+	@NotNull
+	private static MethodHandle spread(@NotNull final MethodHandle target, final int parameterCount) {
+		return target
+				.asType(MethodType.genericMethodType(parameterCount + 1))
+				.asSpreader(Object[].class, parameterCount);
+	}
+}
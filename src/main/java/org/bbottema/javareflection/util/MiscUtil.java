@@ -1,9 +1,32 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package org.bbottema.javareflection.util;
 
 import lombok.experimental.UtilityClass;
+import org.bbottema.javareflection.util.cache.CacheAnchors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -42,4 +65,69 @@ public final class MiscUtil {
 		}
 		return (T) o;
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * @return Whether code generated into the class loader and package of the linking class can refer to the type by name: the type (or its
+	 * element type) is primitive, or public and defined by the class loader of the linking class or one of its ancestors.
+	 */
+	public static boolean isLinkableFrom(Class<?> type, Class<?> linkingClass) {
+		Class<?> elementType = type;
+		while (elementType.isArray()) {
+			elementType = elementType.getComponentType();
+		}
+		return elementType.isPrimitive()
+				|| (Modifier.isPublic(elementType.getModifiers()) && CacheAnchors.determineAnchor(linkingClass, elementType) == linkingClass);
+	}
+	
+	/**
+	 * @return A new copy of the method or constructor, like the ones {@link Class#getDeclaredMethod(String, Class[])} returns, so that changing
+	 * the copy (for example with {@link AccessibleObject#setAccessible(boolean)}) doesn't change the instance it was copied from.
+	 */
+	@NotNull
+	public static <T extends AccessibleObject> T copyOf(T member) {
+		try {
+			if (member instanceof Constructor) {
+				final Constructor<?> constructor = (Constructor<?>) member;
+				return trustedCast(constructor.getDeclaringClass().getDeclaredConstructor(constructor.getParameterTypes()));
+			}
+			final Method method = (Method) member;
+			final Method copy = method.getDeclaringClass().getDeclaredMethod(method.getName(), method.getParameterTypes());
+			if (copy.equals(method)) {
+				return trustedCast(copy);
+			}
+			// a bridge method, which differs from the method it bridges to in return type only
+			for (final Method declaredMethod : method.getDeclaringClass().getDeclaredMethods()) {
+				if (declaredMethod.equals(method)) {
+					return trustedCast(declaredMethod);
+				}
+			}
+			throw new NoSuchMethodException(method.toString());
+		} catch (NoSuchMethodException e) {
+			throw new AssertionError("member not found on its own declaring class: " + member, e);
+		}
+	}
+	
+	/**
+	 * @return Whether the method or constructor can be accessed without {@link java.lang.reflect.AccessibleObject#setAccessible(boolean)}
+	 * from any class: it is public, its class is public and, on Java 9 and later, its package is exported to everyone.
+	 */
+	public static boolean isPubliclyAccessible(Member member) {
+		try {
+			if (member instanceof Constructor) {
+				final Constructor<?> constructor = (Constructor<?>) member;
+				MethodHandles.publicLookup().findConstructor(constructor.getDeclaringClass(), MethodType.methodType(void.class, constructor.getParameterTypes()));
+			} else {
+				final Method method = (Method) member;
+				final MethodType methodType = MethodType.methodType(method.getReturnType(), method.getParameterTypes());
+				if (Modifier.isStatic(method.getModifiers())) {
+					MethodHandles.publicLookup().findStatic(method.getDeclaringClass(), method.getName(), methodType);
+				} else {
+					MethodHandles.publicLookup().findVirtual(method.getDeclaringClass(), method.getName(), methodType);
+				}
+			}
+			return true;
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Invokes a {@link Method} or {@link Constructor} through plain reflection. Used by {@link InvocationStrategies#REFLECTION} and as the last resort
+ * when no other strategy can invoke the target.
+ */
+final class ReflectionInvoker implements Invoker {
+
+	@Nullable
+	private final Method method;
+	@Nullable
+	private final Constructor<?> constructor;
+
+	ReflectionInvoker(@Nullable final Method method, @Nullable final Constructor<?> constructor) {
+		this.method = method;
+		this.constructor = constructor;
+	}
+
+	@Override
+	@Nullable
+	public Object invoke(@Nullable final Object subject, @Nullable final Object[] args) throws IllegalAccessException, InvocationTargetException {
+		if (method == null) {
+			throw new IllegalStateException("not a method invoker");
+		}
+		return method.invoke(subject, args);
+	}
+
+	@Override
+	@NotNull
+	public Object newInstance(@Nullable final Object[] args) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+		if (constructor == null) {
+			throw new IllegalStateException("not a constructor invoker");
+		}
+		return constructor.newInstance(args);
+	}
+}
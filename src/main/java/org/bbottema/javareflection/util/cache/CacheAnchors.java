@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util.cache;
+
+import lombok.experimental.UtilityClass;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Helps caches that store their entries with the types involved (using {@link ClassValue}) pick the type to store an entry with, so that
+ * the cache never keeps a type reachable after its class loader has been discarded.
+ */
+@UtilityClass
+public final class CacheAnchors {
+	
+	/**
+	 * Determines which type an entry involving the given types should be cached with: the type with the class loader that is the same as or a
+	 * descendant of the class loaders of all other types. Caching the entry anywhere else would keep types reachable after their class loader
+	 * has been discarded.
+	 *
+	 * @param type The type to anchor on if none of the other types come from a more specific class loader.
+	 * @param types Additional types involved in the entry, <code>null</code> elements are ignored.
+	 * @return The type to cache the entry with, or <code>null</code> if some of the types come from unrelated class loaders.
+	 */
+	@Nullable
+	public static Class<?> determineAnchor(Class<?> type, Class<?>... types) {
+		Class<?> anchor = type;
+		ClassLoader anchorLoader = type.getClassLoader();
+		for (Class<?> otherType : types) {
+			if (otherType != null) {
+				final ClassLoader otherLoader = otherType.getClassLoader();
+				if (otherLoader != anchorLoader) {
+					if (isSameOrAncestor(anchorLoader, otherLoader)) {
+						anchor = otherType;
+						anchorLoader = otherLoader;
+					} else if (!isSameOrAncestor(otherLoader, anchorLoader)) {
+						return null;
+					}
+				}
+			}
+		}
+		return anchor;
+	}
+	
+	private static boolean isSameOrAncestor(@Nullable ClassLoader candidateAncestor, @Nullable ClassLoader classLoader) {
+		if (candidateAncestor == null) {
+			return true; // the bootstrap class loader
+		}
+		for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+			if (loader == candidateAncestor) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
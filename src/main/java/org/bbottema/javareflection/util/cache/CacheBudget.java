@@ -0,0 +1,261 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The weight a {@link CachePolicy} allows, shared by any number of {@link LookupCache}s so that they are bounded together rather than each on
+ * its own. Useful when entries are spread over many small caches, for example one per type, of which there is no telling how many there will be.
+ * <p>
+ * Evicting an entry to make room for another may take it from any of the caches. As long as an entry is cached, the budget keeps it reachable,
+ * even when the cache that holds it no longer is.
+ *
+ * @param <K> The key type of the caches.
+ * @param <V> The value type of the caches.
+ */
+public final class CacheBudget<K, V> {
+	
+	@NotNull
+	private final CachePolicy policy;
+	@Nullable
+	private final FrequencySketch sketch;
+	private final long maximumWindowWeight;
+	private final long maximumMainWeight;
+	
+	final ReentrantLock evictionLock = new ReentrantLock();
+	// guarded by evictionLock
+	private final EntryQueue<K, V> window = new EntryQueue<>();
+	private final EntryQueue<K, V> main = new EntryQueue<>();
+	
+	public CacheBudget(@NotNull CachePolicy policy) {
+		this.policy = policy;
+		this.sketch = policy.getEvictionPolicy() == EvictionPolicy.WINDOW_TINY_LFU ? new FrequencySketch(policy.getMaximumWeight()) : null;
+		// Window TinyLFU keeps 1% of the capacity as admission window for new entries, but at least one entry, or new entries would have to
+		// compete with established ones straight away
+		this.maximumWindowWeight = sketch != null ? Math.max(1, policy.getMaximumWeight() / 100) : 0;
+		this.maximumMainWeight = policy.getMaximumWeight() - maximumWindowWeight;
+	}
+	
+	@NotNull
+	public CachePolicy getPolicy() {
+		return policy;
+	}
+	
+	/**
+	 * @return The combined weight of the entries cached by all caches that share this budget.
+	 */
+	public long getWeight() {
+		evictionLock.lock();
+		try {
+			return window.weight + main.weight;
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+	
+	void recordAccess(@NotNull K key) {
+		if (sketch != null) {
+			sketch.increment(key);
+		}
+	}
+	
+	/**
+	 * Caches the entry in its cache, making room for it in any of the caches sharing this budget. Must hold the {@link #evictionLock}.
+	 */
+	void insert(@NotNull Entry<K, V> entry) {
+		if (entry.weight > policy.getMaximumWeight()) {
+			return; // would never fit
+		}
+		entry.cache.link(entry);
+		if (sketch == null) {
+			while (main.weight + entry.weight > maximumMainWeight) {
+				evict(main.findVictim());
+			}
+			main.append(entry);
+		} else {
+			entry.inWindow = true;
+			window.append(entry);
+			while (window.weight > maximumWindowWeight) {
+				final Entry<K, V> candidate = window.head;
+				//noinspection ConstantConditions
+				window.unlink(candidate);
+				candidate.inWindow = false;
+				admitToMain(candidate);
+			}
+		}
+	}
+	
+	/**
+	 * Must hold the {@link #evictionLock}.
+	 */
+	void unlink(@NotNull Entry<K, V> entry) {
+		(entry.inWindow ? window : main).unlink(entry);
+	}
+	
+	/**
+	 * TinyLFU admission: the candidate that drops out of the window only makes it into the main region if it is estimated to be used more
+	 * frequently than each entry it would push out. All entries it would push out are compared before any of them is evicted, so a rejected
+	 * candidate doesn't cost any entries.
+	 */
+	private void admitToMain(@NotNull Entry<K, V> candidate) {
+		final long excessWeight = main.weight + candidate.weight - maximumMainWeight;
+		if (excessWeight > 0) {
+			final List<Entry<K, V>> victims = main.findVictims(excessWeight);
+			long victimsWeight = 0;
+			//noinspection ConstantConditions
+			final int candidateFrequency = sketch.frequency(candidate.key);
+			for (Entry<K, V> victim : victims) {
+				victimsWeight += victim.weight;
+				if (candidateFrequency <= sketch.frequency(victim.key)) {
+					victimsWeight = -1;
+					break;
+				}
+			}
+			if (victimsWeight < excessWeight) {
+				candidate.cache.unlinkEvicted(candidate);
+				return;
+			}
+			for (Entry<K, V> victim : victims) {
+				evict(victim);
+			}
+		}
+		main.append(candidate);
+	}
+	
+	private void evict(@Nullable Entry<K, V> entry) {
+		if (entry != null) {
+			main.unlink(entry);
+			entry.cache.unlinkEvicted(entry);
+		}
+	}
+	
+	static final class Entry<K, V> {
+		@NotNull
+		final LookupCache<K, V> cache;
+		@NotNull
+		final K key;
+		@NotNull
+		final V value;
+		final int weight;
+		volatile boolean referenced;
+		// guarded by evictionLock
+		private boolean inWindow;
+		@Nullable
+		private Entry<K, V> previous;
+		@Nullable
+		private Entry<K, V> next;
+		
+		Entry(@NotNull LookupCache<K, V> cache, @NotNull K key, @NotNull V value, int weight) {
+			this.cache = cache;
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+	
+	/**
+	 * Doubly linked list of entries in insertion order, used as the CLOCK for the entries in a region.
+	 */
+	private static final class EntryQueue<K, V> {
+		@Nullable
+		private Entry<K, V> head;
+		@Nullable
+		private Entry<K, V> tail;
+		private int size;
+		private long weight;
+		
+		private void append(@NotNull Entry<K, V> entry) {
+			entry.previous = tail;
+			entry.next = null;
+			if (tail != null) {
+				tail.next = entry;
+			} else {
+				head = entry;
+			}
+			tail = entry;
+			size++;
+			weight += entry.weight;
+		}
+		
+		private void unlink(@NotNull Entry<K, V> entry) {
+			if (entry.previous != null) {
+				entry.previous.next = entry.next;
+			} else {
+				head = entry.next;
+			}
+			if (entry.next != null) {
+				entry.next.previous = entry.previous;
+			} else {
+				tail = entry.previous;
+			}
+			entry.previous = null;
+			entry.next = null;
+			size--;
+			weight -= entry.weight;
+		}
+		
+		/**
+		 * Sweeps the clock hand: recently used entries lose their flag and move to the back, the first entry without flag is the victim. Gives
+		 * up after two rounds in case other threads keep flagging entries, in which case the oldest entry is taken.
+		 */
+		@Nullable
+		private Entry<K, V> findVictim() {
+			for (int i = 0; i < 2 * size && head != null && head.referenced; i++) {
+				final Entry<K, V> secondChance = head;
+				secondChance.referenced = false;
+				unlink(secondChance);
+				append(secondChance);
+			}
+			return head;
+		}
+		
+		/**
+		 * Like {@link #findVictim()}, but sweeps on until the entries without flag weigh at least the given weight. The victims stay in the queue.
+		 *
+		 * @return The victims, which may weigh less than the given weight if the queue doesn't hold enough.
+		 */
+		@NotNull
+		private List<Entry<K, V>> findVictims(long weight) {
+			final List<Entry<K, V>> victims = new ArrayList<>();
+			long victimsWeight = 0;
+			int secondChances = 0;
+			Entry<K, V> entry = head;
+			while (entry != null && victimsWeight < weight) {
+				Entry<K, V> next = entry.next;
+				if (entry.referenced && secondChances++ < 2 * size) {
+					entry.referenced = false;
+					unlink(entry);
+					append(entry);
+					if (next == null) {
+						// was the last entry already, so comes up again right away
+						next = entry;
+					}
+				} else {
+					victims.add(entry);
+					victimsWeight += entry.weight;
+				}
+				entry = next;
+			}
+			return victims;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util.cache;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Configures how large a {@link LookupCache} can grow and which entries are evicted once it is full.
+ * <p>
+ * By default every entry weighs 1, so the maximum weight is simply the maximum number of entries. Use {@link #weighedBy(long, Weigher)} to cap
+ * the cache on a custom weight instead.
+ */
+@Value
+@SuppressFBWarnings(justification = "Generated code")
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class CachePolicy {
+	
+	private static final Weigher SINGLETON_WEIGHER = new Weigher() {
+		@Override
+		public int weigh(Object key, Object value) {
+			return 1;
+		}
+	};
+	
+	/**
+	 * Never evicts anything.
+	 */
+	public static final CachePolicy UNBOUNDED = new CachePolicy(null, Long.MAX_VALUE, SINGLETON_WEIGHER);
+	
+	/**
+	 * The eviction policy, or <code>null</code> if the cache is unbounded.
+	 */
+	@Nullable
+	EvictionPolicy evictionPolicy;
+	long maximumWeight;
+	@NotNull
+	Weigher weigher;
+	
+	/**
+	 * @return A policy that caps the cache on <code>maximumSize</code> entries, evicting least recently used entries first.
+	 */
+	@NotNull
+	public static CachePolicy lru(long maximumSize) {
+		return bounded(EvictionPolicy.LRU, maximumSize);
+	}
+	
+	/**
+	 * @return A policy that caps the cache on <code>maximumSize</code> entries, favoring frequently used entries over recently used ones.
+	 * @see EvictionPolicy#WINDOW_TINY_LFU
+	 */
+	@NotNull
+	public static CachePolicy windowTinyLfu(long maximumSize) {
+		return bounded(EvictionPolicy.WINDOW_TINY_LFU, maximumSize);
+	}
+	
+	@NotNull
+	public static CachePolicy bounded(@NotNull EvictionPolicy evictionPolicy, long maximumSize) {
+		if (maximumSize < 0) {
+			throw new IllegalArgumentException("maximum size cannot be negative");
+		}
+		return new CachePolicy(evictionPolicy, maximumSize, SINGLETON_WEIGHER);
+	}
+	
+	/**
+	 * @return A copy of this bounded policy that caps the cache on the sum of the entry weights as determined by the given weigher.
+	 */
+	@NotNull
+	public CachePolicy weighedBy(long maximumWeight, @NotNull Weigher weigher) {
+		if (evictionPolicy == null) {
+			throw new IllegalStateException("an unbounded cache cannot be weighed; start with a bounded policy");
+		} else if (maximumWeight < 0) {
+			throw new IllegalArgumentException("maximum weight cannot be negative");
+		}
+		return new CachePolicy(evictionPolicy, maximumWeight, weigher);
+	}
+	
+	public boolean isBounded() {
+		return evictionPolicy != null;
+	}
+}
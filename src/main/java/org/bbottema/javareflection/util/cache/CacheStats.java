@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util.cache;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import lombok.Value;
+
+/**
+ * Snapshot of the statistics of a lookup cache, as produced by {@link StatsCounter#snapshot()}. Apart from the size, the counts only cover the
+ * period in which statistics were enabled.
+ */
+@Value
+@SuppressFBWarnings(justification = "Generated code")
+public class CacheStats {
+	long hitCount;
+	long missCount;
+	/**
+	 * The number of values that were looked up the hard way after a miss and then stored in the cache.
+	 */
+	long loadCount;
+	/**
+	 * The total time spent on loads, in nanoseconds.
+	 */
+	long totalLoadTime;
+	long evictionCount;
+	/**
+	 * The number of entries currently cached. This is an upper bound after classes have been unloaded, see {@link StatsCounter}.
+	 */
+	long size;
+	
+	public long getRequestCount() {
+		return hitCount + missCount;
+	}
+	
+	/**
+	 * @return The ratio of requests that were hits, or <code>1.0</code> if there were no requests at all.
+	 */
+	public double getHitRate() {
+		final long requestCount = getRequestCount();
+		return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+	}
+	
+	/**
+	 * @return The average time spent per load, in nanoseconds.
+	 */
+	public double getAverageLoadPenalty() {
+		return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+	}
+}
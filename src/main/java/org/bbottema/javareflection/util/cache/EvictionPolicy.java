@@ -0,0 +1,34 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util.cache;
+
+/**
+ * Determines which entry makes room when a bounded {@link LookupCache} is full.
+ *
+ * @see CachePolicy
+ */
+public enum EvictionPolicy {
+	/**
+	 * Evicts the entry that was used least recently (approximated with the CLOCK algorithm, so that reads never have to lock).
+	 */
+	LRU,
+	/**
+	 * Window TinyLFU: new entries enter a small recency window first and are only admitted into the main region if they are used more often
+	 * than the entry they would push out, as estimated by a compact frequency sketch. This keeps one-off lookups (scans) from flushing the
+	 * entries that are hit over and over again.
+	 */
+	WINDOW_TINY_LFU
+}
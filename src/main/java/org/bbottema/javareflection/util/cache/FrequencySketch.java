@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util.cache;
+
+/**
+ * Count-Min sketch that estimates how often a key was used recently, as used by the TinyLFU admission policy. Counters are kept in a byte
+ * each and saturate at 15, which is all the popularity TinyLFU needs to tell apart. All counters are halved once the number of recorded uses
+ * reaches ten times the width of the sketch, so that old popularity fades out.
+ * <p>
+ * Counters are updated without synchronization; a lost update merely makes the estimate slightly less accurate.
+ */
+final class FrequencySketch {
+	
+	private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+	private static final int MAXIMUM_WIDTH = 1 << 15;
+	private static final int MAXIMUM_FREQUENCY = 15;
+	
+	private final byte[] table;
+	private final int width;
+	private final int sampleSize;
+	private int additions;
+	
+	FrequencySketch(long expectedSize) {
+		int width = 16;
+		while (width < expectedSize && width < MAXIMUM_WIDTH) {
+			width <<= 1;
+		}
+		this.width = width;
+		this.table = new byte[SEEDS.length * width];
+		this.sampleSize = 10 * width;
+	}
+	
+	void increment(Object key) {
+		final int hash = key.hashCode();
+		boolean added = false;
+		for (int row = 0; row < SEEDS.length; row++) {
+			final int index = indexOf(hash, row);
+			if (table[index] < MAXIMUM_FREQUENCY) {
+				table[index]++;
+				added = true;
+			}
+		}
+		if (added && ++additions >= sampleSize) {
+			reset();
+		}
+	}
+	
+	int frequency(Object key) {
+		final int hash = key.hashCode();
+		int frequency = MAXIMUM_FREQUENCY;
+		for (int row = 0; row < SEEDS.length; row++) {
+			frequency = Math.min(frequency, table[indexOf(hash, row)]);
+		}
+		return frequency;
+	}
+	
+	private void reset() {
+		additions = 0;
+		for (int i = 0; i < table.length; i++) {
+			table[i] = (byte) (table[i] >>> 1);
+		}
+	}
+	
+	private int indexOf(int hash, int row) {
+		long h = (hash + SEEDS[row]) * SEEDS[row];
+		h += h >>> 32;
+		return row * width + ((int) h & (width - 1));
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util.cache;
+
+import org.bbottema.javareflection.util.cache.CacheBudget.Entry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A concurrent cache that is either unbounded or bounded according to a {@link CachePolicy}.
+ * <p>
+ * Reads never lock, not even on bounded caches: a hit merely flags the entry as recently used (and, for {@link EvictionPolicy#WINDOW_TINY_LFU},
+ * counts the access in a frequency sketch). Writes to a bounded cache are serialized, which is cheap compared to the lookup that produced the
+ * value in the first place.
+ * <p>
+ * Recency is tracked with the CLOCK algorithm: when room needs to be made, entries that were used since the last sweep get a second chance
+ * and the first entry that wasn't is evicted.
+ * <p>
+ * Several caches can be bounded together by giving them the same {@link CacheBudget}. Hits, misses, evictions and the size are recorded in the
+ * given {@link StatsCounter}, which can be shared by several caches as well.
+ *
+ * @param <K> The key type, which should have proper {@link Object#equals(Object)} and {@link Object#hashCode()} implementations.
+ * @param <V> The value type.
+ */
+public final class LookupCache<K, V> {
+	
+	private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+	
+	@NotNull
+	private final CacheBudget<K, V> budget;
+	@NotNull
+	private final CachePolicy policy;
+	@NotNull
+	private final StatsCounter stats;
+	
+	public LookupCache() {
+		this(CachePolicy.UNBOUNDED);
+	}
+	
+	public LookupCache(@NotNull CachePolicy policy) {
+		this(policy, new StatsCounter());
+	}
+	
+	public LookupCache(@NotNull CachePolicy policy, @NotNull StatsCounter stats) {
+		this(new CacheBudget<K, V>(policy), stats);
+	}
+	
+	/**
+	 * Creates a cache that is bounded together with the other caches of the given budget.
+	 */
+	public LookupCache(@NotNull CacheBudget<K, V> budget, @NotNull StatsCounter stats) {
+		this.budget = budget;
+		this.policy = budget.getPolicy();
+		this.stats = stats;
+	}
+	
+	@Nullable
+	public V get(@NotNull K key) {
+		final V value = getUnrecorded(key);
+		if (value == null) {
+			stats.recordMiss();
+		} else {
+			stats.recordHit();
+		}
+		return value;
+	}
+	
+	/**
+	 * Like {@link #get(Object)}, but leaves recording the hit or miss to the caller, for cached values that may turn out to be unusable (stale
+	 * or cleared) once found.
+	 */
+	@Nullable
+	public V getUnrecorded(@NotNull K key) {
+		final Entry<K, V> entry = entries.get(key);
+		budget.recordAccess(key);
+		if (entry == null) {
+			return null;
+		}
+		if (policy.isBounded() && !entry.referenced) {
+			entry.referenced = true;
+		}
+		return entry.value;
+	}
+	
+	/**
+	 * Stores the value, replacing the value already cached for the same key.
+	 */
+	public void put(@NotNull K key, @NotNull V value) {
+		if (!policy.isBounded()) {
+			if (entries.put(key, new Entry<>(this, key, value, 0)) == null) {
+				stats.recordInsert();
+			}
+		} else {
+			final int weight = policy.getWeigher().weigh(key, value);
+			budget.evictionLock.lock();
+			try {
+				final Entry<K, V> previousEntry = entries.remove(key);
+				if (previousEntry != null) {
+					budget.unlink(previousEntry);
+					stats.recordRemovals(1);
+				}
+				budget.insert(new Entry<>(this, key, value, weight));
+			} finally {
+				budget.evictionLock.unlock();
+			}
+		}
+	}
+	
+	/**
+	 * Stores the value unless a value was already cached for the key (possibly by another thread), in which case that value is returned instead.
+	 *
+	 * @return The value that is cached for the given key.
+	 */
+	@NotNull
+	public V putIfAbsent(@NotNull K key, @NotNull V value) {
+		if (!policy.isBounded()) {
+			final Entry<K, V> existingEntry = entries.putIfAbsent(key, new Entry<>(this, key, value, 0));
+			if (existingEntry != null) {
+				return existingEntry.value;
+			}
+			stats.recordInsert();
+			return value;
+		} else {
+			final int weight = policy.getWeigher().weigh(key, value);
+			budget.evictionLock.lock();
+			try {
+				final Entry<K, V> existingEntry = entries.get(key);
+				if (existingEntry != null) {
+					return existingEntry.value;
+				}
+				budget.insert(new Entry<>(this, key, value, weight));
+				return value;
+			} finally {
+				budget.evictionLock.unlock();
+			}
+		}
+	}
+	
+	public void remove(@NotNull K key) {
+		if (!policy.isBounded()) {
+			if (entries.remove(key) != null) {
+				stats.recordRemovals(1);
+			}
+		} else {
+			budget.evictionLock.lock();
+			try {
+				final Entry<K, V> entry = entries.remove(key);
+				if (entry != null) {
+					budget.unlink(entry);
+					stats.recordRemovals(1);
+				}
+			} finally {
+				budget.evictionLock.unlock();
+			}
+		}
+	}
+	
+	public void clear() {
+		budget.evictionLock.lock();
+		try {
+			if (policy.isBounded()) {
+				for (Entry<K, V> entry : entries.values()) {
+					budget.unlink(entry);
+				}
+			}
+			stats.recordRemovals(entries.size());
+			entries.clear();
+		} finally {
+			budget.evictionLock.unlock();
+		}
+	}
+	
+	/**
+	 * @return The number of entries currently cached.
+	 */
+	public int size() {
+		return entries.size();
+	}
+	
+	@NotNull
+	public CachePolicy getPolicy() {
+		return policy;
+	}
+	
+	/**
+	 * Called by the budget for an entry it admitted. Must hold the eviction lock of the budget.
+	 */
+	void link(@NotNull Entry<K, V> entry) {
+		entries.put(entry.key, entry);
+		stats.recordInsert();
+	}
+	
+	/**
+	 * Called by the budget for an entry it evicted or didn't admit after all. Must hold the eviction lock of the budget.
+	 */
+	void unlinkEvicted(@NotNull Entry<K, V> entry) {
+		entries.remove(entry.key, entry);
+		stats.recordRemovals(1);
+		stats.recordEviction();
+	}
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util.cache;
+
+import lombok.experimental.UtilityClass;
+import org.bbottema.javareflection.ClassUtils;
+import org.bbottema.javareflection.ReflectionContext;
+import org.bbottema.javareflection.model.LookupMode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Records the lookups a process performs, so they can be replayed on the next start to fill the lookup caches before the first real request
+ * comes in.
+ * <p>
+ * While {@link #startRecording() recording}, every lookup that misses the cache is remembered: classes located by name, methods and constructors
+ * found by name, lookup mode and signature (including lookups for methods that turned out not to exist, such as optional bean setters) and
+ * conversions between types. Bean introspection is covered by the setter and getter lookups it performs. Lookups that are served from the cache
+ * are not recorded, so start recording before the caches fill up.
+ * <p>
+ * {@link #writeRecording(Writer)} writes the recorded lookups as text, one lookup per line with tab separated fields, which
+ * {@link #replay(Reader, ReflectionContext, ClassLoader, ExecutorService)} reads back. Lookups of classes that can't be loaded anymore are
+ * skipped, so a recording survives changes to the application.
+ */
+@UtilityClass
+public final class LookupRecorder {
+
+	private static final String HEADER = "# java-reflection lookups v1";
+
+	private static final String CLASS = "class";
+	private static final String CLASS_IN_PACKAGE = "classInPackage";
+	private static final String METHOD = "method";
+	private static final String CONVERSION = "conversion";
+
+	private static final String CONSTRUCTOR_NAME = "<init>";
+	private static final String NULL_TYPE = "null";
+
+	private static final Map<String, Class<?>> PRIMITIVE_TYPES = new HashMap<>();
+
+	static {
+		for (Class<?> primitiveType : new Class<?>[] { boolean.class, char.class, byte.class, short.class, int.class, long.class, float.class,
+				double.class, void.class }) {
+			PRIMITIVE_TYPES.put(primitiveType.getName(), primitiveType);
+		}
+	}
+
+	private static volatile boolean recording;
+
+	private static final Set<String> RECORDED_LOOKUPS = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * Starts recording lookups that miss the cache, in addition to what was recorded before.
+	 */
+	public static void startRecording() {
+		recording = true;
+	}
+
+	public static void stopRecording() {
+		recording = false;
+	}
+
+	public static boolean isRecording() {
+		return recording;
+	}
+
+	/**
+	 * Forgets all lookups recorded so far.
+	 */
+	public static void clearRecording() {
+		RECORDED_LOOKUPS.clear();
+	}
+
+	/**
+	 * Records a lookup done with {@link ClassUtils#locateClass(String, boolean, ClassLoader)}.
+	 */
+	public static void recordClassLookup(final String className, final boolean fullscan) {
+		if (recording) {
+			RECORDED_LOOKUPS.add(join(CLASS, className, String.valueOf(fullscan)));
+		}
+	}
+
+	/**
+	 * Records a lookup done with {@link ClassUtils#locateClass(String, String, ClassLoader)}.
+	 */
+	public static void recordClassLookup(final String className, @Nullable final String inPackage) {
+		if (recording) {
+			RECORDED_LOOKUPS.add(join(CLASS_IN_PACKAGE, className, inPackage != null ? inPackage : ""));
+		}
+	}
+
+	/**
+	 * Records a method lookup, or a constructor lookup if the method name is <code>&lt;init&gt;</code>.
+	 */
+	public static void recordMethodLookup(final Class<?> owner, final String methodName, final Set<LookupMode> lookupMode, final Class<?>[] signature) {
+		if (recording) {
+			final List<String> fields = new ArrayList<>();
+			fields.add(METHOD);
+			fields.add(owner.getName());
+			fields.add(methodName);
+			final StringBuilder lookupModes = new StringBuilder();
+			for (LookupMode mode : lookupMode) {
+				lookupModes.append(lookupModes.length() > 0 ? "," : "").append(mode.name());
+			}
+			fields.add(lookupModes.toString());
+			for (Class<?> type : signature) {
+				fields.add(type != null ? type.getName() : NULL_TYPE);
+			}
+			RECORDED_LOOKUPS.add(join(fields.toArray(new String[0])));
+		}
+	}
+
+	/**
+	 * Records the lookup of conversion paths between two types.
+	 */
+	public static void recordConversionLookup(final Class<?> fromType, final Class<?> targetType) {
+		if (recording) {
+			RECORDED_LOOKUPS.add(join(CONVERSION, fromType.getName(), targetType.getName()));
+		}
+	}
+
+	/**
+	 * Writes all lookups recorded so far, sorted so recordings of the same application can be compared.
+	 */
+	public static void writeRecording(final Writer writer) throws IOException {
+		final List<String> lookups = new ArrayList<>(RECORDED_LOOKUPS);
+		Collections.sort(lookups);
+		writer.write(HEADER);
+		writer.write('\n');
+		for (String lookup : lookups) {
+			writer.write(lookup);
+			writer.write('\n');
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Delegates to {@link #replay(Reader, ReflectionContext, ClassLoader, ExecutorService)} for the default context, using the context class loader
+	 * of the current thread and replaying in the current thread.
+	 */
+	public static int replay(final Reader reader) throws IOException {
+		return replay(reader, ReflectionContext.getDefault(), Thread.currentThread().getContextClassLoader(), null);
+	}
+
+	/**
+	 * Performs all lookups of a recording written by {@link #writeRecording(Writer)}, which fills the caches of the given context (and the class
+	 * cache, which all contexts share).
+	 *
+	 * @param reader The recording.
+	 * @param context The context whose caches to fill.
+	 * @param classLoader The class loader to load the recorded types with.
+	 * @param executor Optional executor to perform the lookups in parallel with. Returns once all lookups are done.
+	 * @return The number of lookups performed. Lookups involving types that could not be loaded are skipped.
+	 * @throws IllegalArgumentException When the recording is not a recording of lookups.
+	 */
+	public static int replay(final Reader reader, final ReflectionContext context, @Nullable final ClassLoader classLoader,
+			@Nullable final ExecutorService executor) throws IOException {
+		final List<Callable<Boolean>> lookups = parseRecording(reader, context, classLoader);
+		int replayed = 0;
+		if (executor == null) {
+			for (Callable<Boolean> lookup : lookups) {
+				replayed += callLookup(lookup) ? 1 : 0;
+			}
+		} else {
+			try {
+				for (Future<Boolean> lookup : executor.invokeAll(lookups)) {
+					replayed += lookup.get() ? 1 : 0;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while replaying lookups", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("unable to replay lookups", e.getCause());
+			}
+		}
+		return replayed;
+	}
+
+	@NotNull
+	private static List<Callable<Boolean>> parseRecording(final Reader reader, final ReflectionContext context, @Nullable final ClassLoader classLoader)
+			throws IOException {
+		final BufferedReader lines = new BufferedReader(reader);
+		if (!HEADER.equals(lines.readLine())) {
+			throw new IllegalArgumentException("not a recording of lookups");
+		}
+		final List<Callable<Boolean>> lookups = new ArrayList<>();
+		for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+			if (!line.isEmpty()) {
+				lookups.add(parseLookup(line.split("\t", -1), context, classLoader));
+			}
+		}
+		return lookups;
+	}
+
+	@NotNull
+	private static Callable<Boolean> parseLookup(final String[] fields, final ReflectionContext context, @Nullable final ClassLoader classLoader) {
+		switch (fields[0]) {
+			case CLASS:
+				checkFieldCount(fields, 3);
+				return new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						ClassUtils.locateClass(fields[1], Boolean.parseBoolean(fields[2]), classLoader);
+						return true;
+					}
+				};
+			case CLASS_IN_PACKAGE:
+				checkFieldCount(fields, 3);
+				return new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						ClassUtils.locateClass(fields[1], fields[2].isEmpty() ? null : fields[2], classLoader);
+						return true;
+					}
+				};
+			case METHOD:
+				if (fields.length < 4) {
+					throw new IllegalArgumentException("malformed lookup: " + join(fields));
+				}
+				return new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						return replayMethodLookup(fields, context, classLoader);
+					}
+				};
+			case CONVERSION:
+				checkFieldCount(fields, 3);
+				return new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						final Class<?> fromType = loadType(fields[1], classLoader);
+						final Class<?> targetType = loadType(fields[2], classLoader);
+						if (fromType == null || targetType == null) {
+							return false;
+						}
+						context.getConverters().prepareConversion(fromType, targetType);
+						return true;
+					}
+				};
+			default:
+				throw new IllegalArgumentException("unknown lookup: " + join(fields));
+		}
+	}
+
+	private static boolean replayMethodLookup(final String[] fields, final ReflectionContext context, @Nullable final ClassLoader classLoader) {
+		final Class<?> owner = loadType(fields[1], classLoader);
+		if (owner == null) {
+			return false;
+		}
+		final Set<LookupMode> lookupMode = EnumSet.noneOf(LookupMode.class);
+		for (String mode : fields[3].split(",")) {
+			if (!mode.isEmpty()) {
+				lookupMode.add(LookupMode.valueOf(mode));
+			}
+		}
+		final Class<?>[] signature = new Class<?>[fields.length - 4];
+		for (int i = 0; i < signature.length; i++) {
+			final String typeName = fields[i + 4];
+			if (!typeName.equals(NULL_TYPE)) {
+				signature[i] = loadType(typeName, classLoader);
+				if (signature[i] == null) {
+					return false;
+				}
+			}
+		}
+		try {
+			if (fields[2].equals(CONSTRUCTOR_NAME)) {
+				context.findCompatibleConstructor(owner, lookupMode, signature);
+			} else {
+				context.findCompatibleMethod(owner, fields[2], lookupMode, signature);
+			}
+		} catch (NoSuchMethodException e) {
+			// absent methods are cached as well
+		}
+		return true;
+	}
+
+	private static boolean callLookup(final Callable<Boolean> lookup) {
+		try {
+			return lookup.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException("unable to replay lookup", e);
+		}
+	}
+
+	@Nullable
+	private static Class<?> loadType(final String typeName, @Nullable final ClassLoader classLoader) {
+		final Class<?> primitiveType = PRIMITIVE_TYPES.get(typeName);
+		if (primitiveType != null) {
+			return primitiveType;
+		}
+		try {
+			return Class.forName(typeName, false, classLoader != null ? classLoader : LookupRecorder.class.getClassLoader());
+		} catch (ClassNotFoundException | LinkageError e) {
+			return null;
+		}
+	}
+
+	private static void checkFieldCount(final String[] fields, final int expectedFieldCount) {
+		if (fields.length != expectedFieldCount) {
+			throw new IllegalArgumentException("malformed lookup: " + join(fields));
+		}
+	}
+
+	@NotNull
+	private static String join(final String... fields) {
+		final StringBuilder joined = new StringBuilder(fields[0]);
+		for (int i = 1; i < fields.length; i++) {
+			joined.append('\t').append(fields[i]);
+		}
+		return joined.toString();
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util.cache;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the statistics of a lookup cache, which may consist of any number of {@link LookupCache}s or other structures.
+ * <p>
+ * Counters are striped ({@link LongAdder}), so recording doesn't make threads contend with each other. Statistics are disabled by default, in
+ * which case recording hits, misses, loads and evictions only costs a check of the global {@link #setEnabled(boolean) enabled} flag. The size is
+ * maintained regardless of the flag, so every insert and removal updates it, and it is already accurate once statistics are enabled.
+ * <p>
+ * The size is only lowered by {@link #recordRemovals(long)} and {@link #resetSize()}. Entries that disappear without either being called, such
+ * as the entries of a class that was unloaded together with its {@link ClassValue}, are still counted, so the size is an upper bound of the
+ * number of cached entries after class unloading.
+ */
+public final class StatsCounter {
+	
+	private static final long NOT_TIMED = Long.MIN_VALUE;
+	
+	private static volatile boolean enabled;
+	
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder loadCount = new LongAdder();
+	private final LongAdder totalLoadTime = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+	private final LongAdder size = new LongAdder();
+	
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * Enables or disables the recording of statistics for all lookup caches.
+	 */
+	public static void setEnabled(boolean enabled) {
+		StatsCounter.enabled = enabled;
+	}
+	
+	public void recordHit() {
+		if (enabled) {
+			hitCount.increment();
+		}
+	}
+	
+	public void recordMiss() {
+		if (enabled) {
+			missCount.increment();
+		}
+	}
+	
+	/**
+	 * @return The start time to pass to {@link #recordLoad(long)} once the value has been loaded.
+	 */
+	public long startLoad() {
+		return enabled ? System.nanoTime() : NOT_TIMED;
+	}
+	
+	public void recordLoad(long loadStart) {
+		if (enabled && loadStart != NOT_TIMED) {
+			loadCount.increment();
+			totalLoadTime.add(System.nanoTime() - loadStart);
+		}
+	}
+	
+	public void recordEviction() {
+		if (enabled) {
+			evictionCount.increment();
+		}
+	}
+	
+	public void recordInsert() {
+		size.increment();
+	}
+	
+	public void recordRemovals(long count) {
+		size.add(-count);
+	}
+	
+	/**
+	 * Sets the size back to zero, for when the cache has been replaced by an empty one.
+	 */
+	public void resetSize() {
+		size.reset();
+	}
+	
+	/**
+	 * Sets all counters back to zero, except for the size.
+	 */
+	public void reset() {
+		hitCount.reset();
+		missCount.reset();
+		loadCount.reset();
+		totalLoadTime.reset();
+		evictionCount.reset();
+	}
+	
+	@NotNull
+	public CacheStats snapshot() {
+		return new CacheStats(hitCount.sum(), missCount.sum(), loadCount.sum(), totalLoadTime.sum(), evictionCount.sum(), Math.max(0, size.sum()));
+	}
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.util.cache;
+
+/**
+ * Calculates the weight of a cache entry, so a bounded {@link LookupCache} can be capped on an estimate of its memory usage rather than on its
+ * number of entries.
+ *
+ * @see CachePolicy#weighedBy(long, Weigher)
+ */
+public interface Weigher {
+	/**
+	 * @return The (non-negative) weight of the given entry. The weight is calculated once when the entry is stored.
+	 */
+	int weigh(Object key, Object value);
+}
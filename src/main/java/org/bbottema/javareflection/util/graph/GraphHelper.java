@@ -1,3 +1,18 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package org.bbottema.javareflection.util.graph;
 
 import lombok.experimental.UtilityClass;
@@ -14,15 +29,28 @@ import java.util.Set;
 @UtilityClass
 public final class GraphHelper {
 	
+	/**
+	 * The maximum number of edges of the paths that are searched for.
+	 */
+	public static final int MAX_PATH_LENGTH = 4;
+	
 	@SuppressWarnings("WeakerAccess")
 	public static <T> boolean isPathPossible(Node<T> startingPoint, Node<T> destination) {
-		return findPossiblePaths(startingPoint, destination, new ArrayDeque<Node<T>>(), new ArrayList<List<Node<T>>>(), true, 4);
+		return isPathPossible(startingPoint, destination, MAX_PATH_LENGTH);
+	}
+	
+	/**
+	 * @return Whether there is a path of at most <code>maxPathLength</code> edges from the starting point to the destination.
+	 */
+	@SuppressWarnings("WeakerAccess")
+	public static <T> boolean isPathPossible(Node<T> startingPoint, Node<T> destination, int maxPathLength) {
+		return findPossiblePaths(startingPoint, destination, new ArrayDeque<Node<T>>(), new ArrayList<List<Node<T>>>(), true, maxPathLength);
 	}
 	
 	@SuppressWarnings("WeakerAccess")
 	public static <T> List<List<Node<T>>> findAllPathsAscending(Node<T> startingPoint, Node<T> destination) {
 		List<List<Node<T>>> allPaths = new ArrayList<>();
-		findPossiblePaths(startingPoint, destination, new ArrayDeque<Node<T>>(), allPaths, false, 4);
+		findPossiblePaths(startingPoint, destination, new ArrayDeque<Node<T>>(), allPaths, false, MAX_PATH_LENGTH);
 		Collections.sort(allPaths, NodePathComparator.<T>INSTANCE()); // NodePathComparator needs the startingPoints included in the path
 		removeStartingPoints(allPaths);
 		return allPaths;
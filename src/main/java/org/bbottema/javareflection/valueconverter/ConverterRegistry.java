@@ -0,0 +1,806 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.valueconverter;
+
+import org.bbottema.javareflection.util.MiscUtil;
+import org.bbottema.javareflection.util.cache.CacheAnchors;
+import org.bbottema.javareflection.util.cache.LookupRecorder;
+import org.bbottema.javareflection.util.cache.StatsCounter;
+import org.bbottema.javareflection.util.graph.GraphHelper;
+import org.bbottema.javareflection.util.graph.Node;
+import org.bbottema.javareflection.valueconverter.converters.BooleanConverters;
+import org.bbottema.javareflection.valueconverter.converters.CharacterConverters;
+import org.bbottema.javareflection.valueconverter.converters.FileConverters;
+import org.bbottema.javareflection.valueconverter.converters.NumberConverters;
+import org.bbottema.javareflection.valueconverter.converters.StringConverters;
+import org.bbottema.javareflection.valueconverter.converters.UUIDConverters;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.bbottema.javareflection.util.MiscUtil.trustedCast;
+
+/**
+ * A set of value converters and the conversion graph derived from them, as used by {@link ValueConversionHelper} (for the default registry) and
+ * {@link org.bbottema.javareflection.ReflectionContext}.
+ * <p>
+ * Registries can be layered: a child registry overlays its own converters on those of its parent without copying them, so changes to the parent
+ * are visible to the child as well. Converters registered with a child take precedence over converters of the parent for the same conversion. A
+ * child without converters of its own shares the conversion graph (and the conversion paths found in it) of its parent; other children add the
+ * nodes and edges of their own converters to a copy of it.
+ * <p>
+ * Every change bumps the {@link #getVersion() version} of the registry and of all its descendants, so caches that depend on the available
+ * conversions can tell when they are outdated. Registrations are logged per registry, so such caches can also tell which types are affected by
+ * the changes (see {@link #collectChangedTypes(long[], long[])}) and keep everything else.
+ */
+public final class ConverterRegistry {
+
+	/**
+	 * Converters from any type to <code>String</code> using {@link Object#toString()} and from <code>String</code> to any enum using
+	 * {@link Enum#valueOf(Class, String)}. These are produced on demand and kept with the type itself instead of being registered in
+	 * {@link #valueConverters}, so converting values of types from a discarded class loader doesn't keep that class loader alive.
+	 */
+	private static final ClassValue<ValueFunction<Object, Object>> TO_STRING_CONVERTERS = new ClassValue<ValueFunction<Object, Object>>() {
+		@Override
+		protected ValueFunction<Object, Object> computeValue(Class<?> type) {
+			return trustedCast(StringConverters.produceTypeToStringConverter(type));
+		}
+	};
+	private static final ClassValue<ValueFunction<Object, Object>> STRING_TO_ENUM_CONVERTERS = new ClassValue<ValueFunction<Object, Object>>() {
+		@Override
+		protected ValueFunction<Object, Object> computeValue(Class<?> type) {
+			return produceStringToEnumConverter(type);
+		}
+	};
+
+	/**
+	 * The number of registrations the {@link #registrationLog} keeps at most. Caches that fell further behind than that are treated as if the
+	 * registry was {@link #reset()}, which keeps the log (and the types it references) from growing without bounds in applications that keep
+	 * registering converters.
+	 */
+	private static final int MAX_REGISTRATION_LOG = 256;
+
+	private static final int LOW_CONVERTER_PRIORITY = 10; // higher edge weight, heavier in cost
+	private static final int HIGH_CONVERTER_PRIORITY = 1; // lower edge weight, lighter in cost
+
+	@Nullable
+	private final ConverterRegistry parent;
+
+	/**
+	 * Contains the converters of this layer. User converters also act as intermediate converters, ie. if a user converter can go to
+	 * <code>int</code>, <code>double</code> is automatically supported as well as common conversion.
+	 */
+	// TODO make value converters name based instead of type based for lookups and naming in the conversion graph
+	// TODO once working by name, replace Map<from, Map<To, converter>> to Map<from, Map<To, Collection<converter>>>.
+	// The above enables us to have multiple converters for the same targetType
+	private final Map<Class<?>, Map<Class<?>, ValueFunction<Object, Object>>> valueConverters = new ConcurrentHashMap<>();
+
+	private volatile long modificationCount;
+
+	/**
+	 * The from and target types of the last converters registered since the last {@link #reset()}, the first of which was registered at
+	 * {@link #logStart}. Holds at most {@link #MAX_REGISTRATION_LOG} registrations. Guarded by <code>this</code>, together with
+	 * {@link #modificationCount}.
+	 */
+	private final List<Class<?>[]> registrationLog = new ArrayList<>();
+	private long logStart;
+
+	/**
+	 * Graph of from-to type conversions so we can calculate shortest conversion path between two types, built on demand for the current
+	 * version of the registry. Since the graph is only built once it is needed, registering any number of converters in a row costs a single
+	 * build.
+	 * <p>
+	 * The graph is never modified once published: when outdated, an updated copy is swapped in, so conversions running in other threads always
+	 * see a complete graph.
+	 */
+	@Nullable
+	private volatile ConversionGraph conversionGraph;
+
+	private final StatsCounter conversionPathStats = new StatsCounter();
+
+	private ConverterRegistry(@Nullable ConverterRegistry parent) {
+		this.parent = parent;
+	}
+
+	/**
+	 * @return A new registry with the default converters for common types.
+	 */
+	@NotNull
+	public static ConverterRegistry withDefaultConverters() {
+		final ConverterRegistry registry = new ConverterRegistry(null);
+		registry.reset();
+		return registry;
+	}
+
+	/**
+	 * @return A new, empty registry layered on top of this one.
+	 */
+	@NotNull
+	public ConverterRegistry createChild() {
+		return new ConverterRegistry(this);
+	}
+
+	@Nullable
+	public ConverterRegistry getParent() {
+		return parent;
+	}
+
+	/**
+	 * Removes all converters registered with this registry. A registry without parent gets the default converters back.
+	 */
+	public synchronized void reset() {
+		valueConverters.clear();
+
+		if (parent == null) {
+			final Collection<ValueFunction<?, ?>> defaultConverters = new HashSet<>();
+			defaultConverters.addAll(NumberConverters.NUMBER_CONVERTERS);
+			defaultConverters.addAll(BooleanConverters.BOOLEAN_CONVERTERS);
+			defaultConverters.addAll(CharacterConverters.CHARACTER_CONVERTERS);
+			defaultConverters.addAll(StringConverters.STRING_CONVERTERS);
+			defaultConverters.addAll(UUIDConverters.UUID_CONVERTERS);
+			defaultConverters.addAll(FileConverters.FILE_CONVERTERS);
+
+			for (ValueFunction<?, ?> defaultConverter : defaultConverters) {
+				putConverter(defaultConverter);
+			}
+		}
+		registrationLog.clear();
+		modificationCount++;
+		logStart = modificationCount;
+	}
+
+	/**
+	 * Registers a user-provided converter with this registry. User converters also act as intermediate converters, ie. if a user converter can go
+	 * to <code>int</code>, <code>double</code> is automatically supported as well as common conversion.
+	 */
+	public synchronized void registerValueConverter(final ValueFunction<?, ?> userConverter) {
+		putConverter(userConverter);
+		registrationLog.add(new Class<?>[] { userConverter.getFromType(), userConverter.getTargetType() });
+		if (registrationLog.size() > MAX_REGISTRATION_LOG) {
+			// trim in bulk, so that registering converters one by one doesn't shift the log every time
+			final int trimmed = registrationLog.size() - MAX_REGISTRATION_LOG / 2;
+			registrationLog.subList(0, trimmed).clear();
+			logStart += trimmed;
+		}
+		modificationCount++;
+	}
+
+	private void putConverter(final ValueFunction<?, ?> converter) {
+		Map<Class<?>, ValueFunction<Object, Object>> fromConverters = valueConverters.get(converter.getFromType());
+		if (fromConverters == null) {
+			fromConverters = new ConcurrentHashMap<>();
+			valueConverters.put(converter.getFromType(), fromConverters);
+		}
+		fromConverters.put(converter.getTargetType(), MiscUtil.<ValueFunction<Object, Object>>trustedCast(converter));
+	}
+
+	/**
+	 * @return A number that changes whenever converters are registered with this registry or any of its ancestors.
+	 */
+	public long getVersion() {
+		long version = 0;
+		for (ConverterRegistry registry = this; registry != null; registry = registry.parent) {
+			version += registry.modificationCount;
+		}
+		return version;
+	}
+
+	/**
+	 * @return The modification counts of this registry and its ancestors, starting with this registry. Pass these to
+	 * {@link #collectChangedTypes(long[], long[])} later on to find out what changed in the meantime.
+	 */
+	@NotNull
+	public long[] getLayerVersions() {
+		final List<Long> layerVersions = new ArrayList<>();
+		for (ConverterRegistry registry = this; registry != null; registry = registry.parent) {
+			layerVersions.add(registry.modificationCount);
+		}
+		final long[] result = new long[layerVersions.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = layerVersions.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * @param fromLayerVersions Layer versions as returned by {@link #getLayerVersions()} earlier on.
+	 * @param toLayerVersions Layer versions as returned by {@link #getLayerVersions()} later on.
+	 * @return The from and target types of all converters registered in between, or <code>null</code> if any registry was {@link #reset()} in
+	 * between or got too many registrations since to remember them all, in which case anything may have changed.
+	 */
+	@Nullable
+	public Set<Class<?>> collectChangedTypes(final long[] fromLayerVersions, final long[] toLayerVersions) {
+		final List<Class<?>[]> registrations = collectRegistrations(fromLayerVersions, toLayerVersions);
+		return registrations != null ? collectTypes(registrations) : null;
+	}
+
+	/**
+	 * @return The from and target type of each converter registered in between, or <code>null</code> if that can't be told.
+	 * @see #collectChangedTypes(long[], long[])
+	 */
+	@Nullable
+	private List<Class<?>[]> collectRegistrations(final long[] fromLayerVersions, final long[] toLayerVersions) {
+		final List<Class<?>[]> registrations = new ArrayList<>();
+		int layer = 0;
+		for (ConverterRegistry registry = this; registry != null; registry = registry.parent, layer++) {
+			synchronized (registry) {
+				if (fromLayerVersions[layer] < registry.logStart) {
+					return null;
+				}
+				final int fromIndex = (int) (fromLayerVersions[layer] - registry.logStart);
+				final int toIndex = (int) (toLayerVersions[layer] - registry.logStart);
+				registrations.addAll(registry.registrationLog.subList(fromIndex, toIndex));
+			}
+		}
+		return registrations;
+	}
+
+	@NotNull
+	private static Set<Class<?>> collectTypes(final List<Class<?>[]> registrations) {
+		final Set<Class<?>> types = new HashSet<>();
+		for (Class<?>[] registration : registrations) {
+			Collections.addAll(types, registration);
+		}
+		return types;
+	}
+
+	/**
+	 * @return Whether values of <code>fromType</code> can be converted to any of the given types, or are one of them. Anything cached for
+	 * <code>fromType</code> that depends on conversions is outdated if converters from or to these types have been registered.
+	 */
+	public boolean canReachAny(final Class<?> fromType, final Set<Class<?>> types) {
+		return canReachAny(conversionGraph().nodes, fromType, types);
+	}
+
+	private static boolean canReachAny(final Map<Class<?>, Node<Class<?>>> converterGraph, final Class<?> fromType, final Set<Class<?>> types) {
+		if (types.contains(fromType)) {
+			return true;
+		}
+		for (Node<Class<?>> reachableNode : GraphHelper.findReachableNodes(resolveFromNode(converterGraph, fromType))) {
+			if (types.contains(reachableNode.getType())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return The conversion graph for the current version of the registry. When converters were registered since the graph was last built, the
+	 * new conversions are applied to a copy of that graph instead of building it all over again, and conversion paths from types that can't reach
+	 * any of the changed types are carried over to the new graph (see {@link #findConversionPaths(Class, Class)}).
+	 */
+	@NotNull
+	private ConversionGraph conversionGraph() {
+		if (parent != null && valueConverters.isEmpty()) {
+			// nothing to add to the conversions of the parent, so share its graph and conversion paths
+			return parent.conversionGraph();
+		}
+		final ConversionGraph conversionGraph = this.conversionGraph;
+		if (conversionGraph != null && conversionGraph.version == getVersion()) {
+			return conversionGraph;
+		}
+		final long[] layerVersions = getLayerVersions();
+		final List<Class<?>[]> registrations = conversionGraph != null ? collectRegistrations(conversionGraph.layerVersions, layerVersions) : null;
+		final ConversionGraph updatedConversionGraph;
+		if (registrations != null) {
+			final Map<Class<?>, Node<Class<?>>> converterGraph = copyTypeGraph(conversionGraph.nodes);
+			for (Class<?>[] registration : registrations) {
+				addEdge(converterGraph, registration[0], registration[1]);
+			}
+			updatedConversionGraph = new ConversionGraph(layerVersions, converterGraph, conversionGraph, collectTypes(registrations));
+			// only the previous graph is consulted for conversion paths, so don't let the graphs before it pile up
+			conversionGraph.previous = null;
+		} else {
+			updatedConversionGraph = new ConversionGraph(layerVersions, buildTypeGraph(), null, null);
+		}
+		this.conversionGraph = updatedConversionGraph;
+		conversionPathStats.resetSize();
+		return updatedConversionGraph;
+	}
+
+	/**
+	 * Builds the graph of a child registry on top of the graph of its parent, so only the nodes and edges of its own converters are added, which
+	 * replace those of the parent for the same conversions.
+	 */
+	@NotNull
+	private Map<Class<?>, Node<Class<?>>> buildTypeGraph() {
+		final Map<Class<?>, Node<Class<?>>> converterGraph = parent != null
+				? copyTypeGraph(parent.conversionGraph().nodes)
+				: new HashMap<Class<?>, Node<Class<?>>>();
+		for (Map.Entry<Class<?>, Map<Class<?>, ValueFunction<Object, Object>>> convertersForFromType : valueConverters.entrySet()) {
+			Class<?> fromType = convertersForFromType.getKey();
+			Node<Class<?>> fromNode = obtainNode(converterGraph, fromType);
+			for (Map.Entry<Class<?>, ValueFunction<Object, Object>> converterForToType : convertersForFromType.getValue().entrySet()) {
+				Node<Class<?>> toNode = obtainNode(converterGraph, converterForToType.getKey());
+				fromNode.getToNodes().put(toNode, determineConversionCost(converterForToType.getValue())); // edge
+			}
+		}
+		return converterGraph;
+	}
+
+	/**
+	 * Adds or updates the edge for the converter that this registry uses for the given conversion, which is the converter of the nearest layer
+	 * that has one.
+	 */
+	private void addEdge(final Map<Class<?>, Node<Class<?>>> converterGraph, final Class<?> fromType, final Class<?> toType) {
+		final ValueFunction<Object, Object> converter = findRegisteredConverter(fromType, toType);
+		if (converter != null) {
+			obtainNode(converterGraph, fromType).getToNodes().put(obtainNode(converterGraph, toType), determineConversionCost(converter));
+		}
+	}
+
+	@NotNull
+	private static Node<Class<?>> obtainNode(final Map<Class<?>, Node<Class<?>>> converterGraph, final Class<?> type) {
+		Node<Class<?>> node = converterGraph.get(type);
+		if (node == null) {
+			node = new Node<Class<?>>(type);
+			converterGraph.put(type, node);
+		}
+		return node;
+	}
+
+	/**
+	 * @return A copy with nodes of its own, so that changing it leaves the given graph intact.
+	 */
+	@NotNull
+	private static Map<Class<?>, Node<Class<?>>> copyTypeGraph(final Map<Class<?>, Node<Class<?>>> converterGraph) {
+		final Map<Class<?>, Node<Class<?>>> copy = new HashMap<>();
+		for (Node<Class<?>> node : converterGraph.values()) {
+			final Node<Class<?>> nodeCopy = obtainNode(copy, node.getType());
+			for (Map.Entry<Node<Class<?>>, Integer> edge : node.getToNodes().entrySet()) {
+				nodeCopy.getToNodes().put(obtainNode(copy, edge.getKey().getType()), edge.getValue());
+			}
+		}
+		return copy;
+	}
+
+	private static Integer determineConversionCost(ValueFunction<Object, Object> converter) {
+		if (converter.getFromType() == converter.getTargetType()) {
+			return 0;
+		} else {
+			String converterPackage = ConverterRegistry.class.getPackage().toString();
+			boolean isSystemConverter = converter.getClass().getPackage().toString().contains(converterPackage);
+			return isSystemConverter ? LOW_CONVERTER_PRIORITY : HIGH_CONVERTER_PRIORITY;
+		}
+	}
+
+	/**
+	 * @see ValueConversionHelper#isCommonType(Class)
+	 */
+	public boolean isCommonType(final Class<?> c) {
+		final Set<Class<?>> targetTypes = new HashSet<>();
+		for (ConverterRegistry registry = this; registry != null; registry = registry.parent) {
+			final Map<Class<?>, ValueFunction<Object, Object>> classValueFunctionMap = registry.valueConverters.get(c);
+			if (classValueFunctionMap != null) {
+				targetTypes.addAll(classValueFunctionMap.keySet());
+			}
+		}
+		return targetTypes.size() > 1 || (targetTypes.size() == 1 && !targetTypes.contains(String.class));
+	}
+
+	/**
+	 * @see ValueConversionHelper#collectRegisteredCompatibleTargetTypes(Class)
+	 */
+	@NotNull
+	public Set<Class<?>> collectRegisteredCompatibleTargetTypes(final Class<?> fromType) {
+		Set<Class<?>> compatibleTypes = new HashSet<>(Collections.<Class<?>>singleton(fromType));
+		final Node<Class<?>> fromNode = conversionGraph().nodes.get(fromType);
+		if (fromNode != null) {
+			for (Node<Class<?>> reachableNode : GraphHelper.findReachableNodes(fromNode)) {
+				compatibleTypes.add(reachableNode.getType());
+			}
+		}
+		return compatibleTypes;
+	}
+
+	/**
+	 * @see ValueConversionHelper#typesCompatible(Class, Class)
+	 */
+	public boolean typesCompatible(final Class<?> fromType, final Class<?> targetType) {
+		if (targetType.isAssignableFrom(fromType)) {
+			return true;
+		} else {
+			for (Class<?> registeredCompatibleTargetType : collectCompatibleTargetTypes(fromType)) {
+				if (targetType.isAssignableFrom(registeredCompatibleTargetType)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @see ValueConversionHelper#collectCompatibleTargetTypes(Class)
+	 */
+	@NotNull
+	public Set<Class<?>> collectCompatibleTargetTypes(Class<?> fromType) {
+		return collectCompatibleTargetTypes(fromType, GraphHelper.MAX_PATH_LENGTH);
+	}
+
+	/**
+	 * Like {@link #collectCompatibleTargetTypes(Class)}, but only for target types that can be reached with at most the given number of chained
+	 * conversions.
+	 */
+	@NotNull
+	public Set<Class<?>> collectCompatibleTargetTypes(Class<?> fromType, int maxConversionDepth) {
+		final Map<Class<?>, Node<Class<?>>> converterGraph = conversionGraph().nodes;
+		Set<Class<?>> compatibleTargetTypes = new HashSet<>();
+		Node<Class<?>> fromNode = resolveFromNode(converterGraph, fromType);
+		for (ConverterRegistry registry = this; registry != null; registry = registry.parent) {
+			for (Map<Class<?>, ValueFunction<Object, Object>> convertersForFromTypes : registry.valueConverters.values()) {
+				for (Class<?> targetType : convertersForFromTypes.keySet()) {
+					if (!compatibleTargetTypes.contains(targetType) && isCompatibleTargetType(converterGraph, fromNode, targetType, maxConversionDepth)) {
+						compatibleTargetTypes.add(targetType);
+					}
+				}
+			}
+		}
+		return compatibleTargetTypes;
+	}
+
+	private static boolean isCompatibleTargetType(Map<Class<?>, Node<Class<?>>> converterGraph, Node<Class<?>> fromNode, Class<?> targetType,
+			int maxConversionDepth) {
+		for (Node<Class<?>> toNode : collectTypeCompatibleNodes(converterGraph, targetType)) {
+			if (GraphHelper.isPathPossible(fromNode, toNode, maxConversionDepth)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @see ValueConversionHelper#convert(Object[], Class[], boolean)
+	 */
+	@NotNull
+	public Object[] convert(final Object[] args, final Class<?>[] targetTypes, boolean useOriginalValueWhenIncompatible)
+			throws IncompatibleTypeException {
+		if (args.length != targetTypes.length) {
+			throw new IllegalStateException("number of target types should match the number of arguments");
+		}
+		final Object[] convertedValues = new Object[args.length];
+		for (int i = 0; i < targetTypes.length; i++) {
+			try {
+				convertedValues[i] = convert(args[i], targetTypes[i]);
+			} catch (IncompatibleTypeException e) {
+				if (useOriginalValueWhenIncompatible) {
+					// simply take over the original value and keep converting where possible
+					convertedValues[i] = args[i];
+				} else {
+					throw e;
+				}
+			}
+		}
+		return convertedValues;
+	}
+
+	/**
+	 * @see ValueConversionHelper#convert(Object, Class)
+	 */
+	@Nullable
+	public <T> T convert(@Nullable final Object fromValue, final Class<T> targetType)
+			throws IncompatibleTypeException {
+		if (fromValue == null) {
+			return null;
+		} else if (targetType.isAssignableFrom(fromValue.getClass())) {
+			return convertWithoutConversionGraph(fromValue, targetType);
+		} else if (targetType.isEnum() && !conversionGraph().nodes.containsKey(targetType)) {
+			return convertToEnum(fromValue, targetType);
+		} else {
+			return convertWithConversionGraph(fromValue, targetType);
+		}
+	}
+
+	/**
+	 * Finds and caches the ways to convert values of <code>fromType</code> to <code>targetType</code>, so the first conversion of such a value
+	 * doesn't have to.
+	 *
+	 * @see LookupRecorder
+	 */
+	public void prepareConversion(final Class<?> fromType, final Class<?> targetType) {
+		if (!targetType.isAssignableFrom(fromType)) {
+			findConversionPaths(fromType, targetType);
+		}
+	}
+
+	/**
+	 * Looks up the converters and conversion paths needed to convert values of <code>fromType</code> to <code>targetType</code> once, so that
+	 * repeatedly converting such values only runs the converters.
+	 *
+	 * @param fromType The type of the values to convert, or <code>null</code> if unknown, in which case nothing can be prepared.
+	 * @see PreparedConverter
+	 */
+	@NotNull
+	public PreparedConverter prepareConverter(@Nullable final Class<?> fromType, final Class<?> targetType) {
+		return new PreparedConverter(this, fromType, targetType);
+	}
+
+	@NotNull
+	private <T> T convertToEnum(final Object fromValue, final Class<T> targetEnumType) {
+		final String enumName = convert(fromValue, String.class);
+		//noinspection ConstantConditions
+		return trustedCast(STRING_TO_ENUM_CONVERTERS.get(targetEnumType).convertValue(enumName));
+	}
+
+	@NotNull
+	private <T> T convertWithoutConversionGraph(final Object fromValue, final Class<T> targetType) {
+		final ValueFunction<Object, Object> converter = findRegisteredConverter(fromValue.getClass(), targetType);
+		if (converter != null) {
+			try {
+				return trustedCast(converter.convertValue(fromValue));
+			} catch (IncompatibleTypeException e) {
+				// ignore
+			}
+		}
+		return trustedCast(fromValue);
+	}
+
+	@SuppressWarnings("unchecked")
+	@NotNull
+	private <T> T convertWithConversionGraph(final Object fromValue, final Class<T> targetType) {
+		final List<IncompatibleTypeException> incompatibleTypeExceptions = new ArrayList<>();
+
+		for (List<Node<Class<?>>> conversionPathAscending : findConversionPaths(fromValue.getClass(), targetType)) {
+			try {
+				Object evolvingValueToConvert = fromValue;
+				for (Node<Class<?>> nodeInConversionPath : conversionPathAscending) {
+					Class<?> currentFromType = evolvingValueToConvert.getClass();
+					Class<?> currentToType = nodeInConversionPath.getType();
+					evolvingValueToConvert = findConverter(currentFromType, currentToType, evolvingValueToConvert).convertValue(evolvingValueToConvert);
+				}
+				return (T) evolvingValueToConvert;
+			} catch (IncompatibleTypeException e) {
+				incompatibleTypeExceptions.add(e);
+				// keep trying conversion paths...
+			}
+		}
+
+		// conversion paths exhausted.
+		throw new IncompatibleTypeException(fromValue, fromValue.getClass(), targetType, incompatibleTypeExceptions);
+	}
+
+	/**
+	 * @return All conversion paths from <code>fromType</code> to <code>targetType</code> or one of its subtypes, cheapest paths first per
+	 * subtype. Cached for the current conversion graph.
+	 */
+	@NotNull
+	List<List<Node<Class<?>>>> findConversionPaths(final Class<?> fromType, final Class<?> targetType) {
+		final ConversionGraph conversionGraph = conversionGraph();
+		final Class<?> anchor = CacheAnchors.determineAnchor(fromType, targetType);
+		final ConversionPathKey conversionPathKey = new ConversionPathKey(fromType, targetType);
+
+		final ConcurrentMap<ConversionPathKey, List<List<Node<Class<?>>>>> cachedConversionPaths = anchor != null ? conversionGraph.pathCache.get(anchor) : null;
+		if (cachedConversionPaths != null) {
+			List<List<Node<Class<?>>>> conversionPaths = cachedConversionPaths.get(conversionPathKey);
+			if (conversionPaths == null) {
+				conversionPaths = carryOverConversionPaths(conversionGraph, anchor, conversionPathKey);
+			}
+			if (conversionPaths != null) {
+				conversionPathStats.recordHit();
+				return conversionPaths;
+			}
+		}
+		conversionPathStats.recordMiss();
+		LookupRecorder.recordConversionLookup(fromType, targetType);
+
+		final long loadStart = conversionPathStats.startLoad();
+		final Node<Class<?>> fromNode = resolveFromNode(conversionGraph.nodes, fromType);
+		final List<List<Node<Class<?>>>> conversionPaths = new ArrayList<>();
+		for (Node<Class<?>> toNode : collectTypeCompatibleNodes(conversionGraph.nodes, targetType)) {
+			conversionPaths.addAll(GraphHelper.findAllPathsAscending(fromNode, toNode));
+		}
+		conversionPathStats.recordLoad(loadStart);
+
+		if (cachedConversionPaths != null && cachedConversionPaths.putIfAbsent(conversionPathKey, conversionPaths) == null) {
+			conversionPathStats.recordInsert();
+		}
+		return conversionPaths;
+	}
+
+	/**
+	 * @return The conversion paths found in the previous graph, if the new converters of the given graph can't change them, in which case they
+	 * are cached in the given graph as well.
+	 */
+	@Nullable
+	private List<List<Node<Class<?>>>> carryOverConversionPaths(final ConversionGraph conversionGraph, final Class<?> anchor,
+			final ConversionPathKey conversionPathKey) {
+		final ConversionGraph previous = conversionGraph.previous;
+		if (previous == null || conversionGraph.changedTypes == null) {
+			return null;
+		}
+		final List<List<Node<Class<?>>>> previousConversionPaths = previous.pathCache.get(anchor).get(conversionPathKey);
+		if (previousConversionPaths == null || canReachAny(conversionGraph.nodes, conversionPathKey.fromType, conversionGraph.changedTypes)) {
+			return null;
+		}
+		// refer to the nodes of the new graph, so the previous graph can be garbage collected
+		final List<List<Node<Class<?>>>> conversionPaths = new ArrayList<>(previousConversionPaths.size());
+		for (List<Node<Class<?>>> previousConversionPath : previousConversionPaths) {
+			final List<Node<Class<?>>> conversionPath = new ArrayList<>(previousConversionPath.size());
+			for (Node<Class<?>> previousNode : previousConversionPath) {
+				final Node<Class<?>> node = conversionGraph.nodes.get(previousNode.getType());
+				conversionPath.add(node != null ? node : previousNode);
+			}
+			conversionPaths.add(conversionPath);
+		}
+		if (conversionGraph.pathCache.get(anchor).putIfAbsent(conversionPathKey, conversionPaths) == null) {
+			conversionPathStats.recordInsert();
+		}
+		return conversionPaths;
+	}
+
+	/**
+	 * @return The statistics of the cache with conversion paths between types.
+	 */
+	@NotNull
+	public StatsCounter getConversionPathStats() {
+		return conversionPathStats;
+	}
+
+	/**
+	 * @return The node to start looking for conversion paths from. Every type can be converted to <code>String</code>, so for types without a
+	 * registered <code>String</code> converter this is a standalone node that has an edge to the <code>String</code> node on top of the edges of
+	 * the registered node (if any). The standalone node is never added to the graph itself.
+	 */
+	@NotNull
+	private static Node<Class<?>> resolveFromNode(final Map<Class<?>, Node<Class<?>>> converterGraph, final Class<?> fromType) {
+		final Node<Class<?>> registeredFromNode = converterGraph.get(fromType);
+		final Node<Class<?>> stringNode = converterGraph.get(String.class);
+		if (registeredFromNode != null && (stringNode == null || registeredFromNode.getToNodes().containsKey(stringNode))) {
+			return registeredFromNode;
+		}
+		final Node<Class<?>> fromNode = new Node<Class<?>>(fromType);
+		if (registeredFromNode != null) {
+			fromNode.getToNodes().putAll(registeredFromNode.getToNodes());
+		}
+		if (stringNode != null) {
+			fromNode.getToNodes().put(stringNode, LOW_CONVERTER_PRIORITY);
+		}
+		return fromNode;
+	}
+
+	@Nullable
+	ValueFunction<Object, Object> findRegisteredConverter(final Class<?> fromType, final Class<?> targetType) {
+		for (ConverterRegistry registry = this; registry != null; registry = registry.parent) {
+			final Map<Class<?>, ValueFunction<Object, Object>> fromConverters = registry.valueConverters.get(fromType);
+			if (fromConverters != null) {
+				final ValueFunction<Object, Object> converter = fromConverters.get(targetType);
+				if (converter != null) {
+					return converter;
+				}
+			}
+		}
+		return null;
+	}
+
+	@NotNull
+	private ValueFunction<Object, Object> findConverter(final Class<?> fromType, final Class<?> targetType, final Object value) {
+		final ValueFunction<Object, Object> converter = findConverter(fromType, targetType);
+		if (converter != null) {
+			return converter;
+		}
+		throw new IncompatibleTypeException(value, fromType, targetType);
+	}
+
+	@Nullable
+	ValueFunction<Object, Object> findConverter(final Class<?> fromType, final Class<?> targetType) {
+		final ValueFunction<Object, Object> converter = findRegisteredConverter(fromType, targetType);
+		if (converter != null) {
+			return converter;
+		} else if (targetType == String.class) {
+			return TO_STRING_CONVERTERS.get(fromType);
+		}
+		return null;
+	}
+
+	boolean isConversionNode(final Class<?> type) {
+		return conversionGraph().nodes.containsKey(type);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	@NotNull
+	private static ValueFunction<Object, Object> produceStringToEnumConverter(Class<?> enumType) {
+		return trustedCast(StringConverters.produceStringToEnumConverter((Class<? extends Enum>) enumType));
+	}
+
+	@NotNull
+	Set<Node<Class<?>>> collectTypeCompatibleNodes(Class<?> targetType) {
+		return collectTypeCompatibleNodes(conversionGraph().nodes, targetType);
+	}
+
+	@NotNull
+	private static Set<Node<Class<?>>> collectTypeCompatibleNodes(final Map<Class<?>, Node<Class<?>>> converterGraph, Class<?> targetType) {
+		final Set<Node<Class<?>>> typeCompatibleNodes = new HashSet<>();
+		for (Map.Entry<Class<?>, Node<Class<?>>> converterNodeEntry : converterGraph.entrySet()) {
+			if (targetType.isAssignableFrom(converterNodeEntry.getKey())) {
+				typeCompatibleNodes.add(converterNodeEntry.getValue());
+			}
+		}
+		return typeCompatibleNodes;
+	}
+
+	/**
+	 * A conversion graph for a specific version of the registry, with the conversion paths found in it so far. The paths are stored with the
+	 * types involved so types from discarded class loaders don't leak.
+	 */
+	private static final class ConversionGraph {
+		private final long[] layerVersions;
+		private final long version;
+		private final Map<Class<?>, Node<Class<?>>> nodes;
+		/**
+		 * The graph this graph was derived from by applying new converters, whose conversion paths still apply unless they start from a type that
+		 * can reach one of the {@link #changedTypes}. Dropped once this graph is replaced in turn.
+		 */
+		@Nullable
+		private volatile ConversionGraph previous;
+		@Nullable
+		private final Set<Class<?>> changedTypes;
+		private final ClassValue<ConcurrentMap<ConversionPathKey, List<List<Node<Class<?>>>>>> pathCache =
+				new ClassValue<ConcurrentMap<ConversionPathKey, List<List<Node<Class<?>>>>>>() {
+					@Override
+					protected ConcurrentMap<ConversionPathKey, List<List<Node<Class<?>>>>> computeValue(Class<?> type) {
+						return new ConcurrentHashMap<>();
+					}
+				};
+
+		private ConversionGraph(long[] layerVersions, Map<Class<?>, Node<Class<?>>> nodes, @Nullable ConversionGraph previous,
+				@Nullable Set<Class<?>> changedTypes) {
+			long version = 0;
+			for (long layerVersion : layerVersions) {
+				version += layerVersion;
+			}
+			this.layerVersions = layerVersions;
+			this.version = version;
+			this.nodes = nodes;
+			this.previous = previous;
+			this.changedTypes = changedTypes;
+		}
+	}
+
+	private static final class ConversionPathKey {
+		private final Class<?> fromType;
+		private final Class<?> targetType;
+
+		private ConversionPathKey(Class<?> fromType, Class<?> targetType) {
+			this.fromType = fromType;
+			this.targetType = targetType;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			} else if (!(o instanceof ConversionPathKey)) {
+				return false;
+			}
+			final ConversionPathKey other = (ConversionPathKey) o;
+			return fromType == other.fromType && targetType == other.targetType;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * fromType.hashCode() + targetType.hashCode();
+		}
+	}
+}
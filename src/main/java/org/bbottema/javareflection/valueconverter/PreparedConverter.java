@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2011 John Doe (johndoe@mysteryministry.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bbottema.javareflection.valueconverter;
+
+import org.bbottema.javareflection.util.graph.Node;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts values of one type to another type the same way {@link ConverterRegistry#convert(Object, Class)} does, but with the converters and
+ * conversion paths looked up in advance, see {@link ConverterRegistry#prepareConverter(Class, Class)}.
+ * <p>
+ * The prepared lookups only apply to values of exactly the type the converter was prepared for, and only as long as no converters are registered
+ * with the registry (or its ancestors). Other values, and all values after such a change, are simply converted by the registry.
+ */
+public final class PreparedConverter {
+
+	private final ConverterRegistry registry;
+	private final long version;
+	@Nullable
+	private final Class<?> fromType;
+	private final Class<?> targetType;
+	private final Kind kind;
+	/**
+	 * The converter to use for values that are already of the target type, or <code>null</code> to use the values as is.
+	 */
+	@Nullable
+	private final ValueFunction<Object, Object> assignableConverter;
+	/**
+	 * The steps of each conversion path, in the order the registry tries them.
+	 */
+	@NotNull
+	private final ConversionStep[][] conversionPaths;
+
+	PreparedConverter(final ConverterRegistry registry, @Nullable final Class<?> fromType, final Class<?> targetType) {
+		this.registry = registry;
+		this.version = registry.getVersion();
+		this.fromType = fromType;
+		this.targetType = targetType;
+
+		ValueFunction<Object, Object> assignableConverter = null;
+		final List<ConversionStep[]> conversionPaths = new ArrayList<>();
+		if (fromType == null) {
+			kind = Kind.DELEGATE;
+		} else if (targetType.isAssignableFrom(fromType)) {
+			kind = Kind.ASSIGNABLE;
+			assignableConverter = registry.findRegisteredConverter(fromType, targetType);
+		} else if (targetType.isEnum() && !registry.isConversionNode(targetType)) {
+			kind = Kind.DELEGATE;
+		} else {
+			kind = Kind.CONVERSION_PATHS;
+			for (List<Node<Class<?>>> conversionPath : registry.findConversionPaths(fromType, targetType)) {
+				final ConversionStep[] steps = new ConversionStep[conversionPath.size()];
+				Class<?> expectedFromType = fromType;
+				for (int i = 0; i < steps.length; i++) {
+					final Class<?> toType = conversionPath.get(i).getType();
+					steps[i] = new ConversionStep(toType, expectedFromType != null ? resolve(registry, expectedFromType, toType) : null);
+					// the next step converts the outcome of this step, which is boxed when this step converts to a primitive type
+					expectedFromType = !toType.isPrimitive() ? toType : null;
+				}
+				conversionPaths.add(steps);
+			}
+		}
+		this.assignableConverter = assignableConverter;
+		this.conversionPaths = conversionPaths.toArray(new ConversionStep[0][]);
+	}
+
+	@Nullable
+	private static ResolvedConverter resolve(final ConverterRegistry registry, final Class<?> fromType, final Class<?> toType) {
+		final ValueFunction<Object, Object> converter = registry.findConverter(fromType, toType);
+		return converter != null ? new ResolvedConverter(fromType, converter) : null;
+	}
+
+	@Nullable
+	public Class<?> getFromType() {
+		return fromType;
+	}
+
+	@NotNull
+	public Class<?> getTargetType() {
+		return targetType;
+	}
+
+	/**
+	 * @return Whether values of the type this converter was prepared for can possibly be converted to the target type. When not, converting such
+	 * values will throw an {@link IncompatibleTypeException}.
+	 */
+	public boolean isConvertible() {
+		return kind != Kind.CONVERSION_PATHS || conversionPaths.length > 0;
+	}
+
+	/**
+	 * @see ConverterRegistry#convert(Object, Class)
+	 */
+	@Nullable
+	public Object convert(@Nullable final Object value) throws IncompatibleTypeException {
+		if (value == null) {
+			return null;
+		} else if (value.getClass() != fromType || kind == Kind.DELEGATE || registry.getVersion() != version) {
+			return registry.convert(value, targetType);
+		} else if (kind == Kind.ASSIGNABLE) {
+			return convertAssignable(value);
+		} else {
+			return convertWithConversionPaths(value);
+		}
+	}
+
+	@NotNull
+	private Object convertAssignable(final Object value) {
+		if (assignableConverter != null) {
+			try {
+				return assignableConverter.convertValue(value);
+			} catch (IncompatibleTypeException e) {
+				// ignore
+			}
+		}
+		return value;
+	}
+
+	@NotNull
+	private Object convertWithConversionPaths(final Object value) {
+		List<IncompatibleTypeException> incompatibleTypeExceptions = null;
+
+		for (ConversionStep[] conversionPath : conversionPaths) {
+			try {
+				Object evolvingValueToConvert = value;
+				for (ConversionStep step : conversionPath) {
+					evolvingValueToConvert = step.convert(registry, evolvingValueToConvert);
+				}
+				return evolvingValueToConvert;
+			} catch (IncompatibleTypeException e) {
+				if (incompatibleTypeExceptions == null) {
+					incompatibleTypeExceptions = new ArrayList<>();
+				}
+				incompatibleTypeExceptions.add(e);
+				// keep trying conversion paths...
+			}
+		}
+
+		// conversion paths exhausted.
+		throw new IncompatibleTypeException(value, value.getClass(), targetType,
+				incompatibleTypeExceptions != null ? incompatibleTypeExceptions : new ArrayList<IncompatibleTypeException>());
+	}
+
+	private enum Kind {
+		/**
+		 * The value is already of the target type, but a registered converter may still apply.
+		 */
+		ASSIGNABLE,
+		/**
+		 * The value is converted along the conversion paths found in the conversion graph.
+		 */
+		CONVERSION_PATHS,
+		/**
+		 * Nothing could be prepared, every value is converted by the registry.
+		 */
+		DELEGATE
+	}
+
+	/**
+	 * A step in a conversion path. The converter is resolved for the type the value is expected to have at this step; if a converter produced a
+	 * value of another type, the converter for that type is looked up and remembered instead.
+	 */
+	private static final class ConversionStep {
+		private final Class<?> toType;
+		@Nullable
+		private volatile ResolvedConverter resolvedConverter;
+
+		private ConversionStep(final Class<?> toType, @Nullable final ResolvedConverter resolvedConverter) {
+			this.toType = toType;
+			this.resolvedConverter = resolvedConverter;
+		}
+
+		@NotNull
+		private Object convert(final ConverterRegistry registry, final Object value) {
+			ResolvedConverter resolvedConverter = this.resolvedConverter;
+			if (resolvedConverter == null || resolvedConverter.fromType != value.getClass()) {
+				final ValueFunction<Object, Object> converter = registry.findConverter(value.getClass(), toType);
+				if (converter == null) {
+					throw new IncompatibleTypeException(value, value.getClass(), toType);
+				}
+				this.resolvedConverter = resolvedConverter = new ResolvedConverter(value.getClass(), converter);
+			}
+			return resolvedConverter.converter.convertValue(value);
+		}
+	}
+
+	private static final class ResolvedConverter {
+		private final Class<?> fromType;
+		private final ValueFunction<Object, Object> converter;
+
+		private ResolvedConverter(final Class<?> fromType, final ValueFunction<Object, Object> converter) {
+			this.fromType = fromType;
+			this.converter = converter;
+		}
+	}
+}
@@ -43,6 +43,39 @@ public class ClassUtilsTest {
 		assertThat(ClassUtils.locateClass("Socket", true, null)).isEqualTo(Socket.class);
 	}
 	
+	@Test
+	public void testLocateClassCachesPerClassLoader() {
+		ClassLoader integerLoader = new RenamingClassLoader("Number", Integer.class);
+		ClassLoader longLoader = new RenamingClassLoader("Number", Long.class);
+		
+		for (int i = 0; i < 2; i++) {
+			assertThat(ClassUtils.locateClass("Number", "", integerLoader)).isEqualTo(Integer.class);
+			assertThat(ClassUtils.locateClass("Number", "", longLoader)).isEqualTo(Long.class);
+			assertThat(ClassUtils.locateClass("Number", false, integerLoader)).isEqualTo(Integer.class);
+			assertThat(ClassUtils.locateClass("Number", false, longLoader)).isEqualTo(Long.class);
+			assertThat(ClassUtils.locateClass("Number", false, null)).isEqualTo(Number.class);
+		}
+	}
+	
+	/**
+	 * Resolves one name to a class of choice, delegating everything else to the regular class loader.
+	 */
+	private static class RenamingClassLoader extends ClassLoader {
+		private final String name;
+		private final Class<?> type;
+		
+		RenamingClassLoader(String name, Class<?> type) {
+			super(ClassUtilsTest.class.getClassLoader());
+			this.name = name;
+			this.type = type;
+		}
+		
+		@Override
+		public Class<?> loadClass(String name) throws ClassNotFoundException {
+			return name.equals(this.name) ? type : super.loadClass(name);
+		}
+	}
+	
 	@Test
 	public void testNewInstanceHappyFlow() {
 		assertThat(ClassUtils.newInstanceSimple(Object.class).getClass()).isEqualTo(Object.class);
@@ -0,0 +1,215 @@
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.model.LookupMode;
+import org.bbottema.javareflection.testmodel.C;
+import org.bbottema.javareflection.testmodel.Pear;
+import org.bbottema.javareflection.util.cache.CacheAnchors;
+import org.bbottema.javareflection.util.cache.CacheStats;
+import org.bbottema.javareflection.valueconverter.ValueConversionHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LookupCachesTest {
+	
+	@AfterEach
+	public void restoreDefaults() {
+		LookupCaches.setStatsEnabled(false);
+		LookupCaches.resetStats();
+		LookupCaches.unregisterMBean();
+	}
+	
+	@Test
+	public void testStats() throws Exception {
+		LookupCaches.resetCache();
+		LookupCaches.resetStats();
+		LookupCaches.setStatsEnabled(true);
+		
+		MethodUtils.invokeCompatibleConstructor(C.class, new Pear());
+		MethodUtils.invokeCompatibleConstructor(C.class, new Pear());
+		ClassUtils.locateClass("Integer", false, null);
+		ClassUtils.locateClass("Integer", false, null);
+		ValueConversionHelper.convert(true, Double.class);
+		ValueConversionHelper.convert(false, Double.class);
+		TypeUtils.generateCompatibleTypeLists(EnumSet.of(LookupMode.AUTOBOX), Integer.class);
+		TypeUtils.generateCompatibleTypeLists(EnumSet.of(LookupMode.AUTOBOX), Integer.class);
+		
+		Map<String, CacheStats> stats = LookupCaches.getStats();
+		assertThat(stats).containsOnlyKeys(LookupCaches.CLASS_CACHE, LookupCaches.METHOD_CACHE, LookupCaches.COMPATIBLE_TYPE_LISTS_CACHE,
+				LookupCaches.CONVERSION_PATHS_CACHE);
+		for (CacheStats cacheStats : stats.values()) {
+			assertThat(cacheStats.getHitCount()).isGreaterThanOrEqualTo(1);
+			assertThat(cacheStats.getMissCount()).isGreaterThanOrEqualTo(1);
+			assertThat(cacheStats.getLoadCount()).isGreaterThanOrEqualTo(1);
+			assertThat(cacheStats.getTotalLoadTime()).isPositive();
+			assertThat(cacheStats.getSize()).isGreaterThanOrEqualTo(1);
+			assertThat(cacheStats.getHitRate()).isBetween(0.0, 1.0);
+		}
+		CacheStats methodStats = stats.get(LookupCaches.METHOD_CACHE);
+		assertThat(methodStats.getHitCount()).isEqualTo(1);
+		assertThat(methodStats.getMissCount()).isEqualTo(1);
+		assertThat(methodStats.getLoadCount()).isEqualTo(1);
+		assertThat(methodStats.getSize()).isEqualTo(1);
+		
+		LookupCaches.resetStats();
+		LookupCaches.resetCache();
+		assertThat(LookupCaches.getStats().get(LookupCaches.METHOD_CACHE)).isEqualTo(new CacheStats(0, 0, 0, 0, 0, 0));
+	}
+	
+	@Test
+	public void testStatsDisabled() throws Exception {
+		LookupCaches.resetStats();
+		MethodUtils.invokeCompatibleConstructor(C.class, new Pear());
+		MethodUtils.invokeCompatibleConstructor(C.class, new Pear());
+		
+		CacheStats methodStats = LookupCaches.getStats().get(LookupCaches.METHOD_CACHE);
+		assertThat(methodStats.getRequestCount()).isZero();
+		assertThat(methodStats.getLoadCount()).isZero();
+		assertThat(methodStats.getSize()).isGreaterThanOrEqualTo(1);
+	}
+	
+	@Test
+	public void testMBean() throws Exception {
+		LookupCaches.registerMBean();
+		LookupCaches.registerMBean(); // idempotent
+		
+		ObjectName objectName = new ObjectName("org.bbottema.javareflection:type=LookupCaches");
+		ManagementFactory.getPlatformMBeanServer().setAttribute(objectName, new javax.management.Attribute("StatsEnabled", true));
+		assertThat(LookupCaches.isStatsEnabled()).isTrue();
+		TabularData stats = (TabularData) ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "Stats");
+		assertThat(stats.size()).isEqualTo(4);
+		
+		LookupCaches.unregisterMBean();
+		assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName)).isFalse();
+	}
+	
+	@Test
+	public void testDetermineAnchor() throws ClassNotFoundException {
+		ClassLoader pluginLoader = new PluginClassLoader();
+		Class<?> pluginType = pluginLoader.loadClass(Plugin.class.getName());
+		
+		assertThat(CacheAnchors.determineAnchor(String.class, new Class<?>[]{ Integer.class, int.class })).isEqualTo(String.class);
+		assertThat(CacheAnchors.determineAnchor(String.class, new Class<?>[]{ LookupCachesTest.class, null })).isEqualTo(LookupCachesTest.class);
+		assertThat(CacheAnchors.determineAnchor(String.class, new Class<?>[]{ pluginType, LookupCachesTest.class })).isEqualTo(pluginType);
+		assertThat(CacheAnchors.determineAnchor(pluginType, new Class<?>[]{ String.class })).isEqualTo(pluginType);
+		
+		Class<?> otherPluginType = new PluginClassLoader().loadClass(Plugin.class.getName());
+		assertThat(CacheAnchors.determineAnchor(pluginType, new Class<?>[]{ otherPluginType })).isNull();
+	}
+	
+	@Test
+	public void testDiscardedClassLoaderIsCollected() throws Exception {
+		WeakReference<ClassLoader> pluginLoader = usePluginClassLoader();
+		
+		List<byte[]> memoryPressure = new ArrayList<>();
+		for (int i = 0; i < 100 && pluginLoader.get() != null; i++) {
+			System.gc();
+			memoryPressure.add(new byte[1024 * 1024]);
+			Thread.sleep(10);
+		}
+		assertThat(pluginLoader.get()).as("plugin class loader should have been garbage collected").isNull();
+	}
+	
+	/**
+	 * Exercises every cache with types from a throwaway class loader, only returning a weak reference to that class loader.
+	 */
+	private static WeakReference<ClassLoader> usePluginClassLoader() throws Exception {
+		ClassLoader pluginLoader = new PluginClassLoader();
+		Class<?> pluginType = pluginLoader.loadClass(Plugin.class.getName());
+		Class<?> pluginEnumType = pluginLoader.loadClass(PluginEnum.class.getName());
+		assertThat(pluginType).isNotSameAs(Plugin.class);
+		
+		Object plugin = MethodUtils.invokeCompatibleConstructor(pluginType, 5);
+		// plugin type as owner, requiring conversions
+		assertThat((Object) MethodUtils.invokeCompatibleMethod(plugin, pluginType, "describe", 5, true)).isEqualTo("5true");
+		// plugin type only in the signature of a method owned by a system type
+		assertThat((Object) MethodUtils.invokeCompatibleMethod(null, String.class, "valueOf", plugin)).isEqualTo("7");
+		// value conversions from and to plugin types
+		assertThat(ValueConversionHelper.convert(plugin, String.class)).isEqualTo("7");
+		assertThat(ValueConversionHelper.convert(plugin, Integer.class)).isEqualTo(7);
+		assertThat(ValueConversionHelper.convert("ONE", pluginEnumType)).isEqualTo(Enum.valueOf(pluginEnumType.asSubclass(Enum.class), "ONE"));
+		assertThat(ValueConversionHelper.collectCompatibleTargetTypes(pluginType)).contains(String.class);
+		assertThat(TypeUtils.generateCompatibleTypeLists(EnumSet.allOf(LookupMode.class), pluginType, Integer.class)).isNotEmpty();
+		// class lookups with the plugin class loader
+		assertThat(ClassUtils.locateClass(Plugin.class.getName(), false, pluginLoader)).isSameAs(pluginType);
+		assertThat(ClassUtils.locateClass(Plugin.class.getName(), (String) null, pluginLoader)).isSameAs(pluginType);
+		
+		return new WeakReference<>(pluginLoader);
+	}
+	
+	/**
+	 * Loads its own copies of the plugin types, delegating everything else to the regular class loader.
+	 */
+	private static class PluginClassLoader extends ClassLoader {
+		private static final List<String> PLUGIN_TYPES = asList(Plugin.class.getName(), PluginEnum.class.getName());
+		
+		PluginClassLoader() {
+			super(LookupCachesTest.class.getClassLoader());
+		}
+		
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			synchronized (getClassLoadingLock(name)) {
+				if (PLUGIN_TYPES.contains(name)) {
+					Class<?> loadedClass = findLoadedClass(name);
+					if (loadedClass == null) {
+						byte[] bytecode = readBytecode(name);
+						loadedClass = defineClass(name, bytecode, 0, bytecode.length);
+					}
+					return loadedClass;
+				}
+				return super.loadClass(name, resolve);
+			}
+		}
+		
+		private static byte[] readBytecode(String name) throws ClassNotFoundException {
+			try (InputStream in = LookupCachesTest.class.getResourceAsStream("/" + name.replace('.', '/') + ".class")) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				for (int read; (read = in.read(buffer)) != -1; ) {
+					out.write(buffer, 0, read);
+				}
+				return out.toByteArray();
+			} catch (IOException e) {
+				throw new ClassNotFoundException(name, e);
+			}
+		}
+	}
+	
+	@SuppressWarnings("unused")
+	public static class Plugin {
+		private final int number;
+		
+		public Plugin(Integer number) {
+			this.number = number;
+		}
+		
+		public String describe(String text, Boolean flag) {
+			return text + flag;
+		}
+		
+		@Override
+		public String toString() {
+			return "7";
+		}
+	}
+	
+	@SuppressWarnings("unused")
+	public enum PluginEnum {
+		ONE, TWO
+	}
+}
@@ -0,0 +1,51 @@
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.testmodel.C;
+import org.bbottema.javareflection.testmodel.Fruit;
+import org.bbottema.javareflection.testmodel.Pear;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MemberIndexTest {
+	
+	@Test
+	public void testFindMethod() throws NoSuchMethodException {
+		MemberIndex index = MemberIndex.of(C.class);
+		assertThat(index.findMethod("foo", new Class<?>[]{ Double.class, Fruit.class, char.class }))
+				.isEqualTo(C.class.getMethod("foo", Double.class, Fruit.class, char.class));
+		assertThat(index.findMethod("privateMethod", new Class<?>[0])).isEqualTo(C.class.getDeclaredMethod("privateMethod"));
+		assertThat(index.findMethod("foo", new Class<?>[]{ Double.class, Pear.class, char.class })).isNull();
+		assertThat(index.findMethod("foo", new Class<?>[]{ Double.class, null, char.class })).isNull();
+		assertThat(index.findMethod("foos", new Class<?>[0])).isNull();
+		
+		// interfaces first, most specific return type
+		assertThat(MemberIndex.of(ArrayList.class).findMethod("size", new Class<?>[0])).isEqualTo(List.class.getMethod("size"));
+		assertThat(MemberIndex.of(StringBuilder.class).findMethod("append", new Class<?>[]{ String.class }))
+				.isEqualTo(StringBuilder.class.getMethod("append", String.class));
+	}
+	
+	@Test
+	public void testFindConstructor() throws NoSuchMethodException {
+		MemberIndex index = MemberIndex.of(C.class);
+		assertThat(index.findConstructor(new Class<?>[]{ Pear.class })).isEqualTo(C.class.getConstructor(Pear.class));
+		assertThat(index.findConstructor(new Class<?>[]{ String.class })).isNull();
+		assertThat(index.getConstructorSignatures(1)).isNotEmpty();
+		assertThat(index.getConstructorSignatures(0)).isEmpty();
+	}
+	
+	@Test
+	public void testIndexedByNameAndArity() {
+		MemberIndex index = MemberIndex.of(C.class);
+		assertThat(index.getMethodSignatures("foo", 3)).isNotEmpty();
+		assertThat(index.getMethodSignatures("foo", 2)).isEmpty();
+		assertThat(index.getMethodSignatures("foo", 4)).isEmpty();
+		assertThat(index.getMethodSignatures("foos", 3)).isEmpty();
+		assertThat(index.getMaxMethodArity("foo")).isEqualTo(3);
+		assertThat(index.getMaxMethodArity("foos")).isEqualTo(-1);
+		assertThat(MemberIndex.of(C.class)).isSameAs(index);
+	}
+}
@@ -0,0 +1,128 @@
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.testmodel.Pear;
+import org.bbottema.javareflection.valueconverter.ValueFunction.ValueFunctionImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MethodCallSiteTest {
+
+	@Test
+	public void testCallsAreRememberedPerTypeAndArgumentClasses() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		MethodCallSite callSite = context.createCallSite("on");
+		Handler handler = new Handler();
+		OtherHandler otherHandler = new OtherHandler();
+
+		assertThat(callSite.<String>invoke(handler, Handler.class, "event")).isEqualTo("Handler.on(String)");
+		assertThat(callSite.<String>invoke(handler, Handler.class, 42)).isEqualTo("Handler.on(Integer)");
+		assertThat(callSite.<String>invoke(otherHandler, OtherHandler.class, "event")).isEqualTo("OtherHandler.on(Object)");
+		assertThat(callSite.getCachedCallCount()).isEqualTo(3);
+		// seen before
+		assertThat(callSite.<String>invoke(handler, Handler.class, "other event")).isEqualTo("Handler.on(String)");
+		assertThat(callSite.<String>invoke(otherHandler, OtherHandler.class, "other event")).isEqualTo("OtherHandler.on(Object)");
+		assertThat(callSite.getCachedCallCount()).isEqualTo(3);
+		assertThat(callSite.isMegamorphic()).isFalse();
+
+		assertThatThrownBy(() -> callSite.invoke(handler, Handler.class, "event", "too many"))
+				.isInstanceOf(NoSuchMethodException.class);
+		assertThat(callSite.getCachedCallCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void testCallSiteGoesMegamorphicGracefully() throws Exception {
+		MethodCallSite callSite = ReflectionContext.create().createCallSite("on");
+		OtherHandler handler = new OtherHandler();
+		List<Object> events = new ArrayList<>();
+		events.add("event");
+		events.add(1);
+		events.add(1L);
+		events.add(1.0);
+		events.add('c');
+		events.add(true);
+		events.add(new Pear());
+		events.add(new Object());
+		events.add(new StringBuilder());
+		events.add(new ArrayList<>());
+
+		for (int i = 0; i < 2; i++) {
+			for (Object event : events) {
+				assertThat(callSite.<String>invoke(handler, OtherHandler.class, event)).isEqualTo("OtherHandler.on(Object)");
+			}
+		}
+		assertThat(callSite.isMegamorphic()).isTrue();
+		assertThat(callSite.getCachedCallCount()).isEqualTo(MethodCallSite.MAX_POLYMORPHIC_CALLS);
+	}
+
+	@Test
+	public void testCallsAreResolvedAgainWhenConvertersChange() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		MethodCallSite callSite = context.createCallSite("eat");
+		assertThatThrownBy(() -> callSite.invoke(null, Eater.class, "pear"))
+				.isInstanceOf(NoSuchMethodException.class);
+
+		context.registerValueConverter(new ValueFunctionImpl<>(String.class, Pear.class, value -> new Pear()));
+		assertThat(callSite.<String>invoke(null, Eater.class, "pear")).isEqualTo("eating Pear");
+		assertThat(callSite.getCachedCallCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testMegamorphicCallSiteCachesAgainWhenConvertersChange() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		MethodCallSite callSite = context.createCallSite("on");
+		OtherHandler handler = new OtherHandler();
+		List<Object> events = new ArrayList<>();
+		events.add("event");
+		events.add(1);
+		events.add(1L);
+		events.add(1.0);
+		events.add('c');
+		events.add(true);
+		events.add(new Pear());
+		events.add(new Object());
+		events.add(new StringBuilder());
+
+		for (Object event : events) {
+			callSite.invoke(handler, OtherHandler.class, event);
+		}
+		assertThat(callSite.isMegamorphic()).isTrue();
+		assertThat(callSite.getCachedCallCount()).isEqualTo(MethodCallSite.MAX_POLYMORPHIC_CALLS);
+
+		context.registerValueConverter(new ValueFunctionImpl<>(String.class, Pear.class, value -> new Pear()));
+		assertThat(callSite.<String>invoke(handler, OtherHandler.class, "event")).isEqualTo("OtherHandler.on(Object)");
+		assertThat(callSite.isMegamorphic()).isFalse();
+		assertThat(callSite.getCachedCallCount()).isEqualTo(1);
+		assertThat(callSite.<String>invoke(handler, OtherHandler.class, 1)).isEqualTo("OtherHandler.on(Object)");
+		assertThat(callSite.getCachedCallCount()).isEqualTo(2);
+	}
+
+	@SuppressWarnings("unused")
+	public static class Handler {
+		public String on(String event) {
+			return "Handler.on(String)";
+		}
+
+		public String on(Integer event) {
+			return "Handler.on(Integer)";
+		}
+	}
+
+	@SuppressWarnings("unused")
+	public static class OtherHandler {
+		public String on(Object event) {
+			return "OtherHandler.on(Object)";
+		}
+	}
+
+	@SuppressWarnings("unused")
+	public static class Eater {
+		public static String eat(Pear pear) {
+			return "eating " + pear.getClass().getSimpleName();
+		}
+	}
+}
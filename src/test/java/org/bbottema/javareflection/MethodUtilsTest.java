@@ -15,7 +15,9 @@ import org.bbottema.javareflection.testmodel.Moo;
 import org.bbottema.javareflection.testmodel.Pear;
 import org.bbottema.javareflection.testmodel.Skree;
 import org.bbottema.javareflection.util.MetaAnnotationExtractor;
+import org.bbottema.javareflection.util.cache.CacheStats;
 import org.bbottema.javareflection.valueconverter.ValueConversionHelper;
+import org.bbottema.javareflection.valueconverter.ValueFunction.ValueFunctionImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.internal.util.collections.Iterables;
@@ -36,11 +38,17 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static java.util.Arrays.asList;
 import static java.util.EnumSet.allOf;
 import static java.util.EnumSet.of;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 import static org.bbottema.javareflection.ClassUtils.collectMethodsByName;
@@ -98,6 +106,41 @@ public class MethodUtilsTest {
 		assertThat(result).hasSize(1);
 	}
 	
+	@Test
+	public void testFindCompatibleMethodRanksCandidatesByCost()
+			throws NoSuchMethodException {
+		Set<LookupMode> lookupMode = EnumSet.of(LookupMode.AUTOBOX, LookupMode.CAST_TO_SUPER, LookupMode.CAST_TO_INTERFACE, LookupMode.COMMON_CONVERT);
+		// autoboxing, then casting, then widening, then other conversions
+		assertThat(MethodUtils.findCompatibleMethod(StringBuilder.class, "append", lookupMode, Integer.class))
+				.extracting("compatibleSignature")
+				.containsExactly(new Class<?>[]{int.class}, new Class<?>[]{Object.class}, new Class<?>[]{long.class}, new Class<?>[]{float.class},
+						new Class<?>[]{double.class}, new Class<?>[]{String.class}, new Class<?>[]{char.class}, new Class<?>[]{boolean.class});
+		// an exact match is the only candidate
+		assertThat(MethodUtils.findCompatibleMethod(StringBuilder.class, "append", lookupMode, int.class))
+				.extracting("compatibleSignature")
+				.containsExactly((Object) new Class<?>[]{int.class});
+	}
+	
+	@Test
+	public void testGetMethod()
+			throws NoSuchMethodException {
+		// directly implemented interfaces are searched first
+		assertThat(MethodUtils.getMethod(ArrayList.class, "size")).isEqualTo(List.class.getMethod("size"));
+		assertThat(MethodUtils.getMethod(C.class, "foo", Double.class, Fruit.class, char.class))
+				.isEqualTo(C.class.getMethod("foo", Double.class, Fruit.class, char.class));
+		assertThat(MethodUtils.getMethod(String.class, "concat", String.class)).isEqualTo(String.class.getMethod("concat", String.class));
+		// covariant return types resolve like Class.getMethod
+		assertThat(MethodUtils.getMethod(StringBuilder.class, "append", String.class)).isEqualTo(StringBuilder.class.getMethod("append", String.class));
+		// non-public methods are found as well
+		assertThat(MethodUtils.getMethod(C.class, "privateMethod").getName()).isEqualTo("privateMethod");
+		try {
+			MethodUtils.getMethod(C.class, "foo", Double.class, Pear.class, char.class);
+			fail("NoSuchMethodException expected");
+		} catch (NoSuchMethodException e) {
+			assertThat(e.getMessage()).isEqualTo(C.class.getName() + ".foo(java.lang.Double, " + Pear.class.getName() + ", char)");
+		}
+	}
+	
 	@Test
 	public void testFindCompatibleConstructor()
 			throws NoSuchMethodException {
@@ -193,6 +236,94 @@ public class MethodUtilsTest {
 		}
 	}
 	
+	@Test
+	public void testPrepare()
+			throws NoSuchMethodException, IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		PreparedCall<Method> foo = MethodUtils.prepare(C.class, "foo", double.class, Pear.class, String.class);
+		assertThat(foo.getLookupMode()).isEqualTo(of(LookupMode.AUTOBOX, LookupMode.CAST_TO_SUPER, LookupMode.CAST_TO_INTERFACE, LookupMode.COMMON_CONVERT));
+		assertThat(foo.getCandidates()).isNotEmpty();
+		assertThat(foo.<String>invoke(new C(new Pear()), 50d, new Pear(), "g")).isEqualTo("50.0-Pear-g");
+		assertThat(foo.<String>invoke(new C(new Pear()), 60d, new Pear(), "h")).isEqualTo("60.0-Pear-h");
+		// arguments of other types than prepared for are converted as usual
+		assertThat(foo.<String>invoke(new C(new Pear()), 70, new Pear(), 'i')).isEqualTo("70.0-Pear-i");
+		
+		PreparedCall<Method> concat = MethodUtils.prepare(String.class, "concat", String.class);
+		assertThat(concat.getLookupMode()).isEqualTo(of(LookupMode.AUTOBOX, LookupMode.CAST_TO_SUPER));
+		assertThat(concat.<String>invoke("a", "b")).isEqualTo("ab");
+		
+		try {
+			MethodUtils.prepare(C.class, "foos", double.class, Pear.class, String.class);
+			fail("NoSuchMethodException expected");
+		} catch (NoSuchMethodException e) {
+			// OK
+		}
+		try {
+			foo.invoke(new C(new Pear()), 50d, new Pear(), Calendar.getInstance());
+			fail("NoSuchMethodException expected");
+		} catch (NoSuchMethodException e) {
+			// OK
+		}
+		try {
+			foo.invoke(new C(new Pear()), 50d, new Pear());
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			// OK
+		}
+	}
+	
+	@Test
+	public void testPrepareConstructor()
+			throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+		PreparedCall<Constructor> newC = MethodUtils.prepareConstructor(C.class, Pear.class);
+		assertThat(newC.getLookupMode()).isEqualTo(of(LookupMode.AUTOBOX, LookupMode.CAST_TO_SUPER));
+		assertThat(newC.<C>newInstance(new Pear())).isInstanceOf(C.class);
+		
+		PreparedCall<Constructor> newString = MethodUtils.prepareConstructor(String.class, Integer.class);
+		assertThat(newString.<String>newInstance(1234567)).isEqualTo("1234567");
+		
+		try {
+			MethodUtils.prepareConstructor(B.class, double.class);
+			fail("NoSuchMethodException expected");
+		} catch (NoSuchMethodException e) {
+			// OK
+		}
+	}
+	
+	@Test
+	public void testInvokeCompatibleMethod_Concurrently() throws Exception {
+		final int threadCount = 32;
+		final CountDownLatch startSignal = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			final List<Future<Void>> results = new ArrayList<>();
+			for (int i = 0; i < threadCount; i++) {
+				results.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						startSignal.await();
+						for (int j = 0; j < 20; j++) {
+							if (j % 10 == 0) {
+								LookupCaches.resetCache();
+							}
+							assertThat(((Number) MethodUtils.invokeCompatibleMethod(null, Math.class, "min", 1, true)).intValue()).isEqualTo(1);
+							assertThat(MethodUtils.<String>invokeCompatibleMethod("a", String.class, "concat", "b")).isEqualTo("ab");
+							assertThat(MethodUtils.invokeCompatibleConstructor(C.class, new Pear())).isNotNull();
+							assertThat(ClassUtils.locateClass("Integer", false, null)).isEqualTo(Integer.class);
+							assertThat(ClassUtils.locateClass("NotAClass", false, null)).isNull();
+						}
+						return null;
+					}
+				}));
+			}
+			startSignal.countDown();
+			for (Future<Void> result : results) {
+				result.get(1, MINUTES);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
 	@Test
 	public void testIsMethodCompatible_Simple() throws NoSuchMethodException {
 		Set<LookupMode> lookupModes = EnumSet.noneOf(LookupMode.class);
@@ -412,4 +543,151 @@ public class MethodUtilsTest {
 		assertThat(MethodUtils.<String>invokeMethodSimple(valueOfBoolean, null, true)).isEqualTo("true");
 		assertThat(MethodUtils.<String>invokeMethodSimple(valueOfBoolean, null, false)).isEqualTo("false");
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testZeroArgumentAndAbsentMethodsAreCached() throws NoSuchMethodException {
+		ReflectionContext context = ReflectionContext.create();
+		Set<LookupMode> lookupMode = EnumSet.noneOf(LookupMode.class);
+		
+		Set<InvokableObject<Method>> toString = MethodUtils.findCompatibleMethod(context, Pear.class, "toString", lookupMode);
+		assertThat(MethodUtils.findCompatibleMethod(context, Pear.class, "toString", lookupMode)).isSameAs(toString);
+		
+		for (int i = 0; i < 2; i++) {
+			try {
+				MethodUtils.findCompatibleMethod(context, Pear.class, "setColor", lookupMode, String.class);
+				fail("NoSuchMethodException expected");
+			} catch (NoSuchMethodException e) {
+				// OK
+			}
+			try {
+				MethodUtils.findCompatibleConstructor(context, Pear.class, lookupMode, String.class);
+				fail("NoSuchMethodException expected");
+			} catch (NoSuchMethodException e) {
+				// OK
+			}
+		}
+		assertThat(context.getStats().get(LookupCaches.METHOD_CACHE).getSize()).isEqualTo(3);
+	}
+	
+	@Test
+	public void testFindSimpleCompatibleMethodForAbsentMethod() {
+		Set<InvokableObject<Method>> absent = MethodUtils.findSimpleCompatibleMethod(Pear.class, "getColor");
+		assertThat(absent).isEmpty();
+		absent.add(Iterables.firstOf(MethodUtils.findSimpleCompatibleMethod(Pear.class, "toString")));
+		assertThat(MethodUtils.findSimpleCompatibleMethod(Pear.class, "getColor")).isEmpty();
+	}
+	
+	@Test
+	public void testWarmCallsAreRememberedPerArgumentClasses() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		Object[] args = { "1" };
+		assertThat(context.getCaches().getWarmCall(Integer.class, "valueOf", args)).isNull();
+		assertThat(MethodUtils.<Integer>invokeCompatibleMethod(context, null, Integer.class, "valueOf", args)).isEqualTo(1);
+		PreparedCall<Method> warmCall = context.getCaches().getWarmCall(Integer.class, "valueOf", new Object[] { "2" });
+		assertThat(warmCall).isNotNull();
+		assertThat(warmCall.getCandidates()).extracting("method").containsExactly(Integer.class.getMethod("valueOf", String.class));
+		assertThat(context.getCaches().getWarmCall(Integer.class, "valueOf", new Object[] { 2 })).isNull();
+		assertThat(context.getCaches().getWarmCall(Integer.class, "valueOf", new Object[] { null })).isNull();
+		
+		// calls resolved with other converters are ignored
+		context.registerValueConverter(new ValueFunctionImpl<>(String.class, Pear.class, value -> new Pear()));
+		assertThat(context.getCaches().getWarmCall(Integer.class, "valueOf", args)).isNull();
+		assertThat(MethodUtils.<Integer>invokeCompatibleMethod(context, null, Integer.class, "valueOf", args)).isEqualTo(1);
+		assertThat(context.getCaches().getWarmCall(Integer.class, "valueOf", args)).isNotNull();
+	}
+	
+	@Test
+	public void testResolvedTiersAreRememberedPerCallShape() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		Class<?>[] stringSignature = { String.class };
+		assertThat(context.getCaches().getResolvedTier(Math.class, "abs", stringSignature)).isNull();
+		assertThat(MethodUtils.<Integer>invokeCompatibleMethod(context, null, Math.class, "abs", "-1")).isEqualTo(1);
+		assertThat(context.getCaches().getResolvedTier(Math.class, "abs", stringSignature)).isEqualTo(2);
+		assertThat(MethodUtils.<Integer>invokeCompatibleMethod(context, null, Math.class, "abs", "-2")).isEqualTo(2);
+		
+		// misses are remembered as the number of tiers
+		try {
+			MethodUtils.invokeConstructor(context, Pear.class, stringSignature, new Object[] { "pear" });
+			fail("NoSuchMethodException expected");
+		} catch (NoSuchMethodException e) {
+			// OK
+		}
+		assertThat(context.getCaches().getResolvedTier(Pear.class, LookupCaches.MethodKey.CONSTRUCTOR_NAME, stringSignature)).isEqualTo(4);
+		
+		// tiers resolved with other converters are ignored
+		context.registerValueConverter(new ValueFunctionImpl<>(String.class, Pear.class, value -> new Pear()));
+		assertThat(context.getCaches().getResolvedTier(Math.class, "abs", stringSignature)).isNull();
+		assertThat(context.getCaches().getResolvedTier(Pear.class, LookupCaches.MethodKey.CONSTRUCTOR_NAME, stringSignature)).isNull();
+	}
+	
+	@Test
+	public void testRepeatedInvocationsWithNewArgumentArraysHitMethodCache() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		LookupCaches.setStatsEnabled(true);
+		try {
+			for (int i = 0; i < 100; i++) {
+				assertThat(MethodUtils.<Integer>invokeCompatibleMethod(context, null, Integer.class, "valueOf", new Object[] { String.valueOf(i) })).isEqualTo(i);
+				assertThat(MethodUtils.invokeConstructor(context, Pear.class, new Class<?>[0], new Object[0])).isNotNull();
+			}
+			CacheStats methodStats = context.getStats().get(LookupCaches.METHOD_CACHE);
+			assertThat(methodStats.getMissCount()).isEqualTo(2);
+			assertThat(methodStats.getHitCount()).isEqualTo(198);
+			assertThat(methodStats.getSize()).isEqualTo(2);
+		} finally {
+			LookupCaches.setStatsEnabled(false);
+		}
+	}
+	
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testInvokingInaccessibleMethodsLeavesSharedMethodsUnchanged() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		assertThat(MethodUtils.<String>invokeCompatibleMethod(context, new Secret(), Secret.class, "whisper", "hi")).isEqualTo("psst, hi");
+		assertThat(MethodUtils.prepare(context, Secret.class, "whisper", String.class).<String>invoke(new Secret(), "ho")).isEqualTo("psst, ho");
+		assertThat(MethodUtils.getMethod(Secret.class, "whisper", String.class).isAccessible()).isFalse();
+	}
+	
+	@Test
+	public void testConvertingArgumentsPassedAsSubtypedArray() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		assertThat(MethodUtils.<Integer>invokeCompatibleMethod(context, null, Twice.class, "twice", (Object[]) new String[] { "21" })).isEqualTo(42);
+		assertThat(MethodUtils.prepare(context, Twice.class, "twice", String.class).<Integer>invoke(null, (Object[]) new String[] { "21" })).isEqualTo(42);
+		assertThat(context.createCallSite("twice").<Integer>invoke(null, Twice.class, (Object[]) new String[] { "21" })).isEqualTo(42);
+	}
+	
+	@Test
+	public void testReplacingMethodOfInvokableObjectInvokesNewMethod() throws Exception {
+		InvokableObject<Method> invokable = new InvokableObject<>(String.class.getMethod("toUpperCase"), new Class<?>[0], new Class<?>[0]);
+		assertThat(invokable.invoke("Pear")).isEqualTo("PEAR");
+		invokable.setMethod(String.class.getMethod("toLowerCase"));
+		assertThat(invokable.invoke("Pear")).isEqualTo("pear");
+	}
+	
+	@SuppressWarnings("unused")
+	public static class Twice {
+		public static int twice(int value) {
+			return value * 2;
+		}
+	}
+	
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testReturnedMethodsAreCopies() throws Exception {
+		Method method = MethodUtils.getMethod(Secret.class, "whisper", String.class);
+		method.setAccessible(true);
+		assertThat(MethodUtils.getMethod(Secret.class, "whisper", String.class)).isEqualTo(method).isNotSameAs(method);
+		assertThat(MethodUtils.getMethod(Secret.class, "whisper", String.class).isAccessible()).isFalse();
+		
+		InvokableObject<Method> candidate = Iterables.firstOf(MethodUtils.findSimpleCompatibleMethod(Secret.class, "whisper", String.class));
+		candidate.getMethod().setAccessible(true);
+		assertThat(candidate.getMethod().isAccessible()).isFalse();
+		assertThat(Iterables.firstOf(MethodUtils.findSimpleCompatibleMethod(Secret.class, "whisper", String.class)).getMethod().isAccessible()).isFalse();
+	}
+	
+	@SuppressWarnings("unused")
+	private static class Secret {
+		private String whisper(String value) {
+			return "psst, " + value;
+		}
+	}
+}
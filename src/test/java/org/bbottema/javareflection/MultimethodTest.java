@@ -0,0 +1,151 @@
+package org.bbottema.javareflection;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MultimethodTest {
+
+	@Test
+	public void testMostSpecificOverloadWinsForRuntimeClasses() throws Exception {
+		Multimethod collide = MethodUtils.createMultimethod(Collisions.class, "collide");
+		Collisions collisions = new Collisions();
+		Shape circle = new Circle();
+		Shape square = new Square();
+
+		assertThat(collide.<String>invoke(collisions, circle, square)).isEqualTo("circle-square");
+		assertThat(collide.<String>invoke(collisions, circle, circle)).isEqualTo("circle-circle");
+		assertThat(collide.<String>invoke(collisions, circle, new Triangle())).isEqualTo("circle-shape");
+		assertThat(collide.<String>invoke(collisions, square, circle)).isEqualTo("shape-shape");
+		assertThat(collide.<String>invoke(collisions, square, square)).isEqualTo("shape-shape");
+		assertThat(collide.<String>invoke(collisions, new SmallCircle(), square)).isEqualTo("circle-square");
+		assertThat(collide.resolveMethod(SmallCircle.class, Square.class)).isEqualTo(Collisions.class.getMethod("collide", Circle.class, Square.class));
+
+		assertThatThrownBy(() -> collide.invoke(collisions, circle))
+				.isInstanceOf(NoSuchMethodException.class);
+		assertThatThrownBy(() -> collide.invoke(collisions, "circle", square))
+				.isInstanceOf(NoSuchMethodException.class);
+	}
+
+	@Test
+	public void testDispatchesAreRememberedPerArgumentClasses() throws Exception {
+		Multimethod collide = MethodUtils.createMultimethod(Collisions.class, "collide");
+		Collisions collisions = new Collisions();
+		// precomputed for the parameter types of the overloads that can have instances, (Circle, Square) and (Circle, Circle)
+		assertThat(collide.getDispatchCount()).isEqualTo(2);
+
+		collide.invoke(collisions, new Circle(), new Square());
+		assertThat(collide.getDispatchCount()).isEqualTo(2);
+		collide.invoke(collisions, new SmallCircle(), new Square());
+		collide.invoke(collisions, new SmallCircle(), new Square());
+		assertThat(collide.getDispatchCount()).isEqualTo(3);
+		collide.invoke(collisions, new Square(), new Triangle());
+		collide.invoke(collisions, null, new Triangle());
+		assertThat(collide.getDispatchCount()).isEqualTo(5);
+		assertThat(collide.<String>invoke(collisions, new SmallCircle(), new Square())).isEqualTo("circle-square");
+	}
+
+	@Test
+	public void testNullArgumentsMatchAnyReferenceParameter() throws Exception {
+		Multimethod collide = MethodUtils.createMultimethod(Collisions.class, "collide");
+		Collisions collisions = new Collisions();
+
+		assertThat(collide.<String>invoke(collisions, null, new Square())).isEqualTo("circle-square");
+		assertThat(collide.<String>invoke(collisions, new Square(), null)).isEqualTo("shape-shape");
+		// both collide(Circle, Square) and collide(Circle, Circle) apply
+		assertThatThrownBy(() -> collide.invoke(collisions, new Circle(), null))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("ambiguous");
+	}
+
+	@Test
+	public void testPrimitiveParametersApplyAfterUnboxing() throws Exception {
+		Multimethod describe = MethodUtils.createMultimethod(Descriptions.class, "describe");
+
+		assertThat(describe.<String>invoke(null, 42)).isEqualTo("int");
+		assertThat(describe.<String>invoke(null, "42")).isEqualTo("CharSequence");
+		assertThat(describe.<String>invoke(null, new Object[] { null })).isEqualTo("CharSequence");
+		assertThatThrownBy(() -> describe.invoke(null, 42L))
+				.isInstanceOf(NoSuchMethodException.class);
+	}
+
+	@Test
+	public void testNullArgumentArrayCountsAsNoArguments() throws Exception {
+		Multimethod describe = MethodUtils.createMultimethod(Descriptions.class, "describe");
+
+		assertThat(describe.<String>invoke(null, (Object[]) null)).isEqualTo("nothing");
+		assertThat(describe.<String>invoke(null)).isEqualTo("nothing");
+	}
+
+	@Test
+	public void testAmbiguousOverloadsAreReportedUpFront() {
+		assertThatThrownBy(() -> MethodUtils.createMultimethod(AmbiguousCollisions.class, "collide"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("ambiguous")
+				.hasMessageContaining("[class " + Circle.class.getName() + ", class " + Circle.class.getName() + "]");
+		assertThatThrownBy(() -> MethodUtils.createMultimethod(AmbiguousCollisions.class, "bounce"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("no methods named bounce");
+	}
+
+	public abstract static class Shape {
+	}
+
+	public static class Circle extends Shape {
+	}
+
+	public static class SmallCircle extends Circle {
+	}
+
+	public static class Square extends Shape {
+	}
+
+	public static class Triangle extends Shape {
+	}
+
+	@SuppressWarnings("unused")
+	public static class Collisions {
+		public String collide(Shape a, Shape b) {
+			return "shape-shape";
+		}
+
+		public String collide(Circle a, Shape b) {
+			return "circle-shape";
+		}
+
+		public String collide(Circle a, Square b) {
+			return "circle-square";
+		}
+
+		public String collide(Circle a, Circle b) {
+			return "circle-circle";
+		}
+	}
+
+	@SuppressWarnings("unused")
+	public static class AmbiguousCollisions {
+		public String collide(Circle a, Shape b) {
+			return "circle-shape";
+		}
+
+		public String collide(Shape a, Circle b) {
+			return "shape-circle";
+		}
+	}
+
+	@SuppressWarnings("unused")
+	public static class Descriptions {
+		public static String describe() {
+			return "nothing";
+		}
+
+		public static String describe(int value) {
+			return "int";
+		}
+
+		public static String describe(CharSequence value) {
+			return "CharSequence";
+		}
+	}
+}
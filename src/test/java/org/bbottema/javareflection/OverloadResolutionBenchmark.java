@@ -0,0 +1,53 @@
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.model.LookupMode;
+
+import java.util.Arrays;
+
+import static java.lang.String.format;
+
+/**
+ * Measures cold {@link LookupMode#SMART_CONVERT} method lookups for one to eight String arguments, next to the number of signatures generating all
+ * compatible type lists would have to try for the same arguments. Not part of the test suite; run the main method, the numbers are only
+ * indicative.
+ */
+public class OverloadResolutionBenchmark {
+
+	private static final int ITERATIONS = 200;
+
+	public static void main(String[] args) throws Exception {
+		final ReflectionContext sizingContext = ReflectionContext.create();
+		final long compatibleTypes = TypeUtils.collectCompatibleTypeCosts(sizingContext.getCaches(), LookupMode.FULL, String.class).size();
+
+		System.out.println(format("%5s %24s %14s", "arity", "compatible type lists", "us/lookup"));
+		for (int arity = 1; arity <= 8; arity++) {
+			final Class<?>[] signature = new Class<?>[arity];
+			Arrays.fill(signature, String.class);
+			// warm up, then measure lookups in fresh contexts so no cached results are used
+			measure(signature);
+			System.out.println(format("%5d %24d %14.1f", arity, (long) Math.pow(compatibleTypes, arity), measure(signature)));
+		}
+	}
+
+	private static double measure(Class<?>[] signature) throws NoSuchMethodException {
+		final long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			MethodUtils.findCompatibleMethod(ReflectionContext.create(), Target.class, "call", LookupMode.FULL, signature);
+		}
+		return (System.nanoTime() - start) / 1000d / ITERATIONS;
+	}
+
+	@SuppressWarnings("unused")
+	public static class Target {
+		public static int call(Integer a) { return a; }
+		public static int call(Integer a, Integer b) { return a + b; }
+		public static int call(Integer a, Integer b, Integer c) { return a + b + c; }
+		public static int call(Integer a, Integer b, Integer c, Integer d) { return a + b + c + d; }
+		public static int call(Integer a, Integer b, Integer c, Integer d, Integer e) { return a + b + c + d + e; }
+		public static int call(Integer a, Integer b, Integer c, Integer d, Integer e, Integer f) { return a + b + c + d + e + f; }
+		public static int call(Integer a, Integer b, Integer c, Integer d, Integer e, Integer f, Integer g) { return a + b + c + d + e + f + g; }
+		public static int call(Integer a, Integer b, Integer c, Integer d, Integer e, Integer f, Integer g, Integer h) { return a + b + c + d + e + f + g + h; }
+		public static double call(Double a, Double b) { return a + b; }
+		public static double call(Double a, Double b, Double c, Double d) { return a + b + c + d; }
+	}
+}
@@ -0,0 +1,316 @@
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.model.InvokableObject;
+import org.bbottema.javareflection.model.LookupMode;
+import org.bbottema.javareflection.util.Function;
+import org.bbottema.javareflection.util.cache.CachePolicy;
+import org.bbottema.javareflection.util.cache.CacheStats;
+import org.bbottema.javareflection.valueconverter.ConverterRegistry;
+import org.bbottema.javareflection.valueconverter.IncompatibleTypeException;
+import org.bbottema.javareflection.valueconverter.ValueConversionHelper;
+import org.bbottema.javareflection.valueconverter.ValueFunction.ValueFunctionImpl;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ReflectionContextTest {
+
+	@Test
+	public void testChildContextConvertersDontLeakIntoParent() throws Exception {
+		ReflectionContext parent = ReflectionContext.create();
+		ReflectionContext child = parent.createChild();
+		child.registerValueConverter(new ValueFunctionImpl<>(String.class, Meter.class, new MeterParser()));
+
+		assertThat(child.<Integer>invokeCompatibleMethod(null, Ruler.class, "millimeters", "5")).isEqualTo(5000);
+		assertThat(child.convert("3", Meter.class)).isEqualTo(new Meter(3));
+
+		assertThatThrownBy(() -> parent.invokeCompatibleMethod(null, Ruler.class, "millimeters", "5"))
+				.isInstanceOf(NoSuchMethodException.class);
+		assertThatThrownBy(() -> parent.convert("3", Meter.class))
+				.isInstanceOf(IncompatibleTypeException.class);
+		assertThatThrownBy(() -> ValueConversionHelper.convert("3", Meter.class))
+				.isInstanceOf(IncompatibleTypeException.class);
+	}
+
+	@Test
+	public void testChildContextSeesParentConverters() throws Exception {
+		ReflectionContext parent = ReflectionContext.create();
+		ReflectionContext child = parent.createChild();
+
+		assertThatThrownBy(() -> child.convert("3", Meter.class))
+				.isInstanceOf(IncompatibleTypeException.class);
+
+		parent.registerValueConverter(new ValueFunctionImpl<>(String.class, Meter.class, new MeterParser()));
+
+		assertThat(child.convert("3", Meter.class)).isEqualTo(new Meter(3));
+		assertThat(child.<Integer>invokeCompatibleMethod(null, Ruler.class, "millimeters", "5")).isEqualTo(5000);
+		assertThat(child.invokeCompatibleConstructor(Ruler.class, "2").length).isEqualTo(new Meter(2));
+	}
+
+	@Test
+	public void testRegisteringWithChildKeepsParentCaches() throws Exception {
+		ReflectionContext parent = ReflectionContext.create();
+		EnumSet<LookupMode> lookupMode = EnumSet.of(LookupMode.AUTOBOX, LookupMode.COMMON_CONVERT);
+		Set<InvokableObject<Method>> methods = parent.findCompatibleMethod(Ruler.class, "centimeters", lookupMode, Integer.class);
+
+		parent.createChild().registerValueConverter(new ValueFunctionImpl<>(String.class, Meter.class, new MeterParser()));
+		assertThat(parent.findCompatibleMethod(Ruler.class, "centimeters", lookupMode, Integer.class)).isSameAs(methods);
+
+		parent.registerValueConverter(new ValueFunctionImpl<>(String.class, Meter.class, new MeterParser()));
+		assertThat(parent.findCompatibleMethod(Ruler.class, "centimeters", lookupMode, Integer.class)).isNotSameAs(methods);
+	}
+
+	@Test
+	public void testRegisteringConverterOnlyInvalidatesAffectedCaches() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		EnumSet<LookupMode> convertingLookupMode = EnumSet.of(LookupMode.AUTOBOX, LookupMode.COMMON_CONVERT);
+		EnumSet<LookupMode> plainLookupMode = EnumSet.of(LookupMode.AUTOBOX, LookupMode.CAST_TO_SUPER);
+		Set<InvokableObject<Method>> convertingMethods = context.findCompatibleMethod(Ruler.class, "centimeters", convertingLookupMode, Integer.class);
+		Set<InvokableObject<Method>> plainMethods = context.findCompatibleMethod(Ruler.class, "centimeters", plainLookupMode, Integer.class);
+
+		// Integer can't be converted to Meter or Ruler
+		context.registerValueConverter(new ValueFunctionImpl<>(Meter.class, Ruler.class, new Function<Meter, Ruler>() {
+			@Override
+			public Ruler apply(Meter value) {
+				return new Ruler(value);
+			}
+		}));
+		assertThat(context.findCompatibleMethod(Ruler.class, "centimeters", convertingLookupMode, Integer.class)).isSameAs(convertingMethods);
+		assertThat(context.findCompatibleMethod(Ruler.class, "centimeters", plainLookupMode, Integer.class)).isSameAs(plainMethods);
+
+		// Integer can be converted to String
+		context.registerValueConverter(new ValueFunctionImpl<>(String.class, Meter.class, new MeterParser()));
+		assertThat(context.findCompatibleMethod(Ruler.class, "centimeters", convertingLookupMode, Integer.class)).isNotSameAs(convertingMethods);
+		assertThat(context.findCompatibleMethod(Ruler.class, "centimeters", plainLookupMode, Integer.class)).isSameAs(plainMethods);
+		assertThat(context.<Integer>invokeCompatibleMethod(null, Ruler.class, "millimeters", 5)).isEqualTo(5000);
+	}
+
+	@Test
+	public void testInvalidatedCacheEntriesCountAsMisses() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		EnumSet<LookupMode> lookupMode = EnumSet.of(LookupMode.AUTOBOX, LookupMode.COMMON_CONVERT);
+		LookupCaches.setStatsEnabled(true);
+		try {
+			context.findCompatibleMethod(Ruler.class, "centimeters", lookupMode, Integer.class);
+			context.findCompatibleMethod(Ruler.class, "centimeters", lookupMode, Integer.class);
+			context.registerValueConverter(new ValueFunctionImpl<>(String.class, Meter.class, new MeterParser()));
+			context.findCompatibleMethod(Ruler.class, "centimeters", lookupMode, Integer.class);
+
+			CacheStats methodStats = context.getStats().get(LookupCaches.METHOD_CACHE);
+			assertThat(methodStats.getHitCount()).isEqualTo(1);
+			assertThat(methodStats.getMissCount()).isEqualTo(2);
+		} finally {
+			LookupCaches.setStatsEnabled(false);
+		}
+	}
+
+	@Test
+	public void testMethodCachePolicyBoundsAllOwnerTypesTogether() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		context.setMethodCachePolicy(CachePolicy.lru(5));
+		EnumSet<LookupMode> lookupMode = EnumSet.of(LookupMode.AUTOBOX);
+		Class<?>[] owners = { Integer.class, Long.class, Short.class, Byte.class, Double.class, Float.class, String.class, Boolean.class,
+				Character.class, StringBuilder.class };
+		for (Class<?> owner : owners) {
+			assertThat(context.findCompatibleMethod(owner, "toString", lookupMode)).isNotEmpty();
+			assertThat(context.getStats().get(LookupCaches.METHOD_CACHE).getSize()).isLessThanOrEqualTo(5);
+		}
+		assertThat(context.getStats().get(LookupCaches.METHOD_CACHE).getSize()).isEqualTo(5);
+	}
+
+	@Test
+	public void testRegistrationLogIsBounded() {
+		ConverterRegistry converters = ReflectionContext.create().getConverters();
+		long[] initialVersions = converters.getLayerVersions();
+		for (int i = 0; i < 1000; i++) {
+			converters.registerValueConverter(new ValueFunctionImpl<>(String.class, Meter.class, new MeterParser()));
+		}
+		long[] recentVersions = converters.getLayerVersions();
+		converters.registerValueConverter(new ValueFunctionImpl<>(Meter.class, Ruler.class, Ruler::new));
+
+		assertThat(converters.collectChangedTypes(initialVersions, converters.getLayerVersions())).isNull();
+		assertThat(converters.collectChangedTypes(recentVersions, converters.getLayerVersions())).containsOnly(Meter.class, Ruler.class);
+	}
+
+	@Test
+	public void testRegisteringConverterKeepsUnaffectedConversionPaths() {
+		ReflectionContext context = ReflectionContext.create();
+		ConverterRegistry converters = context.getConverters();
+		LookupCaches.setStatsEnabled(true);
+		try {
+			assertThat(context.convert(true, Double.class)).isEqualTo(1.0);
+			converters.registerValueConverter(new ValueFunctionImpl<>(Meter.class, Ruler.class, Ruler::new));
+			assertThat(context.convert(false, Double.class)).isEqualTo(0.0);
+			assertThat(context.convert(new Meter(2), Ruler.class).length).isEqualTo(new Meter(2));
+
+			CacheStats conversionPathStats = converters.getConversionPathStats().snapshot();
+			assertThat(conversionPathStats.getHitCount()).isEqualTo(1);
+			assertThat(conversionPathStats.getMissCount()).isEqualTo(2);
+		} finally {
+			LookupCaches.setStatsEnabled(false);
+		}
+	}
+
+	@Test
+	public void testChildContextWithoutConvertersSharesConversionPaths() {
+		ReflectionContext parent = ReflectionContext.create();
+		ReflectionContext child = parent.createChild();
+		LookupCaches.setStatsEnabled(true);
+		try {
+			assertThat(parent.convert(true, Double.class)).isEqualTo(1.0);
+			assertThat(child.convert(false, Double.class)).isEqualTo(0.0);
+			assertThat(child.getConverters().getConversionPathStats().snapshot().getHitCount()).isEqualTo(1);
+
+			child.registerValueConverter(new ValueFunctionImpl<>(String.class, Meter.class, new MeterParser()));
+			assertThat(child.convert("3", Meter.class)).isEqualTo(new Meter(3));
+			assertThat(child.convert(true, Double.class)).isEqualTo(1.0);
+			assertThatThrownBy(() -> parent.convert("3", Meter.class))
+					.isInstanceOf(IncompatibleTypeException.class);
+		} finally {
+			LookupCaches.setStatsEnabled(false);
+		}
+	}
+
+	@Test
+	public void testChildConverterOverridesParentConverter() {
+		ReflectionContext parent = ReflectionContext.create();
+		ReflectionContext child = parent.createChild();
+		child.registerValueConverter(new ValueFunctionImpl<>(String.class, Integer.class, new Function<String, Integer>() {
+			@Override
+			public Integer apply(String value) {
+				return value.length();
+			}
+		}));
+
+		assertThat(parent.convert("42", Integer.class)).isEqualTo(42);
+		assertThat(child.convert("42", Integer.class)).isEqualTo(2);
+	}
+
+	@Test
+	public void testLookupsThatRunOutOfBudgetFailWithoutBeingCached() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		context.setResolutionBudget(ResolutionBudget.UNLIMITED.withMaxCandidateSignatures(1));
+
+		// Math.abs has four overloads with one parameter
+		assertThatThrownBy(() -> context.findCompatibleMethod(Math.class, "abs", LookupMode.FULL, String.class))
+				.isInstanceOf(ResolutionBudgetExceededException.class)
+				.hasMessageContaining("java.lang.Math.abs(java.lang.String)");
+		assertThatThrownBy(() -> context.findCompatibleMethod(Math.class, "abs", LookupMode.FULL, String.class))
+				.isInstanceOf(ResolutionBudgetExceededException.class);
+		assertThat(context.getResolutionBudgetExceededCount()).isEqualTo(2);
+		// lookups without smart conversions are not limited
+		assertThat(context.<Integer>invokeCompatibleMethod(null, Math.class, "abs", "-1")).isEqualTo(1);
+
+		context.setResolutionBudget(ResolutionBudget.UNLIMITED);
+		assertThat(context.findCompatibleMethod(Math.class, "abs", LookupMode.FULL, String.class)).isNotEmpty();
+		context.resetStats();
+		assertThat(context.getResolutionBudgetExceededCount()).isZero();
+	}
+
+	@Test
+	public void testFailedArgumentConversionDescribesMethod() {
+		ReflectionContext context = ReflectionContext.create();
+
+		assertThatThrownBy(() -> context.invokeCompatibleMethod(null, Ruler.class, "centimeters", "five"))
+				.isInstanceOf(NoSuchMethodException.class)
+				.hasMessage(Ruler.class.getName() + ".centimeters(java.lang.String)");
+		assertThatThrownBy(() -> context.createCallSite("centimeters").invoke(null, Ruler.class, "five"))
+				.isInstanceOf(NoSuchMethodException.class)
+				.hasMessage(Ruler.class.getName() + ".centimeters(java.lang.String)");
+
+		context.registerValueConverter(new ValueFunctionImpl<>(Boolean.class, Meter.class, new Function<Boolean, Meter>() {
+			@Override
+			public Meter apply(Boolean value) {
+				throw new IncompatibleTypeException(value, Boolean.class, Meter.class);
+			}
+		}));
+		assertThatThrownBy(() -> context.invokeConstructor(Ruler.class, new Class<?>[]{Boolean.class}, new Object[]{true}))
+				.isInstanceOf(NoSuchMethodException.class)
+				.hasMessage(Ruler.class.getName() + ".<init>(java.lang.Boolean)");
+	}
+
+	@Test
+	public void testConversionDepthLimitsSmartConversions() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		context.registerValueConverter(new ValueFunctionImpl<>(String.class, Meter.class, new MeterParser()));
+		context.setResolutionBudget(ResolutionBudget.UNLIMITED.withMaxConversionDepth(1));
+
+		// Integer to Meter takes two conversions, via String
+		assertThatThrownBy(() -> context.findCompatibleMethod(Ruler.class, "millimeters", LookupMode.FULL, Integer.class))
+				.isInstanceOf(NoSuchMethodException.class)
+				.isNotInstanceOf(ResolutionBudgetExceededException.class);
+		assertThat(context.findCompatibleMethod(Ruler.class, "millimeters", LookupMode.FULL, String.class)).isNotEmpty();
+
+		context.setResolutionBudget(ResolutionBudget.UNLIMITED.withMaxConversionDepth(2));
+		assertThat(context.findCompatibleMethod(Ruler.class, "millimeters", LookupMode.FULL, Integer.class)).isNotEmpty();
+	}
+
+	@Test
+	public void testConversionDepthDoesntLimitCompatibleTypeLists() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		context.registerValueConverter(new ValueFunctionImpl<>(String.class, Meter.class, new MeterParser()));
+		List<Class<?>[]> compatibleTypeLists = context.generateCompatibleTypeLists(LookupMode.FULL, Integer.class);
+		assertThat(compatibleTypeLists).contains(new Class<?>[] { Meter.class });
+
+		context.setResolutionBudget(ResolutionBudget.UNLIMITED.withMaxConversionDepth(1));
+		assertThat(context.generateCompatibleTypeLists(LookupMode.FULL, Integer.class)).containsExactlyElementsOf(compatibleTypeLists);
+		List<Class<?>[]> iteratedTypeLists = new ArrayList<>();
+		Iterator<Class<?>[]> iterator = context.iterateCompatibleTypeLists(LookupMode.FULL, Integer.class);
+		while (iterator.hasNext()) {
+			iteratedTypeLists.add(iterator.next());
+		}
+		assertThat(iteratedTypeLists).containsExactlyElementsOf(compatibleTypeLists);
+		// while lookups only find methods within the conversion depth
+		assertThatThrownBy(() -> context.findCompatibleMethod(Ruler.class, "millimeters", LookupMode.FULL, Integer.class))
+				.isInstanceOf(NoSuchMethodException.class);
+	}
+
+	public static class Meter {
+		private final int value;
+
+		public Meter(int value) {
+			this.value = value;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Meter && ((Meter) o).value == value;
+		}
+
+		@Override
+		public int hashCode() {
+			return value;
+		}
+	}
+
+	public static class Ruler {
+		private final Meter length;
+
+		public Ruler(Meter length) {
+			this.length = length;
+		}
+
+		public static int millimeters(Meter meter) {
+			return meter.value * 1000;
+		}
+
+		public static int centimeters(int meters) {
+			return meters * 100;
+		}
+	}
+
+	private static class MeterParser implements Function<String, Meter> {
+		@Override
+		public Meter apply(String value) {
+			return new Meter(Integer.parseInt(value));
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package org.bbottema.javareflection;
+
+import org.bbottema.javareflection.valueconverter.ValueFunction.ValueFunctionImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StringArgumentMethodTest {
+
+	private static final String ID = "1c8e1a3c-6b5d-4f1e-9a44-8d5c1f0b2e7a";
+
+	@Test
+	public void testArgumentsAreParsedForTheFirstOverloadTheyParseFor() throws Exception {
+		StringArgumentMethod describe = MethodUtils.createStringArgumentMethod(Commands.class, "describe");
+
+		assertThat(describe.<String>invoke(null, "42")).isEqualTo("int 42");
+		assertThat(describe.<String>invoke(null, ID)).isEqualTo("uuid " + ID);
+		assertThat(describe.<String>invoke(null, "a", "3")).isEqualTo("aaa");
+		assertThatThrownBy(() -> describe.invoke(null, "forty-two"))
+				.isInstanceOf(NoSuchMethodException.class);
+		assertThatThrownBy(() -> describe.invoke(null, "a", "many"))
+				.isInstanceOf(NoSuchMethodException.class);
+		assertThatThrownBy(() -> describe.invoke(null, "1", "2", "3"))
+				.isInstanceOf(NoSuchMethodException.class);
+	}
+
+	@Test
+	public void testOverloadsAreRankedLikeCompatibleMethodLookups() throws Exception {
+		StringArgumentMethod join = MethodUtils.createStringArgumentMethod(Commands.class, "join");
+
+		// the String overload needs no conversions, so it comes first even though the arguments parse for both
+		assertThat(join.getOverloads(2)).hasSize(2);
+		assertThat(join.getOverloads(2).get(0)).isEqualTo(Commands.class.getMethod("join", String.class, String.class));
+		assertThat(join.<String>invoke(null, "4", "2")).isEqualTo("4+2");
+		assertThat(join.<String>invoke(null, "4", "2")).isEqualTo(MethodUtils.<String>invokeCompatibleMethod(null, Commands.class, "join", "4", "2"));
+		assertThat(join.getOverloads(1)).isEmpty();
+	}
+
+	@Test
+	public void testNullArgumentsOnlyApplyToReferenceParameters() throws Exception {
+		StringArgumentMethod describe = MethodUtils.createStringArgumentMethod(Commands.class, "describe");
+		StringArgumentMethod join = MethodUtils.createStringArgumentMethod(Commands.class, "join");
+
+		assertThat(describe.<String>invoke(null, new String[] { null })).isEqualTo("uuid null");
+		assertThat(join.<String>invoke(null, null, "b")).isEqualTo("null+b");
+	}
+
+	@Test
+	public void testInstanceMethodsAndOtherContexts() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		StringArgumentMethod scale = context.createStringArgumentMethod(Commands.class, "scale");
+
+		assertThat(scale.<Long>invoke(new Commands(), "21")).isEqualTo(42L);
+		assertThatThrownBy(() -> context.createStringArgumentMethod(Commands.class, "measure"))
+				.isInstanceOf(NoSuchMethodException.class);
+		assertThatThrownBy(() -> context.createStringArgumentMethod(Commands.class, "missing"))
+				.isInstanceOf(NoSuchMethodException.class);
+	}
+
+	@Test
+	public void testOverloadsAreRankedAgainWhenConvertersAreRegistered() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		StringArgumentMethod length = context.createStringArgumentMethod(Commands.class, "length");
+
+		assertThat(length.<String>invoke(null, "42")).isEqualTo("int 42");
+		assertThatThrownBy(() -> length.invoke(null, "3m"))
+				.isInstanceOf(NoSuchMethodException.class);
+
+		context.registerValueConverter(new ValueFunctionImpl<>(String.class, Distance.class, value -> new Distance(value)));
+
+		assertThat(length.<String>invoke(null, "3m")).isEqualTo("distance 3m");
+		assertThat(length.getOverloads(1)).hasSize(2);
+	}
+
+	@SuppressWarnings("unused")
+	public static class Commands {
+		public static String describe(int value) {
+			return "int " + value;
+		}
+
+		public static String describe(UUID value) {
+			return "uuid " + value;
+		}
+
+		public static String describe(String value, int times) {
+			StringBuilder repeated = new StringBuilder();
+			for (int i = 0; i < times; i++) {
+				repeated.append(value);
+			}
+			return repeated.toString();
+		}
+
+		public static String join(int a, int b) {
+			return a + "-" + b;
+		}
+
+		public static String join(String a, String b) {
+			return a + "+" + b;
+		}
+
+		public long scale(long value) {
+			return value * 2;
+		}
+
+		public void measure(Distance distance) {
+		}
+
+		public static String length(int value) {
+			return "int " + value;
+		}
+
+		public static String length(Distance value) {
+			return "distance " + value.value;
+		}
+	}
+
+	public static class Distance {
+		private final String value;
+
+		public Distance(String value) {
+			this.value = value;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package org.bbottema.javareflection;
 
+import org.bbottema.javareflection.model.LookupMode;
 import org.bbottema.javareflection.testmodel.AnnotationsHelper;
 import org.bbottema.javareflection.testmodel.AnnotationsHelper.MethodAnnotation;
 import org.bbottema.javareflection.testmodel.AnnotationsHelper.ParamAnnotation3;
@@ -11,7 +12,11 @@ import org.junit.jupiter.api.Test;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -50,6 +55,47 @@ public class TypeUtilsTest {
 		assertThat(TypeUtils.collectTypes(objectList)).isEqualTo(expectedTypeList);
 	}
 	
+	@Test
+	public void testSelectCompatibleSignatures() {
+		final ReflectionContext context = ReflectionContext.create();
+		final Set<LookupMode> lookupMode = EnumSet.of(LookupMode.AUTOBOX, LookupMode.CAST_TO_SUPER);
+		// exact match first, then autoboxing, then the closest supertype
+		final List<Class<?>[]> candidates = asList(new Class<?>[]{Object.class}, new Class<?>[]{Number.class}, new Class<?>[]{int.class},
+				new Class<?>[]{Integer.class}, new Class<?>[]{String.class});
+		assertThat(TypeUtils.selectCompatibleSignatures(context, lookupMode, new Class<?>[]{Integer.class}, candidates))
+				.containsExactly(new Class<?>[]{Integer.class}, new Class<?>[]{int.class}, new Class<?>[]{Number.class}, new Class<?>[]{Object.class});
+		// parameters are scored independently and their costs added up
+		final List<Class<?>[]> pairs = asList(new Class<?>[]{Object.class, Object.class}, new Class<?>[]{Fruit.class, String.class},
+				new Class<?>[]{Fruit.class, Object.class}, new Class<?>[]{Pear.class, Object.class});
+		assertThat(TypeUtils.selectCompatibleSignatures(context, lookupMode, new Class<?>[]{Pear.class, Pear.class}, pairs))
+				.containsExactly(new Class<?>[]{Pear.class, Object.class}, new Class<?>[]{Fruit.class, Object.class}, new Class<?>[]{Object.class, Object.class});
+		// null argument types don't match any parameter type
+		assertThat(TypeUtils.selectCompatibleSignatures(context, lookupMode, new Class<?>[]{null}, candidates)).isEmpty();
+	}
+	
+	@Test
+	public void testIterateCompatibleTypeLists() {
+		final ReflectionContext context = ReflectionContext.create();
+		final Set<LookupMode> lookupMode = EnumSet.of(LookupMode.AUTOBOX, LookupMode.CAST_TO_SUPER);
+		final Class<?>[] inputTypelist = {Integer.class, Pear.class};
+		final List<Class<?>[]> compatibleTypeLists = new ArrayList<>(TypeUtils.generateCompatibleTypeLists(ReflectionContext.create(), lookupMode, inputTypelist));
+		
+		// stopping early doesn't cache anything
+		Iterator<Class<?>[]> iterator = TypeUtils.iterateCompatibleTypeLists(context, lookupMode, inputTypelist);
+		assertThat(iterator.next()).isEqualTo(inputTypelist);
+		assertThat(context.getStats().get(LookupCaches.COMPATIBLE_TYPE_LISTS_CACHE).getSize()).isZero();
+		
+		// same order as the generated lists, cached once exhausted
+		final List<Class<?>[]> iteratedTypeLists = new ArrayList<>();
+		iterator = TypeUtils.iterateCompatibleTypeLists(context, lookupMode, inputTypelist);
+		while (iterator.hasNext()) {
+			iteratedTypeLists.add(iterator.next());
+		}
+		assertThat(iteratedTypeLists).containsExactlyElementsOf(compatibleTypeLists);
+		assertThat(context.getStats().get(LookupCaches.COMPATIBLE_TYPE_LISTS_CACHE).getSize()).isEqualTo(1);
+		assertThat(TypeUtils.generateCompatibleTypeLists(context, lookupMode, inputTypelist)).containsExactlyElementsOf(compatibleTypeLists);
+	}
+	
 	@Test
 	public void testWidestNumberClass() {
 		byte b = 1;
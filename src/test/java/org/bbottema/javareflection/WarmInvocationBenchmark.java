@@ -0,0 +1,48 @@
+package org.bbottema.javareflection;
+
+import java.lang.management.ManagementFactory;
+
+import static java.lang.String.format;
+
+/**
+ * Measures the time and the memory allocated per {@link MethodUtils#invokeCompatibleMethod(Object, Class, String, Object...)} call once the
+ * call has been resolved, with arguments that can be passed as is and with arguments that need converting. Not part of the test suite; run the
+ * main method on a HotSpot JVM, which reports allocated bytes per thread. Passing arguments as is should allocate nothing.
+ */
+public class WarmInvocationBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 1_000_000;
+	private static final int MEASURED_ITERATIONS = 10_000_000;
+
+	public static void main(String[] args) throws Exception {
+		final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		measure(threadBean, "as is", new Object[]{ 1 });
+		measure(threadBean, "converted", new Object[]{ 1L });
+		measure(threadBean, "parsed", new Object[]{ "1" });
+	}
+
+	private static void measure(com.sun.management.ThreadMXBean threadBean, String name, Object[] arguments) throws Exception {
+		final Counter counter = new Counter();
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			MethodUtils.invokeCompatibleMethod(counter, Counter.class, "add", arguments);
+		}
+		final long threadId = Thread.currentThread().getId();
+		final long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+		final long start = System.nanoTime();
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			MethodUtils.invokeCompatibleMethod(counter, Counter.class, "add", arguments);
+		}
+		final double nanosPerCall = (System.nanoTime() - start) / (double) MEASURED_ITERATIONS;
+		final double bytesPerCall = (threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore) / (double) MEASURED_ITERATIONS;
+		System.out.println(format("%-10s %8.2f ns/call %8.2f bytes/call (total %d)", name, nanosPerCall, bytesPerCall, counter.total));
+	}
+
+	@SuppressWarnings("WeakerAccess")
+	public static class Counter {
+		int total;
+
+		public void add(Integer value) {
+			total += value;
+		}
+	}
+}
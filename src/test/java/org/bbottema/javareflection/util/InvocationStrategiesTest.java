@@ -0,0 +1,137 @@
+package org.bbottema.javareflection.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class InvocationStrategiesTest {
+
+	private static final List<InvocationStrategy> STRATEGIES = Arrays.asList(
+			InvocationStrategies.REFLECTION, InvocationStrategies.METHOD_HANDLES, InvocationStrategies.HIDDEN_CLASSES);
+
+	@AfterEach
+	public void restoreStrategies() {
+		InvocationStrategies.setDefaultStrategy(InvocationStrategies.METHOD_HANDLES);
+		InvocationStrategies.setStrategy(Subject.class, null);
+	}
+
+	@Test
+	public void testAllStrategiesInvokeAlike() throws Exception {
+		for (InvocationStrategy strategy : STRATEGIES) {
+			Subject subject = (Subject) invoker(strategy, Subject.class.getConstructor(String.class)).newInstance(new Object[]{ "a" });
+			assertThat(subject.prefix).isEqualTo("a");
+			assertThat(invoker(strategy, "instance").invoke(subject, new Object[]{ "b" })).isEqualTo("ab");
+			assertThat(invoker(strategy, "nothing").invoke(subject, null)).isNull();
+			assertThat(invoker(strategy, "all").invoke(null, new Object[]{ 1, 2L, 3.0, (byte) 4, (short) 5, 'c', true, 1.5f, "s" }))
+					.isEqualTo("12345ctrue1.5s");
+			assertThat(invoker(strategy, CharSequence.class.getMethod("length")).invoke("four", null)).isEqualTo(4);
+			assertThat(invoker(strategy, ArrayList.class.getConstructor()).newInstance(null)).isEqualTo(new ArrayList<>());
+		}
+	}
+
+	@Test
+	public void testAllStrategiesBehaveLikeReflection() throws Exception {
+		for (InvocationStrategy strategy : STRATEGIES) {
+			// arguments that need widening
+			assertThat(invoker(strategy, "all").invoke(null, new Object[]{ 1, 2, 3, (byte) 4, (short) 5, 'c', true, 1.5f, "s" }))
+					.isEqualTo("12345ctrue1.5s");
+			final Invoker instance = invoker(strategy, "instance");
+			assertThatThrownBy(() -> instance.invoke(new Subject("a"), new Object[]{ 1 })).isInstanceOf(IllegalArgumentException.class);
+			assertThatThrownBy(() -> instance.invoke(null, new Object[]{ "b" })).isInstanceOf(NullPointerException.class);
+			assertThatThrownBy(() -> instance.invoke(new Subject(null), new Object[]{ "b" }))
+					.isInstanceOf(InvocationTargetException.class)
+					.hasCauseInstanceOf(NullPointerException.class);
+			assertThatThrownBy(() -> instance.newInstance(null)).isInstanceOf(IllegalStateException.class);
+		}
+	}
+
+	@Test
+	public void testHiddenClassesGenerateAnInvokerPerTarget() throws Exception {
+		assumeTrue(InvocationStrategies.isHiddenClassesSupported());
+		assertThat(invoker(InvocationStrategies.HIDDEN_CLASSES, "instance")).isInstanceOf(GeneratedInvoker.class);
+		assertThat(invoker(InvocationStrategies.HIDDEN_CLASSES, Subject.class.getConstructor(String.class))).isInstanceOf(GeneratedInvoker.class);
+	}
+
+	@Test
+	public void testUnsupportedTargetsAreLeftToTheNextStrategy() throws Exception {
+		Method hidden = Subject.class.getDeclaredMethod("hidden");
+		assertThat(InvocationStrategies.HIDDEN_CLASSES.createInvoker(hidden)).isNull();
+
+		InvocationStrategies.setStrategy(Subject.class, InvocationStrategies.HIDDEN_CLASSES);
+		assertThat(InvocationStrategies.createInvoker(hidden)).isInstanceOf(ReflectionInvoker.class);
+		hidden.setAccessible(true);
+		assertThat(InvocationStrategies.createInvoker(hidden)).isInstanceOf(MethodHandleInvoker.class);
+		assertThat(InvocationStrategies.createInvoker(hidden).invoke(null, null)).isEqualTo("hidden");
+	}
+
+	@Test
+	public void testStrategyIsChosenPerTargetClass() throws Exception {
+		Method instance = Subject.class.getMethod("instance", String.class);
+		Method length = String.class.getMethod("length");
+		assertThat(InvocationStrategies.forPublicMethod(instance)).isInstanceOf(MethodHandleInvoker.class);
+
+		InvocationStrategies.setStrategy(Subject.class, InvocationStrategies.REFLECTION);
+		assertThat(InvocationStrategies.getStrategy(Subject.class)).isSameAs(InvocationStrategies.REFLECTION);
+		assertThat(InvocationStrategies.forPublicMethod(instance)).isInstanceOf(ReflectionInvoker.class);
+		assertThat(InvocationStrategies.forPublicMethod(instance)).isSameAs(InvocationStrategies.forPublicMethod(instance));
+		assertThat(InvocationStrategies.forPublicMethod(length)).isInstanceOf(MethodHandleInvoker.class);
+
+		InvocationStrategies.setStrategy(Subject.class, null);
+		InvocationStrategies.setDefaultStrategy(InvocationStrategies.REFLECTION);
+		assertThat(InvocationStrategies.getStrategy(Subject.class)).isSameAs(InvocationStrategies.REFLECTION);
+		assertThat(InvocationStrategies.forPublicMethod(length)).isInstanceOf(ReflectionInvoker.class);
+	}
+
+	private static Invoker invoker(InvocationStrategy strategy, String methodName) throws NoSuchMethodException {
+		for (Method method : Subject.class.getMethods()) {
+			if (method.getName().equals(methodName)) {
+				return invoker(strategy, method);
+			}
+		}
+		throw new NoSuchMethodException(methodName);
+	}
+
+	private static Invoker invoker(InvocationStrategy strategy, Method method) {
+		final Invoker invoker = strategy.createInvoker(method);
+		return invoker != null ? invoker : InvocationStrategies.METHOD_HANDLES.createInvoker(method);
+	}
+
+	private static Invoker invoker(InvocationStrategy strategy, Constructor<?> constructor) {
+		final Invoker invoker = strategy.createInvoker(constructor);
+		return invoker != null ? invoker : InvocationStrategies.METHOD_HANDLES.createInvoker(constructor);
+	}
+
+	@SuppressWarnings("unused")
+	public static class Subject {
+		private final String prefix;
+
+		public Subject(String prefix) {
+			this.prefix = prefix;
+		}
+
+		public static String all(int a, long b, double c, byte d, short e, char f, boolean g, float h, String i) {
+			return "" + a + b + (int) c + d + e + f + g + h + i;
+		}
+
+		public String instance(String suffix) {
+			return prefix.concat(suffix);
+		}
+
+		public void nothing() {
+		}
+
+		private static String hidden() {
+			return "hidden";
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package org.bbottema.javareflection.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * Compares the time a call takes through each {@link InvocationStrategy}, with a direct call as baseline. Not part of the test suite; run the main
+ * method with a warmed-up JVM in mind, the numbers are only indicative.
+ */
+public class InvocationStrategyBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 2_000_000;
+	private static final int MEASURED_ITERATIONS = 20_000_000;
+
+	public static void main(String[] args) throws Exception {
+		final Method method = Counter.class.getMethod("add", int.class);
+		final List<InvocationStrategy> strategies = Arrays.asList(
+				InvocationStrategies.REFLECTION, InvocationStrategies.METHOD_HANDLES, InvocationStrategies.HIDDEN_CLASSES);
+		final List<String> names = Arrays.asList("reflection", "method handles", "hidden classes");
+
+		System.out.println(format("hidden classes supported: %s", InvocationStrategies.isHiddenClassesSupported()));
+		System.out.println(format("%-16s %8.2f ns/call", "direct", measureDirect()));
+		for (int i = 0; i < strategies.size(); i++) {
+			final Invoker invoker = strategies.get(i).createInvoker(method);
+			if (invoker != null) {
+				System.out.println(format("%-16s %8.2f ns/call", names.get(i), measure(invoker)));
+			}
+		}
+	}
+
+	private static double measureDirect() {
+		final Counter counter = new Counter();
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			counter.add(i);
+		}
+		final long start = System.nanoTime();
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			counter.add(i);
+		}
+		return report(counter, start);
+	}
+
+	private static double measure(Invoker invoker) throws IllegalAccessException, InvocationTargetException {
+		final Counter counter = new Counter();
+		final Object[] arguments = { 1 };
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			invoker.invoke(counter, arguments);
+		}
+		final long start = System.nanoTime();
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			invoker.invoke(counter, arguments);
+		}
+		return report(counter, start);
+	}
+
+	private static double report(Counter counter, long start) {
+		final double nanosPerCall = (System.nanoTime() - start) / (double) MEASURED_ITERATIONS;
+		// use the result, so the calls can't be optimized away
+		if (counter.total == 42) {
+			System.out.println();
+		}
+		return nanosPerCall;
+	}
+
+	@SuppressWarnings("WeakerAccess")
+	public static class Counter {
+		long total;
+
+		public long add(int value) {
+			return total += value;
+		}
+	}
+}
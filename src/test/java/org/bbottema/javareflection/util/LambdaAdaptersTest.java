@@ -0,0 +1,96 @@
+package org.bbottema.javareflection.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LambdaAdaptersTest {
+
+	@Test
+	public void testAdaptMethods() throws Exception {
+		Function<String, Integer> length = LambdaAdapters.adapt(String.class.getMethod("length"), Function.class);
+		assertThat(length.apply("hello")).isEqualTo(5);
+
+		ToIntFunction<String> parseInt = LambdaAdapters.adapt(Integer.class.getMethod("parseInt", String.class), ToIntFunction.class);
+		assertThat(parseInt.applyAsInt("42")).isEqualTo(42);
+
+		BiConsumer<Bean, String> setName = LambdaAdapters.adapt(Bean.class.getMethod("setName", String.class), BiConsumer.class);
+		Bean bean = new Bean();
+		setName.accept(bean, "name");
+		assertThat(bean.getName()).isEqualTo("name");
+
+		Predicate<String> isEmpty = LambdaAdapters.adapt(String.class.getMethod("isEmpty"), Predicate.class);
+		assertThat(isEmpty.test("")).isTrue();
+		assertThat(isEmpty.negate().test("")).isFalse();
+	}
+
+	@Test
+	public void testAdaptConstructors() throws Exception {
+		Supplier<Bean> newBean = LambdaAdapters.adapt(Bean.class.getConstructor(), Supplier.class);
+		assertThat(newBean.get()).isInstanceOf(Bean.class);
+
+		Function<String, Bean> newNamedBean = LambdaAdapters.adapt(Bean.class.getConstructor(String.class), Function.class);
+		assertThat(newNamedBean.apply("name").getName()).isEqualTo("name");
+
+		assertThatThrownBy(() -> LambdaAdapters.adapt(Number.class.getConstructor(), Supplier.class)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void testAdaptersAreCached() throws Exception {
+		Object adapter = LambdaAdapters.adapt(String.class.getMethod("length"), Function.class);
+		assertThat(LambdaAdapters.adapt(String.class.getMethod("length"), Function.class)).isSameAs(adapter);
+		assertThat(LambdaAdapters.adapt(String.class.getMethod("length"), ToIntFunction.class)).isNotSameAs(adapter);
+	}
+
+	@Test
+	public void testNonPublicMethodsMustBeMadeAccessible() throws Exception {
+		Method hidden = Bean.class.getDeclaredMethod("twice", int.class);
+		assertThatThrownBy(() -> LambdaAdapters.adapt(hidden, IntUnaryOperator.class)).isInstanceOf(IllegalArgumentException.class);
+
+		hidden.setAccessible(true);
+		assertThat(LambdaAdapters.adapt(hidden, IntUnaryOperator.class).applyAsInt(21)).isEqualTo(42);
+	}
+
+	@Test
+	public void testInvalidFunctionalInterfaces() throws Exception {
+		Method length = String.class.getMethod("length");
+		assertThatThrownBy(() -> LambdaAdapters.adapt(length, Runnable.class)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> LambdaAdapters.adapt(length, Object.class)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> LambdaAdapters.adapt(length, CharSequence.class)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> LambdaAdapters.adapt(Bean.class.getMethod("setName", String.class), Function.class))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@SuppressWarnings("unused")
+	public static class Bean {
+		private String name;
+
+		public Bean() {
+		}
+
+		public Bean(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		private static int twice(int value) {
+			return value * 2;
+		}
+	}
+}
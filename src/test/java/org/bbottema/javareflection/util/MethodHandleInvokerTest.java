@@ -0,0 +1,109 @@
+package org.bbottema.javareflection.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MethodHandleInvokerTest {
+
+	@Test
+	public void testInvokeMethodsWithZeroOneAndFourArguments() throws Exception {
+		assertThat(invoke("zero", null)).isEqualTo("zero");
+		assertThat(invoke("one", null, 1)).isEqualTo(2);
+		assertThat(invoke("four", null, 1, 2L, "3", 4.0)).isEqualTo("1234.0");
+		assertThat(invoke("instance", new Subject("a"), "b")).isEqualTo("ab");
+		assertThat(invoke("nothing", new Subject("a"))).isNull();
+		assertThat(invoke("zero", null, (Object[]) null)).isEqualTo("zero");
+	}
+
+	@Test
+	public void testArgumentsThatNeedWideningAreHandedToReflection() throws Exception {
+		assertThat(invoke("four", null, 1, 2, "3", 4)).isEqualTo("1234.0");
+	}
+
+	@Test
+	public void testInvalidArgumentsAreReportedLikeReflection() {
+		assertThatThrownBy(() -> invoke("one", null, (Object) null)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> invoke("one", null, "1")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> invoke("one", null, 1, 2)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> invoke("instance", "not a subject", "b")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> invoke("instance", null, "b")).isInstanceOf(NullPointerException.class);
+	}
+
+	@Test
+	public void testExceptionsFromTheMethodAreWrapped() {
+		assertThatThrownBy(() -> invoke("fail", null, "boom"))
+				.isInstanceOf(InvocationTargetException.class)
+				.hasCauseInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> invoke("instance", new Subject(null), "b"))
+				.isInstanceOf(InvocationTargetException.class)
+				.hasCauseInstanceOf(NullPointerException.class);
+	}
+
+	@Test
+	public void testNewInstance() throws Exception {
+		MethodHandleInvoker invoker = MethodHandleInvoker.forConstructor(Subject.class.getConstructor(String.class));
+		assertThat(invoker).isNotNull();
+		assertThat(((Subject) invoker.newInstance(new Object[]{ "a" })).prefix).isEqualTo("a");
+		assertThat(MethodHandleInvoker.forConstructor(Number.class.getConstructor())).isNull();
+	}
+
+	@Test
+	public void testInaccessibleMethodsAreLeftToReflection() throws Exception {
+		Method hiddenMethod = Subject.class.getDeclaredMethod("hidden");
+		assertThat(MethodHandleInvoker.forMethod(hiddenMethod)).isNull();
+		hiddenMethod.setAccessible(true);
+		assertThat(MethodHandleInvoker.forMethod(hiddenMethod).invoke(null, null)).isEqualTo("hidden");
+	}
+
+	private static Object invoke(String methodName, Object subject, Object... args) throws Exception {
+		for (Method method : Subject.class.getMethods()) {
+			if (method.getName().equals(methodName)) {
+				MethodHandleInvoker invoker = MethodHandleInvoker.forMethod(method);
+				assertThat(invoker).isNotNull();
+				return invoker.invoke(subject, args);
+			}
+		}
+		throw new NoSuchMethodException(methodName);
+	}
+
+	@SuppressWarnings("unused")
+	public static class Subject {
+		private final String prefix;
+
+		public Subject(String prefix) {
+			this.prefix = prefix;
+		}
+
+		public static String zero() {
+			return "zero";
+		}
+
+		public static int one(int value) {
+			return value + 1;
+		}
+
+		public static String four(int a, long b, String c, double d) {
+			return "" + a + b + c + d;
+		}
+
+		public static void fail(String message) {
+			throw new IllegalStateException(message);
+		}
+
+		public String instance(String suffix) {
+			return prefix.concat(suffix);
+		}
+
+		public void nothing() {
+		}
+
+		private static String hidden() {
+			return "hidden";
+		}
+	}
+}
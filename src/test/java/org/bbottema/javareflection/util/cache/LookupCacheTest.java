@@ -0,0 +1,247 @@
+package org.bbottema.javareflection.util.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LookupCacheTest {
+	
+	@Test
+	public void testUnboundedCacheKeepsEverything() {
+		LookupCache<Integer, String> cache = new LookupCache<>();
+		for (int i = 0; i < 10_000; i++) {
+			cache.put(i, "value" + i);
+		}
+		assertThat(cache.size()).isEqualTo(10_000);
+		assertThat(cache.get(0)).isEqualTo("value0");
+		assertThat(cache.get(9_999)).isEqualTo("value9999");
+	}
+	
+	@Test
+	public void testPutIfAbsentReturnsExistingValue() {
+		for (CachePolicy policy : new CachePolicy[]{CachePolicy.UNBOUNDED, CachePolicy.lru(10), CachePolicy.windowTinyLfu(10)}) {
+			LookupCache<String, String> cache = new LookupCache<>(policy);
+			assertThat(cache.putIfAbsent("key", "first")).isEqualTo("first");
+			assertThat(cache.putIfAbsent("key", "second")).isEqualTo("first");
+			cache.put("key", "third");
+			assertThat(cache.get("key")).isEqualTo("third");
+			assertThat(cache.size()).isEqualTo(1);
+			cache.remove("key");
+			assertThat(cache.get("key")).isNull();
+			assertThat(cache.size()).isZero();
+		}
+	}
+	
+	@Test
+	public void testLruEvictsLeastRecentlyUsed() {
+		LookupCache<String, String> cache = new LookupCache<>(CachePolicy.lru(3));
+		cache.put("a", "A");
+		cache.put("b", "B");
+		cache.put("c", "C");
+		assertThat(cache.get("a")).isEqualTo("A");
+		cache.put("d", "D");
+		
+		assertThat(cache.size()).isEqualTo(3);
+		assertThat(cache.get("b")).isNull();
+		assertThat(cache.get("a")).isEqualTo("A");
+		assertThat(cache.get("c")).isEqualTo("C");
+		assertThat(cache.get("d")).isEqualTo("D");
+	}
+	
+	@Test
+	public void testBoundIsRespected() {
+		for (EvictionPolicy evictionPolicy : EvictionPolicy.values()) {
+			LookupCache<Integer, Integer> cache = new LookupCache<>(CachePolicy.bounded(evictionPolicy, 100));
+			for (int i = 0; i < 10_000; i++) {
+				cache.get(i % 250);
+				cache.put(i % 250, i);
+				assertThat(cache.size()).isLessThanOrEqualTo(100);
+			}
+		}
+	}
+	
+	@Test
+	public void testStats() {
+		StatsCounter stats = new StatsCounter();
+		LookupCache<String, String> cache = new LookupCache<>(CachePolicy.windowTinyLfu(2), stats);
+		StatsCounter.setEnabled(true);
+		try {
+			cache.get("a");
+			cache.put("a", "A");
+			cache.get("a");
+			cache.put("b", "B");
+			// the window keeps c, b is rejected in favor of the more frequently used a
+			cache.put("c", "C");
+			cache.remove("c");
+		} finally {
+			StatsCounter.setEnabled(false);
+		}
+		CacheStats snapshot = stats.snapshot();
+		assertThat(snapshot.getHitCount()).isEqualTo(1);
+		assertThat(snapshot.getMissCount()).isEqualTo(1);
+		assertThat(snapshot.getEvictionCount()).isEqualTo(1);
+		assertThat(snapshot.getSize()).isEqualTo(cache.size()).isEqualTo(1);
+		
+		stats.reset();
+		assertThat(stats.snapshot()).isEqualTo(new CacheStats(0, 0, 0, 0, 0, 1));
+	}
+	
+	@Test
+	public void testSharedBudgetBoundsCachesTogether() {
+		for (EvictionPolicy evictionPolicy : EvictionPolicy.values()) {
+			CacheBudget<Integer, Integer> budget = new CacheBudget<>(CachePolicy.bounded(evictionPolicy, 100));
+			List<LookupCache<Integer, Integer>> caches = new ArrayList<>();
+			for (int i = 0; i < 10; i++) {
+				caches.add(new LookupCache<>(budget, new StatsCounter()));
+			}
+			for (int i = 0; i < 10_000; i++) {
+				lookup(caches.get(i % 10), i % 500);
+				int totalSize = 0;
+				for (LookupCache<Integer, Integer> cache : caches) {
+					totalSize += cache.size();
+				}
+				assertThat(totalSize).isLessThanOrEqualTo(100);
+				assertThat(budget.getWeight()).isEqualTo(totalSize);
+			}
+			caches.get(0).clear();
+			int remainingSize = 0;
+			for (LookupCache<Integer, Integer> cache : caches) {
+				remainingSize += cache.size();
+			}
+			assertThat(budget.getWeight()).isEqualTo(remainingSize);
+		}
+	}
+	
+	@Test
+	public void testWeigher() {
+		LookupCache<String, String> cache = new LookupCache<>(CachePolicy.lru(0).weighedBy(10, new Weigher() {
+			@Override
+			public int weigh(Object key, Object value) {
+				return ((String) value).length();
+			}
+		}));
+		cache.put("a", "12345");
+		cache.put("b", "1234");
+		assertThat(cache.size()).isEqualTo(2);
+		cache.put("c", "12");
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.get("a")).isNull();
+		cache.put("d", "12345678901");
+		assertThat(cache.get("d")).as("heavier than the maximum weight").isNull();
+		assertThat(cache.get("b")).isEqualTo("1234");
+		assertThat(cache.get("c")).isEqualTo("12");
+	}
+	
+	@Test
+	public void testWeighingUnboundedPolicyFails() {
+		assertThatThrownBy(() -> CachePolicy.UNBOUNDED.weighedBy(10, (key, value) -> 1))
+				.isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> CachePolicy.lru(-1))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+	
+	@Test
+	public void testWindowTinyLfuSurvivesScan() {
+		LookupCache<Integer, Integer> lru = new LookupCache<>(CachePolicy.lru(100));
+		LookupCache<Integer, Integer> tinyLfu = new LookupCache<>(CachePolicy.windowTinyLfu(100));
+		for (int round = 0; round < 10; round++) {
+			for (int hot = 0; hot < 50; hot++) {
+				lookup(lru, hot);
+				lookup(tinyLfu, hot);
+			}
+		}
+		// one-hit wonders, such as a batch of lookups for types that are never looked up again
+		for (int scan = 1000; scan < 2000; scan++) {
+			lookup(lru, scan);
+			lookup(tinyLfu, scan);
+		}
+		int lruHits = 0;
+		int tinyLfuHits = 0;
+		for (int hot = 0; hot < 50; hot++) {
+			lruHits += lookup(lru, hot) ? 1 : 0;
+			tinyLfuHits += lookup(tinyLfu, hot) ? 1 : 0;
+		}
+		assertThat(lruHits).isZero();
+		assertThat(tinyLfuHits).isEqualTo(50);
+	}
+	
+	@Test
+	public void testSmallWindowTinyLfuCacheAdmitsNewEntries() {
+		LookupCache<Integer, Integer> cache = new LookupCache<>(CachePolicy.windowTinyLfu(10));
+		for (int round = 0; round < 5; round++) {
+			for (int key = 0; key < 10; key++) {
+				lookup(cache, key);
+			}
+		}
+		for (int key = 100; key < 110; key++) {
+			cache.put(key, key);
+			assertThat(cache.get(key)).as("new entries get a chance in the window").isEqualTo(key);
+			assertThat(cache.size()).isLessThanOrEqualTo(10);
+		}
+	}
+	
+	@Test
+	public void testRejectedCandidateDoesntCostEntries() {
+		LookupCache<String, String> cache = new LookupCache<>(CachePolicy.windowTinyLfu(0).weighedBy(100, new Weigher() {
+			@Override
+			public int weigh(Object key, Object value) {
+				return ((String) value).length();
+			}
+		}));
+		cache.put("a", repeat('a', 49));
+		for (int i = 0; i < 5; i++) {
+			cache.get("b");
+		}
+		cache.put("b", repeat('b', 49));
+		cache.get("c");
+		cache.get("c");
+		// needs to push out both a and b to fit, but is used less frequently than b
+		cache.put("c", repeat('c', 51));
+		
+		assertThat(cache.get("c")).isNull();
+		assertThat(cache.get("a")).isNotNull();
+		assertThat(cache.get("b")).isNotNull();
+	}
+	
+	@Test
+	public void testWindowTinyLfuHitRatioOnSkewedWorkload() {
+		LookupCache<Integer, Integer> unbounded = new LookupCache<>();
+		LookupCache<Integer, Integer> lru = new LookupCache<>(CachePolicy.lru(500));
+		LookupCache<Integer, Integer> tinyLfu = new LookupCache<>(CachePolicy.windowTinyLfu(500));
+		Random random = new Random(42);
+		int unboundedHits = 0;
+		int lruHits = 0;
+		int tinyLfuHits = 0;
+		for (int i = 0; i < 200_000; i++) {
+			// roughly Zipfian: low keys are far more popular than high keys
+			int key = (int) Math.floor(Math.pow(10_000, random.nextDouble())) - 1;
+			unboundedHits += lookup(unbounded, key) ? 1 : 0;
+			lruHits += lookup(lru, key) ? 1 : 0;
+			tinyLfuHits += lookup(tinyLfu, key) ? 1 : 0;
+		}
+		assertThat(tinyLfu.size()).isLessThanOrEqualTo(500);
+		// the 500 most popular keys account for ~67% of the lookups, so that is about the best any cache of this size can do
+		assertThat((double) tinyLfuHits / unboundedHits).isGreaterThan(0.6);
+		assertThat(tinyLfuHits).isGreaterThan(lruHits);
+	}
+	
+	private static String repeat(char c, int times) {
+		char[] chars = new char[times];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+	
+	private static boolean lookup(LookupCache<Integer, Integer> cache, int key) {
+		if (cache.get(key) != null) {
+			return true;
+		}
+		cache.put(key, key);
+		return false;
+	}
+}
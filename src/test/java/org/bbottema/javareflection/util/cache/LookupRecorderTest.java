@@ -0,0 +1,102 @@
+package org.bbottema.javareflection.util.cache;
+
+import org.bbottema.javareflection.ClassUtils;
+import org.bbottema.javareflection.LookupCaches;
+import org.bbottema.javareflection.ReflectionContext;
+import org.bbottema.javareflection.model.LookupMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.EnumSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LookupRecorderTest {
+
+	@BeforeEach
+	public void startRecording() {
+		LookupCaches.resetCache();
+		LookupRecorder.clearRecording();
+		LookupRecorder.startRecording();
+	}
+
+	@AfterEach
+	public void stopRecording() {
+		LookupRecorder.stopRecording();
+		LookupRecorder.clearRecording();
+	}
+
+	@Test
+	public void testRecordAndReplay() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		context.findCompatibleMethod(Integer.class, "valueOf", EnumSet.of(LookupMode.AUTOBOX), int.class);
+		context.findCompatibleConstructor(StringBuilder.class, EnumSet.noneOf(LookupMode.class), String.class);
+		assertThatThrownBy(() -> context.findCompatibleMethod(Integer.class, "setValue", EnumSet.noneOf(LookupMode.class), int.class))
+				.isInstanceOf(NoSuchMethodException.class);
+		context.convert(true, Double.class);
+		ClassUtils.locateClass("Integer", false, null);
+		LookupRecorder.stopRecording();
+
+		String recording = writeRecording();
+		assertThat(recording).contains(
+				"method\tjava.lang.Integer\tvalueOf\tAUTOBOX\tint\n",
+				"method\tjava.lang.StringBuilder\t<init>\t\tjava.lang.String\n",
+				"method\tjava.lang.Integer\tsetValue\t\tint\n",
+				"conversion\tjava.lang.Boolean\tjava.lang.Double\n",
+				"class\tInteger\tfalse\n");
+
+		ReflectionContext replayContext = ReflectionContext.create();
+		int lookupCount = recording.split("\n").length - 1;
+		assertThat(LookupRecorder.replay(new StringReader(recording), replayContext, null, null)).isEqualTo(lookupCount);
+		assertThat(replayContext.getStats().get(LookupCaches.METHOD_CACHE).getSize()).isEqualTo(3);
+		assertThat(replayContext.getStats().get(LookupCaches.CONVERSION_PATHS_CACHE).getSize()).isEqualTo(1);
+	}
+
+	@Test
+	public void testReplayInParallel() throws Exception {
+		ReflectionContext context = ReflectionContext.create();
+		for (Class<?> type : new Class<?>[] { Integer.class, Long.class, Short.class, Double.class }) {
+			context.findCompatibleMethod(type, "valueOf", EnumSet.of(LookupMode.AUTOBOX), String.class);
+		}
+		LookupRecorder.stopRecording();
+
+		ReflectionContext replayContext = ReflectionContext.create();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			assertThat(LookupRecorder.replay(new StringReader(writeRecording()), replayContext, null, executor)).isEqualTo(4);
+		} finally {
+			executor.shutdown();
+		}
+		assertThat(replayContext.getStats().get(LookupCaches.METHOD_CACHE).getSize()).isEqualTo(4);
+	}
+
+	@Test
+	public void testReplaySkipsUnknownTypes() throws Exception {
+		String recording = "# java-reflection lookups v1\n"
+				+ "method\tcom.example.Gone\tvalueOf\t\tjava.lang.String\n"
+				+ "method\tjava.lang.Integer\tvalueOf\t\tcom.example.Gone\n"
+				+ "method\tjava.lang.Integer\tvalueOf\t\tjava.lang.String\n";
+		assertThat(LookupRecorder.replay(new StringReader(recording), ReflectionContext.create(), null, null)).isEqualTo(1);
+	}
+
+	@Test
+	public void testReplayRejectsOtherContent() {
+		assertThatThrownBy(() -> LookupRecorder.replay(new StringReader("moo\n")))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> LookupRecorder.replay(new StringReader("# java-reflection lookups v1\nmoo\n")))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static String writeRecording() throws IOException {
+		StringWriter writer = new StringWriter();
+		LookupRecorder.writeRecording(writer);
+		return writer.toString();
+	}
+}
@@ -421,6 +421,34 @@ public class ValueConversionHelperTest {
 		assertThat(ValueConversionHelper.convert("moo", String.class)).isEqualTo("--moo--");
 	}
 	
+	@Test
+	public void testPreparedConverter() {
+		ConverterRegistry registry = ConverterRegistry.withDefaultConverters();
+		PreparedConverter stringToInt = registry.prepareConverter(String.class, int.class);
+		assertThat(stringToInt.isConvertible()).isTrue();
+		assertThat(stringToInt.convert("42")).isEqualTo(42);
+		assertThat(stringToInt.convert(42L)).isEqualTo(42);
+		assertThat(stringToInt.convert(null)).isNull();
+		try {
+			stringToInt.convert("not a number");
+			fail("IncompatibleTypeException expected");
+		} catch (IncompatibleTypeException e) {
+			// OK
+		}
+		
+		PreparedConverter stringToString = registry.prepareConverter(String.class, String.class);
+		assertThat(stringToString.convert("moo")).isEqualTo("moo");
+		registry.registerValueConverter(new ValueFunctionImpl<>(String.class, String.class, new Function<String, String>() {
+			@Override
+			public String apply(String value) {
+				return format("--%s--", value);
+			}
+		}));
+		assertThat(stringToString.convert("moo")).isEqualTo("--moo--");
+		
+		assertThat(registry.prepareConverter(String.class, Calendar.class).isConvertible()).isFalse();
+	}
+	
 	class Fruit{}
 	class Apple extends Fruit{}
 	class Elstar extends Apple{}